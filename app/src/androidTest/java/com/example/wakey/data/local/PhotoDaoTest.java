@@ -0,0 +1,137 @@
+package com.example.wakey.data.local;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.wakey.service.IndexingJob;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * dHash 보충 대상 조회 (getPhotosWithoutHash)
+ * - 디코딩에 실패해 백오프 중인 사진이 촬영 순서 앞쪽에 있어도 limit 을 차지하지 않고 다음 사진이 조회되는지 확인
+ * 자동 생성 해시태그 교체 (replaceGeneratedHashtags)
+ * - 라벨 사전이 바뀌어 다시 태그할 때 다른 경로에서 바뀐 해시태그는 유지되는지 확인
+ */
+@RunWith(AndroidJUnit4.class)
+public class PhotoDaoTest {
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long NOW = 1_000_000L;
+
+    private AppDatabase db;
+    private PhotoDao photoDao;
+    private IndexingDao indexingDao;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        photoDao = db.photoDao();
+        indexingDao = db.indexingDao();
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void getPhotosWithoutHash_skipsPhotosInBackoff() {
+        // 가장 오래된 두 장은 디코딩이 안 되는 사진
+        insertPhoto("content://broken/1", "2020-01-01 10:00:00");
+        insertPhoto("content://broken/2", "2020-01-01 10:00:01");
+        insertPhoto("content://ok/1", "2021-01-01 10:00:00");
+        insertPhoto("content://ok/2", "2021-01-01 10:00:01");
+
+        assertEquals(Arrays.asList("content://broken/1", "content://broken/2"), pathsWithoutHash(NOW, 2));
+
+        // 실패 기록 후에는 다음 사진으로 넘어감
+        recordFailure("content://broken/1", 1, NOW + 60_000L);
+        recordFailure("content://broken/2", 1, NOW + 60_000L);
+        assertEquals(Arrays.asList("content://ok/1", "content://ok/2"), pathsWithoutHash(NOW, 2));
+
+        // 백오프가 끝나면 다시 시도, 시도 횟수를 다 쓰면 더 이상 조회되지 않음
+        recordFailure("content://broken/2", MAX_ATTEMPTS, NOW + 60_000L);
+        assertEquals(Arrays.asList("content://broken/1", "content://ok/1"), pathsWithoutHash(NOW + 60_000L, 2));
+    }
+
+    @Test
+    public void getPhotosWithoutHash_ignoresFailuresOfOtherStages() {
+        insertPhoto("content://photo/1", "2020-01-01 10:00:00");
+
+        IndexingTask task = new IndexingTask("content://photo/1", IndexingJob.STAGE_HASHTAGS,
+                IndexingTask.STATUS_FAILED, NOW);
+        task.attempts = MAX_ATTEMPTS;
+        task.nextAttemptAt = NOW + 60_000L;
+        indexingDao.upsertTasks(Arrays.asList(task));
+
+        assertEquals(Arrays.asList("content://photo/1"), pathsWithoutHash(NOW, 10));
+    }
+
+    @Test
+    public void replaceGeneratedHashtags_keepsHashtagsChangedElsewhere() {
+        insertPhoto("content://empty", "2020-01-01 10:00:00");
+        insertPhoto("content://generated", "2020-01-01 10:00:01");
+        insertPhoto("content://edited", "2020-01-01 10:00:02");
+        insertPhoto("content://legacy", "2020-01-01 10:00:03");
+
+        photoDao.updateGeneratedHashtags("content://generated", "#beach");
+        photoDao.updateGeneratedHashtags("content://edited", "#beach");
+        photoDao.updateHashtags("content://edited", "#myTrip");
+        // autoHashtags 컬럼이 생기기 전에 저장된 해시태그 (출처 모름)
+        photoDao.updateHashtags("content://legacy", "#ocean");
+
+        assertEquals(1, replace("content://empty", "#seashore"));
+        assertEquals(1, replace("content://generated", "#seashore"));
+        assertEquals(0, replace("content://edited", "#seashore"));
+        assertEquals(0, replace("content://legacy", "#seashore"));
+
+        assertEquals("#seashore", photoDao.getHashtagsByPath("content://empty"));
+        assertEquals("#seashore", photoDao.getHashtagsByPath("content://generated"));
+        assertEquals("#myTrip", photoDao.getHashtagsByPath("content://edited"));
+        assertEquals("#ocean", photoDao.getHashtagsByPath("content://legacy"));
+    }
+
+    // ========== 헬퍼 ==========
+
+    private void insertPhoto(String filePath, String dateTaken) {
+        Photo photo = new Photo();
+        photo.filePath = filePath;
+        photo.dateTaken = dateTaken;
+        photoDao.insertPhoto(photo);
+    }
+
+    private void recordFailure(String filePath, int attempts, long nextAttemptAt) {
+        IndexingTask task = new IndexingTask(filePath, IndexingJob.STAGE_DHASH, IndexingTask.STATUS_FAILED, NOW);
+        task.attempts = attempts;
+        task.nextAttemptAt = nextAttemptAt;
+        indexingDao.upsertTasks(Arrays.asList(task));
+    }
+
+    private int replace(String filePath, String hashtags) {
+        return photoDao.replaceGeneratedHashtags(photoDao.getPhotoByPath(filePath).id, hashtags);
+    }
+
+    private List<String> pathsWithoutHash(long now, int limit) {
+        List<String> paths = new ArrayList<>();
+        for (Photo photo : photoDao.getPhotosWithoutHash(IndexingJob.STAGE_DHASH,
+                IndexingTask.STATUS_FAILED, MAX_ATTEMPTS, now, limit)) {
+            paths.add(photo.filePath);
+        }
+        return paths;
+    }
+}
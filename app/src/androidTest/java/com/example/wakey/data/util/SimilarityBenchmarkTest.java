@@ -0,0 +1,88 @@
+package com.example.wakey.data.util;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 기존 cosineSimilarity 단건 호출 대비 dot / dotBatch 커널 속도 (기기에서 실행, 결과는 logcat)
+ * - 같은 정규화 벡터 블록을 기존 방식(벡터마다 배열 복사 + norm 재계산 + 로그)과 새 커널로 채점
+ * - cosineSimilarity 는 호출마다 로그를 남겨 느리므로 COSINE_SAMPLES 개만 측정하고 벡터당 ns 로 비교
+ * - 커널마다 한 번 먼저 실행해서 JIT 컴파일 전 시간은 측정에서 제외
+ */
+@RunWith(AndroidJUnit4.class)
+public class SimilarityBenchmarkTest {
+    private static final String TAG = "SimilarityBenchmark";
+
+    private static final int DIM = 512;
+    private static final int VECTORS = 20_000;
+    private static final int RUNS = 10;
+    private static final int COSINE_SAMPLES = 2_000;
+
+    @Test
+    public void cosineVersusDotKernels() {
+        Random random = new Random(3);
+        float[] block = new float[VECTORS * DIM];
+        for (int i = 0; i < block.length; i++) {
+            block[i] = (float) random.nextGaussian();
+        }
+        for (int j = 0; j < VECTORS; j++) {
+            SimilarityUtil.normalizeInPlace(block, j * DIM, DIM);
+        }
+        float[] query = new float[DIM];
+        for (int i = 0; i < DIM; i++) {
+            query[i] = (float) random.nextGaussian();
+        }
+        SimilarityUtil.normalizeInPlace(query, 0, DIM);
+
+        // 기존 방식: 벡터마다 배열 복사 후 cosineSimilarity
+        float[] cosineOut = new float[COSINE_SAMPLES];
+        float[] candidate = new float[DIM];
+        long start = System.nanoTime();
+        for (int j = 0; j < COSINE_SAMPLES; j++) {
+            System.arraycopy(block, j * DIM, candidate, 0, DIM);
+            cosineOut[j] = SimilarityUtil.cosineSimilarity(query, candidate);
+        }
+        double cosineNs = (double) (System.nanoTime() - start) / COSINE_SAMPLES;
+
+        // 벡터별 dot (복사 없이 블록 안 위치로)
+        float[] dotOut = new float[VECTORS];
+        for (int j = 0; j < VECTORS; j++) {
+            dotOut[j] = SimilarityUtil.dot(query, 0, block, j * DIM, DIM);
+        }
+        start = System.nanoTime();
+        for (int r = 0; r < RUNS; r++) {
+            for (int j = 0; j < VECTORS; j++) {
+                dotOut[j] = SimilarityUtil.dot(query, 0, block, j * DIM, DIM);
+            }
+        }
+        double dotNs = (double) (System.nanoTime() - start) / ((long) RUNS * VECTORS);
+
+        // 블록 전체 dotBatch
+        float[] batchOut = new float[VECTORS];
+        SimilarityUtil.dotBatch(query, block, 0, DIM, VECTORS, batchOut, 0);
+        start = System.nanoTime();
+        for (int r = 0; r < RUNS; r++) {
+            SimilarityUtil.dotBatch(query, block, 0, DIM, VECTORS, batchOut, 0);
+        }
+        double batchNs = (double) (System.nanoTime() - start) / ((long) RUNS * VECTORS);
+
+        // 정규화된 벡터라 세 방식의 값이 같아야 비교가 의미 있음
+        for (int j = 0; j < COSINE_SAMPLES; j++) {
+            assertEquals(cosineOut[j], batchOut[j], 1e-4f);
+            assertEquals(dotOut[j], batchOut[j], 0f);
+        }
+
+        Log.d(TAG, String.format(Locale.ROOT,
+                "📊 dim=%d: cosine %.0fns, dot %.0fns (x%.1f), dotBatch %.0fns (x%.1f) / 벡터",
+                DIM, cosineNs, dotNs, cosineNs / dotNs, batchNs, cosineNs / batchNs));
+    }
+}
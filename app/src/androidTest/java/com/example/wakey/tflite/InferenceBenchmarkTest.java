@@ -0,0 +1,128 @@
+package com.example.wakey.tflite;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 배치 크기별 CLIP / MobileNet 처리량 측정 (기기에서 배치 크기를 정할 때 실행)
+ * - 합성 비트맵으로 배치 1, 4, 8, 16 마다 PHOTOS_PER_RUN 장을 추론하고 장/s 를 logcat 에 출력
+ * - 배치 크기마다 한 번 먼저 실행해서 입력 크기 변경(텐서 재할당) 비용은 측정에서 제외
+ * - CLIP 은 미리 만든 입력 텐서로 추론 시간만, MobileNet 은 224 축소 전처리를 포함한 시간
+ */
+@RunWith(AndroidJUnit4.class)
+public class InferenceBenchmarkTest {
+    private static final String TAG = "InferenceBenchmark";
+
+    private static final int[] BATCH_SIZES = {1, 4, 8, 16};
+    private static final int PHOTOS_PER_RUN = 64;
+    private static final int SAMPLE_COUNT = 8;
+
+    private ClipImageEncoder encoder;
+    private ImageClassifier classifier;
+    private ImagePreprocessor preprocessor;
+    private final List<Bitmap> samples = new ArrayList<>();
+    private final List<ByteBuffer> clipInputs = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        encoder = new ClipImageEncoder(context);
+        classifier = new ImageClassifier(context);
+        preprocessor = ClipImageEncoder.newPreprocessor();
+
+        Random random = new Random(1);
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            Bitmap sample = syntheticPhoto(1024, 768, random);
+            samples.add(sample);
+            ByteBuffer input = ClipImageEncoder.newInputBuffer();
+            ClipImageEncoder.preprocess(preprocessor, sample, input);
+            clipInputs.add(input);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        encoder.close();
+        classifier.close();
+        preprocessor.release();
+        for (Bitmap sample : samples) {
+            sample.recycle();
+        }
+    }
+
+    @Test
+    public void throughputPerBatchSize() {
+        for (int batch : BATCH_SIZES) {
+            List<ByteBuffer> clipBatch = new ArrayList<>(batch);
+            List<Bitmap> bitmapBatch = new ArrayList<>(batch);
+            for (int i = 0; i < batch; i++) {
+                clipBatch.add(clipInputs.get(i % clipInputs.size()));
+                bitmapBatch.add(samples.get(i % samples.size()));
+            }
+            assertEquals(batch, encoder.encodeBatch(clipBatch).length);
+            assertEquals(batch, classifier.classifyBatch(bitmapBatch).size());
+
+            int runs = Math.max(1, PHOTOS_PER_RUN / batch);
+            long start = System.nanoTime();
+            for (int r = 0; r < runs; r++) {
+                encoder.encodeBatch(clipBatch);
+            }
+            long clipNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int r = 0; r < runs; r++) {
+                classifier.classifyBatch(bitmapBatch);
+            }
+            long classifierNanos = System.nanoTime() - start;
+
+            int photos = runs * batch;
+            Log.d(TAG, String.format(Locale.ROOT, "📊 N=%d: CLIP %.1f장/s, MobileNet %.1f장/s (%d장)",
+                    batch, photos * 1e9 / clipNanos, photos * 1e9 / classifierNanos, photos));
+        }
+    }
+
+    @Test
+    public void batchedEmbeddingMatchesSingle() {
+        // 배치로 묶어도 같은 사진의 임베딩은 그대로여야 함 (패딩/오프셋 실수 방지)
+        float[][] single = encoder.encodeBatch(Collections.singletonList(clipInputs.get(3)));
+        float[][] batched = encoder.encodeBatch(clipInputs);
+        assertEquals(clipInputs.size(), batched.length);
+        assertArrayEquals(single[0], batched[3], 1e-3f);
+    }
+
+    /**
+     * 그라디언트 + 잡음 비트맵 (단색보다 실제 사진에 가까운 전처리 비용)
+     */
+    private static Bitmap syntheticPhoto(int width, int height, Random random) {
+        int[] pixels = new int[width * height];
+        int tint = random.nextInt(256);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = (x * 255 / width + random.nextInt(32)) & 0xFF;
+                int g = (y * 255 / height + random.nextInt(32)) & 0xFF;
+                pixels[y * width + x] = 0xFF000000 | (r << 16) | (g << 8) | tint;
+            }
+        }
+        return Bitmap.createBitmap(pixels, width, height, Bitmap.Config.ARGB_8888);
+    }
+}
@@ -12,8 +12,8 @@ import android.location.Address;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 import android.util.Pair;
 import android.view.View;
@@ -31,7 +31,9 @@ import com.example.wakey.manager.ApiManager;
 import com.example.wakey.manager.DataManager;
 import com.example.wakey.manager.MapManager;
 import com.example.wakey.manager.UIManager;
+import com.example.wakey.service.IndexingJob;
 import com.example.wakey.tflite.ImageClassifier;
+import com.example.wakey.tflite.Yolov8Detector;
 import com.example.wakey.ui.album.SmartAlbumActivity;
 import com.example.wakey.ui.timeline.StoryGenerator;
 import com.example.wakey.ui.timeline.TimelineManager;
@@ -57,7 +59,7 @@ import java.util.concurrent.Executors;
 public class MainActivity extends AppCompatActivity implements OnMapReadyCallback {
     private static final String TAG = "MainActivity";
     private static final int LOCATION_PERMISSION_REQUEST_CODE = 1000;
-    private static final int MAX_PHOTOS_PER_BATCH = 10; // 한 번에 처리할 최대 사진 수
+    private static final long INDEXING_START_DELAY_MS = 5000; // 인덱싱 작업 지연 시작 (UI 와 경쟁 방지)
 
     private MapManager mapManager;
     private UIManager uiManager;
@@ -72,9 +74,22 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
     private FusedLocationProviderClient fusedLocationClient;
 
     private ImageRepository imageRepository;
-    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private static boolean timeToMapLogged;
     private ExecutorService backgroundExecutor;
 
+    private final IndexingJob.ProgressListener indexingListener = new IndexingJob.ProgressListener() {
+        @Override
+        public void onProgress(IndexingJob.Progress progress) {
+            Log.d(TAG, "인덱싱 진행: " + progress);
+        }
+
+        @Override
+        public void onFinished(IndexingJob.Progress progress) {
+            Log.d(TAG, "이미지 처리 작업 모두 완료");
+            ToastManager.getInstance().showToast("이미지 준비 완료", Toast.LENGTH_SHORT);
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -90,7 +105,11 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
         initManagers();
         initStoryComponents();
 
+        // 모델은 여기서 로드하지 않음 (첫 사용 시 또는 첫 화면 이후 워밍업에서 로드)
         imageRepository = new ImageRepository(this);
+        // 첫 프레임이 그려진 뒤 백그라운드에서 모델 인터프리터 준비 + 워밍업 추론
+        getWindow().getDecorView().post(() ->
+                backgroundExecutor.execute(() -> ImageRepository.warmUpModels(this)));
 
         // 지도 초기화
         SupportMapFragment mapFragment = (SupportMapFragment) getSupportFragmentManager()
@@ -106,12 +125,13 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
         // 권한 요청
         requestLocationPermission();
 
-        // 앱 시작 후 5초 후에 해시태그 처리 시작 (지연 시작)
-        mainHandler.postDelayed(this::initializeHashtagsDelayed, 5000);
+        // 사진 인덱싱은 WakeyApplication 에서 시작한 IndexingJob 이 담당 (여기서는 완료 알림만 받음)
+        IndexingJob.getInstance(this).addProgressListener(indexingListener);
     }
 
     @Override
     protected void onDestroy() {
+        IndexingJob.getInstance(this).removeProgressListener(indexingListener);
         // 백그라운드 작업 정리
         if (backgroundExecutor != null) {
             backgroundExecutor.shutdown();
@@ -119,173 +139,6 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
         super.onDestroy();
     }
 
-    // 지연 시작을 위한 메서드
-    private void initializeHashtagsDelayed() {
-        Log.d(TAG, "해시태그 처리 지연 시작");
-        // 한 번에 모든 작업을 시작하지 않고 필수 작업만 먼저 수행
-        processExistingPhotosWithoutHashtags(MAX_PHOTOS_PER_BATCH);
-    }
-
-    // 기존 해시태그 없는 사진만 우선 처리 (개수 제한)
-    private void processExistingPhotosWithoutHashtags(int maxPhotos) {
-        backgroundExecutor.execute(() -> {
-            Log.d(TAG, "기존 해시태그 없는 사진 처리 시작");
-            ImageClassifier classifier = null;
-
-            try {
-                AppDatabase db = AppDatabase.getInstance(this);
-                // 해시태그 없는 사진만 조회 (최대 개수 제한)
-                List<Photo> photosWithoutHashtags = db.photoDao().getPhotosWithoutHashtagsLimit(maxPhotos);
-                Log.d(TAG, "해시태그 없는 사진 수: " + photosWithoutHashtags.size());
-
-                if (photosWithoutHashtags.isEmpty()) {
-                    Log.d(TAG, "처리할 사진이 없습니다. 신규 사진 스캔으로 넘어갑니다.");
-                    // 이미 모든 사진에 해시태그가 있으면 신규 사진 스캔으로 넘어감
-                    mainHandler.postDelayed(this::scanNewPhotos, 2000);
-                    return;
-                }
-
-                // 분류기 초기화
-                try {
-                    classifier = new ImageClassifier(this);
-                } catch (Exception e) {
-                    Log.e(TAG, "이미지 분류기 초기화 실패", e);
-                    return;
-                }
-
-                int successCount = 0;
-
-                // 사진 한 장씩 순차 처리
-                for (Photo photo : photosWithoutHashtags) {
-                    try {
-                        Uri uri = Uri.parse(photo.filePath);
-                        Bitmap bitmap = ImageUtils.loadBitmapFromUri(this, uri);
-
-                        if (bitmap != null) {
-                            List<Pair<String, Float>> predictions = classifier.classifyImage(bitmap);
-
-                            StringBuilder hashtagBuilder = new StringBuilder();
-                            for (Pair<String, Float> pred : predictions) {
-                                if (pred != null && pred.first != null) {
-                                    String term = pred.first.split(",")[0].trim();
-                                    if (!term.isEmpty()) {
-                                        String hashtag = "#" + term.replace(" ", "");
-                                        hashtagBuilder.append(hashtag).append(" ");
-                                    }
-                                }
-                            }
-
-                            String finalHashtags = hashtagBuilder.toString().trim();
-                            if (!finalHashtags.isEmpty()) {
-                                db.photoDao().updateHashtags(photo.filePath, finalHashtags);
-                                Log.d(TAG, "해시태그 생성 완료: " + photo.filePath);
-                                successCount++;
-                            }
-
-                            // 메모리 누수 방지
-                            bitmap.recycle();
-                        }
-
-                        // 처리 간 지연 (부하 감소)
-                        Thread.sleep(100);
-                    } catch (Exception e) {
-                        Log.e(TAG, "사진 처리 중 오류: " + photo.filePath, e);
-                    }
-                }
-
-                Log.d(TAG, "기존 사진 " + successCount + "개 처리 완료");
-
-                // 남은 사진이 있는지 확인
-                int remainingCount = db.photoDao().countPhotosWithoutHashtags();
-
-                if (remainingCount > 0) {
-                    // 아직 처리할 사진이 남아있으면 5초 후 다음 배치 처리
-                    mainHandler.postDelayed(() ->
-                            processExistingPhotosWithoutHashtags(MAX_PHOTOS_PER_BATCH), 5000);
-                } else {
-                    // 모든 기존 사진이 처리되었으면 신규 사진 스캔으로 넘어감
-                    mainHandler.postDelayed(this::scanNewPhotos, 2000);
-                }
-
-            } catch (Exception e) {
-                Log.e(TAG, "해시태그 초기화 중 오류", e);
-            } finally {
-                // 리소스 정리
-                if (classifier != null) {
-                    try {
-                        classifier.close();
-                    } catch (Exception e) {
-                        Log.e(TAG, "분류기 닫기 실패", e);
-                    }
-                }
-            }
-        });
-    }
-
-    // 신규 사진 스캔 및 처리
-    private void scanNewPhotos() {
-        backgroundExecutor.execute(() -> {
-            Log.d(TAG, "신규 사진 스캔 시작");
-            try {
-                AppDatabase db = AppDatabase.getInstance(this);
-                List<Uri> imageUris = ImageUtils.getAllImageUris(this);
-                Log.d(TAG, "기기에서 발견된 총 이미지 수: " + imageUris.size());
-
-                // 최대 처리 개수 제한
-                int processedCount = 0;
-                int maxToProcess = MAX_PHOTOS_PER_BATCH;
-
-                for (Uri uri : imageUris) {
-                    if (processedCount >= maxToProcess) {
-                        break;
-                    }
-
-                    try {
-                        // 이미 DB에 있는지 확인
-                        Photo existingPhoto = db.photoDao().getPhotoByPath(uri.toString());
-
-                        if (existingPhoto == null) {
-                            // 신규 사진만 처리
-                            Bitmap bitmap = ImageUtils.loadBitmapFromUri(this, uri);
-                            if (bitmap != null) {
-                                try {
-                                    ImageMeta meta = imageRepository.classifyImage(uri, bitmap);
-                                    Photo savedPhoto = imageRepository.savePhotoToDB(uri, meta);
-
-                                    if (savedPhoto != null) {
-                                        processedCount++;
-                                        Log.d(TAG, "신규 사진 저장 완료: " + uri.toString());
-                                    }
-
-                                    // 메모리 정리
-                                    bitmap.recycle();
-
-                                    // 처리 간 지연
-                                    Thread.sleep(100);
-                                } catch (Exception e) {
-                                    Log.e(TAG, "신규 사진 처리 중 오류: " + e.getMessage());
-                                }
-                            }
-                        }
-                    } catch (Exception e) {
-                        Log.e(TAG, "URI 처리 중 오류: " + uri.toString(), e);
-                    }
-                }
-
-                Log.d(TAG, "신규 사진 " + processedCount + "개 처리 완료");
-
-                // 모든 작업 완료 메시지
-                mainHandler.post(() -> {
-                    Log.d(TAG, "이미지 처리 작업 모두 완료");
-                    ToastManager.getInstance().showToast("이미지 준비 완료", Toast.LENGTH_SHORT);
-                });
-
-            } catch (Exception e) {
-                Log.e(TAG, "신규 사진 스캔 중 오류", e);
-            }
-        });
-    }
-
     private void initUI() {
         dateTextView = findViewById(R.id.dateTextView);
         mapButton = findViewById(R.id.mapButton);
@@ -399,6 +252,8 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
                 if (mMap != null) {
                     loadAllPhotos();
                 }
+                // 권한이 없어서 건너뛴 신규 사진 스캔 다시 시작 (체크포인트 이후부터)
+                IndexingJob.getInstance(this).startDelayed(INDEXING_START_DELAY_MS);
             } else {
                 ToastManager.getInstance().showToast("앱 사용에 필요한 권한이 필요합니다", Toast.LENGTH_LONG);
             }
@@ -444,7 +299,7 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
         new Thread(() -> {
             List<Uri> imageUris = ImageUtils.getAllImageUris(this);
             for (Uri uri : imageUris) {
-                Bitmap bitmap = ImageUtils.loadBitmapFromUri(this, uri);
+                Bitmap bitmap = ImageUtils.decodeForModel(this, uri, Yolov8Detector.INPUT_SIZE);
                 if (bitmap != null) {
                     ImageMeta meta = imageRepository.classifyImage(uri, bitmap);
                     imageRepository.savePhotoToDB(uri, meta);
@@ -456,6 +311,11 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
     @Override
     public void onMapReady(GoogleMap googleMap) {
         mMap = googleMap;
+        if (!timeToMapLogged) {
+            // 프로세스 시작부터 지도 준비까지 (콜드 스타트 기준 측정값)
+            timeToMapLogged = true;
+            Log.d(TAG, "⏱️ 시작 → 지도 준비: " + (SystemClock.uptimeMillis() - Process.getStartUptimeMillis()) + "ms");
+        }
         mapManager.setGoogleMap(googleMap);
 
         if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED) {
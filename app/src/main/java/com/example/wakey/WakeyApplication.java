@@ -6,12 +6,17 @@ import com.example.wakey.manager.ApiManager;
 import com.example.wakey.manager.DataManager;
 import com.example.wakey.manager.MapManager;
 import com.example.wakey.manager.UIManager;
+import com.example.wakey.service.IndexingJob;
+import com.example.wakey.service.TextEmbeddingService;
+import com.example.wakey.tflite.InferenceBackendSelector;
+import com.example.wakey.tflite.ModelRegistry;
 import com.example.wakey.util.ToastManager;
 
 /**
  * 애플리케이션 클래스 - 앱 전역 초기화 담당 (앱전초담)
  */
 public class WakeyApplication extends Application {
+    private static final long INDEXING_START_DELAY_MS = 5000; // 앱 시작 후 UI 가 뜰 때까지 대기
 
     @Override
     public void onCreate() {
@@ -19,6 +24,27 @@ public class WakeyApplication extends Application {
 
         // 매니저 초기화 (매초)
         initializeManagers();
+
+        // 첫 실행(또는 OS 업데이트 후)에만 모델별 추론 백엔드 측정 (백그라운드)
+        InferenceBackendSelector.getInstance(this).calibrateInBackground();
+
+        // 사진 인덱싱 작업 (액티비티와 무관, 체크포인트 이후부터 이어서) + 새 사진 감시
+        IndexingJob indexingJob = IndexingJob.getInstance(this);
+        indexingJob.watchMediaStore();
+        indexingJob.startDelayed(INDEXING_START_DELAY_MS);
+    }
+
+    /**
+     * 메모리 부족 시 텍스트 모델과 쉬고 있는 TFLite 인터프리터 해제 (다음 사용 때 다시 생성)
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW
+                || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            TextEmbeddingService.getInstance(this).release();
+        }
+        ModelRegistry.getInstance(this).onTrimMemory(level);
     }
 
     /**
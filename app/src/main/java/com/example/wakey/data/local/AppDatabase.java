@@ -2,6 +2,7 @@ package com.example.wakey.data.local;
 
 import android.content.Context;
 import android.database.Cursor;
+import android.util.Log;
 
 import androidx.room.Database;
 import androidx.room.Room;
@@ -10,9 +11,10 @@ import androidx.room.TypeConverters;
 import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
 
-@Database(entities = {Photo.class}, version = 5, exportSchema = false)
+@Database(entities = {Photo.class, PhotoEmbedding.class, IndexingCheckpoint.class, IndexingTask.class}, version = 10, exportSchema = false)
 @TypeConverters({Converters.class})
 public abstract class AppDatabase extends RoomDatabase {
+    private static final String TAG = "AppDatabase";
 
     private static volatile AppDatabase instance;
 
@@ -96,8 +98,116 @@ public abstract class AppDatabase extends RoomDatabase {
         }
     };
 
+    // 5 -> 6 버전 마이그레이션
+    // CSV 문자열 임베딩을 PhotoEmbedding 테이블의 float32 BLOB 으로 옮김
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database)
+        {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `PhotoEmbedding` (" +
+                    "`photoId` INTEGER NOT NULL, " +
+                    "`modelId` TEXT NOT NULL, " +
+                    "`dim` INTEGER NOT NULL, " +
+                    "`vector` BLOB, " +
+                    "PRIMARY KEY(`photoId`, `modelId`))");
+
+            try (Cursor cursor = database.query(
+                    "SELECT id, embedding_vector_str FROM Photo WHERE embedding_vector_str IS NOT NULL AND embedding_vector_str != ''")) {
+                while (cursor.moveToNext()) {
+                    int photoId = cursor.getInt(0);
+                    String vectorStr = cursor.getString(1);
+                    try {
+                        String[] parts = vectorStr.split(",");
+                        float[] values = new float[parts.length];
+                        for (int i = 0; i < parts.length; i++) {
+                            values[i] = Float.parseFloat(parts[i]);
+                        }
+                        database.execSQL(
+                                "INSERT OR REPLACE INTO PhotoEmbedding (photoId, modelId, dim, vector) VALUES (?, ?, ?, ?)",
+                                new Object[]{photoId, LEGACY_EMBEDDING_MODEL_ID, values.length, PhotoEmbedding.toBytes(values)});
+                    } catch (NumberFormatException e) {
+                        // 깨진 벡터 문자열은 건너뜀 (재임베딩 대상)
+                        Log.w(TAG, "⚠️ 깨진 임베딩 문자열 건너뜀: photoId=" + photoId, e);
+                    }
+                }
+            }
+
+            // 변환이 끝난 문자열 컬럼은 비워서 Photo 행 크기를 줄임
+            database.execSQL("UPDATE Photo SET embedding_vector_str = NULL");
+        }
+    };
+
+    // 6 -> 7 버전 마이그레이션
+    // 하이브리드 검색 필터 컬럼 인덱스 추가 (Room 기본 이름 index_<테이블>_<컬럼>)
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database)
+        {
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_Photo_dateTaken` ON `Photo` (`dateTaken`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_Photo_locationDo` ON `Photo` (`locationDo`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_Photo_locationSi` ON `Photo` (`locationSi`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_Photo_locationGu` ON `Photo` (`locationGu`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_Photo_country` ON `Photo` (`country`)");
+        }
+    };
+
+    // 7 -> 8 버전 마이그레이션
+    // 연사(버스트) 묶음용 dHash / 대표 사진 id 컬럼 추가. 기존 사진은 null (대표 사진 취급)
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database)
+        {
+            database.execSQL("ALTER TABLE Photo ADD COLUMN dHash INTEGER");
+            database.execSQL("ALTER TABLE Photo ADD COLUMN burstRepId INTEGER");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_Photo_burstRepId` ON `Photo` (`burstRepId`)");
+        }
+    };
+
+    // 8 -> 9 버전 마이그레이션
+    // 백그라운드 인덱싱 작업(IndexingJob)의 MediaStore 체크포인트 / 사진별 단계 상태 테이블 추가
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database)
+        {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `IndexingCheckpoint` (" +
+                    "`name` TEXT NOT NULL, " +
+                    "`mediaVersion` TEXT, " +
+                    "`lastGeneration` INTEGER NOT NULL, " +
+                    "`lastMediaId` INTEGER NOT NULL, " +
+                    "`updatedAt` INTEGER NOT NULL, " +
+                    "PRIMARY KEY(`name`))");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `IndexingTask` (" +
+                    "`uri` TEXT NOT NULL, " +
+                    "`stage` TEXT NOT NULL, " +
+                    "`status` INTEGER NOT NULL, " +
+                    "`attempts` INTEGER NOT NULL, " +
+                    "`nextAttemptAt` INTEGER NOT NULL, " +
+                    "`lastError` TEXT, " +
+                    "`updatedAt` INTEGER NOT NULL, " +
+                    "PRIMARY KEY(`uri`, `stage`))");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_IndexingTask_stage_status` ON `IndexingTask` (`stage`, `status`)");
+        }
+    };
+
+    // 9 -> 10 버전 마이그레이션
+    // 자동 생성 해시태그 컬럼 추가. 기존 사진은 null → 해시태그가 있으면 출처를 모르므로 다시 태그하지 않음
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database)
+        {
+            database.execSQL("ALTER TABLE Photo ADD COLUMN autoHashtags TEXT");
+        }
+    };
+
+    // 마이그레이션 이전 벡터는 모두 현재 CLIP 이미지 인코더로 만들어진 것
+    private static final String LEGACY_EMBEDDING_MODEL_ID = "clip-vit-b32-image";
+
     public abstract PhotoDao photoDao();
 
+    public abstract PhotoEmbeddingDao photoEmbeddingDao();
+
+    public abstract IndexingDao indexingDao();
+
     public static AppDatabase getInstance(Context context) {
         if (instance == null) {
             synchronized (AppDatabase.class) {
@@ -107,7 +217,7 @@ public abstract class AppDatabase extends RoomDatabase {
                             AppDatabase.class,
                             "AppDatabase"
                     )
-                    .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5)  // 마이그레이션 추가
+                    .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8, MIGRATION_8_9, MIGRATION_9_10)  // 마이그레이션 추가
                     .fallbackToDestructiveMigration()
                     .build();
                 }
@@ -0,0 +1,477 @@
+package com.example.wakey.data.local;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.wakey.data.util.SimilarityUtil;
+import com.example.wakey.tflite.ClipImageEncoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CLIP 임베딩 append-only 파일 저장소 (검색용 사본, 원본은 PhotoEmbedding 테이블)
+ * - 헤더(16B) + 고정 길이 레코드 [photoId][flags][float * dim] 로 구성, little-endian
+ * - 파일 전체를 FileChannel.map 으로 매핑해서 검색 시 자바 힙 복사 없이 FloatBuffer 로 직접 내적
+ * - 같은 사진 재저장/삭제는 기존 레코드에 tombstone 표시, compact() 가 살아있는 레코드만 새 파일로 옮김
+ * - 벡터는 정규화해서 저장하므로 내적 = 코사인 유사도
+ */
+public class EmbeddingStore {
+    private static final String TAG = "EmbeddingStore";
+    private static EmbeddingStore instance;
+
+    // 모델별로 다른 파일 (모델을 바꿔도 이전 모델 벡터와 섞이지 않음)
+    private static final String STORE_DIR = "vector_index";
+    private static final String STORE_FILE_PREFIX = "clip_embeddings";
+    private static final int MAGIC = 0x57454D42;   // "WEMB"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 16;     // magic, version, dim, recordCount
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int FLAG_LIVE = 0;
+    private static final int FLAG_DELETED = 1;
+    private static final int INITIAL_CAPACITY = 256;
+    private static final float COMPACT_DELETED_RATIO = 0.3f;
+
+    private final Context context;
+    private final String modelId;
+    private final int dim;
+    private final int recordBytes;
+    private final File file;
+
+    // 쓰기(추가/삭제/압축)는 이 락 안에서만 수행
+    private final Object writeLock = new Object();
+    private RandomAccessFile raf;
+    private MappedByteBuffer mapped;
+    private int capacity;
+    private int deletedCount;
+    private boolean opened = false;
+
+    // 검색 스레드가 읽는 현재 뷰
+    private volatile View view;
+
+    /**
+     * 특정 시점의 읽기 전용 뷰. recordCount 이전 레코드는 tombstone 표시 외에는 바뀌지 않음
+     * 압축 후에도 이전 뷰는 기존 매핑을 계속 참조하므로 진행 중인 검색에 안전
+     */
+    public static final class View {
+        private final FloatBuffer floats;
+        private final IntBuffer ints;
+        private final Map<Integer, Integer> recordById;
+        private final int recordCount;
+        private final int dim;
+        private final int recordUnits;
+
+        View(ByteBuffer buffer, Map<Integer, Integer> recordById, int recordCount, int dim, int recordBytes) {
+            this.floats = buffer.asFloatBuffer();
+            this.ints = buffer.asIntBuffer();
+            this.recordById = recordById;
+            this.recordCount = recordCount;
+            this.dim = dim;
+            this.recordUnits = recordBytes / 4;
+        }
+
+        public int recordCount() {
+            return recordCount;
+        }
+
+        public int photoIdAt(int record) {
+            return ints.get(base(record));
+        }
+
+        public boolean isLive(int record) {
+            return ints.get(base(record) + 1) == FLAG_LIVE;
+        }
+
+        /**
+         * 사진의 레코드 번호 (없거나 삭제됐으면 -1)
+         */
+        public int recordOf(int photoId) {
+            Integer record = recordById.get(photoId);
+            if (record == null || record >= recordCount || !isLive(record)) return -1;
+            return record;
+        }
+
+        /**
+         * 매핑된 벡터와 질의 벡터의 내적 (복사 없음)
+         */
+        public float dot(int record, float[] query) {
+            return SimilarityUtil.dot(query, floats, base(record) + 2, dim);
+        }
+
+        /**
+         * 모든 레코드(tombstone 포함)와 질의 벡터의 내적을 out[0 .. recordCount] 에 기록
+         */
+        public void dotAll(float[] query, float[] out) {
+            SimilarityUtil.dotBatch(query, floats, base(0) + 2, recordUnits, recordCount, out, 0);
+        }
+
+        public void readVector(int record, float[] out) {
+            int offset = base(record) + 2;
+            for (int i = 0; i < dim; i++) {
+                out[i] = floats.get(offset + i);
+            }
+        }
+
+        private int base(int record) {
+            return HEADER_BYTES / 4 + record * recordUnits;
+        }
+    }
+
+    private EmbeddingStore(Context context) {
+        this.context = context.getApplicationContext();
+        this.modelId = ClipImageEncoder.MODEL_ID;
+        this.dim = ClipImageEncoder.EMBEDDING_DIM;
+        this.recordBytes = RECORD_HEADER_BYTES + dim * 4;
+        this.file = new File(new File(this.context.getFilesDir(), STORE_DIR),
+                STORE_FILE_PREFIX + "_" + modelId + ".bin");
+    }
+
+    public static synchronized EmbeddingStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new EmbeddingStore(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 파일을 한 번만 열어 매핑 (백그라운드 스레드에서 호출)
+     * 파일이 없거나 손상됐거나 DB 와 개수가 다르면 PhotoEmbedding 테이블에서 재구성
+     */
+    public void ensureOpen() {
+        synchronized (writeLock) {
+            if (opened) return;
+
+            long start = System.nanoTime();
+            int dbCount = AppDatabase.getInstance(context).photoEmbeddingDao().countEmbeddings(modelId);
+            boolean ok = false;
+            try {
+                ok = openExisting() && liveCount() == dbCount;
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "❌ 임베딩 파일 열기 실패 → DB 에서 재구성", e);
+            }
+            if (!ok) {
+                rebuildFromDatabase();
+            }
+            opened = view != null;
+            deleteOtherModelFiles(file.getParentFile(), STORE_FILE_PREFIX, file.getName());
+            Log.d(TAG, "✅ 임베딩 파일 매핑 완료: " + liveCount() + "개 ("
+                    + (System.nanoTime() - start) / 1_000_000 + "ms)");
+        }
+    }
+
+    /**
+     * 레코드 추가. 같은 사진의 기존 레코드는 tombstone 처리
+     */
+    public void append(int photoId, float[] vector) {
+        if (vector == null || vector.length != dim) return;
+
+        synchronized (writeLock) {
+            if (!opened) return;
+            try {
+                View current = view;
+                int record = current.recordCount;
+                if (record == capacity) {
+                    remap(Math.max(INITIAL_CAPACITY, capacity + (capacity >> 1)));
+                }
+
+                Integer previous = current.recordById.get(photoId);
+                writeRecord(mapped, record, photoId, vector);
+                mapped.putInt(12, record + 1);
+
+                if (previous != null && current.isLive(previous)) {
+                    mapped.putInt(recordOffset(previous) + 4, FLAG_DELETED);
+                    deletedCount++;
+                }
+                current.recordById.put(photoId, record);
+                view = newView(current.recordById, record + 1);
+            } catch (IOException e) {
+                Log.e(TAG, "❌ 임베딩 레코드 추가 실패", e);
+            }
+        }
+    }
+
+    /**
+     * 사진 레코드에 tombstone 표시 (실제 제거는 compact 에서)
+     */
+    public void markDeleted(int photoId) {
+        synchronized (writeLock) {
+            if (!opened) return;
+            View current = view;
+            int record = current.recordOf(photoId);
+            if (record < 0) return;
+            mapped.putInt(recordOffset(record) + 4, FLAG_DELETED);
+            current.recordById.remove(photoId);
+            deletedCount++;
+        }
+    }
+
+    /**
+     * 전체 비우기 (DB 전체 삭제 시)
+     */
+    public void clear() {
+        synchronized (writeLock) {
+            try {
+                closeQuietly();
+                if (file.exists() && !file.delete()) {
+                    Log.w(TAG, "⚠️ 임베딩 파일 삭제 실패");
+                }
+                createEmpty(file, INITIAL_CAPACITY);
+                openExisting();
+                opened = true;
+            } catch (IOException e) {
+                Log.e(TAG, "❌ 임베딩 파일 초기화 실패", e);
+                opened = false;
+            }
+        }
+    }
+
+    /**
+     * 매핑된 변경분을 디스크에 반영
+     */
+    public void flush() {
+        synchronized (writeLock) {
+            if (mapped != null) {
+                mapped.force();
+            }
+        }
+    }
+
+    /**
+     * tombstone 비율이 높으면 압축 (백그라운드 스레드에서 호출)
+     */
+    public void compactIfNeeded() {
+        synchronized (writeLock) {
+            if (!opened) return;
+            int total = view.recordCount;
+            if (total == 0 || (float) deletedCount / total <= COMPACT_DELETED_RATIO) return;
+            compact();
+        }
+    }
+
+    /**
+     * 살아있는 레코드만 임시 파일에 옮겨 쓰고 원자적으로 교체
+     */
+    public void compact() {
+        synchronized (writeLock) {
+            if (!opened) return;
+            long start = System.nanoTime();
+            View current = view;
+            File tmp = new File(file.getPath() + ".tmp");
+            float[] buffer = new float[dim];
+
+            try {
+                int live = liveCount();
+                createEmpty(tmp, Math.max(INITIAL_CAPACITY, live));
+                try (RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+                    MappedByteBuffer target = out.getChannel().map(
+                            FileChannel.MapMode.READ_WRITE, 0, out.length());
+                    target.order(ByteOrder.LITTLE_ENDIAN);
+                    int written = 0;
+                    for (int record = 0; record < current.recordCount; record++) {
+                        if (!current.isLive(record)) continue;
+                        current.readVector(record, buffer);
+                        writeRecord(target, written++, current.photoIdAt(record), buffer);
+                    }
+                    target.putInt(12, written);
+                    target.force();
+                }
+
+                closeQuietly();
+                if (!tmp.renameTo(file)) {
+                    throw new IOException("임시 파일 교체 실패");
+                }
+                openExisting();
+                Log.d(TAG, "🧹 임베딩 파일 압축: " + current.recordCount + " → " + view.recordCount
+                        + " (" + (System.nanoTime() - start) / 1_000_000 + "ms)");
+            } catch (IOException e) {
+                Log.e(TAG, "❌ 임베딩 파일 압축 실패", e);
+                if (tmp.exists() && !tmp.delete()) {
+                    Log.w(TAG, "⚠️ 임시 파일 삭제 실패");
+                }
+                try {
+                    if (raf == null) openExisting();
+                } catch (IOException reopen) {
+                    Log.e(TAG, "❌ 임베딩 파일 재열기 실패", reopen);
+                    opened = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * 현재 읽기 뷰 (ensureOpen 이후 사용)
+     */
+    public View view() {
+        return view;
+    }
+
+    public int liveCount() {
+        View current = view;
+        return current == null ? 0 : current.recordCount - deletedCount;
+    }
+
+    // ========== 파일 입출력 ==========
+
+    /**
+     * 기존 파일을 열어 매핑하고 photoId -> 레코드 맵 구성. 파일이 없거나 형식이 다르면 false
+     */
+    private boolean openExisting() throws IOException {
+        if (!file.exists() || file.length() < HEADER_BYTES) return false;
+
+        raf = new RandomAccessFile(file, "rw");
+        mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != FORMAT_VERSION || mapped.getInt(8) != dim) {
+            closeQuietly();
+            return false;
+        }
+
+        capacity = (int) ((raf.length() - HEADER_BYTES) / recordBytes);
+        int recordCount = mapped.getInt(12);
+        if (recordCount < 0 || recordCount > capacity) {
+            closeQuietly();
+            return false;
+        }
+
+        Map<Integer, Integer> recordById = new ConcurrentHashMap<>(Math.max(16, recordCount * 2));
+        deletedCount = 0;
+        View loaded = newView(recordById, recordCount);
+        for (int record = 0; record < recordCount; record++) {
+            if (loaded.isLive(record)) {
+                recordById.put(loaded.photoIdAt(record), record);
+            } else {
+                deletedCount++;
+            }
+        }
+        view = loaded;
+        return true;
+    }
+
+    /**
+     * PhotoEmbedding 테이블 전체를 새 파일로 기록
+     */
+    private void rebuildFromDatabase() {
+        closeQuietly();
+        List<PhotoEmbedding> embeddings = AppDatabase.getInstance(context)
+                .photoEmbeddingDao().getEmbeddingsForModel(modelId);
+        try {
+            File tmp = new File(file.getPath() + ".tmp");
+            createEmpty(tmp, Math.max(INITIAL_CAPACITY, embeddings.size()));
+            try (RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+                MappedByteBuffer target = out.getChannel().map(
+                        FileChannel.MapMode.READ_WRITE, 0, out.length());
+                target.order(ByteOrder.LITTLE_ENDIAN);
+                float[] buffer = new float[dim];
+                int written = 0;
+                for (PhotoEmbedding embedding : embeddings) {
+                    if (embedding.vector == null || embedding.dim != dim) continue;
+                    embedding.asFloatBuffer().get(buffer, 0, dim);
+                    writeRecord(target, written++, embedding.photoId, buffer);
+                }
+                target.putInt(12, written);
+                target.force();
+            }
+            if (file.exists() && !file.delete()) {
+                Log.w(TAG, "⚠️ 기존 임베딩 파일 삭제 실패");
+            }
+            if (!tmp.renameTo(file)) {
+                throw new IOException("임시 파일 교체 실패");
+            }
+            openExisting();
+            Log.d(TAG, "🔄 DB 에서 임베딩 파일 재구성: " + view.recordCount + "개");
+        } catch (IOException e) {
+            Log.e(TAG, "❌ 임베딩 파일 재구성 실패", e);
+        }
+    }
+
+    /**
+     * 같은 접두어의 다른 모델(또는 모델 구분 전) 파일 삭제. 활성 모델 파일만 남김
+     */
+    public static void deleteOtherModelFiles(File dir, String prefix, String keepName) {
+        File[] files = dir != null ? dir.listFiles() : null;
+        if (files == null) return;
+        for (File candidate : files) {
+            String name = candidate.getName();
+            if (name.startsWith(prefix) && name.endsWith(".bin") && !name.equals(keepName)) {
+                if (candidate.delete()) {
+                    Log.d(TAG, "🗑️ 이전 모델 파일 삭제: " + name);
+                }
+            }
+        }
+    }
+
+    private void createEmpty(File target, int records) throws IOException {
+        File parent = target.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("디렉터리 생성 실패: " + parent);
+        }
+        try (RandomAccessFile out = new RandomAccessFile(target, "rw")) {
+            out.setLength(HEADER_BYTES + (long) records * recordBytes);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(dim).putInt(0);
+            header.flip();
+            out.getChannel().write(header, 0);
+        }
+    }
+
+    /**
+     * 더 큰 크기로 다시 매핑 (이전 뷰는 기존 매핑을 계속 사용)
+     */
+    private void remap(int newCapacity) throws IOException {
+        raf.setLength(HEADER_BYTES + (long) newCapacity * recordBytes);
+        mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        capacity = newCapacity;
+    }
+
+    /**
+     * 정규화한 벡터를 레코드 위치에 기록
+     */
+    private void writeRecord(ByteBuffer target, int record, int photoId, float[] vector) {
+        float norm = 0f;
+        for (int i = 0; i < dim; i++) {
+            norm += vector[i] * vector[i];
+        }
+        float inv = norm == 0f ? 1f : (float) (1.0 / Math.sqrt(norm));
+
+        int offset = recordOffset(record);
+        target.putInt(offset, photoId);
+        target.putInt(offset + 4, FLAG_LIVE);
+        offset += RECORD_HEADER_BYTES;
+        for (int i = 0; i < dim; i++) {
+            target.putFloat(offset + i * 4, vector[i] * inv);
+        }
+    }
+
+    private View newView(Map<Integer, Integer> recordById, int recordCount) {
+        ByteBuffer buffer = mapped.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        return new View(buffer, recordById, recordCount, dim, recordBytes);
+    }
+
+    private int recordOffset(int record) {
+        return HEADER_BYTES + record * recordBytes;
+    }
+
+    private void closeQuietly() {
+        if (raf != null) {
+            try {
+                raf.close();
+            } catch (IOException e) {
+                Log.w(TAG, "⚠️ 임베딩 파일 닫기 실패", e);
+            }
+        }
+        raf = null;
+        mapped = null;
+    }
+}
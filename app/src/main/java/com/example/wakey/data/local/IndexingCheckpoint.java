@@ -0,0 +1,37 @@
+package com.example.wakey.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * 백그라운드 인덱싱 작업의 MediaStore 진행 위치
+ * - (GENERATION_ADDED, _ID) 순서로 여기까지는 처리 완료 (실패한 사진은 IndexingTask 에서 따로 재시도)
+ * - MediaStore 버전이 바뀌면 (볼륨 재생성 등) generation 이 다시 시작되므로 처음부터 다시 스캔
+ */
+@Entity(tableName = "IndexingCheckpoint")
+public class IndexingCheckpoint {
+
+    // 작업 이름 (예: IndexingJob.STAGE_INGEST)
+    @PrimaryKey
+    @NonNull
+    @ColumnInfo(name = "name")
+    public String name = "";
+
+    // MediaStore.getVersion 값
+    @ColumnInfo(name = "mediaVersion")
+    public String mediaVersion;
+
+    @ColumnInfo(name = "lastGeneration")
+    public long lastGeneration;
+
+    @ColumnInfo(name = "lastMediaId")
+    public long lastMediaId;
+
+    @ColumnInfo(name = "updatedAt")
+    public long updatedAt;
+
+    // Room을 위한 기본 생성자
+    public IndexingCheckpoint() {}
+}
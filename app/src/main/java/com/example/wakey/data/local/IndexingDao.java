@@ -0,0 +1,33 @@
+package com.example.wakey.data.local;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface IndexingDao {
+    // 체크포인트
+    @Query("SELECT * FROM IndexingCheckpoint WHERE name = :name LIMIT 1")
+    IndexingCheckpoint getCheckpoint(String name);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsertCheckpoint(IndexingCheckpoint checkpoint);
+
+    // 사진별 단계 상태
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsertTasks(List<IndexingTask> tasks);
+
+    @Query("SELECT * FROM IndexingTask WHERE uri IN (:uris) AND stage = :stage")
+    List<IndexingTask> getTasks(List<String> uris, String stage);
+
+    // 재시도 시각이 지났고 최대 시도 횟수를 넘지 않은 실패 사진 (failedStatus = IndexingTask.STATUS_FAILED)
+    @Query("SELECT uri FROM IndexingTask WHERE stage = :stage AND status = :failedStatus " +
+            "AND attempts < :maxAttempts AND nextAttemptAt <= :now ORDER BY nextAttemptAt LIMIT :limit")
+    List<String> getRetryableUris(String stage, int failedStatus, int maxAttempts, long now, int limit);
+
+    @Query("DELETE FROM IndexingTask WHERE stage = :stage")
+    void deleteTasks(String stage);
+}
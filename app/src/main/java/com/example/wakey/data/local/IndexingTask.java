@@ -0,0 +1,55 @@
+package com.example.wakey.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
+
+/**
+ * 사진별 인덱싱 단계 상태 (사진 uri + 단계 이름)
+ * - 실패하면 시도 횟수를 올리고 지수 백오프로 다음 시도 시각을 미룸 → 깨진 사진 때문에 매번 같은 작업을 반복하지 않음
+ * - 최대 시도 횟수를 넘긴 사진은 MediaStore 가 바뀔 때까지 건너뜀
+ */
+@Entity(tableName = "IndexingTask", primaryKeys = {"uri", "stage"},
+        indices = {@Index(value = {"stage", "status"})})
+public class IndexingTask {
+    public static final int STATUS_PENDING = 0;
+    public static final int STATUS_DONE = 1;
+    public static final int STATUS_FAILED = 2;
+
+    @NonNull
+    @ColumnInfo(name = "uri")
+    public String uri = "";
+
+    @NonNull
+    @ColumnInfo(name = "stage")
+    public String stage = "";
+
+    @ColumnInfo(name = "status")
+    public int status;
+
+    @ColumnInfo(name = "attempts")
+    public int attempts;
+
+    // 실패한 경우 다음 재시도 가능 시각 (ms)
+    @ColumnInfo(name = "nextAttemptAt")
+    public long nextAttemptAt;
+
+    @ColumnInfo(name = "lastError")
+    public String lastError;
+
+    @ColumnInfo(name = "updatedAt")
+    public long updatedAt;
+
+    // Room을 위한 기본 생성자
+    public IndexingTask() {}
+
+    @Ignore
+    public IndexingTask(@NonNull String uri, @NonNull String stage, int status, long now) {
+        this.uri = uri;
+        this.stage = stage;
+        this.status = status;
+        this.updatedAt = now;
+    }
+}
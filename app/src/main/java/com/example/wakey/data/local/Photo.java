@@ -5,6 +5,7 @@ import android.util.Pair;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 import androidx.room.TypeConverters;
 
@@ -18,7 +19,15 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
-@Entity
+// 하이브리드 검색 필터(날짜 범위, 지역 접두어)용 인덱스
+@Entity(indices = {
+        @Index("dateTaken"),
+        @Index("locationDo"),
+        @Index("locationSi"),
+        @Index("locationGu"),
+        @Index("country"),
+        @Index("burstRepId")
+})
 public class Photo {
 
 //    @TypeConverters(Converters.class)
@@ -78,7 +87,7 @@ public class Photo {
     @ColumnInfo(name = "detectedObjectPairs")
     public List<Pair<String, Float>> detectedObjectPairs;
 
-    // ⭐ 벡터 문자열 저장용 필드
+    // 구버전 벡터 문자열 필드 (DB 5 이하). 6 버전부터는 PhotoEmbedding 테이블에 BLOB 으로 저장하고 이 컬럼은 비워둠
     @ColumnInfo(name = "embedding_vector_str")
     public String embeddingVectorStr;
 
@@ -86,10 +95,26 @@ public class Photo {
     @ColumnInfo(name = "hashtags")
     public String hashtags;
 
-    // ⭐ 실제 사용할 float[] 배열 (Room 저장 제외)
+    // 인덱싱 작업이 자동으로 채운 해시태그. hashtags 와 다르면 다른 경로(상세 화면 등)에서 바뀐 것이라 다시 태그할 때 건드리지 않음
+    @ColumnInfo(name = "autoHashtags")
+    public String autoHashtags;
+
+    // 연사(버스트) 묶음용 64비트 dHash. 계산 전이면 null
+    @ColumnInfo(name = "dHash")
+    public Long dHash;
+
+    // 속한 버스트 묶음의 대표 사진 id. 대표 사진이거나 묶음이 없으면 null
+    @ColumnInfo(name = "burstRepId")
+    public Integer burstRepId;
+
+    // ⭐ 실제 사용할 float[] 배열 (Room 저장 제외, PhotoEmbeddingDao 로 따로 저장/조회)
     @Ignore
     public float[] embeddingVector;
 
+    // dateTaken 이 EXIF 촬영 시각인지 (false 면 저장 시각으로 채운 값 → 연사 묶음에서 제외, DB 에 저장 안 함)
+    @Ignore
+    public boolean captureTimeKnown;
+
     // ✅ 생성자 추가 (Room이 무시하도록 @Ignore 붙이기)
     @Ignore
     public Photo(String filePath,
@@ -185,6 +210,11 @@ public class Photo {
         }
     }
 
+    // 버스트 묶음의 대표가 아닌 사진인지 (타임라인/지도/앨범 표지에서는 대표 사진만 사용)
+    public boolean isBurstMember() {
+        return burstRepId != null;
+    }
+
     public String getFilePath() {
         return filePath;
     }
@@ -199,7 +229,6 @@ public class Photo {
 
     public void setEmbeddingVector(float[] vector) {
         this.embeddingVector = vector;
-        this.embeddingVectorStr = vectorToString(vector);
     }
 
     public String getEmbeddingVectorStr() {
@@ -213,14 +242,6 @@ public class Photo {
         return embeddingVector;
     }
 
-    private String vectorToString(float[] vector) {
-        StringBuilder sb = new StringBuilder();
-        for (float v : vector) {
-            sb.append(v).append(",");
-        }
-        return sb.toString();
-    }
-
     private float[] stringToVector(String str) {
         String[] parts = str.split(",");
         float[] vec = new float[parts.length];
@@ -33,6 +33,10 @@ public interface PhotoDao {
     @Query("SELECT * FROM Photo WHERE id = :photoId")
     Photo getPhotoById(int photoId);
 
+    // 여러 ID의 사진 조회 (벡터 검색 결과 매핑용)
+    @Query("SELECT * FROM Photo WHERE id IN (:photoIds)")
+    List<Photo> getPhotosByIds(List<Integer> photoIds);
+
     // 특정 파일 경로의 사진 조회
     @Query("SELECT * FROM Photo WHERE filePath = :filePath LIMIT 1")
     Photo getPhotoByFilePath(String filePath);
@@ -132,6 +136,15 @@ public interface PhotoDao {
     @Query("UPDATE Photo SET hashtags = :hashtags WHERE filePath = :photoPath")
     void updateHashtags(String photoPath, String hashtags);
 
+    // 인덱싱 작업이 만든 해시태그 저장 (자동 생성 값도 같이 기록)
+    @Query("UPDATE Photo SET hashtags = :hashtags, autoHashtags = :hashtags WHERE filePath = :photoPath")
+    void updateGeneratedHashtags(String photoPath, String hashtags);
+
+    // 해시태그가 비었거나 마지막 자동 생성 값 그대로인 사진만 교체 (다른 경로에서 바뀐 해시태그는 유지). 바뀐 행 수 반환
+    @Query("UPDATE Photo SET hashtags = :hashtags, autoHashtags = :hashtags WHERE id = :photoId " +
+            "AND (hashtags IS NULL OR hashtags = '' OR hashtags = autoHashtags)")
+    int replaceGeneratedHashtags(int photoId, String hashtags);
+
     @Query("SELECT * FROM Photo WHERE filePath = :filePath")
     Photo getPhotoByPath(String filePath);
 
@@ -143,6 +156,92 @@ public interface PhotoDao {
     @Query("SELECT COUNT(*) FROM Photo WHERE hashtags IS NULL OR hashtags = ''")
     int countPhotosWithoutHashtags();
 
+    // 인덱싱 작업용: 해시태그가 없는 사진 중 해당 단계에서 백오프 중이거나 시도 횟수를 다 쓴 사진은 제외
+    // (failedStatus = IndexingTask.STATUS_FAILED)
+    @Query("SELECT * FROM Photo WHERE (hashtags IS NULL OR hashtags = '') AND filePath NOT IN " +
+            "(SELECT uri FROM IndexingTask WHERE stage = :stage AND status = :failedStatus " +
+            "AND (attempts >= :maxAttempts OR nextAttemptAt > :now)) LIMIT :limit")
+    List<Photo> getPhotosToTag(String stage, int failedStatus, int maxAttempts, long now, int limit);
+
+    @Query("SELECT COUNT(*) FROM Photo WHERE (hashtags IS NULL OR hashtags = '') AND filePath NOT IN " +
+            "(SELECT uri FROM IndexingTask WHERE stage = :stage AND status = :failedStatus " +
+            "AND (attempts >= :maxAttempts OR nextAttemptAt > :now))")
+    int countPhotosToTag(String stage, int failedStatus, int maxAttempts, long now);
+
+    // 이미 저장된 사진 경로 (배치 단위 저장 확인용)
+    @Query("SELECT filePath FROM Photo WHERE filePath IN (:filePaths)")
+    List<String> getExistingPaths(List<String> filePaths);
+
     @Query("SELECT DISTINCT country FROM Photo WHERE country IS NOT NULL")
     List<String> getAllCountries();
+
+    // 임베딩 파일 정리용 (사진 행이 사라진 임베딩 찾기)
+    @Query("SELECT id FROM Photo")
+    List<Integer> getAllPhotoIds();
+
+    // ===== 하이브리드 검색 후보 필터 (사진 ID 만 반환) =====
+
+    // 날짜 범위 [from, to) : dateTaken 은 "yyyy-MM-dd HH:mm:ss" 라 문자열 비교로 인덱스 사용
+    @Query("SELECT id FROM Photo WHERE dateTaken >= :from AND dateTaken < :to")
+    List<Integer> getPhotoIdsInDateRange(String from, String to);
+
+    // 지역 접두어 검색 ([prefix, prefixEnd) 범위 비교라 LIKE 와 달리 인덱스 사용)
+    @Query("SELECT id FROM Photo WHERE (locationDo >= :prefix AND locationDo < :prefixEnd) " +
+            "OR (locationSi >= :prefix AND locationSi < :prefixEnd) " +
+            "OR (locationGu >= :prefix AND locationGu < :prefixEnd) " +
+            "OR (country >= :prefix AND country < :prefixEnd)")
+    List<Integer> getPhotoIdsByRegionPrefix(String prefix, String prefixEnd);
+
+    // 해시태그 토큰 단위 일치 ("#a #b" 양끝에 공백을 붙여 " #태그 " 로 비교 → #beach 가 #beachparty 에 걸리지 않음)
+    @Query("SELECT id FROM Photo WHERE (' ' || hashtags || ' ') LIKE '% #' || :hashtag || ' %'")
+    List<Integer> getPhotoIdsByHashtag(String hashtag);
+
+    // 필터만 있는 검색: 후보 중 최신순 limit 개 (id + 촬영 시각만)
+    @Query("SELECT id, dateTaken FROM Photo WHERE id IN (:photoIds) ORDER BY dateTaken DESC LIMIT :limit")
+    List<DatedId> getNewestIds(List<Integer> photoIds, int limit);
+
+    class DatedId {
+        public int id;
+        public String dateTaken;
+    }
+
+    // 검색어 파싱용 지역명 목록 (도/시/구/국가)
+    @Query("SELECT locationDo FROM Photo WHERE locationDo IS NOT NULL AND locationDo != '' " +
+            "UNION SELECT locationSi FROM Photo WHERE locationSi IS NOT NULL AND locationSi != '' " +
+            "UNION SELECT locationGu FROM Photo WHERE locationGu IS NOT NULL AND locationGu != '' " +
+            "UNION SELECT country FROM Photo WHERE country IS NOT NULL AND country != ''")
+    List<String> getAllRegionNames();
+
+    // ===== 연사(버스트) 묶음 =====
+
+    // 버스트 후보: 시간 창 [from, to] 안에서 dHash 가 계산된 사진
+    @Query("SELECT * FROM Photo WHERE dateTaken >= :from AND dateTaken <= :to AND dHash IS NOT NULL")
+    List<Photo> getHashedPhotosInDateRange(String from, String to);
+
+    // 날짜별 대표 사진만 (타임라인/지도 마커/스토리 생성용)
+    @Query("SELECT * FROM Photo WHERE dateTaken LIKE :dateString || '%' AND burstRepId IS NULL ORDER BY dateTaken")
+    List<Photo> getRepresentativePhotosForDate(String dateString);
+
+    // dHash 미계산 사진 (기존 사진 보충용, 촬영 순서대로)
+    // 디코딩 실패로 백오프 중이거나 시도 횟수를 다 쓴 사진은 제외 → 앞쪽의 깨진 사진이 limit 을 계속 차지하지 않음
+    // (failedStatus = IndexingTask.STATUS_FAILED)
+    @Query("SELECT * FROM Photo WHERE dHash IS NULL AND filePath NOT IN " +
+            "(SELECT uri FROM IndexingTask WHERE stage = :stage AND status = :failedStatus " +
+            "AND (attempts >= :maxAttempts OR nextAttemptAt > :now)) ORDER BY dateTaken LIMIT :limit")
+    List<Photo> getPhotosWithoutHash(String stage, int failedStatus, int maxAttempts, long now, int limit);
+
+    @Query("UPDATE Photo SET dHash = :dHash, burstRepId = :burstRepId WHERE id = :photoId")
+    void updateBurstInfo(int photoId, long dHash, Integer burstRepId);
+
+    // ===== 임베딩 모델 버전 =====
+
+    // 현재 모델(modelId, dim)의 임베딩이 없거나 다른 버전인 사진 (id 순, afterId 다음부터: 중단 후 이어서 처리)
+    @Query("SELECT * FROM Photo WHERE id > :afterId AND id NOT IN " +
+            "(SELECT photoId FROM PhotoEmbedding WHERE modelId = :modelId AND dim = :dim) " +
+            "ORDER BY id LIMIT :limit")
+    List<Photo> getPhotosWithoutEmbedding(String modelId, int dim, int afterId, int limit);
+
+    @Query("SELECT COUNT(*) FROM Photo WHERE id NOT IN " +
+            "(SELECT photoId FROM PhotoEmbedding WHERE modelId = :modelId AND dim = :dim)")
+    int countPhotosWithoutEmbedding(String modelId, int dim);
 }
\ No newline at end of file
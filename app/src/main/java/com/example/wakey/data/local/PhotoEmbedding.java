@@ -0,0 +1,69 @@
+package com.example.wakey.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * 사진별 CLIP 임베딩 저장 엔티티
+ * - 벡터는 little-endian float32 BLOB 으로 저장 (문자열 파싱 없이 바로 float[] 변환)
+ * - Photo 테이블과 분리해서 목록 조회 쿼리에 벡터가 딸려오지 않도록 함
+ */
+@Entity(tableName = "PhotoEmbedding", primaryKeys = {"photoId", "modelId"})
+public class PhotoEmbedding {
+
+    @ColumnInfo(name = "photoId")
+    public int photoId;
+
+    // 벡터를 만든 모델 식별자 (예: ClipImageEncoder.MODEL_ID)
+    @NonNull
+    @ColumnInfo(name = "modelId")
+    public String modelId = "";
+
+    @ColumnInfo(name = "dim")
+    public int dim;
+
+    // float32 little-endian 바이트 배열
+    @ColumnInfo(name = "vector", typeAffinity = ColumnInfo.BLOB)
+    public byte[] vector;
+
+    // Room을 위한 기본 생성자
+    public PhotoEmbedding() {}
+
+    @Ignore
+    public PhotoEmbedding(int photoId, @NonNull String modelId, float[] values) {
+        this.photoId = photoId;
+        this.modelId = modelId;
+        this.dim = values.length;
+        this.vector = toBytes(values);
+    }
+
+    /**
+     * BLOB 을 float 뷰로 감싸서 반환 (복사 없음)
+     */
+    public FloatBuffer asFloatBuffer() {
+        return ByteBuffer.wrap(vector).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+    }
+
+    public float[] toFloatArray() {
+        return toFloats(vector);
+    }
+
+    public static byte[] toBytes(float[] values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(values);
+        return buffer.array();
+    }
+
+    public static float[] toFloats(byte[] bytes) {
+        if (bytes == null) return null;
+        float[] values = new float[bytes.length / 4];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(values);
+        return values;
+    }
+}
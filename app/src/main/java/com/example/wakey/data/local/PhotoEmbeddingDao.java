@@ -0,0 +1,56 @@
+package com.example.wakey.data.local;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface PhotoEmbeddingDao {
+    // INSERT
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertEmbedding(PhotoEmbedding embedding);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertEmbeddings(List<PhotoEmbedding> embeddings);
+
+    // 특정 사진의 임베딩 조회
+    @Query("SELECT * FROM PhotoEmbedding WHERE photoId = :photoId AND modelId = :modelId LIMIT 1")
+    PhotoEmbedding getEmbedding(int photoId, String modelId);
+
+    // 검색용: 특정 모델의 모든 임베딩 조회
+    @Query("SELECT * FROM PhotoEmbedding WHERE modelId = :modelId")
+    List<PhotoEmbedding> getEmbeddingsForModel(String modelId);
+
+    // 인덱스 동기화용: 특정 모델 임베딩이 있는 사진 ID 목록
+    @Query("SELECT photoId FROM PhotoEmbedding WHERE modelId = :modelId")
+    List<Integer> getPhotoIdsForModel(String modelId);
+
+    // 벡터 바이트만 조회
+    @Query("SELECT vector FROM PhotoEmbedding WHERE photoId = :photoId AND modelId = :modelId")
+    byte[] getVectorBytes(int photoId, String modelId);
+
+    @Query("SELECT COUNT(*) FROM PhotoEmbedding WHERE modelId = :modelId")
+    int countEmbeddings(String modelId);
+
+    // DELETE
+    @Query("DELETE FROM PhotoEmbedding WHERE photoId = :photoId")
+    void deleteEmbeddingsForPhoto(int photoId);
+
+    @Query("DELETE FROM PhotoEmbedding")
+    void deleteAllEmbeddings();
+
+    // 현재 모델 임베딩으로 교체가 끝난 사진의 이전 모델 임베딩 정리
+    @Query("DELETE FROM PhotoEmbedding WHERE modelId != :modelId AND photoId IN " +
+            "(SELECT photoId FROM PhotoEmbedding WHERE modelId = :modelId)")
+    int deleteReplacedEmbeddings(String modelId);
+
+    /**
+     * BLOB 을 바로 float[] 로 변환해서 반환 (없으면 null)
+     */
+    default float[] getVector(int photoId, String modelId) {
+        return PhotoEmbedding.toFloats(getVectorBytes(photoId, modelId));
+    }
+}
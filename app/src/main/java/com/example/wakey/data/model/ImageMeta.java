@@ -8,6 +8,8 @@ public class ImageMeta {
     private final String region;
     private final List<Pair<String, Float>> predictions;
     private final float[] embeddingVector;
+    private Long dHash;            // 연사 묶음용 dHash
+    private Integer burstRepId;    // 버스트 묶음 대표 사진 id (없으면 null)
 
     public ImageMeta(String uri, String region, List<Pair<String, Float>> predictions, float[] embeddingVector) {
         this.uri = uri;
@@ -31,4 +33,20 @@ public class ImageMeta {
     public float[] getEmbeddingVector() {
         return embeddingVector;
     }
+
+    public Long getDHash() {
+        return dHash;
+    }
+
+    public void setDHash(Long dHash) {
+        this.dHash = dHash;
+    }
+
+    public Integer getBurstRepId() {
+        return burstRepId;
+    }
+
+    public void setBurstRepId(Integer burstRepId) {
+        this.burstRepId = burstRepId;
+    }
 }
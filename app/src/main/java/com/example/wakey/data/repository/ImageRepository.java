@@ -2,6 +2,7 @@ package com.example.wakey.data.repository;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.Rect;
 import android.graphics.RectF;
 import android.location.Address;
 import android.location.Geocoder;
@@ -11,23 +12,29 @@ import android.provider.MediaStore;
 import android.util.Log;
 import android.util.Pair;
 
-import androidx.room.Room;
-
 import com.example.wakey.data.local.AppDatabase;
+import com.example.wakey.data.local.EmbeddingStore;
 import com.example.wakey.data.local.Photo;
+import com.example.wakey.data.local.PhotoEmbedding;
 import com.example.wakey.data.model.ImageMeta;
+import com.example.wakey.tflite.Detection;
 import com.example.wakey.tflite.ImageClassifier;
+import com.example.wakey.tflite.InferenceBackendSelector;
 import com.example.wakey.tflite.Yolov8Detector;
 import com.example.wakey.data.util.ExifUtil;
+import com.example.wakey.data.util.PerceptualHash;
+import com.example.wakey.service.BurstGroupService;
+import com.example.wakey.service.VectorIndex;
 import com.example.wakey.tflite.ClipImageEncoder;
 import com.example.wakey.tflite.Yolov8Detector;
 import com.example.wakey.util.FileUtils;
 import com.example.wakey.util.ImageUtils;
 import com.example.wakey.util.LocationUtils;
 
-import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -35,226 +42,424 @@ import java.util.Locale;
 import java.util.Map;
 
 public class ImageRepository {
-    private final ImageClassifier imageClassifier;
-    private final Yolov8Detector yolov8Detector;
+    // 사진 한 장에서 분류할 YOLO 박스 최대 수
+    private static final int MAX_CROPS = 8;
+
+    // 모델은 처음 쓸 때 생성 (생성자에서 로드하면 화면 초기화가 모델 로드를 기다림)
+    private ImageClassifier imageClassifier;
+    private Yolov8Detector yolov8Detector;
     private final Context context;
     private final AppDatabase db;
     private final PhotoRepository photoRepository;
-    private final ClipImageEncoder clipImageEncoder;
+    private ClipImageEncoder clipImageEncoder;
     private final LocationUtils locationUtils;
+    private final BurstGroupService burstGroupService;
 
     public ImageRepository(Context context) {
         this.context = context;
-        try {
-            this.clipImageEncoder = new ClipImageEncoder(context);
-            this.imageClassifier = new ImageClassifier(context);
-            this.yolov8Detector = new Yolov8Detector(context);
-        } catch (Exception e) {
-            throw new RuntimeException("모델 로드 실패", e);
-        }
-        db = Room.databaseBuilder(context, AppDatabase.class, "AppDatabase").build();
+        // 마이그레이션이 등록된 공용 DB 인스턴스 사용
+        db = AppDatabase.getInstance(context);
         photoRepository = PhotoRepository.getInstance(context);
         locationUtils = LocationUtils.getInstance(context);
+        burstGroupService = BurstGroupService.getInstance(context);
+    }
+
+    /**
+     * 수집에 쓰는 세 모델(CLIP 이미지, MobileNet, YOLOv8)의 인터프리터를 미리 만들고 한 번 추론해 둠
+     * 앱 첫 화면이 뜬 뒤 백그라운드 스레드에서 호출 (준비된 인터프리터는 공용 풀에 남아 첫 사용 때 바로 대여됨)
+     */
+    public static void warmUpModels(Context context) {
+        try {
+            // 앱 시작 시 백엔드 측정이 돌고 있으면 끝난 뒤에 (측정이 끝나면 이전 설정 인터프리터를 닫으므로)
+            InferenceBackendSelector.getInstance(context).awaitCalibration();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long start = System.nanoTime();
+        ClipImageEncoder.warmUp(context);
+        ImageClassifier.warmUp(context);
+        Yolov8Detector.warmUp(context);
+        Log.d("ImageRepository", "🔥 모델 워밍업 완료 (" + (System.nanoTime() - start) / 1_000_000 + "ms)");
+    }
+
+    private synchronized ClipImageEncoder clip() {
+        if (clipImageEncoder == null) {
+            try {
+                clipImageEncoder = new ClipImageEncoder(context);
+            } catch (Exception e) {
+                throw new RuntimeException("모델 로드 실패", e);
+            }
+        }
+        return clipImageEncoder;
+    }
+
+    private synchronized ImageClassifier classifier() {
+        if (imageClassifier == null) {
+            try {
+                imageClassifier = new ImageClassifier(context);
+            } catch (Exception e) {
+                throw new RuntimeException("모델 로드 실패", e);
+            }
+        }
+        return imageClassifier;
+    }
+
+    private synchronized Yolov8Detector detector() {
+        if (yolov8Detector == null) {
+            try {
+                yolov8Detector = new Yolov8Detector(context);
+            } catch (Exception e) {
+                throw new RuntimeException("모델 로드 실패", e);
+            }
+        }
+        return yolov8Detector;
     }
 
     public ImageMeta classifyImage(Uri uri, Bitmap bitmap) {
         // 2. 벡터 추출 (CLIP)
-        float[] embeddingVector = null;
+        float[] embeddingVector = encodeEmbedding(bitmap);
 
+        // 연사(버스트) 판별: 같은 장면이 방금 저장됐으면 그 사진의 분류 결과를 재사용 (MobileNet/YOLO 생략)
+        // 촬영 시각이 없으면 (스크린샷/다운로드) 저장 시각끼리 비교하게 되므로 묶지 않음
+        long dHash = PerceptualHash.dHash(bitmap);
+        String captureTime = readCaptureTime(uri);
+        Photo burstRepresentative = captureTime != null
+                ? burstGroupService.findRepresentative(captureTime, dHash, embeddingVector) : null;
+        List<Pair<String, Float>> top3Predictions = classifyOrReuse(bitmap, burstRepresentative);
+
+        // 지역 정보
+        String region = null;
+        Location location = ImageUtils.getExifLocation(context, uri);
+        if (location != null) {
+            // LocationUtils 인스턴스 메서드 사용
+            region = locationUtils.getRegionFromLocation(location);
+        }
+
+        ImageMeta meta = new ImageMeta(uri.toString(), region, top3Predictions, embeddingVector);
+        meta.setDHash(dHash);
+        meta.setBurstRepId(burstRepresentative != null ? burstRepresentative.id : null);
+        return meta;
+    }
+
+    /**
+     * 비트맵의 CLIP 임베딩 (실패 시 null). 인코더의 재사용 버퍼로 전처리
+     */
+    public float[] encodeEmbedding(Bitmap bitmap) {
         try {
-            ClipImageEncoder encoder = new ClipImageEncoder(context); // 매번 새로 생성
-            embeddingVector = encoder.getImageEncoding(bitmap);       // 임베딩 추출
-            encoder.close(); // 꼭 해줘야 메모리 누수 방지
-        } catch (IOException e) {
-            Log.e("ImageRepository", "❌ CLIP 모델 로딩 실패", e);
+            return clip().getImageEncoding(bitmap);
+        } catch (Exception e) {
+            Log.e("ImageRepository", "❌ CLIP 임베딩 추출 실패", e);
+            return null;
         }
+    }
 
+    /**
+     * ClipImageEncoder.preprocess 로 만든 입력의 CLIP 임베딩 (실패 시 null)
+     * 인터프리터를 공유하므로 한 스레드에서만 호출
+     */
+    public float[] encodeEmbedding(ByteBuffer clipInput) {
+        float[] embeddingVector = null;
+        try {
+            embeddingVector = clip().encode(clipInput);
+        } catch (Exception e) {
+            Log.e("ImageRepository", "❌ CLIP 임베딩 추출 실패", e);
+        }
         Log.d("ImageRepository", "🧬 CLIP 임베딩 벡터 길이: " + (embeddingVector != null ? embeddingVector.length : -1));
-        Long nameOfImage = System.currentTimeMillis();
+        return embeddingVector;
+    }
+
+    /**
+     * 여러 입력 텐서의 CLIP 임베딩을 한 번의 배치 추론으로 (실패한 항목은 null)
+     * 인터프리터를 공유하므로 한 스레드에서만 호출
+     */
+    public float[][] encodeEmbeddings(List<ByteBuffer> clipInputs) {
+        try {
+            return clip().encodeBatch(clipInputs);
+        } catch (Exception e) {
+            Log.e("ImageRepository", "❌ CLIP 배치 임베딩 실패, 한 장씩 재시도", e);
+            float[][] embeddings = new float[clipInputs.size()][];
+            for (int i = 0; i < embeddings.length; i++) {
+                embeddings[i] = encodeEmbedding(clipInputs.get(i));
+            }
+            return embeddings;
+        }
+    }
 
-        // 전체 이미지 분류
-        List<Pair<String, Float>> globalPredictions = imageClassifier.classifyImage(bitmap);
-        Log.d("ImageRepository", "🌍 전체 이미지 분류 결과: " + globalPredictions);
+    /**
+     * 버스트 대표 사진의 분류 결과가 있으면 재사용, 없으면 MobileNet + YOLO 분류
+     */
+    public List<Pair<String, Float>> classifyOrReuse(Bitmap bitmap, Photo burstRepresentative) {
+        List<Pair<String, Float>> reused = reusablePredictions(burstRepresentative);
+        return reused != null ? reused : classifyWithDetections(bitmap);
+    }
 
-        // 누적용 map
-        Map<String, Float> scoreMap = new HashMap<>();
-        for (Pair<String, Float> p : globalPredictions) {
-            scoreMap.put(p.first, scoreMap.getOrDefault(p.first, 0f) + p.second);
+    /**
+     * 버스트 대표 사진에 저장된 분류 결과 (없으면 null)
+     */
+    public List<Pair<String, Float>> reusablePredictions(Photo burstRepresentative) {
+        if (burstRepresentative != null && burstRepresentative.getDetectedObjectPairs() != null
+                && !burstRepresentative.getDetectedObjectPairs().isEmpty()) {
+            List<Pair<String, Float>> reused = burstRepresentative.getDetectedObjectPairs();
+            Log.d("ImageRepository", "⚡ 버스트 사진 → 대표 사진(id=" + burstRepresentative.id
+                    + ") 분류 결과 재사용: " + reused);
+            return reused;
         }
+        return null;
+    }
 
-        // YOLO 객체 탐지
-        List<RectF> detectedBoxes = yolov8Detector.detect(bitmap);
-        Log.d("ImageRepository", "🔍 YOLOv8 감지 객체 수: " + detectedBoxes.size());
+    /**
+     * 전체 이미지 분류 + YOLO 객체별 crop 분류 결과를 합산한 Top-3
+     */
+    public List<Pair<String, Float>> classifyWithDetections(Bitmap bitmap) {
+        return mergeWithDetections(Collections.singletonList(bitmap),
+                Collections.singletonList(classifier().classifyImage(bitmap))).get(0);
+    }
 
-//        // 박스 시각화 저장
-//        Bitmap boxedBitmap = ImageUtils.drawBoxesOnBitmap(bitmap, detectedBoxes);
-//        ImageUtils.saveBitmapToJpeg(context, boxedBitmap, "yolo_result_" + nameOfImage + ".jpg");
+    /**
+     * 여러 장의 전체 이미지 분류는 한 번의 배치 추론으로, YOLO 는 사진별로 (결과 순서는 입력 순서)
+     * crop 분류는 모든 사진의 영역을 모아 영역 전용 인터프리터로 ImageClassifier.REGION_BATCH 개씩 분류
+     */
+    public List<List<Pair<String, Float>>> classifyWithDetections(List<Bitmap> bitmaps) {
+        return mergeWithDetections(bitmaps, classifier().classifyBatch(bitmaps));
+    }
+
+    private List<List<Pair<String, Float>>> mergeWithDetections(List<Bitmap> bitmaps,
+                                                                List<List<Pair<String, Float>>> globalPredictions) {
+        // 사진별 누적용 map (전체 이미지 분류 결과부터)
+        List<Map<String, Float>> scoreMaps = new ArrayList<>(bitmaps.size());
+        for (List<Pair<String, Float>> predictions : globalPredictions) {
+            Log.d("ImageRepository", "🌍 전체 이미지 분류 결과: " + predictions);
+            Map<String, Float> scoreMap = new HashMap<>();
+            for (Pair<String, Float> p : predictions) {
+                scoreMap.put(p.first, scoreMap.getOrDefault(p.first, 0f) + p.second);
+            }
+            scoreMaps.add(scoreMap);
+        }
+
+        // YOLO 객체 탐지 후 사진마다 상위 MAX_CROPS 개 영역 선택 (영역은 원본에서 바로 축소해 분류)
+        List<Bitmap> regionSources = new ArrayList<>();
+        List<Rect> regions = new ArrayList<>();
+        List<Integer> regionOwners = new ArrayList<>();
+        List<Detection> regionDetections = new ArrayList<>();
+        for (int i = 0; i < bitmaps.size(); i++) {
+            Bitmap bitmap = bitmaps.get(i);
+            List<Detection> detections = detector().detect(bitmap);
+            Log.d("ImageRepository", "🔍 YOLOv8 감지 객체 수: " + detections.size());
+            for (int index : selectCrops(bitmap, detections)) {
+                regionSources.add(bitmap);
+                regions.add(cropRegion(bitmap, detections.get(index).box));
+                regionOwners.add(i);
+                regionDetections.add(detections.get(index));
+            }
+        }
 
         // Crop 영역 분류 및 누적
-        int index = 0;
-        for (RectF box : detectedBoxes) {
-            try {
-                Bitmap cropped = Bitmap.createBitmap(
-                        bitmap,
-                        Math.max((int) box.left, 0),
-                        Math.max((int) box.top, 0),
-                        Math.min((int) box.width(), bitmap.getWidth() - (int) box.left),
-                        Math.min((int) box.height(), bitmap.getHeight() - (int) box.top)
-                );
-                List<Pair<String, Float>> cropResults = imageClassifier.classifyImage(cropped);
-                Log.d("ImageRepository", "📦 객체 " + index + " 박스: " + box.toString());
-                Log.d("ImageRepository", "   └ 분류 결과: " + cropResults);
-
-                for (Pair<String, Float> p : cropResults) {
+        try {
+            List<List<Pair<String, Float>>> cropResults = classifier().classifyRegions(regionSources, regions);
+            for (int i = 0; i < cropResults.size(); i++) {
+                Log.d("ImageRepository", "📦 객체 " + i + ": " + regionDetections.get(i));
+                Log.d("ImageRepository", "   └ 분류 결과: " + cropResults.get(i));
+
+                Map<String, Float> scoreMap = scoreMaps.get(regionOwners.get(i));
+                for (Pair<String, Float> p : cropResults.get(i)) {
                     scoreMap.put(p.first, scoreMap.getOrDefault(p.first, 0f) + p.second);
                 }
-                index++;
-            } catch (Exception e) {
-                Log.e("ImageRepository", "❌ 객체 " + index + " Crop 실패", e);
             }
+        } catch (Exception e) {
+            Log.e("ImageRepository", "❌ 객체 " + regions.size() + "개 Crop 분류 실패", e);
         }
 
         // 합산 결과 Top-3 정렬
-        List<Pair<String, Float>> mergedPredictions = new ArrayList<>();
-        for (Map.Entry<String, Float> entry : scoreMap.entrySet()) {
-            mergedPredictions.add(new Pair<>(entry.getKey(), entry.getValue()));
+        List<List<Pair<String, Float>>> results = new ArrayList<>(scoreMaps.size());
+        for (Map<String, Float> scoreMap : scoreMaps) {
+            List<Pair<String, Float>> mergedPredictions = new ArrayList<>();
+            for (Map.Entry<String, Float> entry : scoreMap.entrySet()) {
+                mergedPredictions.add(new Pair<>(entry.getKey(), entry.getValue()));
+            }
+            mergedPredictions.sort((a, b) -> Float.compare(b.second, a.second));
+            List<Pair<String, Float>> top3Predictions = mergedPredictions.subList(0, Math.min(3, mergedPredictions.size()));
+            Log.d("ImageRepository", "🥇 최종 Top-3 예측 결과: " + top3Predictions);
+            results.add(top3Predictions);
         }
-        mergedPredictions.sort((a, b) -> Float.compare(b.second, a.second));
-        List<Pair<String, Float>> top3Predictions = mergedPredictions.subList(0, Math.min(3, mergedPredictions.size()));
-        Log.d("ImageRepository", "🥇 최종 Top-3 예측 결과: " + top3Predictions);
+        return results;
+    }
 
-        // 지역 정보
-        String region = null;
-        Location location = ImageUtils.getExifLocation(context, uri);
-        if (location != null) {
-            // LocationUtils 인스턴스 메서드 사용
-            region = locationUtils.getRegionFromLocation(location);
+    /**
+     * 분류할 박스 인덱스 (탐지 순서 유지)
+     * 원본 범위를 벗어나 잘라낼 수 없는 박스는 제외하고, MAX_CROPS 개를 넘으면 신뢰도 x √(면적 비율) 상위만 남김
+     */
+    private static List<Integer> selectCrops(Bitmap bitmap, List<Detection> detections) {
+        List<Integer> indices = new ArrayList<>(detections.size());
+        for (int i = 0; i < detections.size(); i++) {
+            if (cropRegion(bitmap, detections.get(i).box) != null) {
+                indices.add(i);
+            } else {
+                Log.e("ImageRepository", "❌ 객체 " + i + " Crop 실패: 이미지 범위 밖 " + detections.get(i));
+            }
+        }
+        if (indices.size() <= MAX_CROPS) return indices;
+
+        float imageArea = (float) bitmap.getWidth() * bitmap.getHeight();
+        float[] ranks = new float[detections.size()];
+        for (int i : indices) {
+            RectF box = detections.get(i).box;
+            float areaRatio = Math.max(0f, box.width() * box.height()) / imageArea;
+            ranks[i] = detections.get(i).score * (float) Math.sqrt(areaRatio);
         }
+        indices.sort((a, b) -> Float.compare(ranks[b], ranks[a]));
+        List<Integer> selected = new ArrayList<>(indices.subList(0, MAX_CROPS));
+        Collections.sort(selected);
+        Log.d("ImageRepository", "✂️ Crop " + indices.size() + "개 중 " + MAX_CROPS + "개만 분류");
+        return selected;
+    }
 
-        return new ImageMeta(uri.toString(), region, top3Predictions, embeddingVector);
+    /**
+     * 박스를 잘라낼 원본 영역 (기존 Bitmap.createBitmap crop 과 같은 좌표, 범위를 벗어나면 null)
+     */
+    private static Rect cropRegion(Bitmap bitmap, RectF box) {
+        int x = Math.max((int) box.left, 0);
+        int y = Math.max((int) box.top, 0);
+        int width = Math.min((int) box.width(), bitmap.getWidth() - (int) box.left);
+        int height = Math.min((int) box.height(), bitmap.getHeight() - (int) box.top);
+        if (width <= 0 || height <= 0 || x + width > bitmap.getWidth() || y + height > bitmap.getHeight()) {
+            return null;
+        }
+        return new Rect(x, y, x + width, y + height);
     }
 
     public Photo savePhotoToDB(Uri uri, ImageMeta meta) {
-        final Photo[] result = new Photo[1];  // 결과를 저장할 배열
+        try {
+            String captureTime = readCaptureTime(uri);
+            Photo photo = buildPhoto(uri, captureTime != null ? captureTime : currentDateTaken(),
+                    meta.getPredictions(), meta.getEmbeddingVector(), meta.getDHash());
+            photo.captureTimeKnown = captureTime != null;
+            resolveLocation(photo, uri);
+            List<Photo> saved = savePhotosToDB(Collections.singletonList(photo));
+            return saved.isEmpty() ? null : saved.get(0);
+        } catch (Exception e) {
+            Log.e("ImageRepository", "🛑 사진 저장 중 오류 발생", e);
+            return null;
+        }
+    }
 
-        Thread thread = new Thread(() -> {
-            try {
-                String filePath = uri.toString();
+    /**
+     * 저장할 Photo 객체 생성 (위치 정보는 resolveLocation 에서 채움)
+     */
+    public Photo buildPhoto(Uri uri, String dateTaken, List<Pair<String, Float>> detectedPairs,
+                            float[] embeddingVector, Long dHash) {
+        // ✅ 기본 생성자 사용 후 set 메서드 활용
+        Photo photo = new Photo();
+        photo.filePath = uri.toString();
+        photo.dateTaken = dateTaken;
+        photo.caption = "";
+        photo.setDetectedObjectPairs(detectedPairs);  // ✅ 핵심 변경점
+        photo.dHash = dHash;
+        photo.setEmbeddingVector(embeddingVector);
+        Log.d("ImageRepository", "📥 저장될 객체 정보: " + detectedPairs);
+        return photo;
+    }
 
-                // 중복 검사
-                if (photoRepository.isPhotoAlreadyExists(filePath)) {
-                    Log.d("ImageRepository", "⚠️ 중복 사진 → 저장 생략됨: " + filePath);
-                    result[0] = null;  // 중복인 경우 null 반환
-                    return;
-                }
+    /**
+     * EXIF GPS → 위도/경도, Geocoder 로 주소 채우기 (네트워크/디스크 I/O, 백그라운드 스레드에서 호출)
+     */
+    public void resolveLocation(Photo photo, Uri uri) {
+        // ExifUtil을 사용해서 GPS 추출
+        double[] latLng = ExifUtil.getLatLngFromExif(FileUtils.getPath(context, uri)); // 절대 경로 필요
+        if (latLng == null) return;
 
-                List<Pair<String, Float>> detectedPairs = meta.getPredictions();  // ✅ 변경
-                String dateTaken = ImageUtils.getExifDateTaken(context, uri);
-                Log.d("ImageRepository", "🕒 원본 dateTaken: " + dateTaken);
+        photo.latitude = latLng[0];
+        photo.longitude = latLng[1];
 
-                // 포맷이 없거나 깨진 경우 대비: 현재 시간으로 설정
-                if (dateTaken == null || dateTaken.isEmpty()) {
-                    dateTaken = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault())
-                            .format(new Date());
-                }
-                // "yyyy:MM:dd HH:mm:ss" 포맷일 경우 → 변환
-                else if (dateTaken.contains(":")) {
-                    try {
-                        Date parsed = new SimpleDateFormat("yyyy:MM:dd HH:mm:ss", Locale.getDefault()).parse(dateTaken);
-                        dateTaken = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(parsed);
-                    } catch (Exception e) {
-                        Log.e("ImageRepository", "❌ dateTaken 포맷 변환 실패: " + dateTaken);
-                    }
+        // 위도/경도로 주소 파싱
+        Geocoder geocoder = new Geocoder(context, Locale.KOREA);
+        try {
+            List<Address> addresses = geocoder.getFromLocation(latLng[0], latLng[1], 1);
+            if (addresses != null && !addresses.isEmpty()) {
+                Address addr = addresses.get(0);
+                photo.locationDo = addr.getAdminArea();
+                photo.locationSi = addr.getLocality();
+                photo.locationGu = addr.getSubLocality() != null ? addr.getSubLocality() : addr.getThoroughfare();
+
+                // 도로명 + 번지 통합
+                String thoroughfare = addr.getThoroughfare() != null ? addr.getThoroughfare() : "";
+                String featureName = addr.getFeatureName() != null ? addr.getFeatureName() : "";
+                photo.locationStreet = (thoroughfare + " " + featureName).trim();
+                photo.country = addr.getCountryName();
+            }
+        } catch (Exception e) {
+            Log.e("ImageRepository", "❌ 주소 변환 실패", e);
+        }
+    }
+
+    /**
+     * 여러 장을 한 트랜잭션으로 저장 (사진 + 임베딩 BLOB), 저장된 사진 목록 반환. 백그라운드 스레드에서 호출
+     * - 이미 있는 경로는 건너뜀
+     * - 버스트 대표는 저장 직전에 배정 → 같은 배치에서 먼저 저장된 사진도 대표 후보가 됨
+     * - EXIF 촬영 시각이 없는 사진(captureTimeKnown=false)은 묶지 않음
+     */
+    public List<Photo> savePhotosToDB(List<Photo> photos) {
+        List<Photo> saved = new ArrayList<>();
+        if (photos.isEmpty()) return saved;
+
+        db.runInTransaction(() -> {
+            for (Photo photo : photos) {
+                // 중복 검사
+                if (photoRepository.isPhotoAlreadyExists(photo.filePath)) {
+                    Log.d("ImageRepository", "⚠️ 중복 사진 → 저장 생략됨: " + photo.filePath);
+                    continue;
                 }
 
-                Log.d("ImageRepository", "✅ 저장될 최종 dateTaken: " + dateTaken);
-
-                String locationDo = null;
-                String locationSi = null;
-                String locationGu = null;
-                String locationStreet = null;
-                Double latitude = null;
-                Double longitude = null;
-                String countryName = null;
-
-                // ExifUtil을 사용해서 GPS 추출
-                double[] latLng = ExifUtil.getLatLngFromExif(FileUtils.getPath(context, uri)); // 절대 경로 필요
-                if (latLng != null) {
-                    latitude = latLng[0];
-                    longitude = latLng[1];
-
-                    // 위도/경도로 주소 파싱
-                    Geocoder geocoder = new Geocoder(context, Locale.KOREA);
-                    List<Address> addresses = null;
-                    try {
-                        addresses = geocoder.getFromLocation(latitude, longitude, 1);
-                        if (addresses != null && !addresses.isEmpty()) {
-                            Address addr = addresses.get(0);
-                            locationDo = addr.getAdminArea();
-                            locationSi = addr.getLocality();
-                            locationGu = addr.getSubLocality() != null ? addr.getSubLocality() : addr.getThoroughfare();
-
-                            // 도로명 + 번지 통합
-                            String thoroughfare = addr.getThoroughfare() != null ? addr.getThoroughfare() : "";
-                            String featureName = addr.getFeatureName() != null ? addr.getFeatureName() : "";
-                            locationStreet = (thoroughfare + " " + featureName).trim();
-                            countryName = addr.getCountryName();
-
-                        }
-                    } catch (Exception e) {
-                        Log.e("ImageRepository", "❌ 주소 변환 실패", e);
-                    }
+                float[] embeddingVector = photo.getEmbeddingVector();
+                if (photo.dHash != null && photo.captureTimeKnown) {
+                    Photo representative = burstGroupService.findRepresentative(
+                            photo.dateTaken, photo.dHash, embeddingVector);
+                    photo.burstRepId = representative != null ? representative.id : null;
                 }
 
-                // ✅ 기본 생성자 사용 후 set 메서드 활용
-                Photo photo = new Photo();
-                photo.filePath = filePath;
-                photo.dateTaken = dateTaken;
-                photo.locationDo = locationDo;
-                photo.locationSi = locationSi;
-                photo.locationGu = locationGu;
-                photo.locationStreet = locationStreet;
-                photo.caption = "";
-                photo.latitude = latitude;
-                photo.longitude = longitude;
-                photo.setDetectedObjectPairs(detectedPairs);  // ✅ 핵심 변경점
-                photo.country = countryName;
-
-
-                // embeddingVector가 있을 경우 photo에 설정
-                float[] embeddingVector = meta.getEmbeddingVector();
+                photo.id = (int) db.photoDao().insertPhoto(photo);
                 if (embeddingVector != null) {
-                    photo.setEmbeddingVector(embeddingVector); // ✅ 이 라인 없으면 저장 안 됨
+                    db.photoEmbeddingDao().insertEmbedding(
+                            new PhotoEmbedding(photo.id, ClipImageEncoder.MODEL_ID, embeddingVector));
                 }
-
-                Log.d("ImageRepository", "📥 저장될 객체 정보: " + detectedPairs);
-
-                // 실제 Room에 저장
-                db.photoDao().insertPhoto(photo);
-
-                // 저장된 Photo 객체 다시 가져오기
-                Photo savedPhoto = db.photoDao().getPhotoByPath(photo.filePath);
-                result[0] = savedPhoto;
-
-                Log.d("ImageRepository", "📥 Photo saved to DB with date: " + dateTaken);
-                Log.d("ImageRepository", "📥 Photo saved to DB with 벡터 길이: " +
-                        (embeddingVector != null ? embeddingVector.length : 0));
-            } catch (Exception e) {
-                Log.e("ImageRepository", "🛑 사진 저장 중 오류 발생", e);
-                result[0] = null;
+                saved.add(photo);
             }
         });
 
-        thread.start();
-        try {
-            thread.join();  // 스레드가 완료될 때까지 기다림
-        } catch (InterruptedException e) {
-            Log.e("ImageRepository", "Thread interrupted", e);
-            return null;
+        // 임베딩 파일에 레코드 추가 후 검색 인덱스에 증분 반영 (전체 재구성 없음)
+        for (Photo photo : saved) {
+            float[] embeddingVector = photo.getEmbeddingVector();
+            if (embeddingVector != null) {
+                EmbeddingStore.getInstance(context).append(photo.id, embeddingVector);
+                VectorIndex.getInstance(context).add(photo.id, embeddingVector);
+            }
         }
+        Log.d("ImageRepository", "📥 Photo " + saved.size() + "장 DB 저장 (요청 " + photos.size() + "장)");
+        return saved;
+    }
 
-        return result[0];
+    /**
+     * EXIF 촬영 시각을 "yyyy-MM-dd HH:mm:ss" 로 변환 (없으면 현재 시각)
+     */
+    public String readDateTaken(Uri uri) {
+        String captureTime = readCaptureTime(uri);
+        return captureTime != null ? captureTime : currentDateTaken();
+    }
 
+    /**
+     * EXIF 촬영 시각 (없으면 null). 연사 묶음은 실제 촬영 시각이 있을 때만 판단
+     */
+    public String readCaptureTime(Uri uri) {
+        String captureTime = ImageUtils.getExifCaptureTime(context, uri);
+        Log.d("ImageRepository", "🕒 EXIF 촬영 시각: " + captureTime);
+        return captureTime;
+    }
+
+    /**
+     * 촬영 시각이 없는 사진에 넣는 현재 시각
+     */
+    public static String currentDateTaken() {
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date());
     }
 
     public void printAllPhotos() {
@@ -276,7 +481,12 @@ public class ImageRepository {
     public void deleteAllPhotos() {
         new Thread(() -> {
             try {
-                db.photoDao().deleteAllPhotos();
+                db.runInTransaction(() -> {
+                    db.photoEmbeddingDao().deleteAllEmbeddings();
+                    db.photoDao().deleteAllPhotos();
+                });
+                EmbeddingStore.getInstance(context).clear();
+                VectorIndex.getInstance(context).clear();
                 Log.d("ImageRepository", "🗑️ DB 내 모든 사진 삭제 완료");
             } catch (Exception e) {
                 Log.e("ImageRepository", "🛑 DB 전체 삭제 실패", e);
@@ -285,16 +495,18 @@ public class ImageRepository {
     }
 
     // 앱이 종료될 때 리소스 정리
-    public void close() {
+    public synchronized void close() {
+        if (clipImageEncoder != null) {
+            clipImageEncoder.close();
+            clipImageEncoder = null;
+        }
         if (imageClassifier != null) {
             imageClassifier.close();
+            imageClassifier = null;
         }
         if (yolov8Detector != null) {
             yolov8Detector.close();
-        }
-        // db 인스턴스도 닫아주기
-        if (db != null && db.isOpen()) {
-            db.close();
+            yolov8Detector = null;
         }
     }
 }
\ No newline at end of file
@@ -209,6 +209,20 @@ public class PhotoRepository {
         return photoInfos;
     }
 
+    /**
+     * 날짜별 버스트 대표 사진만 가져오기 (연사 중복 제외, 타임라인/지도 마커용)
+     */
+    public List<PhotoInfo> getRepresentativePhotosForDate(String dateString) {
+        List<Photo> photos = database.photoDao().getRepresentativePhotosForDate(dateString);
+        List<PhotoInfo> photoInfos = new ArrayList<>();
+
+        for (Photo photo : photos) {
+            photoInfos.add(convertToPhotoInfo(photo));
+        }
+
+        return photoInfos;
+    }
+
     /**
      * 사진 정보 모델 변환 (Photo -> PhotoInfo)
      */
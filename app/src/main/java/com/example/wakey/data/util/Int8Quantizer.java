@@ -0,0 +1,77 @@
+// data/util/Int8Quantizer.java
+package com.example.wakey.data.util;
+
+/**
+ * 임베딩 int8 스칼라 양자화 유틸
+ * - 저장 벡터: 벡터별 [min, max] 를 256 단계로 나눈 비대칭 양자화 (v ≈ offset + scale * (code + 128))
+ * - 질의 벡터: max|q| 기준 대칭 양자화 (q ≈ queryScale * code)
+ * - 내적은 정수 누적 후 scale/offset 으로 근사 유사도 복원
+ */
+public class Int8Quantizer {
+
+    /**
+     * src[srcOffset .. +dim] 를 codes[codeOffset ..] 로 양자화하고 scales/offsets[index] 에 파라미터 기록
+     */
+    public static void quantize(float[] src, int srcOffset, int dim,
+                                byte[] codes, int codeOffset,
+                                float[] scales, float[] offsets, int index) {
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < dim; i++) {
+            float v = src[srcOffset + i];
+            if (v < min) min = v;
+            if (v > max) max = v;
+        }
+
+        float scale = (max - min) / 255f;
+        if (scale == 0f) scale = 1f;
+        float inv = 1f / scale;
+
+        for (int i = 0; i < dim; i++) {
+            int code = Math.round((src[srcOffset + i] - min) * inv) - 128;
+            codes[codeOffset + i] = (byte) Math.max(-128, Math.min(127, code));
+        }
+        scales[index] = scale;
+        offsets[index] = min;
+    }
+
+    /**
+     * 질의 벡터 대칭 양자화. 반환값은 queryScale, codeSum[0] 에 코드 합 기록
+     */
+    public static float quantizeQuery(float[] query, byte[] codes, int[] codeSum) {
+        float maxAbs = 0f;
+        for (float v : query) {
+            maxAbs = Math.max(maxAbs, Math.abs(v));
+        }
+        float scale = maxAbs == 0f ? 1f : maxAbs / 127f;
+        float inv = 1f / scale;
+
+        int sum = 0;
+        for (int i = 0; i < query.length; i++) {
+            int code = Math.round(query[i] * inv);
+            codes[i] = (byte) code;
+            sum += code;
+        }
+        codeSum[0] = sum;
+        return scale;
+    }
+
+    /**
+     * 정수 내적 (코드끼리)
+     */
+    public static int dot(byte[] a, int aOffset, byte[] b, int bOffset, int dim) {
+        int sum = 0;
+        for (int i = 0; i < dim; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    /**
+     * 정수 내적 결과를 근사 실수 내적으로 복원
+     */
+    public static float approximateDot(int codeDot, int queryCodeSum, float queryScale,
+                                       float scale, float offset) {
+        return queryScale * (scale * codeDot + (offset + 128f * scale) * queryCodeSum);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.wakey.data.util;
+
+import android.graphics.Bitmap;
+
+/**
+ * 64비트 dHash (difference hash) 계산
+ * - 이미지를 9x8 밝기 격자로 줄인 뒤 가로로 이웃한 칸의 밝기 비교 결과를 비트로 기록
+ * - 노출/크기/압축 차이에는 거의 변하지 않고 구도가 바뀌면 달라져서 연사(버스트) 사진 묶기에 적합
+ * - 두 해시의 해밍 거리(다른 비트 수)가 작을수록 비슷한 이미지
+ */
+public class PerceptualHash {
+
+    private static final int GRID_WIDTH = 9;
+    private static final int GRID_HEIGHT = 8;
+    // 큰 원본을 바로 9x8 로 줄이면 bilinear 샘플링이 몇 픽셀만 보게 되므로 중간 크기에서 블록 평균
+    private static final int SAMPLE_WIDTH = GRID_WIDTH * 4;
+    private static final int SAMPLE_HEIGHT = GRID_HEIGHT * 4;
+
+    public static long dHash(Bitmap bitmap) {
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, SAMPLE_WIDTH, SAMPLE_HEIGHT, true);
+        int[] pixels = new int[SAMPLE_WIDTH * SAMPLE_HEIGHT];
+        scaled.getPixels(pixels, 0, SAMPLE_WIDTH, 0, 0, SAMPLE_WIDTH, SAMPLE_HEIGHT);
+        if (scaled != bitmap) {
+            scaled.recycle();
+        }
+        return dHash(pixels, SAMPLE_WIDTH, SAMPLE_HEIGHT);
+    }
+
+    /**
+     * ARGB 픽셀 배열(width x height)의 dHash. 각 픽셀은 9x8 격자 칸에 밝기 평균으로 합산
+     */
+    public static long dHash(int[] argb, int width, int height) {
+        int[] sums = new int[GRID_WIDTH * GRID_HEIGHT];
+        int[] counts = new int[GRID_WIDTH * GRID_HEIGHT];
+
+        for (int y = 0; y < height; y++) {
+            int row = y * GRID_HEIGHT / height * GRID_WIDTH;
+            for (int x = 0; x < width; x++) {
+                int cell = row + x * GRID_WIDTH / width;
+                sums[cell] += luma(argb[y * width + x]);
+                counts[cell]++;
+            }
+        }
+
+        long hash = 0L;
+        int bit = 0;
+        for (int r = 0; r < GRID_HEIGHT; r++) {
+            for (int c = 0; c < GRID_WIDTH - 1; c++) {
+                int left = r * GRID_WIDTH + c;
+                // 평균끼리 비교 (sums[a]/counts[a] > sums[b]/counts[b] 를 나눗셈 없이)
+                if ((long) sums[left] * counts[left + 1] > (long) sums[left + 1] * counts[left]) {
+                    hash |= 1L << bit;
+                }
+                bit++;
+            }
+        }
+        return hash;
+    }
+
+    public static int hammingDistance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    private static int luma(int argb) {
+        int r = (argb >> 16) & 0xFF;
+        int g = (argb >> 8) & 0xFF;
+        int b = argb & 0xFF;
+        return (r * 299 + g * 587 + b * 114) / 1000;
+    }
+}
@@ -2,7 +2,13 @@ package com.example.wakey.data.util;
 
 import android.util.Log;
 
+import java.nio.FloatBuffer;
+
 public class SimilarityUtil {
+    /**
+     * 단건 코사인 유사도 (정규화 안 된 벡터용, 호출마다 norm 계산 + 로그)
+     * 검색 루프에서는 정규화된 벡터에 dot / dotBatch 사용
+     */
     public static float cosineSimilarity(float[] imageVec1, float[] imageVec2) {
         if (imageVec1.length != imageVec2.length) {
             Log.d("벡터길이", "텍스트 벡터 길이: " + imageVec1.length);
@@ -30,4 +36,79 @@ public class SimilarityUtil {
         Log.d("유사도", "✅ 계산된 cosine similarity: " + similarity);
         return similarity;
     }
-}
\ No newline at end of file
+
+    // ========== 정규화된 벡터용 커널 (로그/할당/길이 검사 없음) ==========
+
+    /**
+     * a[aOffset ..] · b[bOffset ..] (dim 개). 누산기 4개로 펼쳐서 JIT 벡터화 유도
+     */
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int dim) {
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int i = 0;
+        int limit = dim & ~3;
+        for (; i < limit; i += 4) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+            s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+            s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+            s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        for (; i < dim; i++) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * query · b[bOffset ..] (매핑 파일 등 FloatBuffer 를 복사 없이 절대 위치로 읽음)
+     */
+    public static float dot(float[] query, FloatBuffer b, int bOffset, int dim) {
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int i = 0;
+        int limit = dim & ~3;
+        for (; i < limit; i += 4) {
+            s0 += query[i] * b.get(bOffset + i);
+            s1 += query[i + 1] * b.get(bOffset + i + 1);
+            s2 += query[i + 2] * b.get(bOffset + i + 2);
+            s3 += query[i + 3] * b.get(bOffset + i + 3);
+        }
+        for (; i < dim; i++) {
+            s0 += query[i] * b.get(bOffset + i);
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * 질의 1개 × 연속 블록 count 개의 내적을 out[outOffset ..] 에 기록
+     * 벡터 j 는 block[offset + j * stride ..] 에서 시작 (stride >= dim, 레코드 헤더 등 건너뛰기용)
+     */
+    public static void dotBatch(float[] query, float[] block, int offset, int stride, int count,
+                                float[] out, int outOffset) {
+        int dim = query.length;
+        for (int j = 0; j < count; j++) {
+            out[outOffset + j] = dot(query, 0, block, offset + j * stride, dim);
+        }
+    }
+
+    /**
+     * FloatBuffer 블록 버전 dotBatch
+     */
+    public static void dotBatch(float[] query, FloatBuffer block, int offset, int stride, int count,
+                                float[] out, int outOffset) {
+        int dim = query.length;
+        for (int j = 0; j < count; j++) {
+            out[outOffset + j] = dot(query, block, offset + j * stride, dim);
+        }
+    }
+
+    /**
+     * values[offset .. offset + length] 를 단위 벡터로 정규화 (0 벡터는 그대로)
+     */
+    public static void normalizeInPlace(float[] values, int offset, int length) {
+        float norm = dot(values, offset, values, offset, length);
+        if (norm == 0f) return;
+        float inv = (float) (1.0 / Math.sqrt(norm));
+        for (int i = offset; i < offset + length; i++) {
+            values[i] *= inv;
+        }
+    }
+}
@@ -70,7 +70,8 @@ public class DataManager {
 
         //백그라운드에서 접근해야 오류 안난대
         new Thread(() -> {
-            List<PhotoInfo> photos = photoRepository.getPhotosForDate(dateString);
+            // 지도 마커/타임라인은 연사 묶음의 대표 사진만
+            List<PhotoInfo> photos = photoRepository.getRepresentativePhotosForDate(dateString);
 
             if (photos != null && !photos.isEmpty()) {
                 Map<LatLng, List<PhotoInfo>> clusters = clusterService.clusterPhotosByLocation(dateString, 100.0);
@@ -102,7 +103,7 @@ public class DataManager {
             Map<LatLng, List<PhotoInfo>> allClusters = new HashMap<>();
 
             for (String dateString : availableDates) {
-                List<PhotoInfo> photos = photoRepository.getPhotosForDate(dateString);
+                List<PhotoInfo> photos = photoRepository.getRepresentativePhotosForDate(dateString);
                 if (photos != null && !photos.isEmpty()) {
                     allPhotos.addAll(photos);
 
@@ -195,7 +196,7 @@ public class DataManager {
                     String currentDateStr = dateFormat.format(currentDate.getTime());
 
                     // 현재 날짜의 사진 데이터 가져오기
-                    List<PhotoInfo> photos = photoRepository.getPhotosForDate(currentDateStr);
+                    List<PhotoInfo> photos = photoRepository.getRepresentativePhotosForDate(currentDateStr);
                     if (photos != null && !photos.isEmpty()) {
                         allPhotos.addAll(photos);
 
@@ -39,15 +39,16 @@ import com.example.wakey.data.local.Photo;
 import com.example.wakey.data.model.SearchHistoryItem;
 import com.example.wakey.data.model.TimelineItem;
 import com.example.wakey.data.repository.SearchHistoryRepository;
-import com.example.wakey.data.util.SimilarityUtil;
 import com.example.wakey.service.SearchService;
-import com.example.wakey.tflite.ClipTextEncoder;
-import com.example.wakey.tflite.ClipTokenizer;
+import com.example.wakey.service.HybridSearchService;
+import com.example.wakey.service.TextEmbeddingService;
+import com.example.wakey.service.VectorIndex;
 import com.example.wakey.ui.map.PlaceDetailsBottomSheet;
 import com.example.wakey.ui.photo.PhotoDetailFragment;
 import com.example.wakey.ui.search.SearchActivity;
 import com.example.wakey.ui.search.SearchHistoryAdapter;
 import com.example.wakey.ui.search.SearchResultAdapter;
+import com.example.wakey.ui.search.SimilarPhotosActivity;
 import com.example.wakey.ui.timeline.StoryAdapter;
 import com.example.wakey.ui.timeline.StoryFragment;
 import com.example.wakey.ui.timeline.TimelineAdapter;
@@ -66,14 +67,17 @@ import java.util.Calendar;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 /**
  * UI 관련 기능을 관리하는 매니저 클래스
  */
 public class UIManager {
     private static final String TAG = "UIManager";
+    private static final int MAX_SEARCH_RESULTS = 300; // 스마트 검색 최대 결과 수
     private static UIManager instance;
 
     private Context context;
@@ -581,6 +585,32 @@ public class UIManager {
         }
     }
 
+    /**
+     * 벡터 검색 결과를 사진 목록으로 변환 (유사도 순서 유지)
+     */
+    private List<SearchResultAdapter.SearchResult> toSearchResults(List<VectorIndex.Hit> hits) {
+        List<SearchResultAdapter.SearchResult> results = new ArrayList<>();
+        if (hits.isEmpty()) return results;
+
+        List<Integer> photoIds = new ArrayList<>();
+        for (VectorIndex.Hit hit : hits) {
+            photoIds.add(hit.photoId);
+        }
+
+        Map<Integer, Photo> photoById = new HashMap<>();
+        for (Photo photo : AppDatabase.getInstance(context).photoDao().getPhotosByIds(photoIds)) {
+            photoById.put(photo.id, photo);
+        }
+
+        for (VectorIndex.Hit hit : hits) {
+            Photo photo = photoById.get(hit.photoId);
+            if (photo != null) {
+                results.add(new SearchResultAdapter.SearchResult(photo, hit.score));
+            }
+        }
+        return results;
+    }
+
     /**
      * 검색 대화상자 표시
      */
@@ -592,6 +622,13 @@ public class UIManager {
         // 검색 서비스 초기화
         SearchService searchService = SearchService.getInstance(context);
 
+        // 입력하는 동안 텍스트 모델/인덱스 미리 로드
+        TextEmbeddingService textEmbeddingService = TextEmbeddingService.getInstance(context);
+        new Thread(() -> {
+            textEmbeddingService.warmUp();
+            VectorIndex.getInstance(context).ensureLoaded();
+        }).start();
+
         // 1. 대화상자 레이아웃 로드
         View searchView = LayoutInflater.from(activity).inflate(R.layout.dialog_smart_search, null);
 
@@ -623,45 +660,24 @@ public class UIManager {
 
                     new Thread(() -> {
                         try {
-                            // 1. 텍스트 → 벡터
-                            ClipTokenizer tokenizer = new ClipTokenizer(context);
-                            int[] tokenIds = tokenizer.tokenize(query);
-                            ClipTextEncoder encoder = new ClipTextEncoder(context);
-                            float[] textVec = encoder.getTextEncoding(tokenIds);
-                            encoder.close();
-
-                            // 2. DB에서 이미지 벡터 가져와 유사도 비교
-                            List<Photo> photoList = AppDatabase.getInstance(context).photoDao().getAllPhotos();
-                            List<SearchResultAdapter.SearchResult> allResults = new ArrayList<>();
-
-                            for (Photo photo : photoList) {
-                                float[] imageVec = photo.getEmbeddingVector();
-                                if (imageVec == null) continue;
-
-                                float sim = SimilarityUtil.cosineSimilarity(textVec, imageVec);
-                                allResults.add(new SearchResultAdapter.SearchResult(photo, sim));
-                            }
-
-                            // 3. 유사도 순으로 정렬
-                            Collections.sort(allResults, (a, b) -> Float.compare(b.similarity, a.similarity));
-
-                            // 4. 유사도 0.25 이상인 모든 결과 필터링
+                            // 1. 날짜/지역/해시태그 필터로 후보를 좁히고 CLIP 유사도로 채점 (최대 MAX_SEARCH_RESULTS 개)
                             float MINIMUM_SIMILARITY = 0.25f;
-                            List<SearchResultAdapter.SearchResult> filteredResults = new ArrayList<>();
-                            for (SearchResultAdapter.SearchResult result : allResults) {
-                                if (result.similarity >= MINIMUM_SIMILARITY) {
-                                    filteredResults.add(result);
-                                }
-                            }
+                            List<VectorIndex.Hit> hits = HybridSearchService.getInstance(context).search(
+                                    query, MAX_SEARCH_RESULTS, MINIMUM_SIMILARITY);
+                            int indexedCount = VectorIndex.getInstance(context).size();
+
+                            // 2. 결과 사진 조회 (유사도 순서 유지)
+                            List<SearchResultAdapter.SearchResult> filteredResults = toSearchResults(hits);
 
-                            // 5. UI 업데이트
+                            // 3. UI 업데이트
                             activity.runOnUiThread(() -> {
                                 if (!filteredResults.isEmpty()) {
                                     adapter.updateResults(filteredResults);
                                     resultCountTextView.setText(String.format("검색 결과: %d/%d (유사도 %.3f 이상)",
-                                            filteredResults.size(), allResults.size(), MINIMUM_SIMILARITY));
-                                    resultTextView.setText(String.format("유사도 %.3f 이상인 모든 이미지 (%d개)",
-                                            MINIMUM_SIMILARITY, filteredResults.size()));
+                                            filteredResults.size(), indexedCount, MINIMUM_SIMILARITY));
+                                    resultTextView.setText(filteredResults.size() >= MAX_SEARCH_RESULTS
+                                            ? String.format("유사도 %.3f 이상 중 상위 %d개", MINIMUM_SIMILARITY, filteredResults.size())
+                                            : String.format("유사도 %.3f 이상인 이미지 (%d개)", MINIMUM_SIMILARITY, filteredResults.size()));
 
                                     // UI 요소 표시
                                     resultCountTextView.setVisibility(View.VISIBLE);
@@ -683,6 +699,12 @@ public class UIManager {
             return false;
         });
 
+        // 이미지로 검색 (갤러리에서 고른 이미지와 비슷한 사진)
+        View imageSearchButton = searchView.findViewById(R.id.imageSearchButton);
+        if (imageSearchButton != null) {
+            imageSearchButton.setOnClickListener(v -> SimilarPhotosActivity.startWithGalleryPick(activity));
+        }
+
         // 닫기 버튼 클릭 리스너
         View closeButton = searchView.findViewById(R.id.closeButton);
         if (closeButton != null) {
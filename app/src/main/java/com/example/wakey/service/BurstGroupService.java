@@ -0,0 +1,242 @@
+// service/BurstGroupService.java
+package com.example.wakey.service;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.util.Log;
+
+import com.example.wakey.data.local.AppDatabase;
+import com.example.wakey.data.local.EmbeddingStore;
+import com.example.wakey.data.local.Photo;
+import com.example.wakey.data.local.PhotoDao;
+import com.example.wakey.data.util.PerceptualHash;
+import com.example.wakey.data.util.SimilarityUtil;
+import com.example.wakey.tflite.ClipImageEncoder;
+import com.example.wakey.util.ImageUtils;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 연사(버스트) 사진 묶음
+ * - 촬영 시각 차이 BURST_WINDOW_MS 이내 + dHash 해밍 거리 MAX_HAMMING 이하 + CLIP 유사도 MIN_SIMILARITY 이상이면 같은 묶음
+ * - 대표 사진은 묶음에서 처음 저장된 사진으로 고정 (이미 만든 스토리/표지가 바뀌지 않도록)
+ * - 대표가 아닌 사진은 burstRepId 에 대표 id 를 기록, 타임라인/지도 마커/앨범 표지는 대표 사진만 사용
+ */
+public class BurstGroupService {
+    private static final String TAG = "BurstGroupService";
+    private static BurstGroupService instance;
+
+    private static final long BURST_WINDOW_MS = 10_000L;
+    private static final int MAX_HAMMING = 10;
+    // 비교할 임베딩이 없을 때는 해시만으로 판단하므로 더 엄격하게
+    private static final int STRICT_HAMMING = 4;
+    private static final float MIN_SIMILARITY = 0.9f;
+    private static final int BACKFILL_DECODE_SIZE = 128;    // 짧은 변 기준 (해시 격자 36x32 보다 충분히 큼)
+
+    private final Context context;
+    private final PhotoDao photoDao;
+    private final AppDatabase db;
+
+    private BurstGroupService(Context context) {
+        this.context = context;
+        this.db = AppDatabase.getInstance(context);
+        this.photoDao = db.photoDao();
+    }
+
+    public static synchronized BurstGroupService getInstance(Context context) {
+        if (instance == null) {
+            instance = new BurstGroupService(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * 새 사진이 들어갈 버스트 묶음의 대표 사진 (없으면 null, 백그라운드 스레드에서 호출)
+     *
+     * @param dateTaken "yyyy-MM-dd HH:mm:ss" 형식 EXIF 촬영 시각 (저장 시각으로 채운 값을 넘기면 안 됨)
+     * @param embedding CLIP 이미지 임베딩 (없으면 null → 해시만으로 엄격하게 판단)
+     */
+    public Photo findRepresentative(String dateTaken, long dHash, float[] embedding) {
+        return findRepresentative(dateTaken, dHash, embedding, 0);
+    }
+
+    /**
+     * dHash 가 없는 기존 사진에 해시를 계산하고 묶음 배정
+     * 썸네일 크기로만 디코딩하므로 모델 추론 없이 가벼움. 백그라운드 스레드에서 호출
+     *
+     * @param failures 디코딩하지 못한 사진 경로 → 오류 내용 (호출 측에서 실패로 기록해 백오프)
+     */
+    public int backfillHashes(List<Photo> photos, Map<String, String> failures) {
+        if (photos.isEmpty()) return 0;
+
+        long start = System.nanoTime();
+        EmbeddingStore store = EmbeddingStore.getInstance(context);
+        store.ensureOpen();
+        EmbeddingStore.View view = store.view();
+
+        int hashed = 0;
+        int grouped = 0;
+        for (Photo photo : photos) {
+            Bitmap small = decodeSmall(photo.filePath);
+            if (small == null) {
+                failures.put(photo.filePath, "dHash 디코딩 실패");
+                continue;
+            }
+            long hash = PerceptualHash.dHash(small);
+            small.recycle();
+
+            float[] embedding = null;
+            int record = view != null ? view.recordOf(photo.id) : -1;
+            if (record >= 0) {
+                embedding = new float[ClipImageEncoder.EMBEDDING_DIM];
+                view.readVector(record, embedding);
+            }
+
+            // DB 의 dateTaken 은 EXIF 가 없으면 저장 시각이므로 EXIF 를 다시 확인 (없으면 해시만 저장)
+            String captureTime = ImageUtils.getExifCaptureTime(context, Uri.parse(photo.filePath));
+            Photo representative = captureTime != null
+                    ? findRepresentative(captureTime, hash, embedding, photo.id) : null;
+            Integer burstRepId = representative != null ? representative.id : null;
+            photoDao.updateBurstInfo(photo.id, hash, burstRepId);
+            hashed++;
+            if (burstRepId != null) grouped++;
+        }
+
+        Log.d(TAG, "🧩 dHash 보충: " + hashed + "장, 버스트 묶음 합류 " + grouped + "장, 실패 " + failures.size()
+                + "장 (" + (System.nanoTime() - start) / 1_000_000 + "ms)");
+        return hashed;
+    }
+
+    /**
+     * 아직 DB 에 저장되지 않은 두 사진이 같은 버스트 장면인지 (수집 파이프라인에서 직전 사진과 비교할 때)
+     * 판단 기준은 findRepresentative 와 같음. 임베딩은 unitVector 로 미리 정규화한 것 (프레임마다 한 번만)
+     */
+    public static boolean isSameBurst(String dateA, long hashA, float[] unitEmbeddingA,
+                                      String dateB, long hashB, float[] unitEmbeddingB) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+        try {
+            if (dateA == null || dateB == null
+                    || Math.abs(format.parse(dateA).getTime() - format.parse(dateB).getTime()) > BURST_WINDOW_MS) {
+                return false;
+            }
+        } catch (ParseException e) {
+            return false;
+        }
+
+        int distance = PerceptualHash.hammingDistance(hashA, hashB);
+        if (distance > MAX_HAMMING) return false;
+        if (unitEmbeddingA == null || unitEmbeddingB == null || unitEmbeddingA.length != unitEmbeddingB.length) {
+            return distance <= STRICT_HAMMING;
+        }
+        return SimilarityUtil.dot(unitEmbeddingA, 0, unitEmbeddingB, 0, unitEmbeddingA.length) >= MIN_SIMILARITY;
+    }
+
+    /**
+     * isSameBurst 비교용 정규화 사본 (임베딩이 없으면 null)
+     */
+    public static float[] unitVector(float[] embedding) {
+        if (embedding == null) return null;
+        float[] unit = embedding.clone();
+        SimilarityUtil.normalizeInPlace(unit, 0, unit.length);
+        return unit;
+    }
+
+    /**
+     * 앨범 표지용 사진 경로: 버스트 대표 사진 중 첫 번째 (없으면 첫 사진)
+     */
+    public static String pickCoverPath(List<Photo> photos) {
+        if (photos == null || photos.isEmpty()) return null;
+        for (Photo photo : photos) {
+            if (!photo.isBurstMember()) {
+                return photo.filePath;
+            }
+        }
+        return photos.get(0).filePath;
+    }
+
+    private Photo findRepresentative(String dateTaken, long dHash, float[] embedding, int excludePhotoId) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+        Date taken;
+        try {
+            taken = dateTaken != null ? format.parse(dateTaken) : null;
+        } catch (ParseException e) {
+            taken = null;
+        }
+        if (taken == null) return null;
+
+        List<Photo> candidates = photoDao.getHashedPhotosInDateRange(
+                format.format(new Date(taken.getTime() - BURST_WINDOW_MS)),
+                format.format(new Date(taken.getTime() + BURST_WINDOW_MS)));
+        if (candidates.isEmpty()) return null;
+
+        float[] query = null;
+        if (embedding != null && embedding.length == ClipImageEncoder.EMBEDDING_DIM) {
+            query = embedding.clone();
+            SimilarityUtil.normalizeInPlace(query, 0, query.length);
+        }
+        EmbeddingStore.View view = EmbeddingStore.getInstance(context).view();
+
+        // 해밍 거리가 가장 가까운 후보부터 채택
+        Photo best = null;
+        int bestDistance = MAX_HAMMING + 1;
+        for (Photo candidate : candidates) {
+            if (candidate.id == excludePhotoId || candidate.dHash == null) continue;
+            int distance = PerceptualHash.hammingDistance(dHash, candidate.dHash);
+            if (distance >= bestDistance) continue;
+            if (!isSameScene(candidate.id, distance, query, view)) continue;
+            best = candidate;
+            bestDistance = distance;
+        }
+        if (best == null) return null;
+
+        // 후보가 이미 다른 묶음의 일원이면 그 묶음의 대표로 합류
+        if (best.burstRepId != null) {
+            Photo representative = photoDao.getPhotoById(best.burstRepId);
+            if (representative != null) {
+                best = representative;
+            }
+        }
+        Log.d(TAG, "📸 버스트 묶음 발견: 대표 id=" + best.id + ", 해밍 거리 " + bestDistance);
+        return best;
+    }
+
+    /**
+     * 해시가 가까운 후보가 실제로 같은 장면인지 CLIP 유사도로 확인
+     */
+    private boolean isSameScene(int candidateId, int distance, float[] query, EmbeddingStore.View view) {
+        if (query == null) {
+            return distance <= STRICT_HAMMING;
+        }
+
+        int record = view != null ? view.recordOf(candidateId) : -1;
+        if (record >= 0) {
+            return view.dot(record, query) >= MIN_SIMILARITY;
+        }
+
+        // 매핑 파일에 없으면 DB BLOB 으로 비교
+        float[] stored = db.photoEmbeddingDao().getVector(candidateId, ClipImageEncoder.MODEL_ID);
+        if (stored == null || stored.length != query.length) {
+            return distance <= STRICT_HAMMING;
+        }
+        SimilarityUtil.normalizeInPlace(stored, 0, stored.length);
+        return SimilarityUtil.dot(query, 0, stored, 0, query.length) >= MIN_SIMILARITY;
+    }
+
+    /**
+     * 해시 계산용 저해상도 디코딩 (EXIF 회전 적용: 수집 파이프라인의 해시와 같은 기준)
+     */
+    private Bitmap decodeSmall(String filePath) {
+        if (filePath == null) return null;
+        Bitmap bitmap = ImageUtils.decodeForModel(context, Uri.parse(filePath), BACKFILL_DECODE_SIZE);
+        if (bitmap == null) {
+            Log.e(TAG, "❌ 해시용 디코딩 실패: " + filePath);
+        }
+        return bitmap;
+    }
+}
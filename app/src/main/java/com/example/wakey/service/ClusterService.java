@@ -22,6 +22,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+// 클러스터/타임라인/경로는 버스트 대표 사진만 사용 (연사 중복 마커/스토리 생성 방지)
 public class ClusterService {
     private static final String TAG = "ClusterService";
     private static ClusterService instance;
@@ -52,7 +53,7 @@ public class ClusterService {
      * @return 클러스터링 결과 Map (위치 -> 해당 위치의 사진 목록)
      */
     public Map<LatLng, List<PhotoInfo>> clusterPhotosByLocation(String dateString, double radiusInMeters) {
-        List<PhotoInfo> photos = photoRepository.getPhotosForDate(dateString);
+        List<PhotoInfo> photos = photoRepository.getRepresentativePhotosForDate(dateString);
         if (photos == null || photos.isEmpty()) {
             return new HashMap<>();
         }
@@ -106,7 +107,7 @@ public class ClusterService {
      * @return 타임라인 항목 리스트 (시간순 정렬)
      */
     public List<TimelineItem> generateTimelineFromPhotos(String dateString) {
-        List<PhotoInfo> photos = photoRepository.getPhotosForDate(dateString);
+        List<PhotoInfo> photos = photoRepository.getRepresentativePhotosForDate(dateString);
         if (photos == null || photos.isEmpty()) {
             return new ArrayList<>();
         }
@@ -215,7 +216,7 @@ public class ClusterService {
      * @return 경로 좌표 리스트 (시간순 정렬)
      */
     public List<LatLng> generateRouteForDate(String dateString) {
-        List<PhotoInfo> photos = photoRepository.getPhotosForDate(dateString);
+        List<PhotoInfo> photos = photoRepository.getRepresentativePhotosForDate(dateString);
         if (photos == null || photos.isEmpty()) {
             return new ArrayList<>();
         }
@@ -0,0 +1,869 @@
+// service/HnswIndex.java
+package com.example.wakey.service;
+
+import android.util.Log;
+
+import com.example.wakey.data.util.SimilarityUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * HNSW(Hierarchical Navigable Small World) 근사 최근접 이웃 인덱스
+ * - 정규화된 벡터의 내적(= 코사인 유사도)을 기준으로 그래프 탐색
+ * - 삽입은 증분, 삭제는 tombstone 표시 (탐색 경로로는 계속 사용)
+ * - 힙에는 그래프(링크)와 사진 ID 만 보관하고 벡터는 VectorSource 에서 photoId 로 읽음
+ *   (앱에서는 EmbeddingStore 매핑 파일이라 사진당 float 2KB 를 힙에 복사하지 않음)
+ * - 그래프만 파일로 저장/로드 (벡터는 임베딩 파일에 이미 있으므로 중복 저장하지 않음)
+ *
+ * 쓰기(add/markDeleted)는 write lock, 검색은 read lock 으로 동시 검색 허용
+ */
+public class HnswIndex {
+    private static final String TAG = "HnswIndex";
+
+    private static final int FILE_MAGIC = 0x484E5357; // "HNSW"
+    private static final int FILE_VERSION = 2;     // 2: 벡터 블록 제거
+    private static final int INITIAL_CAPACITY = 1024;
+    // 재현율 측정 질의 = 저장 벡터 + 같은 크기의 잡음 (그래프 노드 위치에서 벗어난 질의)
+    private static final float RECALL_QUERY_NOISE = 1f;
+
+    private final int dim;
+    private final int m;          // 상위 레벨 최대 이웃 수
+    private final int maxM0;      // 레벨 0 최대 이웃 수 (2 * M)
+    private final int efConstruction;
+    private final double levelMult;
+    private final Random random = new Random(42);
+    private final VectorSource source;
+    // 노드끼리 비교할 때 한쪽 벡터를 읽어두는 버퍼 (write lock 안에서만 사용)
+    private final float[] scratch;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 노드별 데이터 (노드 번호 = 삽입 순서)
+    private int[] photoIds;
+    private int[] levels;
+    private boolean[] deleted;
+    // links[node][level] = {count, n1, n2, ...}
+    private int[][][] links;
+    private int count = 0;
+    private int deletedCount = 0;
+
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    private final Map<Integer, Integer> nodeByPhotoId = new HashMap<>();
+
+    // 검색 스레드별 방문 표시 배열
+    private final ThreadLocal<VisitedList> visitedLists = new ThreadLocal<>();
+
+    /**
+     * 노드 벡터 공급원 (photoId 로 정규화된 벡터를 읽음)
+     */
+    public interface VectorSource {
+        /**
+         * 질의와 저장된 벡터의 내적. 벡터가 없으면(삭제됨) Float.NEGATIVE_INFINITY
+         */
+        float dot(float[] query, int photoId);
+
+        /**
+         * 저장된 벡터를 out 에 복사. 없으면 false
+         */
+        boolean read(int photoId, float[] out);
+    }
+
+    /**
+     * 검색 결과 (photoId 와 유사도를 나란히 저장)
+     */
+    public static class Result {
+        public final int[] photoIds;
+        public final float[] scores;
+
+        Result(int[] photoIds, float[] scores) {
+            this.photoIds = photoIds;
+            this.scores = scores;
+        }
+    }
+
+    /**
+     * efSearch 별 정확 검색 대비 재현율/지연 시간 측정 결과
+     */
+    public static class RecallReport {
+        public final int efSearch;
+        public final float recall;
+        public final double avgHnswMs;
+        public final double avgExactMs;
+
+        RecallReport(int efSearch, float recall, double avgHnswMs, double avgExactMs) {
+            this.efSearch = efSearch;
+            this.recall = recall;
+            this.avgHnswMs = avgHnswMs;
+            this.avgExactMs = avgExactMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("ef=%d recall=%.3f hnsw=%.2fms exact=%.2fms",
+                    efSearch, recall, avgHnswMs, avgExactMs);
+        }
+    }
+
+    public HnswIndex(int dim, int m, int efConstruction, VectorSource source) {
+        this(dim, m, efConstruction, source, INITIAL_CAPACITY);
+    }
+
+    private HnswIndex(int dim, int m, int efConstruction, VectorSource source, int capacity) {
+        this.dim = dim;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.levelMult = 1.0 / Math.log(Math.max(m, 2));
+        this.source = source;
+        this.scratch = new float[dim];
+        allocate(Math.max(capacity, 1));
+    }
+
+    private void allocate(int capacity) {
+        photoIds = new int[capacity];
+        levels = new int[capacity];
+        deleted = new boolean[capacity];
+        links = new int[capacity][][];
+    }
+
+    private void ensureCapacity(int needed) {
+        int capacity = photoIds.length;
+        if (needed <= capacity) return;
+        int newCapacity = Math.max(needed, capacity + (capacity >> 1));
+        photoIds = Arrays.copyOf(photoIds, newCapacity);
+        levels = Arrays.copyOf(levels, newCapacity);
+        deleted = Arrays.copyOf(deleted, newCapacity);
+        links = Arrays.copyOf(links, newCapacity);
+    }
+
+    public int getDim() {
+        return dim;
+    }
+
+    public int getM() {
+        return m;
+    }
+
+    /**
+     * 삭제되지 않은 노드 수
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public float deletedRatio() {
+        lock.readLock().lock();
+        try {
+            return count == 0 ? 0f : (float) deletedCount / count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(int photoId) {
+        lock.readLock().lock();
+        try {
+            Integer node = nodeByPhotoId.get(photoId);
+            return node != null && !deleted[node];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 삭제되지 않은 사진 ID 목록
+     */
+    public int[] livePhotoIds() {
+        lock.readLock().lock();
+        try {
+            int[] ids = new int[nodeByPhotoId.size()];
+            int i = 0;
+            for (Integer photoId : nodeByPhotoId.keySet()) {
+                ids[i++] = photoId;
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 정규화된 벡터 추가. 같은 사진이 이미 있으면 기존 노드를 tombstone 처리 후 새 노드로 삽입
+     * 벡터는 그래프 연결에만 쓰고 보관하지 않음 (이후 비교는 VectorSource 에서 읽음)
+     */
+    public void add(int photoId, float[] normalized) {
+        if (normalized.length != dim) return;
+
+        lock.writeLock().lock();
+        try {
+            Integer existing = nodeByPhotoId.get(photoId);
+            if (existing != null && !deleted[existing]) {
+                deleted[existing] = true;
+                deletedCount++;
+            }
+
+            ensureCapacity(count + 1);
+            int node = count++;
+            photoIds[node] = photoId;
+            nodeByPhotoId.put(photoId, node);
+
+            int level = randomLevel();
+            levels[node] = level;
+            links[node] = new int[level + 1][];
+            for (int l = 0; l <= level; l++) {
+                links[node][l] = new int[1 + (l == 0 ? maxM0 : m)];
+            }
+
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return;
+            }
+
+            // 상위 레벨: 탐욕적으로 가장 가까운 노드로 내려감
+            int current = entryPoint;
+            float currentSim = dot(normalized, current);
+            for (int l = maxLevel; l > level; l--) {
+                boolean changed = true;
+                while (changed) {
+                    changed = false;
+                    int[] neighbors = links[current][l];
+                    for (int i = 1; i <= neighbors[0]; i++) {
+                        int candidate = neighbors[i];
+                        float sim = dot(normalized, candidate);
+                        if (sim > currentSim) {
+                            currentSim = sim;
+                            current = candidate;
+                            changed = true;
+                        }
+                    }
+                }
+            }
+
+            // 하위 레벨: efConstruction 후보 중에서 이웃 선택 후 양방향 연결
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                LongHeap candidates = searchLayer(normalized, current, efConstruction, l);
+                int maxNeighbors = l == 0 ? maxM0 : m;
+                int[] selected = selectNeighbors(candidates, m);
+
+                int[] ownLinks = links[node][l];
+                for (int neighbor : selected) {
+                    ownLinks[++ownLinks[0]] = neighbor;
+                    connect(neighbor, node, normalized, l, maxNeighbors);
+                }
+                if (selected.length > 0) {
+                    current = selected[0];
+                }
+            }
+
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = node;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * tombstone 삭제. 그래프 연결은 유지하고 결과에서만 제외
+     */
+    public void markDeleted(int photoId) {
+        lock.writeLock().lock();
+        try {
+            Integer node = nodeByPhotoId.remove(photoId);
+            if (node != null && !deleted[node]) {
+                deleted[node] = true;
+                deletedCount++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 근사 top-k 검색 (정규화된 질의 벡터)
+     */
+    public Result search(float[] query, int k, int efSearch, float threshold) {
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || k <= 0) {
+                return new Result(new int[0], new float[0]);
+            }
+
+            int current = entryPoint;
+            float currentSim = dot(query, current);
+            for (int l = maxLevel; l > 0; l--) {
+                boolean changed = true;
+                while (changed) {
+                    changed = false;
+                    int[] neighbors = links[current][l];
+                    for (int i = 1; i <= neighbors[0]; i++) {
+                        int candidate = neighbors[i];
+                        float sim = dot(query, candidate);
+                        if (sim > currentSim) {
+                            currentSim = sim;
+                            current = candidate;
+                            changed = true;
+                        }
+                    }
+                }
+            }
+
+            // tombstone 이 많을수록 후보를 넉넉히 탐색
+            int ef = Math.max(efSearch, k) + Math.min(deletedCount, k);
+            LongHeap found = searchLayer(query, current, ef, 0);
+
+            // 최소 힙에서 꺼내면 오름차순 -> 뒤에서부터 채워 내림차순
+            int n = found.size();
+            int[] nodes = new int[n];
+            float[] sims = new float[n];
+            for (int i = n - 1; i >= 0; i--) {
+                long top = found.poll();
+                nodes[i] = nodeOf(top);
+                sims[i] = simOf(top);
+            }
+
+            int[] ids = new int[Math.min(k, n)];
+            float[] scores = new float[ids.length];
+            int size = 0;
+            for (int i = 0; i < n && size < ids.length; i++) {
+                if (deleted[nodes[i]] || sims[i] < threshold) continue;
+                ids[size] = photoIds[nodes[i]];
+                scores[size] = sims[i];
+                size++;
+            }
+            return new Result(Arrays.copyOf(ids, size), Arrays.copyOf(scores, size));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 전수 비교 검색 (재현율 측정 기준)
+     */
+    public Result exactSearch(float[] query, int k, float threshold) {
+        lock.readLock().lock();
+        try {
+            LongHeap heap = new LongHeap(k + 1, false);
+            for (int node = 0; node < count; node++) {
+                if (deleted[node]) continue;
+                float sim = dot(query, node);
+                if (sim < threshold) continue;
+                heap.push(encode(sim, node));
+                if (heap.size() > k) heap.poll();
+            }
+            int n = heap.size();
+            int[] ids = new int[n];
+            float[] scores = new float[n];
+            for (int i = n - 1; i >= 0; i--) {
+                long top = heap.poll();
+                ids[i] = photoIds[nodeOf(top)];
+                scores[i] = simOf(top);
+            }
+            return new Result(ids, scores);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 저장된 벡터 일부에 잡음을 섞은 질의로 efSearch 별 재현율@k 와 평균 지연 시간을 측정
+     * - 저장 벡터를 그대로 쓰면 질의가 그래프 노드 위에 있어 자기 자신과 그 링크가 곧 정답이라 재현율이 부풀려짐
+     * - 잡음을 섞은 뒤에도 원래 사진은 정확/근사 결과 양쪽에서 빼고 나머지 k 개로 비교
+     */
+    public List<RecallReport> measureRecall(int sampleQueries, int k, int[] efSearchValues) {
+        List<RecallReport> reports = new ArrayList<>();
+        float[][] queries;
+        int[] queryIds;
+
+        lock.readLock().lock();
+        try {
+            int live = count - deletedCount;
+            if (live == 0 || k <= 0) return reports;
+
+            Random sampler = new Random(7);
+            int n = Math.min(sampleQueries, live);
+            queries = new float[n][];
+            queryIds = new int[n];
+            int filled = 0;
+            int attempts = 0;
+            while (filled < n && attempts++ < n * 20) {
+                int node = sampler.nextInt(count);
+                if (deleted[node]) continue;
+                float[] query = new float[dim];
+                if (source.read(photoIds[node], query)) {
+                    perturbForRecall(query, sampler);
+                    queryIds[filled] = photoIds[node];
+                    queries[filled++] = query;
+                }
+            }
+            if (filled < n) {
+                queries = Arrays.copyOf(queries, filled);
+                queryIds = Arrays.copyOf(queryIds, filled);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (queries.length == 0) return reports;
+
+        // 정확 검색 결과는 한 번만 계산
+        int[][] truth = new int[queries.length][];
+        long exactNanos = 0;
+        for (int q = 0; q < queries.length; q++) {
+            long start = System.nanoTime();
+            truth[q] = withoutPhoto(exactSearch(queries[q], k + 1, -1f).photoIds, queryIds[q], k);
+            exactNanos += System.nanoTime() - start;
+        }
+        double avgExactMs = exactNanos / 1_000_000.0 / queries.length;
+
+        for (int ef : efSearchValues) {
+            long hnswNanos = 0;
+            int hits = 0;
+            int total = 0;
+            for (int q = 0; q < queries.length; q++) {
+                long start = System.nanoTime();
+                int[] approx = withoutPhoto(search(queries[q], k + 1, ef, -1f).photoIds, queryIds[q], k);
+                hnswNanos += System.nanoTime() - start;
+
+                total += truth[q].length;
+                for (int id : approx) {
+                    for (int t : truth[q]) {
+                        if (t == id) {
+                            hits++;
+                            break;
+                        }
+                    }
+                }
+            }
+            reports.add(new RecallReport(ef, total == 0 ? 1f : (float) hits / total,
+                    hnswNanos / 1_000_000.0 / queries.length, avgExactMs));
+        }
+        return reports;
+    }
+
+    /**
+     * tombstone 을 제외한 노드로 새 인덱스를 구성 (벡터는 같은 VectorSource 에서 다시 읽음)
+     */
+    public HnswIndex compact() {
+        lock.readLock().lock();
+        try {
+            HnswIndex rebuilt = new HnswIndex(dim, m, efConstruction, source, Math.max(count - deletedCount, 1));
+            float[] buffer = new float[dim];
+            for (int node = 0; node < count; node++) {
+                if (deleted[node] || !source.read(photoIds[node], buffer)) continue;
+                rebuilt.add(photoIds[node], buffer);
+            }
+            return rebuilt;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ========== 파일 저장/로드 ==========
+
+    /**
+     * 임시 파일에 쓴 뒤 rename 해서 중간에 죽어도 기존 파일이 깨지지 않도록 함
+     */
+    public void save(File file) throws IOException {
+        lock.readLock().lock();
+        try {
+            File parent = file.getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            File tmp = new File(file.getPath() + ".tmp");
+
+            try (FileOutputStream out = new FileOutputStream(tmp);
+                 FileChannel channel = out.getChannel()) {
+                ChunkWriter writer = new ChunkWriter(channel);
+                writer.putInt(FILE_MAGIC);
+                writer.putInt(FILE_VERSION);
+                writer.putInt(dim);
+                writer.putInt(m);
+                writer.putInt(efConstruction);
+                writer.putInt(count);
+                writer.putInt(entryPoint);
+                writer.putInt(maxLevel);
+
+                // 노드 메타 + 링크
+                for (int node = 0; node < count; node++) {
+                    writer.putInt(photoIds[node]);
+                    writer.putInt(deleted[node] ? 1 : 0);
+                    writer.putInt(levels[node]);
+                    for (int l = 0; l <= levels[node]; l++) {
+                        int[] neighbors = links[node][l];
+                        writer.putInt(neighbors[0]);
+                        for (int i = 1; i <= neighbors[0]; i++) {
+                            writer.putInt(neighbors[i]);
+                        }
+                    }
+                }
+                writer.flush();
+                out.getFD().sync();
+            }
+
+            if (!tmp.renameTo(file)) {
+                throw new IOException("인덱스 파일 교체 실패: " + file);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 파일에서 그래프 로드. 형식/차원이 맞지 않으면 null (이전 버전 파일도 null → 호출 측에서 재구성)
+     */
+    public static HnswIndex load(File file, int expectedDim, VectorSource source) throws IOException {
+        if (!file.exists()) return null;
+
+        try (FileInputStream in = new FileInputStream(file);
+             FileChannel channel = in.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.getInt() != FILE_MAGIC || buffer.getInt() != FILE_VERSION) {
+                Log.w(TAG, "⚠️ 인덱스 파일 형식 불일치: " + file);
+                return null;
+            }
+            int dim = buffer.getInt();
+            int m = buffer.getInt();
+            int efConstruction = buffer.getInt();
+            int count = buffer.getInt();
+            if (dim != expectedDim) {
+                Log.w(TAG, "⚠️ 인덱스 차원 불일치: " + dim + " != " + expectedDim);
+                return null;
+            }
+
+            HnswIndex index = new HnswIndex(dim, m, efConstruction, source, Math.max(count, 1));
+            index.count = count;
+            index.entryPoint = buffer.getInt();
+            index.maxLevel = buffer.getInt();
+
+
+            for (int node = 0; node < count; node++) {
+                index.photoIds[node] = buffer.getInt();
+                index.deleted[node] = buffer.getInt() != 0;
+                int level = buffer.getInt();
+                index.levels[node] = level;
+                index.links[node] = new int[level + 1][];
+                for (int l = 0; l <= level; l++) {
+                    int[] neighbors = new int[1 + (l == 0 ? index.maxM0 : index.m)];
+                    neighbors[0] = buffer.getInt();
+                    for (int i = 1; i <= neighbors[0]; i++) {
+                        neighbors[i] = buffer.getInt();
+                    }
+                    index.links[node][l] = neighbors;
+                }
+
+                if (index.deleted[node]) {
+                    index.deletedCount++;
+                } else {
+                    index.nodeByPhotoId.put(index.photoIds[node], node);
+                }
+            }
+            return index;
+        }
+    }
+
+    // ========== 내부 구현 ==========
+
+    private int randomLevel() {
+        double r = random.nextDouble();
+        if (r == 0) r = Double.MIN_VALUE;
+        return (int) (-Math.log(r) * levelMult);
+    }
+
+    /**
+     * 한 레벨 안에서 ef 개 후보를 찾는 best-first 탐색.
+     * 반환: 유사도 최소 힙 (가장 먼 후보가 루트)
+     */
+    private LongHeap searchLayer(float[] query, int entry, int ef, int level) {
+        VisitedList visited = visitedList();
+        visited.reset(count);
+
+        LongHeap candidates = new LongHeap(ef * 2, true);  // 가까운 순
+        LongHeap results = new LongHeap(ef + 1, false);    // 먼 순
+
+        long first = encode(dot(query, entry), entry);
+        candidates.push(first);
+        results.push(first);
+        visited.mark(entry);
+
+        while (candidates.size() > 0) {
+            long closest = candidates.poll();
+            if (results.size() >= ef && simOf(closest) < simOf(results.peek())) {
+                break;
+            }
+
+            int[] neighbors = links[nodeOf(closest)][level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                int neighbor = neighbors[i];
+                if (visited.isMarked(neighbor)) continue;
+                visited.mark(neighbor);
+
+                float sim = dot(query, neighbor);
+                if (results.size() < ef || sim > simOf(results.peek())) {
+                    long entryKey = encode(sim, neighbor);
+                    candidates.push(entryKey);
+                    results.push(entryKey);
+                    if (results.size() > ef) results.poll();
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 휴리스틱 이웃 선택: 이미 고른 이웃보다 질의에 더 가까운 후보만 채택해서
+     * 그래프가 한쪽 군집에 몰리지 않도록 함
+     */
+    private int[] selectNeighbors(LongHeap candidates, int maxCount) {
+        int n = candidates.size();
+        int[] nodes = new int[n];
+        float[] sims = new float[n];
+        for (int i = n - 1; i >= 0; i--) {
+            long top = candidates.poll();
+            nodes[i] = nodeOf(top);
+            sims[i] = simOf(top);
+        }
+
+        int[] selected = new int[Math.min(maxCount, n)];
+        int size = 0;
+        for (int i = 0; i < n && size < selected.length; i++) {
+            // 벡터를 못 읽는 후보는 휴리스틱에서 빼고 아래 보충 단계에서만 고려
+            boolean keep = size == 0 || source.read(photoIds[nodes[i]], scratch);
+            for (int j = 0; j < size && keep; j++) {
+                if (dot(scratch, selected[j]) > sims[i]) {
+                    keep = false;
+                }
+            }
+            if (keep) selected[size++] = nodes[i];
+        }
+        // 휴리스틱으로 너무 적게 남으면 가까운 순으로 보충
+        for (int i = 0; i < n && size < selected.length; i++) {
+            boolean exists = false;
+            for (int j = 0; j < size; j++) {
+                if (selected[j] == nodes[i]) {
+                    exists = true;
+                    break;
+                }
+            }
+            if (!exists) selected[size++] = nodes[i];
+        }
+        return Arrays.copyOf(selected, size);
+    }
+
+    /**
+     * neighbor -> node 방향 링크 추가. 가득 차면 가장 먼 링크를 교체
+     * node 는 지금 삽입 중인 노드라 벡터를 인자로 받음
+     */
+    private void connect(int neighbor, int node, float[] nodeVector, int level, int maxNeighbors) {
+        int[] neighborLinks = links[neighbor][level];
+        int size = neighborLinks[0];
+        if (size < maxNeighbors) {
+            neighborLinks[size + 1] = node;
+            neighborLinks[0] = size + 1;
+            return;
+        }
+
+        if (!source.read(photoIds[neighbor], scratch)) return;
+        int weakest = -1;
+        float weakestSim = SimilarityUtil.dot(scratch, 0, nodeVector, 0, dim);
+        for (int i = 1; i <= size; i++) {
+            float sim = dot(scratch, neighborLinks[i]);
+            if (sim < weakestSim) {
+                weakestSim = sim;
+                weakest = i;
+            }
+        }
+        if (weakest > 0) {
+            neighborLinks[weakest] = node;
+        }
+    }
+
+    private float dot(float[] query, int node) {
+        return source.dot(query, photoIds[node]);
+    }
+
+    /**
+     * 정규화된 저장 벡터에 같은 크기의 가우시안 잡음을 더하고 다시 정규화 (재현율 측정 질의용)
+     */
+    static void perturbForRecall(float[] vector, Random random) {
+        float noise = RECALL_QUERY_NOISE / (float) Math.sqrt(vector.length);
+        for (int d = 0; d < vector.length; d++) {
+            vector[d] += noise * (float) random.nextGaussian();
+        }
+        SimilarityUtil.normalizeInPlace(vector, 0, vector.length);
+    }
+
+    /**
+     * ids 에서 photoId 를 빼고 앞에서부터 최대 k 개
+     */
+    static int[] withoutPhoto(int[] ids, int photoId, int k) {
+        int[] kept = new int[Math.min(k, ids.length)];
+        int size = 0;
+        for (int i = 0; i < ids.length && size < kept.length; i++) {
+            if (ids[i] != photoId) kept[size++] = ids[i];
+        }
+        return Arrays.copyOf(kept, size);
+    }
+
+    private VisitedList visitedList() {
+        VisitedList visited = visitedLists.get();
+        if (visited == null) {
+            visited = new VisitedList();
+            visitedLists.set(visited);
+        }
+        return visited;
+    }
+
+    // 유사도(정렬 가능한 int 비트) + 노드 번호를 long 하나로 묶음
+    private static long encode(float sim, int node) {
+        int bits = Float.floatToIntBits(sim);
+        bits ^= (bits >> 31) & 0x7fffffff;
+        return ((long) bits << 32) | (node & 0xffffffffL);
+    }
+
+    private static float simOf(long key) {
+        int bits = (int) (key >> 32);
+        bits ^= (bits >> 31) & 0x7fffffff;
+        return Float.intBitsToFloat(bits);
+    }
+
+    private static int nodeOf(long key) {
+        return (int) key;
+    }
+
+    /**
+     * long 키 이진 힙 (max=true 면 최대 힙)
+     */
+    private static final class LongHeap {
+        private long[] items;
+        private int size;
+        private final boolean max;
+
+        LongHeap(int capacity, boolean max) {
+            this.items = new long[Math.max(capacity, 4)];
+            this.max = max;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long peek() {
+            return items[0];
+        }
+
+        void push(long value) {
+            if (size == items.length) items = Arrays.copyOf(items, size * 2);
+            int i = size++;
+            items[i] = value;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(items[i], items[parent])) break;
+                long t = items[i];
+                items[i] = items[parent];
+                items[parent] = t;
+                i = parent;
+            }
+        }
+
+        long poll() {
+            long top = items[0];
+            items[0] = items[--size];
+            int i = 0;
+            while (true) {
+                int left = 2 * i + 1;
+                if (left >= size) break;
+                int best = left;
+                if (left + 1 < size && before(items[left + 1], items[left])) best = left + 1;
+                if (!before(items[best], items[i])) break;
+                long t = items[i];
+                items[i] = items[best];
+                items[best] = t;
+                i = best;
+            }
+            return top;
+        }
+
+        private boolean before(long a, long b) {
+            return max ? a > b : a < b;
+        }
+    }
+
+    /**
+     * epoch 방식 방문 표시 (매 검색마다 배열을 지우지 않음)
+     */
+    private static final class VisitedList {
+        private int[] marks = new int[0];
+        private int epoch = 0;
+
+        void reset(int capacity) {
+            if (marks.length < capacity) {
+                marks = new int[Math.max(capacity, marks.length * 2)];
+                epoch = 0;
+            }
+            epoch++;
+            if (epoch == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                epoch = 1;
+            }
+        }
+
+        void mark(int node) {
+            marks[node] = epoch;
+        }
+
+        boolean isMarked(int node) {
+            return marks[node] == epoch;
+        }
+    }
+
+    /**
+     * 고정 크기 ByteBuffer 로 모아서 채널에 쓰는 도우미
+     */
+    private static final class ChunkWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+
+        ChunkWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            if (buffer.remaining() < 4) flush();
+            buffer.putInt(value);
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,326 @@
+// service/HybridSearchService.java
+package com.example.wakey.service;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.wakey.data.local.AppDatabase;
+import com.example.wakey.data.local.Photo;
+import com.example.wakey.data.local.PhotoDao;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 하이브리드 검색 (날짜 / 지역 / 해시태그 필터 + CLIP 자유 텍스트)
+ * - "2024 부산 바다 #beach" → 날짜 2024년, 지역 "부산", 해시태그 "beach", CLIP 텍스트 "바다"
+ * - 인덱스를 타는 필터를 먼저 실행해서 후보 집합을 만들고, 후보만 벡터 유사도로 채점
+ * - 필터가 없으면 VectorIndex 전체 검색, CLIP 텍스트가 없으면 필터 결과를 최신순으로 반환
+ * - 최종 점수 = CLIP 유사도 + 검색어 단어가 해시태그/객체 라벨에 있으면 가산점
+ */
+public class HybridSearchService {
+    private static final String TAG = "HybridSearchService";
+    private static HybridSearchService instance;
+
+    private static final int SQL_BATCH_SIZE = 900;        // SQLite IN 절 변수 제한(999) 이하
+    private static final int MIN_REGION_LENGTH = 2;
+    private static final float KEYWORD_MATCH_BONUS = 0.05f;
+    private static final float FILTER_ONLY_SCORE = 1f;
+    private static final int RERANK_POOL_FACTOR = 2;       // 가산점 반영 전 k * N 개 채점
+
+    private static final Pattern FULL_DATE = Pattern.compile("(\\d{4})[-./](\\d{1,2})[-./](\\d{1,2})");
+    private static final Pattern YEAR_MONTH = Pattern.compile("(\\d{4})[-./](\\d{1,2})");
+    private static final Pattern YEAR = Pattern.compile("(\\d{4})년?");
+    private static final Pattern MONTH = Pattern.compile("(\\d{1,2})월");
+
+    private final Context context;
+
+    /**
+     * 파싱된 검색어. 날짜는 [dateFrom, dateTo) 문자열 범위 ("yyyy-MM-dd")
+     */
+    public static class ParsedQuery {
+        public String dateFrom;
+        public String dateTo;
+        public final List<String> regions = new ArrayList<>();
+        public final List<String> hashtags = new ArrayList<>();
+        public final List<String> keywords = new ArrayList<>();
+
+        public boolean hasFilters() {
+            return dateFrom != null || !regions.isEmpty() || !hashtags.isEmpty();
+        }
+
+        public String clipText() {
+            return String.join(" ", keywords);
+        }
+
+        @Override
+        public String toString() {
+            return "date=[" + dateFrom + ", " + dateTo + ") regions=" + regions
+                    + " hashtags=" + hashtags + " clip=\"" + clipText() + "\"";
+        }
+    }
+
+    private HybridSearchService(Context context) {
+        this.context = context;
+    }
+
+    public static synchronized HybridSearchService getInstance(Context context) {
+        if (instance == null) {
+            instance = new HybridSearchService(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * 검색 실행 (백그라운드 스레드에서 호출). 결과는 점수 내림차순
+     */
+    public List<VectorIndex.Hit> search(String query, int k, float threshold) throws IOException {
+        long start = System.nanoTime();
+        PhotoDao photoDao = AppDatabase.getInstance(context).photoDao();
+        ParsedQuery parsed = parse(query, photoDao.getAllRegionNames());
+        Log.d(TAG, "🧭 검색어 해석: " + parsed);
+
+        List<VectorIndex.Hit> hits;
+        if (!parsed.hasFilters()) {
+            // 필터 없음 → 기존 CLIP 전체 검색 (결과 캐시 사용)
+            hits = parsed.keywords.isEmpty() ? new ArrayList<>()
+                    : TextEmbeddingService.getInstance(context).search(parsed.clipText(), k, threshold);
+        } else {
+            Set<Integer> candidates = filterCandidates(photoDao, parsed);
+            Log.d(TAG, "🔎 필터 후보: " + candidates.size() + "개");
+
+            if (candidates.isEmpty()) {
+                hits = new ArrayList<>();
+            } else if (parsed.keywords.isEmpty()) {
+                hits = newestFirst(photoDao, candidates, k);
+            } else {
+                float[] textVec = TextEmbeddingService.getInstance(context).getTextEmbedding(parsed.clipText());
+                VectorIndex vectorIndex = VectorIndex.getInstance(context);
+                vectorIndex.ensureLoaded();
+                hits = vectorIndex.searchWithin(textVec, candidates, k * RERANK_POOL_FACTOR, threshold);
+            }
+        }
+
+        if (!parsed.keywords.isEmpty()) {
+            hits = applyKeywordBonus(photoDao, hits, parsed.keywords);
+        }
+        if (hits.size() > k) {
+            hits = new ArrayList<>(hits.subList(0, k));
+        }
+
+        Log.d(TAG, "✅ 하이브리드 검색 완료: " + hits.size() + "개 ("
+                + (System.nanoTime() - start) / 1_000_000 + "ms)");
+        return hits;
+    }
+
+    /**
+     * 검색어를 필터와 CLIP 텍스트로 분리
+     * knownRegions 는 DB 에 있는 지역명 (도/시/구/국가), 단어가 지역명의 접두어면 지역 필터로 사용
+     */
+    public static ParsedQuery parse(String query, Collection<String> knownRegions) {
+        ParsedQuery parsed = new ParsedQuery();
+        String[] tokens = query.trim().split("\\s+");
+        int year = -1;
+        int month = -1;
+
+        for (String token : tokens) {
+            if (token.isEmpty()) continue;
+
+            if (token.startsWith("#")) {
+                String tag = token.substring(1);
+                if (!tag.isEmpty()) parsed.hashtags.add(tag);
+                continue;
+            }
+
+            Matcher matcher = FULL_DATE.matcher(token);
+            if (matcher.matches()) {
+                int y = Integer.parseInt(matcher.group(1));
+                int m = Integer.parseInt(matcher.group(2));
+                int d = Integer.parseInt(matcher.group(3));
+                if (isValidDate(y, m, d)) {
+                    parsed.dateFrom = String.format(Locale.ROOT, "%04d-%02d-%02d", y, m, d);
+                    parsed.dateTo = nextDay(y, m, d);
+                    year = -1;
+                    continue;
+                }
+            }
+
+            matcher = YEAR_MONTH.matcher(token);
+            if (matcher.matches() && isValidDate(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)), 1)) {
+                year = Integer.parseInt(matcher.group(1));
+                month = Integer.parseInt(matcher.group(2));
+                continue;
+            }
+
+            matcher = YEAR.matcher(token);
+            if (matcher.matches() && isValidDate(Integer.parseInt(matcher.group(1)), 1, 1)) {
+                year = Integer.parseInt(matcher.group(1));
+                continue;
+            }
+
+            // "2024년 5월" 처럼 연도 뒤에 오는 월
+            matcher = MONTH.matcher(token);
+            if (matcher.matches() && year > 0) {
+                int m = Integer.parseInt(matcher.group(1));
+                if (m >= 1 && m <= 12) {
+                    month = m;
+                    continue;
+                }
+            }
+
+            if (isRegion(token, knownRegions)) {
+                parsed.regions.add(token);
+                continue;
+            }
+
+            parsed.keywords.add(token);
+        }
+
+        if (year > 0 && parsed.dateFrom == null) {
+            if (month > 0) {
+                parsed.dateFrom = String.format(Locale.ROOT, "%04d-%02d-01", year, month);
+                parsed.dateTo = month == 12
+                        ? String.format(Locale.ROOT, "%04d-01-01", year + 1)
+                        : String.format(Locale.ROOT, "%04d-%02d-01", year, month + 1);
+            } else {
+                parsed.dateFrom = String.format(Locale.ROOT, "%04d-01-01", year);
+                parsed.dateTo = String.format(Locale.ROOT, "%04d-01-01", year + 1);
+            }
+        }
+        return parsed;
+    }
+
+    // ========== 필터 ==========
+
+    /**
+     * 필터별 후보 ID 를 구해 교집합. 지역이 여러 개면 합집합 후 교집합
+     */
+    private Set<Integer> filterCandidates(PhotoDao photoDao, ParsedQuery parsed) {
+        List<Set<Integer>> sets = new ArrayList<>();
+
+        if (parsed.dateFrom != null) {
+            sets.add(new HashSet<>(photoDao.getPhotoIdsInDateRange(parsed.dateFrom, parsed.dateTo)));
+        }
+        if (!parsed.regions.isEmpty()) {
+            Set<Integer> regionIds = new HashSet<>();
+            for (String region : parsed.regions) {
+                regionIds.addAll(photoDao.getPhotoIdsByRegionPrefix(region, region + '\uffff'));
+            }
+            sets.add(regionIds);
+        }
+        for (String hashtag : parsed.hashtags) {
+            sets.add(new HashSet<>(photoDao.getPhotoIdsByHashtag(hashtag)));
+        }
+
+        // 가장 작은 집합부터 교집합
+        Collections.sort(sets, (a, b) -> Integer.compare(a.size(), b.size()));
+        Set<Integer> result = new HashSet<>(sets.get(0));
+        for (int i = 1; i < sets.size() && !result.isEmpty(); i++) {
+            result.retainAll(sets.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * CLIP 텍스트 없이 필터만 있을 때: 후보를 최신순으로 k 개
+     * 정렬/LIMIT 은 SQL 에서 (IN 절 묶음마다 상위 k 개만 읽고 합쳐서 다시 상위 k 개)
+     */
+    private List<VectorIndex.Hit> newestFirst(PhotoDao photoDao, Set<Integer> candidates, int k) {
+        List<Integer> all = new ArrayList<>(candidates);
+        List<PhotoDao.DatedId> newest = new ArrayList<>();
+        for (int from = 0; from < all.size(); from += SQL_BATCH_SIZE) {
+            newest.addAll(photoDao.getNewestIds(all.subList(from, Math.min(from + SQL_BATCH_SIZE, all.size())), k));
+        }
+        if (all.size() > SQL_BATCH_SIZE) {
+            Collections.sort(newest, (a, b) -> compareNullable(b.dateTaken, a.dateTaken));
+        }
+
+        List<VectorIndex.Hit> hits = new ArrayList<>();
+        for (int i = 0; i < newest.size() && i < k; i++) {
+            hits.add(new VectorIndex.Hit(newest.get(i).id, FILTER_ONLY_SCORE));
+        }
+        return hits;
+    }
+
+    /**
+     * 검색어 단어가 사진 해시태그/객체 라벨에 있으면 가산점 후 재정렬
+     */
+    private List<VectorIndex.Hit> applyKeywordBonus(PhotoDao photoDao, List<VectorIndex.Hit> hits,
+                                                    List<String> keywords) {
+        if (hits.isEmpty()) return hits;
+
+        List<Integer> ids = new ArrayList<>(hits.size());
+        for (VectorIndex.Hit hit : hits) ids.add(hit.photoId);
+        Map<Integer, Photo> photoById = new HashMap<>();
+        for (Photo photo : loadPhotos(photoDao, ids)) {
+            photoById.put(photo.id, photo);
+        }
+
+        List<VectorIndex.Hit> boosted = new ArrayList<>(hits.size());
+        for (VectorIndex.Hit hit : hits) {
+            Photo photo = photoById.get(hit.photoId);
+            float score = hit.score;
+            if (photo != null) {
+                String labels = ((photo.hashtags != null ? photo.hashtags : "") + " "
+                        + (photo.detectedObjects != null ? photo.detectedObjects : "")).toLowerCase(Locale.ROOT);
+                for (String keyword : keywords) {
+                    if (labels.contains(keyword.toLowerCase(Locale.ROOT))) {
+                        score += KEYWORD_MATCH_BONUS;
+                    }
+                }
+            }
+            boosted.add(new VectorIndex.Hit(hit.photoId, score));
+        }
+        Collections.sort(boosted, (a, b) -> Float.compare(b.score, a.score));
+        return boosted;
+    }
+
+    private List<Photo> loadPhotos(PhotoDao photoDao, Collection<Integer> ids) {
+        List<Integer> all = new ArrayList<>(ids);
+        List<Photo> photos = new ArrayList<>(all.size());
+        for (int from = 0; from < all.size(); from += SQL_BATCH_SIZE) {
+            photos.addAll(photoDao.getPhotosByIds(all.subList(from, Math.min(from + SQL_BATCH_SIZE, all.size()))));
+        }
+        return photos;
+    }
+
+    // ========== 파싱 도우미 ==========
+
+    private static boolean isRegion(String token, Collection<String> knownRegions) {
+        if (token.length() < MIN_REGION_LENGTH || knownRegions == null) return false;
+        for (String region : knownRegions) {
+            if (region != null && region.startsWith(token)) return true;
+        }
+        return false;
+    }
+
+    private static boolean isValidDate(int year, int month, int day) {
+        return year >= 1900 && year <= 2100 && month >= 1 && month <= 12 && day >= 1 && day <= 31;
+    }
+
+    private static String nextDay(int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month - 1, day);
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        return String.format(Locale.ROOT, "%04d-%02d-%02d", calendar.get(Calendar.YEAR),
+                calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DAY_OF_MONTH));
+    }
+
+    private static int compareNullable(String a, String b) {
+        if (a == null) return b == null ? 0 : -1;
+        if (b == null) return 1;
+        return a.compareTo(b);
+    }
+}
@@ -0,0 +1,596 @@
+package com.example.wakey.service;
+
+import android.Manifest;
+import android.content.ContentUris;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.provider.MediaStore;
+import android.util.Log;
+import android.util.Pair;
+
+import com.example.wakey.data.local.AppDatabase;
+import com.example.wakey.data.local.EmbeddingStore;
+import com.example.wakey.data.local.IndexingCheckpoint;
+import com.example.wakey.data.local.IndexingDao;
+import com.example.wakey.data.local.IndexingTask;
+import com.example.wakey.data.local.Photo;
+import com.example.wakey.data.repository.ImageRepository;
+import com.example.wakey.tflite.ImageClassifier;
+import com.example.wakey.tflite.InferenceBackendSelector;
+import com.example.wakey.util.ImageUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 사진 인덱싱 백그라운드 작업 (액티비티와 무관하게 앱 프로세스에서 실행)
+ * 1) 해시태그 없는 기존 사진: 저장된 CLIP 임베딩으로 제로샷 태그, 임베딩이 없으면 MobileNet 분류
+ *    라벨 사전이 바뀌었으면 임베딩이 있는 사진 전체를 다시 태그
+ * 2) 신규 사진: MediaStore GENERATION_ADDED 순서로 체크포인트 이후 사진만 IngestionPipeline 으로 저장
+ * 3) 마무리: dHash 보충, 검색 인덱스/임베딩 파일 저장, 임베딩 재계산 작업 시작
+ * - 진행 위치는 IndexingCheckpoint, 사진별 단계 상태와 실패 횟수는 IndexingTask 테이블에 저장
+ *   → 앱이 종료돼도 다음 실행 때 이어서 진행, 실패한 사진은 지수 백오프 후 재시도
+ * - 진행 상황은 ProgressListener 로 메인 스레드에 전달 (등록하면 현재 상태를 바로 한 번 받음)
+ * - MediaStore 변경을 감지하면 잠시 기다렸다가 다시 실행
+ */
+public class IndexingJob {
+    private static final String TAG = "IndexingJob";
+    private static IndexingJob instance;
+
+    public static final String STAGE_HASHTAGS = "hashtags";
+    public static final String STAGE_INGEST = "ingest";
+    public static final String STAGE_DHASH = "dhash";
+
+    private static final int MAX_PHOTOS_PER_BATCH = 10;            // MobileNet 분류 한 번에 처리할 최대 사진 수
+    private static final int MAX_ZERO_SHOT_TAGS_PER_BATCH = 500;   // 제로샷 태그 한 번에 처리할 최대 사진 수 (SQLite 변수 개수 제한 이하)
+    private static final int INGEST_CHUNK_SIZE = 32;               // 파이프라인 한 번 실행 + 체크포인트 갱신 단위
+    private static final int MAX_HASH_BACKFILL_PER_RUN = 200;      // 한 번에 dHash 를 보충할 최대 사진 수
+    private static final long BATCH_PAUSE_MS = 200;                // 배치 사이 휴식 (UI/다른 작업 부하 감소)
+
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long BASE_BACKOFF_MS = 60_000L;           // 1분, 2분, 4분 ...
+    private static final long MAX_BACKOFF_MS = 24 * 60 * 60_000L;  // 최대 하루
+    private static final long MEDIA_CHANGE_DELAY_MS = 10_000L;     // 연속 촬영/복사 중에는 한 번만 실행되도록 대기
+
+    public enum Phase {
+        IDLE,
+        HASHTAGS,
+        INGEST,
+        FINALIZE,
+        FINISHED
+    }
+
+    /**
+     * 진행 상황 (불변)
+     */
+    public static final class Progress {
+        public final Phase phase;
+        public final int processed;
+        public final int total;     // 현재 단계에서 처리할 사진 수 (시작 시점 기준)
+        public final int failed;
+        public final boolean running;
+
+        Progress(Phase phase, int processed, int total, int failed, boolean running) {
+            this.phase = phase;
+            this.processed = processed;
+            this.total = total;
+            this.failed = failed;
+            this.running = running;
+        }
+
+        @Override
+        public String toString() {
+            return phase + " " + processed + "/" + total + (failed > 0 ? " (실패 " + failed + ")" : "");
+        }
+    }
+
+    public interface ProgressListener {
+        void onProgress(Progress progress);
+
+        // 한 번의 실행이 끝까지 완료됐을 때만 호출 (중단되면 호출하지 않음)
+        void onFinished(Progress progress);
+    }
+
+    private final Context context;
+    private final AppDatabase db;
+    private final IndexingDao indexingDao;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "indexing-job");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<ProgressListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile boolean cancelled = false;
+    private volatile boolean rerunRequested = false;
+    private volatile Progress progress = new Progress(Phase.IDLE, 0, 0, 0, false);
+    private ContentObserver mediaObserver;
+
+    private final Runnable startRunnable = this::start;
+
+    private IndexingJob(Context context) {
+        this.context = context;
+        this.db = AppDatabase.getInstance(context);
+        this.indexingDao = db.indexingDao();
+    }
+
+    public static synchronized IndexingJob getInstance(Context context) {
+        if (instance == null) {
+            instance = new IndexingJob(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * 작업 시작 (이미 실행 중이면 끝난 뒤 한 번 더 실행). 처리할 사진이 없으면 바로 끝남
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            rerunRequested = true;
+            return false;
+        }
+        cancelled = false;
+        rerunRequested = false;
+        executor.execute(() -> {
+            boolean completed = false;
+            try {
+                completed = runJob();
+            } catch (Exception e) {
+                Log.e(TAG, "❌ 인덱싱 작업 실패", e);
+            } finally {
+                running.set(false);
+                Progress last = progress;
+                publish(new Progress(completed ? Phase.FINISHED : Phase.IDLE,
+                        last.processed, last.total, last.failed, false), completed);
+                if (rerunRequested && !cancelled) {
+                    start();
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * delayMs 후 시작 (앱 시작 직후 UI 와 경쟁하지 않도록). 다시 호출하면 대기 시간을 새로 시작
+     */
+    public void startDelayed(long delayMs) {
+        mainHandler.removeCallbacks(startRunnable);
+        mainHandler.postDelayed(startRunnable, delayMs);
+    }
+
+    /**
+     * 현재 배치가 끝나는 대로 중단 (진행 위치는 유지되어 다음 start 때 이어서 진행)
+     */
+    public void cancel() {
+        cancelled = true;
+        mainHandler.removeCallbacks(startRunnable);
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public Progress getProgress() {
+        return progress;
+    }
+
+    /**
+     * 리스너 등록 (메인 스레드에서 현재 상태를 바로 한 번 전달)
+     */
+    public void addProgressListener(ProgressListener listener) {
+        listeners.add(listener);
+        mainHandler.post(() -> {
+            if (listeners.contains(listener)) {
+                listener.onProgress(progress);
+            }
+        });
+    }
+
+    public void removeProgressListener(ProgressListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * MediaStore 이미지 변경 감시 시작 (새 사진이 생기면 MEDIA_CHANGE_DELAY_MS 후 다시 실행)
+     */
+    public synchronized void watchMediaStore() {
+        if (mediaObserver != null) return;
+        mediaObserver = new ContentObserver(mainHandler) {
+            @Override
+            public void onChange(boolean selfChange) {
+                startDelayed(MEDIA_CHANGE_DELAY_MS);
+            }
+        };
+        context.getContentResolver().registerContentObserver(
+                MediaStore.Images.Media.EXTERNAL_CONTENT_URI, true, mediaObserver);
+    }
+
+    /**
+     * 끝까지 처리했으면 true, 중단됐으면 false
+     */
+    private boolean runJob() throws InterruptedException {
+        // 앱 시작 시 백엔드 측정 중이면 끝난 뒤에 추론 시작 (측정 시간이 인덱싱 부하로 왜곡되지 않도록)
+        InferenceBackendSelector.getInstance(context).awaitCalibration();
+        Log.d(TAG, "🚀 인덱싱 작업 시작");
+        if (!tagPhotosWithoutHashtags()) return false;
+        // 라벨 사전이 바뀌었으면(앱 업데이트) 저장된 임베딩으로 자동 생성 해시태그를 다시 만듦 (모델 추론 없이 수 초)
+        ZeroShotTagger.getInstance(context).retagIfLabelsChanged();
+
+        if (!hasMediaPermission()) {
+            // 권한이 없으면 체크포인트를 건드리지 않고 종료 (권한 허용 후 다시 start)
+            Log.w(TAG, "⚠️ 사진 읽기 권한 없음, 신규 사진 스캔 생략");
+            return false;
+        }
+        if (!ingestNewPhotos()) return false;
+
+        publish(new Progress(Phase.FINALIZE, 0, 0, 0, true), false);
+        backfillMissingHashes();
+
+        // 사진 행이 사라진(중복 정리 등) 임베딩은 tombstone 처리 → 아래 압축에서 파일에서도 제거
+        removeOrphanedEmbeddings();
+
+        // 검색 인덱스/임베딩 파일 변경분 저장, tombstone 이 많으면 압축
+        VectorIndex.getInstance(context).persist();
+        EmbeddingStore.getInstance(context).flush();
+        EmbeddingStore.getInstance(context).compactIfNeeded();
+
+        // 임베딩이 없거나 이전 모델 것인 사진은 별도 작업에서 배치로 다시 인코딩 (중단 시 이어서)
+        ReembeddingService.getInstance(context).start();
+
+        Log.d(TAG, "✅ 인덱싱 작업 완료");
+        return true;
+    }
+
+    /**
+     * 기존 사진 중 dHash 없는 사진에 해시 계산 + 연사 묶음 배정 (모델 추론 없음)
+     * 디코딩 못 한 사진은 실패로 기록해서 백오프 동안 조회에서 제외 (촬영 순서 앞쪽의 깨진 사진이 매번 limit 을 채우지 않도록)
+     */
+    private void backfillMissingHashes() {
+        List<Photo> photos = db.photoDao().getPhotosWithoutHash(STAGE_DHASH,
+                IndexingTask.STATUS_FAILED, MAX_ATTEMPTS, System.currentTimeMillis(), MAX_HASH_BACKFILL_PER_RUN);
+        Map<String, String> failures = new HashMap<>();
+        BurstGroupService.getInstance(context).backfillHashes(photos, failures);
+        recordFailures(STAGE_DHASH, failures);
+    }
+
+    /**
+     * Photo 테이블에 없는 사진의 임베딩을 DB / 임베딩 파일 / 검색 인덱스에서 제거
+     * DB 행을 먼저 지워서 다음 실행의 ensureOpen 개수 비교가 어긋나지 않도록 함
+     */
+    private void removeOrphanedEmbeddings() {
+        EmbeddingStore store = EmbeddingStore.getInstance(context);
+        store.ensureOpen();
+        EmbeddingStore.View view = store.view();
+        if (view == null) return;
+
+        Set<Integer> photoIds = new HashSet<>(db.photoDao().getAllPhotoIds());
+        VectorIndex vectorIndex = VectorIndex.getInstance(context);
+        int removed = 0;
+        for (int record = 0; record < view.recordCount(); record++) {
+            if (!view.isLive(record)) continue;
+            int photoId = view.photoIdAt(record);
+            if (photoIds.contains(photoId)) continue;
+
+            db.photoEmbeddingDao().deleteEmbeddingsForPhoto(photoId);
+            store.markDeleted(photoId);
+            vectorIndex.remove(photoId);
+            removed++;
+        }
+        if (removed > 0) {
+            Log.d(TAG, "🗑️ 사진이 없는 임베딩 정리: " + removed + "개");
+        }
+    }
+
+    // ===== 1) 해시태그 없는 기존 사진 =====
+
+    /**
+     * 저장된 CLIP 임베딩이 있으면 라벨 행렬 곱으로 바로 태그, 없는 사진만 MobileNet 으로 분류
+     * 태그를 못 만든 사진은 실패로 기록해서 백오프 동안 조회에서 제외 (같은 사진 무한 반복 방지)
+     */
+    private boolean tagPhotosWithoutHashtags() throws InterruptedException {
+        ZeroShotTagger zeroShotTagger = ZeroShotTagger.getInstance(context);
+        boolean zeroShotReady = zeroShotTagger.ensureLoaded();
+        int batchLimit = zeroShotReady ? MAX_ZERO_SHOT_TAGS_PER_BATCH : MAX_PHOTOS_PER_BATCH;
+
+        int total = db.photoDao().countPhotosToTag(STAGE_HASHTAGS, IndexingTask.STATUS_FAILED, MAX_ATTEMPTS, System.currentTimeMillis());
+        if (total == 0) return true;
+        Log.d(TAG, "해시태그 없는 사진 수: " + total);
+
+        int processed = 0;
+        int failed = 0;
+        int zeroShotCount = 0;
+        publish(new Progress(Phase.HASHTAGS, 0, total, 0, true), false);
+
+        ImageClassifier classifier = null;
+        try {
+            while (!cancelled) {
+                List<Photo> photos = db.photoDao().getPhotosToTag(STAGE_HASHTAGS,
+                        IndexingTask.STATUS_FAILED, MAX_ATTEMPTS, System.currentTimeMillis(), batchLimit);
+                if (photos.isEmpty()) break;
+
+                List<IndexingTask> done = new ArrayList<>();
+                Map<String, String> failures = new HashMap<>();
+                for (Photo photo : photos) {
+                    if (cancelled) break;
+                    try {
+                        // 저장된 임베딩으로 제로샷 태그 (인터프리터 실행 없음)
+                        String hashtags = zeroShotReady ? zeroShotTagger.hashtagsFor(photo.id) : null;
+                        if (hashtags != null && !hashtags.isEmpty()) {
+                            zeroShotCount++;
+                        } else {
+                            // 임베딩이 없는 사진만 MobileNet 분류 (분류기는 필요할 때 한 번만 생성)
+                            if (classifier == null) {
+                                try {
+                                    classifier = new ImageClassifier(context);
+                                } catch (Exception e) {
+                                    Log.e(TAG, "이미지 분류기 초기화 실패", e);
+                                    return false;
+                                }
+                            }
+                            hashtags = classify(classifier, photo);
+                        }
+
+                        if (hashtags == null || hashtags.isEmpty()) {
+                            failures.put(photo.filePath, "해시태그 없음");
+                        } else {
+                            db.photoDao().updateGeneratedHashtags(photo.filePath, hashtags);
+                            done.add(new IndexingTask(photo.filePath, STAGE_HASHTAGS,
+                                    IndexingTask.STATUS_DONE, System.currentTimeMillis()));
+                        }
+                    } catch (Exception e) {
+                        Log.e(TAG, "사진 처리 중 오류: " + photo.filePath, e);
+                        failures.put(photo.filePath, String.valueOf(e.getMessage()));
+                    }
+                }
+
+                if (!done.isEmpty()) {
+                    indexingDao.upsertTasks(done);
+                }
+                recordFailures(STAGE_HASHTAGS, failures);
+                processed += done.size();
+                failed += failures.size();
+                publish(new Progress(Phase.HASHTAGS, processed, total, failed, true), false);
+
+                Thread.sleep(BATCH_PAUSE_MS);
+            }
+        } finally {
+            if (classifier != null) {
+                classifier.close();
+            }
+        }
+
+        Log.d(TAG, "해시태그 " + processed + "개 생성 (제로샷 " + zeroShotCount + "개), 실패 " + failed + "개");
+        return !cancelled;
+    }
+
+    private String classify(ImageClassifier classifier, Photo photo) {
+        Bitmap bitmap = ImageUtils.decodeForModel(context, Uri.parse(photo.filePath), ImageClassifier.IMAGE_SIZE);
+        if (bitmap == null) return null;
+        try {
+            List<Pair<String, Float>> predictions = classifier.classifyImage(bitmap);
+            return ZeroShotTagger.toHashtags(predictions);
+        } finally {
+            // 메모리 누수 방지
+            bitmap.recycle();
+        }
+    }
+
+    // ===== 2) 신규 사진 =====
+
+    /**
+     * 체크포인트 이후에 추가된 사진 + 재시도 시각이 된 실패 사진을 청크 단위로 저장
+     * 청크마다 사진별 결과를 기록한 뒤 체크포인트를 옮기므로 중간에 종료돼도 최대 한 청크만 다시 확인
+     */
+    private boolean ingestNewPhotos() throws InterruptedException {
+        String mediaVersion = MediaStore.getVersion(context);
+        IndexingCheckpoint checkpoint = indexingDao.getCheckpoint(STAGE_INGEST);
+        if (checkpoint == null || !mediaVersion.equals(checkpoint.mediaVersion)) {
+            // 첫 실행이거나 MediaStore 가 재생성됨 → generation 이 의미 없어졌으므로 처음부터
+            if (checkpoint != null) {
+                Log.d(TAG, "MediaStore 버전 변경, 신규 사진 스캔 처음부터 다시 시작");
+            }
+            indexingDao.deleteTasks(STAGE_INGEST);
+            checkpoint = new IndexingCheckpoint();
+            checkpoint.name = STAGE_INGEST;
+            checkpoint.mediaVersion = mediaVersion;
+        }
+
+        List<String> retries = indexingDao.getRetryableUris(STAGE_INGEST,
+                IndexingTask.STATUS_FAILED, MAX_ATTEMPTS, System.currentTimeMillis(), INGEST_CHUNK_SIZE);
+        List<MediaEntry> entries = queryMediaAfter(checkpoint.lastGeneration, checkpoint.lastMediaId);
+        int total = retries.size() + entries.size();
+        if (total == 0) return true;
+        Log.d(TAG, "신규 사진 스캔 대상: " + entries.size() + "개, 재시도 " + retries.size() + "개");
+
+        EmbeddingStore.getInstance(context).ensureOpen();
+        ImageRepository repository = new ImageRepository(context);
+        IngestionPipeline pipeline = new IngestionPipeline(
+                context, repository, IngestionPipeline.Profile.forDevice(context));
+        int processed = 0;
+        int failed = 0;
+        int saved = 0;
+        publish(new Progress(Phase.INGEST, 0, total, 0, true), false);
+
+        try {
+            if (!retries.isEmpty() && !cancelled) {
+                int[] result = ingestChunk(pipeline, retries);
+                saved += result[0];
+                failed += result[1];
+                processed += retries.size();
+                publish(new Progress(Phase.INGEST, processed, total, failed, true), false);
+            }
+
+            for (int from = 0; from < entries.size() && !cancelled; from += INGEST_CHUNK_SIZE) {
+                List<MediaEntry> chunk = entries.subList(from, Math.min(entries.size(), from + INGEST_CHUNK_SIZE));
+                List<String> uris = new ArrayList<>(chunk.size());
+                for (MediaEntry entry : chunk) {
+                    uris.add(entry.uri);
+                }
+
+                int[] result = ingestChunk(pipeline, uris);
+                saved += result[0];
+                failed += result[1];
+                processed += chunk.size();
+
+                MediaEntry last = chunk.get(chunk.size() - 1);
+                checkpoint.lastGeneration = last.generation;
+                checkpoint.lastMediaId = last.id;
+                checkpoint.updatedAt = System.currentTimeMillis();
+                indexingDao.upsertCheckpoint(checkpoint);
+
+                publish(new Progress(Phase.INGEST, processed, total, failed, true), false);
+                Thread.sleep(BATCH_PAUSE_MS);
+            }
+        } finally {
+            repository.close();
+        }
+
+        Log.d(TAG, "신규 사진 " + saved + "개 저장, 실패 " + failed + "개");
+        return !cancelled;
+    }
+
+    /**
+     * 파이프라인 한 번 실행 후 사진별 완료/실패 기록. {저장된 장수, 실패 장수}
+     */
+    private int[] ingestChunk(IngestionPipeline pipeline, List<String> uriStrings) throws InterruptedException {
+        List<Uri> uris = new ArrayList<>(uriStrings.size());
+        for (String uri : uriStrings) {
+            uris.add(Uri.parse(uri));
+        }
+        int saved = pipeline.run(uris, uris.size());
+
+        // 파이프라인은 디코딩 실패 등을 건너뛰므로 DB 에 실제로 저장됐는지로 판단
+        Set<String> existing = new HashSet<>(db.photoDao().getExistingPaths(uriStrings));
+        long now = System.currentTimeMillis();
+        List<IndexingTask> done = new ArrayList<>();
+        Map<String, String> failures = new HashMap<>();
+        for (String uri : uriStrings) {
+            if (existing.contains(uri)) {
+                done.add(new IndexingTask(uri, STAGE_INGEST, IndexingTask.STATUS_DONE, now));
+            } else {
+                failures.put(uri, "저장되지 않음");
+            }
+        }
+        if (!done.isEmpty()) {
+            indexingDao.upsertTasks(done);
+        }
+        recordFailures(STAGE_INGEST, failures);
+        return new int[]{saved, failures.size()};
+    }
+
+    private static final class MediaEntry {
+        final long id;
+        final long generation;
+        final String uri;
+
+        MediaEntry(long id, long generation, String uri) {
+            this.id = id;
+            this.generation = generation;
+            this.uri = uri;
+        }
+    }
+
+    /**
+     * (GENERATION_ADDED, _ID) 가 체크포인트보다 뒤인 이미지 (오래된 것부터)
+     */
+    private List<MediaEntry> queryMediaAfter(long generation, long mediaId) {
+        List<MediaEntry> entries = new ArrayList<>();
+        String[] projection = {MediaStore.Images.Media._ID, MediaStore.MediaColumns.GENERATION_ADDED};
+        String selection = MediaStore.MediaColumns.GENERATION_ADDED + " > ? OR ("
+                + MediaStore.MediaColumns.GENERATION_ADDED + " = ? AND " + MediaStore.Images.Media._ID + " > ?)";
+        String[] args = {String.valueOf(generation), String.valueOf(generation), String.valueOf(mediaId)};
+        String sortOrder = MediaStore.MediaColumns.GENERATION_ADDED + " ASC, " + MediaStore.Images.Media._ID + " ASC";
+
+        try (Cursor cursor = context.getContentResolver().query(
+                MediaStore.Images.Media.EXTERNAL_CONTENT_URI, projection, selection, args, sortOrder)) {
+            if (cursor != null) {
+                int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media._ID);
+                int generationColumn = cursor.getColumnIndexOrThrow(MediaStore.MediaColumns.GENERATION_ADDED);
+                while (cursor.moveToNext()) {
+                    long id = cursor.getLong(idColumn);
+                    // ImageUtils.getAllImageUris 와 같은 형태의 uri (Photo.filePath 비교용)
+                    Uri uri = ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, id);
+                    entries.add(new MediaEntry(id, cursor.getLong(generationColumn), uri.toString()));
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "❌ MediaStore 조회 실패", e);
+        }
+        return entries;
+    }
+
+    private boolean hasMediaPermission() {
+        return context.checkSelfPermission(Manifest.permission.READ_MEDIA_IMAGES) == PackageManager.PERMISSION_GRANTED
+                || context.checkSelfPermission(Manifest.permission.READ_EXTERNAL_STORAGE) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    // ===== 실패 기록 =====
+
+    /**
+     * 실패 횟수를 올리고 다음 시도 시각을 지수 백오프로 미룸
+     */
+    private void recordFailures(String stage, Map<String, String> failures) {
+        if (failures.isEmpty()) return;
+        Map<String, IndexingTask> previous = new HashMap<>();
+        for (IndexingTask task : indexingDao.getTasks(new ArrayList<>(failures.keySet()), stage)) {
+            previous.put(task.uri, task);
+        }
+
+        long now = System.currentTimeMillis();
+        List<IndexingTask> tasks = new ArrayList<>(failures.size());
+        for (Map.Entry<String, String> failure : failures.entrySet()) {
+            IndexingTask task = previous.get(failure.getKey());
+            if (task == null) {
+                task = new IndexingTask(failure.getKey(), stage, IndexingTask.STATUS_FAILED, now);
+            }
+            task.status = IndexingTask.STATUS_FAILED;
+            task.attempts++;
+            task.nextAttemptAt = now + backoffMs(task.attempts);
+            task.lastError = failure.getValue();
+            task.updatedAt = now;
+            tasks.add(task);
+            if (task.attempts >= MAX_ATTEMPTS) {
+                Log.w(TAG, "⚠️ " + stage + " " + MAX_ATTEMPTS + "회 실패, 더 이상 시도하지 않음: " + task.uri);
+            }
+        }
+        indexingDao.upsertTasks(tasks);
+    }
+
+    static long backoffMs(int attempts) {
+        int shift = Math.min(Math.max(attempts - 1, 0), 20);
+        return Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << shift);
+    }
+
+    // ===== 진행 상황 전달 =====
+
+    private void publish(Progress next, boolean finished) {
+        progress = next;
+        mainHandler.post(() -> {
+            for (ProgressListener listener : listeners) {
+                listener.onProgress(next);
+                if (finished) {
+                    listener.onFinished(next);
+                }
+            }
+        });
+    }
+}
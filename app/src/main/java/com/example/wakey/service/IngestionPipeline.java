@@ -0,0 +1,555 @@
+// service/IngestionPipeline.java
+package com.example.wakey.service;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.util.Log;
+import android.util.Pair;
+
+import com.example.wakey.data.local.AppDatabase;
+import com.example.wakey.data.local.Photo;
+import com.example.wakey.data.repository.ImageRepository;
+import com.example.wakey.data.util.PerceptualHash;
+import com.example.wakey.tflite.ClipImageEncoder;
+import com.example.wakey.tflite.ImagePreprocessor;
+import com.example.wakey.tflite.Yolov8Detector;
+import com.example.wakey.util.ImageUtils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 신규 사진 수집 파이프라인
+ * 디코딩 → 전처리 → 추론 → 메타데이터/지오코딩 → DB 배치 저장
+ * - 단계마다 크기 제한 큐 + 워커 수 → 앞 단계가 빠르면 큐가 차서 자연스럽게 대기 (backpressure)
+ * - 디스크/네트워크 위주 단계(디코딩, 지오코딩)가 CPU 위주 추론과 겹쳐서 실행됨
+ * - 원본 대신 YOLO 입력(640) 크기로 바로 디코딩한 비트맵 하나를 모든 모델이 같이 사용 (EXIF 회전 적용)
+ * - 메모리에 동시에 올라가는 비트맵 수는 Profile.maxBitmapsInFlight 로 별도 제한
+ * - 추론 단계는 최대 Profile.inferenceBatchSize 장씩 모아 CLIP/MobileNet 을 [N,224,224,3] 한 번에 실행
+ * - 단계별 처리 수/작업 시간을 모아 끝날 때 로그로 출력
+ */
+public class IngestionPipeline {
+    private static final String TAG = "IngestionPipeline";
+
+    private static final long WRITE_FLUSH_MS = 500;    // 배치가 덜 찼어도 이 시간 동안 새 항목이 없으면 저장
+    private static final long BATCH_LINGER_MS = 50;    // 추론 배치를 채우려고 기다리는 최대 시간
+
+    // 배치 크기 결정용 사진 한 장당 추정 메모리 (비트맵 + CLIP/MobileNet 중간 텐서), 가용 메모리의 1/8 안에서 선택
+    private static final long BATCH_BYTES_PER_PHOTO = 24L * 1024 * 1024;
+    private static final int MAX_INFERENCE_BATCH = 16;
+
+    /**
+     * 단계별 병렬도 설정
+     */
+    public static final class Profile {
+        final int decodeWorkers;
+        final int preprocessWorkers;
+        final int inferenceWorkers;    // 워커마다 모델 한 벌 (인터프리터는 스레드 간 공유 불가)
+        final int metadataWorkers;
+        final int queueCapacity;
+        final int maxBitmapsInFlight;
+        final int writeBatchSize;
+        final int inferenceBatchSize;
+
+        public Profile(int decodeWorkers, int preprocessWorkers, int inferenceWorkers, int metadataWorkers,
+                       int queueCapacity, int maxBitmapsInFlight, int writeBatchSize) {
+            this(decodeWorkers, preprocessWorkers, inferenceWorkers, metadataWorkers, queueCapacity,
+                    maxBitmapsInFlight, writeBatchSize, 1);
+        }
+
+        public Profile(int decodeWorkers, int preprocessWorkers, int inferenceWorkers, int metadataWorkers,
+                       int queueCapacity, int maxBitmapsInFlight, int writeBatchSize, int inferenceBatchSize) {
+            this.decodeWorkers = Math.max(1, decodeWorkers);
+            this.preprocessWorkers = Math.max(1, preprocessWorkers);
+            this.inferenceWorkers = Math.max(1, inferenceWorkers);
+            this.metadataWorkers = Math.max(1, metadataWorkers);
+            this.queueCapacity = Math.max(1, queueCapacity);
+            this.maxBitmapsInFlight = Math.max(1, maxBitmapsInFlight);
+            this.writeBatchSize = Math.max(1, writeBatchSize);
+            this.inferenceBatchSize = Math.max(1, inferenceBatchSize);
+        }
+
+        /**
+         * 추론 배치 크기 변경. 배치가 찰 수 있도록 큐/비트맵 한도도 배치 크기에 맞춰 늘림
+         */
+        public Profile withInferenceBatchSize(int batchSize) {
+            int batch = Math.max(1, batchSize);
+            return new Profile(decodeWorkers, preprocessWorkers, inferenceWorkers, metadataWorkers,
+                    Math.max(queueCapacity, batch), Math.max(maxBitmapsInFlight, batch * 2),
+                    writeBatchSize, batch);
+        }
+
+        // 기본: 디코딩/지오코딩 2개씩, 추론 1개 (축소 디코딩이라 비트맵 한 장이 ~2MB)
+        public static final Profile DEFAULT = new Profile(2, 1, 1, 2, 4, 6, 16);
+        // 저사양: 모든 단계 1개, 비트맵 3장까지
+        public static final Profile LOW_MEMORY = new Profile(1, 1, 1, 1, 2, 3, 8);
+
+        public static Profile forDevice(Context context) {
+            ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+            if (activityManager == null) return DEFAULT;
+            if (activityManager.isLowRamDevice()) return LOW_MEMORY;
+            return DEFAULT.withInferenceBatchSize(batchSizeFor(activityManager));
+        }
+
+        /**
+         * 현재 가용 메모리로 감당할 수 있는 추론 배치 크기 (1, 2, 4, 8, 16 중)
+         */
+        static int batchSizeFor(ActivityManager activityManager) {
+            ActivityManager.MemoryInfo memoryInfo = new ActivityManager.MemoryInfo();
+            activityManager.getMemoryInfo(memoryInfo);
+            if (memoryInfo.lowMemory) return 1;
+
+            long budget = memoryInfo.availMem / 8;
+            int batch = MAX_INFERENCE_BATCH;
+            while (batch > 1 && batch * BATCH_BYTES_PER_PHOTO > budget) {
+                batch /= 2;
+            }
+            Log.d(TAG, "📐 추론 배치 크기: " + batch + " (가용 메모리 " + memoryInfo.availMem / (1024 * 1024) + "MB)");
+            return batch;
+        }
+    }
+
+    /**
+     * 파이프라인을 흐르는 사진 한 장의 중간 결과
+     */
+    private static final class Item {
+        final Uri uri;
+        Bitmap bitmap;
+        String dateTaken;
+        boolean captureTimeKnown;    // dateTaken 이 EXIF 촬영 시각인지 (아니면 연사 판별 제외)
+        ByteBuffer clipInput;
+        long dHash;
+        float[] embedding;
+        float[] unitEmbedding;    // 연사 비교용 정규화 사본
+        List<Pair<String, Float>> predictions;
+        Item burstSource;    // 촬영 시각 순으로 바로 앞선 연사 프레임 (분류 후 결과 복사)
+        Photo photo;
+
+        Item(Uri uri) {
+            this.uri = uri;
+        }
+    }
+
+    // 연사 판별 순서 ("yyyy-MM-dd HH:mm:ss" 문자열은 사전 순 = 시간 순, 같은 초는 큐 순서 유지)
+    private static final Comparator<Item> BY_DATE_TAKEN = Comparator.comparing(item -> item.dateTaken);
+
+    private interface StageHandler {
+        /**
+         * 항목 처리 후 다음 단계로 넘길 항목 반환 (null 이면 여기서 끝)
+         */
+        Item handle(Item item, int worker) throws Exception;
+    }
+
+    private interface BatchHandler {
+        /**
+         * 모인 항목을 한 번에 처리. 다음 단계로 넘길 항목만 items 에 남김
+         */
+        void handle(List<Item> items, int worker) throws Exception;
+    }
+
+    private static final Object END = new Object();
+
+    /**
+     * 큐 + 워커 묶음. 처리 수와 누적 작업 시간을 기록
+     */
+    private final class Stage {
+        final String name;
+        final int workers;
+        final BlockingQueue<Object> queue;
+        final AtomicLong processed = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong busyNanos = new AtomicLong();
+        final AtomicLong batches = new AtomicLong();
+        final CountDownLatch finished;
+        Stage next;
+
+        Stage(String name, int workers, int queueCapacity) {
+            this.name = name;
+            this.workers = workers;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.finished = new CountDownLatch(workers);
+        }
+
+        void start(StageHandler handler) {
+            for (int i = 0; i < workers; i++) {
+                final int worker = i;
+                Thread thread = new Thread(() -> {
+                    try {
+                        runWorker(handler, worker);
+                    } finally {
+                        finished.countDown();
+                    }
+                }, "ingest-" + name + "-" + i);
+                thread.start();
+            }
+        }
+
+        /**
+         * 큐에서 최대 batchSize 개를 모아 한 번에 처리하는 워커 시작
+         * 첫 항목 이후로는 BATCH_LINGER_MS 까지만 기다리고 덜 찬 배치로 진행 (앞 단계가 느릴 때 지연 방지)
+         */
+        void startBatched(BatchHandler handler, int batchSize) {
+            for (int i = 0; i < workers; i++) {
+                final int worker = i;
+                Thread thread = new Thread(() -> {
+                    try {
+                        runBatchWorker(handler, worker, batchSize);
+                    } finally {
+                        finished.countDown();
+                    }
+                }, "ingest-" + name + "-" + i);
+                thread.start();
+            }
+        }
+
+        private void runBatchWorker(BatchHandler handler, int worker, int batchSize) {
+            List<Item> batch = new ArrayList<>(batchSize);
+            try {
+                boolean done = false;
+                while (!done) {
+                    Object next = queue.take();
+                    if (next == END) return;
+                    batch.add((Item) next);
+                    while (batch.size() < batchSize) {
+                        next = queue.poll(BATCH_LINGER_MS, TimeUnit.MILLISECONDS);
+                        if (next == null) break;
+                        if (next == END) {
+                            done = true;
+                            break;
+                        }
+                        batch.add((Item) next);
+                    }
+
+                    int size = batch.size();
+                    long start = System.nanoTime();
+                    try {
+                        handler.handle(batch, worker);
+                        processed.addAndGet(size);
+                        batches.incrementAndGet();
+                    } catch (Exception e) {
+                        failed.addAndGet(size);
+                        Log.e(TAG, "❌ " + name + " 단계 배치 실패: " + size + "장", e);
+                        for (Item item : batch) {
+                            releaseResources(item);
+                        }
+                        batch.clear();
+                    }
+                    busyNanos.addAndGet(System.nanoTime() - start);
+
+                    if (this.next != null) {
+                        for (Item result : batch) {
+                            this.next.queue.put(result);
+                        }
+                    }
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void runWorker(StageHandler handler, int worker) {
+            try {
+                while (true) {
+                    Object next = queue.take();
+                    if (next == END) return;
+
+                    Item item = (Item) next;
+                    long start = System.nanoTime();
+                    Item result = null;
+                    try {
+                        result = handler.handle(item, worker);
+                        processed.incrementAndGet();
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                        Log.e(TAG, "❌ " + name + " 단계 실패: " + item.uri, e);
+                        releaseResources(item);
+                    }
+                    busyNanos.addAndGet(System.nanoTime() - start);
+
+                    if (result != null && this.next != null) {
+                        this.next.queue.put(result);    // 다음 큐가 차 있으면 여기서 대기
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * 입력이 끝났음을 알리고 모든 워커 종료까지 대기
+         */
+        void finish() throws InterruptedException {
+            for (int i = 0; i < workers; i++) {
+                queue.put(END);
+            }
+            finished.await();
+        }
+
+        String stats(long wallNanos) {
+            double perSecond = wallNanos > 0 ? processed.get() * 1e9 / wallNanos : 0;
+            double utilization = wallNanos > 0 ? 100.0 * busyNanos.get() / wallNanos / workers : 0;
+            String summary = String.format(Locale.ROOT, "%s x%d: %d장 (실패 %d), 작업 %dms, 가동률 %.0f%%, %.1f장/s",
+                    name, workers, processed.get(), failed.get(), busyNanos.get() / 1_000_000,
+                    utilization, perSecond);
+            if (batches.get() == 0) return summary;
+            // 배치 단계: 평균 배치 크기와 작업 시간 기준 처리량 (대기 시간 제외한 모델 처리량)
+            double busyPerSecond = busyNanos.get() > 0 ? processed.get() * 1e9 / busyNanos.get() * workers : 0;
+            return summary + String.format(Locale.ROOT, ", 평균 배치 %.1f장, 작업 기준 %.1f장/s",
+                    (double) processed.get() / batches.get(), busyPerSecond);
+        }
+    }
+
+    private final Context context;
+    private final AppDatabase db;
+    private final Profile profile;
+    private final ImageRepository sharedRepository;
+    private final Semaphore bitmapPermits;
+    // CLIP 입력 텐서 재사용 풀 (전처리 → 추론 사이에 있는 항목 수는 비트맵 수를 넘지 않음)
+    private final BlockingQueue<ByteBuffer> clipInputPool;
+
+    /**
+     * @param repository 첫 번째 추론 워커가 쓸 모델 묶음 (추가 워커는 각자 생성 후 종료 시 해제)
+     */
+    public IngestionPipeline(Context context, ImageRepository repository, Profile profile) {
+        this.context = context.getApplicationContext();
+        this.db = AppDatabase.getInstance(context);
+        this.sharedRepository = repository;
+        this.profile = profile;
+        this.bitmapPermits = new Semaphore(profile.maxBitmapsInFlight);
+        this.clipInputPool = new ArrayBlockingQueue<>(profile.maxBitmapsInFlight);
+        for (int i = 0; i < profile.maxBitmapsInFlight; i++) {
+            clipInputPool.add(ClipImageEncoder.newInputBuffer());
+        }
+    }
+
+    /**
+     * DB 에 없는 사진을 최대 maxPhotos 장 수집해서 저장, 저장된 장수 반환. 끝날 때까지 호출 스레드를 막음
+     */
+    public int run(List<Uri> uris, int maxPhotos) throws InterruptedException {
+        ImageRepository[] repositories = new ImageRepository[profile.inferenceWorkers];
+        repositories[0] = sharedRepository;
+        // 추론 워커별 직전 사진 (아직 저장 전인 연사 프레임의 분류 결과 재사용)
+        Item[] lastInferred = new Item[profile.inferenceWorkers];
+        AtomicLong savedCount = new AtomicLong();
+
+        Stage decode = new Stage("decode", profile.decodeWorkers, profile.queueCapacity);
+        Stage preprocess = new Stage("preprocess", profile.preprocessWorkers, profile.queueCapacity);
+        Stage inference = new Stage("inference", profile.inferenceWorkers, profile.queueCapacity);
+        Stage metadata = new Stage("metadata", profile.metadataWorkers, profile.queueCapacity);
+        Stage write = new Stage("write", 1, profile.writeBatchSize * 2);
+        decode.next = preprocess;
+        preprocess.next = inference;
+        inference.next = metadata;
+        metadata.next = write;
+
+        // 1) 디코딩 + EXIF 촬영 시각 (디스크 I/O)
+        //    가장 큰 모델 입력(YOLO 640)에 맞춰 한 번만 축소 디코딩 → CLIP/MobileNet(224)은 전처리에서 다시 축소
+        decode.start((item, worker) -> {
+            bitmapPermits.acquire();
+            item.bitmap = ImageUtils.decodeForModel(context, item.uri, Yolov8Detector.INPUT_SIZE);
+            if (item.bitmap == null) {
+                bitmapPermits.release();
+                return null;
+            }
+            String captureTime = sharedRepository.readCaptureTime(item.uri);
+            item.captureTimeKnown = captureTime != null;
+            item.dateTaken = captureTime != null ? captureTime : ImageRepository.currentDateTaken();
+            return item;
+        });
+
+        // 2) CLIP 입력 텐서 + dHash (픽셀 연산, 인터프리터 불필요)
+        ImagePreprocessor[] preprocessors = new ImagePreprocessor[profile.preprocessWorkers];
+        preprocess.start((item, worker) -> {
+            if (preprocessors[worker] == null) {
+                preprocessors[worker] = ClipImageEncoder.newPreprocessor();
+            }
+            item.clipInput = clipInputPool.take();
+            ClipImageEncoder.preprocess(preprocessors[worker], item.bitmap, item.clipInput);
+            item.dHash = PerceptualHash.dHash(item.bitmap);
+            return item;
+        });
+
+        // 3) CLIP 임베딩 + 분류를 최대 inferenceBatchSize 장씩 한 번에 (버스트 프레임은 대표 사진 결과 재사용)
+        inference.startBatched((items, worker) -> {
+            ImageRepository repository = repositories[worker];
+            if (repository == null) {
+                repository = new ImageRepository(context);
+                repositories[worker] = repository;
+            }
+            try {
+                List<ByteBuffer> clipInputs = new ArrayList<>(items.size());
+                for (Item item : items) {
+                    clipInputs.add(item.clipInput);
+                }
+                float[][] embeddings = repository.encodeEmbeddings(clipInputs);
+                for (int i = 0; i < items.size(); i++) {
+                    items.get(i).embedding = embeddings[i];
+                    items.get(i).unitEmbedding = BurstGroupService.unitVector(embeddings[i]);
+                    releaseClipInput(items.get(i));
+                }
+
+                // 연사 판별은 촬영 시각 순서대로: 디코딩 워커가 여러 개면 큐 순서가 촬영 순서와 다를 수 있으므로 정렬 후
+                // 직전 프레임과 같은 장면이면 그 결과를, 저장된 대표 사진이 있으면 그 결과를 재사용
+                List<Item> byCaptureTime = new ArrayList<>(items);
+                byCaptureTime.sort(BY_DATE_TAKEN);
+                List<Item> toClassify = new ArrayList<>(items.size());
+                List<Bitmap> bitmaps = new ArrayList<>(items.size());
+                Item previous = lastInferred[worker];
+                for (Item item : byCaptureTime) {
+                    if (!item.captureTimeKnown) {
+                        // 촬영 시각이 없는 사진(스크린샷/다운로드)은 저장 시각이 가까울 뿐이므로 연사로 보지 않음
+                        toClassify.add(item);
+                        bitmaps.add(item.bitmap);
+                    } else if (previous != null && previous.captureTimeKnown && BurstGroupService.isSameBurst(
+                            previous.dateTaken, previous.dHash, previous.unitEmbedding,
+                            item.dateTaken, item.dHash, item.unitEmbedding)) {
+                        item.burstSource = previous;
+                    } else {
+                        Photo representative = BurstGroupService.getInstance(context)
+                                .findRepresentative(item.dateTaken, item.dHash, item.embedding);
+                        item.predictions = repository.reusablePredictions(representative);
+                        if (item.predictions == null) {
+                            toClassify.add(item);
+                            bitmaps.add(item.bitmap);
+                        }
+                    }
+                    if (item.captureTimeKnown) {
+                        previous = item;
+                    }
+                }
+
+                if (!toClassify.isEmpty()) {
+                    List<List<Pair<String, Float>>> predictions = repository.classifyWithDetections(bitmaps);
+                    for (int i = 0; i < toClassify.size(); i++) {
+                        toClassify.get(i).predictions = predictions.get(i);
+                    }
+                }
+                // 연사 사슬(A ← B ← C)은 앞 프레임부터 결과가 채워지도록 같은 촬영 시각 순서로 복사
+                for (Item item : byCaptureTime) {
+                    if (item.burstSource != null) {
+                        item.predictions = item.burstSource.predictions;
+                        item.burstSource = null;
+                        Log.d(TAG, "⚡ 저장 대기 중인 연사 프레임 분류 결과 재사용: " + item.uri);
+                    }
+                }
+                lastInferred[worker] = previous;
+            } finally {
+                for (Item item : items) {
+                    releaseResources(item);
+                }
+            }
+        }, profile.inferenceBatchSize);
+
+        // 4) Photo 생성 + EXIF GPS + Geocoder (네트워크 I/O)
+        metadata.start((item, worker) -> {
+            item.photo = sharedRepository.buildPhoto(item.uri, item.dateTaken, item.predictions,
+                    item.embedding, item.dHash);
+            item.photo.captureTimeKnown = item.captureTimeKnown;
+            sharedRepository.resolveLocation(item.photo, item.uri);
+            return item;
+        });
+
+        // 5) DB 배치 저장 (writeBatchSize 장 또는 WRITE_FLUSH_MS 동안 입력이 없으면)
+        Thread writer = new Thread(() -> {
+            List<Photo> batch = new ArrayList<>(profile.writeBatchSize);
+            try {
+                boolean done = false;
+                while (!done) {
+                    Object next = write.queue.poll(WRITE_FLUSH_MS, TimeUnit.MILLISECONDS);
+                    if (next == END) {
+                        done = true;
+                    } else if (next != null) {
+                        batch.add(((Item) next).photo);
+                    }
+                    if (!batch.isEmpty() && (done || next == null || batch.size() >= profile.writeBatchSize)) {
+                        long start = System.nanoTime();
+                        try {
+                            savedCount.addAndGet(sharedRepository.savePhotosToDB(batch).size());
+                            write.processed.addAndGet(batch.size());
+                        } catch (Exception e) {
+                            write.failed.addAndGet(batch.size());
+                            Log.e(TAG, "❌ DB 배치 저장 실패: " + batch.size() + "장", e);
+                        }
+                        write.busyNanos.addAndGet(System.nanoTime() - start);
+                        batch.clear();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                write.finished.countDown();
+            }
+        }, "ingest-write-0");
+        writer.start();
+
+        long start = System.nanoTime();
+        int queued = 0;
+        try {
+            // 이미 DB 에 있는 사진은 큐에 넣지 않음 (maxPhotos 는 신규 사진 기준)
+            for (Uri uri : uris) {
+                if (queued >= maxPhotos) break;
+                if (db.photoDao().getPhotoByPath(uri.toString()) != null) continue;
+                decode.queue.put(new Item(uri));
+                queued++;
+            }
+        } finally {
+            // 앞 단계부터 차례로 종료 (각 단계 워커가 모두 끝나야 다음 단계에 종료 신호)
+            decode.finish();
+            preprocess.finish();
+            inference.finish();
+            metadata.finish();
+            write.finish();
+
+            for (int i = 1; i < repositories.length; i++) {
+                if (repositories[i] != null) {
+                    repositories[i].close();
+                }
+            }
+            for (ImagePreprocessor preprocessor : preprocessors) {
+                if (preprocessor != null) {
+                    preprocessor.release();
+                }
+            }
+        }
+
+        long wallNanos = System.nanoTime() - start;
+        Log.d(TAG, "📊 수집 완료: 대상 " + queued + "장, 저장 " + savedCount.get() + "장 ("
+                + wallNanos / 1_000_000 + "ms)");
+        for (Stage stage : new Stage[]{decode, preprocess, inference, metadata, write}) {
+            Log.d(TAG, "   └ " + stage.stats(wallNanos));
+        }
+        return (int) savedCount.get();
+    }
+
+    private void releaseResources(Item item) {
+        releaseBitmap(item);
+        releaseClipInput(item);
+    }
+
+    private void releaseClipInput(Item item) {
+        if (item.clipInput != null) {
+            clipInputPool.offer(item.clipInput);
+            item.clipInput = null;
+        }
+    }
+
+    private void releaseBitmap(Item item) {
+        if (item.bitmap != null) {
+            item.bitmap.recycle();
+            item.bitmap = null;
+            bitmapPermits.release();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+// service/QuantizedScorer.java
+package com.example.wakey.service;
+
+import com.example.wakey.data.util.Int8Quantizer;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * int8 양자화 벡터 전수 스캔 (VectorIndex 1차 후보 선별용)
+ * - 단일 스레드: 처음부터 끝까지 한 번에 스캔
+ * - 병렬: ForkJoinPool 에서 구간을 나눠 구간별 top-k 힙을 만든 뒤 병합
+ * - 구간 크기는 벡터 수와 코어 수에 맞춰 조정, 작은 라이브러리는 fork 비용 없이 단일 스레드로 처리
+ */
+final class QuantizedScorer {
+
+    // 이 개수 미만이면 병렬 모드여도 단일 스레드 스캔
+    private static final int PARALLEL_THRESHOLD = 4096;
+    // 한 작업이 맡는 최소 벡터 수 (fork/병합 비용 대비 충분한 일감)
+    private static final int MIN_CHUNK = 1024;
+    // 코어당 작업 수 (작업 훔치기로 부하 분산)
+    private static final int TASKS_PER_CORE = 4;
+
+    private final byte[] codes;
+    private final float[] scales;
+    private final float[] offsets;
+    private final int size;
+    private final int dim;
+
+    /**
+     * 상위 k 후보 최소 힙 (scores[0] 이 가장 낮은 점수)
+     */
+    static final class TopK {
+        final float[] scores;
+        final int[] slots;
+        int size;
+
+        TopK(int capacity) {
+            this.scores = new float[capacity];
+            this.slots = new int[capacity];
+        }
+
+        void offer(float score, int slot) {
+            if (size < scores.length) {
+                scores[size] = score;
+                slots[size] = slot;
+                VectorIndex.siftUp(scores, slots, size);
+                size++;
+            } else if (size > 0 && score > scores[0]) {
+                scores[0] = score;
+                slots[0] = slot;
+                VectorIndex.siftDown(scores, slots, size);
+            }
+        }
+
+        void merge(TopK other) {
+            for (int i = 0; i < other.size; i++) {
+                offer(other.scores[i], other.slots[i]);
+            }
+        }
+    }
+
+    QuantizedScorer(byte[] codes, float[] scales, float[] offsets, int size, int dim) {
+        this.codes = codes;
+        this.scales = scales;
+        this.offsets = offsets;
+        this.size = size;
+        this.dim = dim;
+    }
+
+    /**
+     * 질의 벡터(정규화됨)와 근사 유사도가 threshold 이상인 상위 capacity 개 슬롯
+     */
+    TopK score(float[] query, int capacity, float threshold, boolean parallel) {
+        byte[] queryCodes = new byte[dim];
+        int[] queryCodeSum = new int[1];
+        float queryScale = Int8Quantizer.quantizeQuery(query, queryCodes, queryCodeSum);
+        Query q = new Query(queryCodes, queryCodeSum[0], queryScale, threshold, capacity);
+
+        if (!parallel || size < PARALLEL_THRESHOLD) {
+            return scoreRange(q, 0, size);
+        }
+        int chunk = chunkSize(size, ForkJoinPool.getCommonPoolParallelism());
+        return ForkJoinPool.commonPool().invoke(new ScoreTask(q, 0, size, chunk));
+    }
+
+    /**
+     * 벡터 수와 코어 수로 작업 하나의 구간 크기 결정
+     */
+    static int chunkSize(int size, int parallelism) {
+        int tasks = Math.max(1, parallelism) * TASKS_PER_CORE;
+        return Math.max(MIN_CHUNK, (size + tasks - 1) / tasks);
+    }
+
+    private TopK scoreRange(Query q, int from, int to) {
+        TopK top = new TopK(Math.min(q.capacity, to - from));
+        for (int slot = from; slot < to; slot++) {
+            int codeDot = Int8Quantizer.dot(q.codes, 0, codes, slot * dim, dim);
+            float score = Int8Quantizer.approximateDot(codeDot, q.codeSum, q.scale,
+                    scales[slot], offsets[slot]);
+            if (score < q.threshold) continue;
+            top.offer(score, slot);
+        }
+        return top;
+    }
+
+    private static final class Query {
+        final byte[] codes;
+        final int codeSum;
+        final float scale;
+        final float threshold;
+        final int capacity;
+
+        Query(byte[] codes, int codeSum, float scale, float threshold, int capacity) {
+            this.codes = codes;
+            this.codeSum = codeSum;
+            this.scale = scale;
+            this.threshold = threshold;
+            this.capacity = capacity;
+        }
+    }
+
+    /**
+     * 구간을 반으로 나누다가 chunk 이하가 되면 직접 스캔, 결과 힙은 위로 올라오며 병합
+     */
+    private final class ScoreTask extends RecursiveTask<TopK> {
+        private final Query q;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        ScoreTask(Query q, int from, int to, int chunk) {
+            this.q = q;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected TopK compute() {
+            if (to - from <= chunk) {
+                return scoreRange(q, from, to);
+            }
+            int mid = (from + to) >>> 1;
+            ScoreTask left = new ScoreTask(q, from, mid, chunk);
+            left.fork();
+            TopK right = new ScoreTask(q, mid, to, chunk).compute();
+            TopK merged = left.join();
+
+            if (merged.scores.length < Math.min(q.capacity, to - from)) {
+                TopK grown = new TopK(Math.min(q.capacity, to - from));
+                grown.merge(merged);
+                merged = grown;
+            }
+            merged.merge(right);
+            return merged;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+// service/ReembeddingService.java
+package com.example.wakey.service;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.util.Log;
+
+import com.example.wakey.data.local.AppDatabase;
+import com.example.wakey.data.local.EmbeddingStore;
+import com.example.wakey.data.local.Photo;
+import com.example.wakey.data.local.PhotoDao;
+import com.example.wakey.data.local.PhotoEmbedding;
+import com.example.wakey.tflite.ClipImageEncoder;
+import com.example.wakey.tflite.ImagePreprocessor;
+import com.example.wakey.util.ImageUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 임베딩 재계산 백그라운드 작업
+ * - 현재 모델(ClipImageEncoder.MODEL_ID, EMBEDDING_DIM) 임베딩이 없거나 다른 모델 것만 있는 사진을 찾아 배치로 다시 인코딩
+ * - 배치마다 DB 에 저장하고 마지막 처리 사진 id 를 기록 → 앱이 중간에 종료돼도 다음 실행 때 이어서 진행
+ * - 검색은 EmbeddingStore(현재 모델 벡터만 보관)를 읽으므로 작업 중에도 다른 모델 벡터와 섞이지 않음
+ * - 다 끝나면 현재 모델로 교체된 사진의 이전 모델 임베딩을 정리 (파괴적 마이그레이션 없음)
+ */
+public class ReembeddingService {
+    private static final String TAG = "ReembeddingService";
+    private static ReembeddingService instance;
+
+    private static final String PREFS_NAME = "wakey_reembedding";
+    private static final String KEY_CURSOR_PREFIX = "cursor_";    // + 모델 id
+    private static final int BATCH_SIZE = 16;
+    private static final long BATCH_PAUSE_MS = 200;              // 배치 사이 휴식 (UI/다른 작업 부하 감소)
+
+    private final Context context;
+    private final AppDatabase db;
+    private final SharedPreferences preferences;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile boolean cancelled = false;
+
+    private ReembeddingService(Context context) {
+        this.context = context;
+        this.db = AppDatabase.getInstance(context);
+        this.preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public static synchronized ReembeddingService getInstance(Context context) {
+        if (instance == null) {
+            instance = new ReembeddingService(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * 작업 시작 (이미 실행 중이면 무시). 처리할 사진이 없으면 바로 끝남
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) return false;
+        cancelled = false;
+        executor.execute(() -> {
+            try {
+                runJob();
+            } catch (Exception e) {
+                Log.e(TAG, "❌ 임베딩 재계산 작업 실패", e);
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 현재 배치가 끝나는 대로 중단 (진행 위치는 유지되어 다음 start 때 이어서 진행)
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    private void runJob() {
+        String modelId = ClipImageEncoder.MODEL_ID;
+        int dim = ClipImageEncoder.EMBEDDING_DIM;
+        String cursorKey = KEY_CURSOR_PREFIX + modelId;
+        PhotoDao photoDao = db.photoDao();
+
+        int pending = photoDao.countPhotosWithoutEmbedding(modelId, dim);
+        if (pending == 0) {
+            preferences.edit().remove(cursorKey).apply();
+            pruneReplacedEmbeddings(modelId);
+            return;
+        }
+
+        int cursor = preferences.getInt(cursorKey, 0);
+        Log.d(TAG, "🔁 임베딩 재계산 시작: " + pending + "장 대상, 모델=" + modelId + ", 이어서 id>" + cursor);
+
+        EmbeddingStore store = EmbeddingStore.getInstance(context);
+        store.ensureOpen();
+        VectorIndex vectorIndex = VectorIndex.getInstance(context);
+
+        long start = System.nanoTime();
+        int encodedCount = 0;
+        int failedCount = 0;
+        boolean finished = false;
+        ClipImageEncoder encoder = null;
+        try {
+            encoder = new ClipImageEncoder(context);
+            // 배치 입력 텐서는 한 번만 할당해서 재사용
+            ImagePreprocessor preprocessor = ClipImageEncoder.newPreprocessor();
+            List<ByteBuffer> inputPool = new ArrayList<>(BATCH_SIZE);
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                inputPool.add(ClipImageEncoder.newInputBuffer());
+            }
+
+            while (!cancelled) {
+                List<Photo> batch = photoDao.getPhotosWithoutEmbedding(modelId, dim, cursor, BATCH_SIZE);
+                if (batch.isEmpty()) {
+                    finished = true;
+                    break;
+                }
+
+                // 배치 전체를 전처리한 뒤 한 번의 run 으로 인코딩
+                List<Photo> decoded = new ArrayList<>(batch.size());
+                for (Photo photo : batch) {
+                    if (preprocess(preprocessor, photo, inputPool.get(decoded.size()))) {
+                        decoded.add(photo);
+                    } else {
+                        // 읽을 수 없는 사진은 건너뜀 (다음 전체 실행 때 다시 시도)
+                        failedCount++;
+                    }
+                    cursor = photo.id;
+                }
+                float[][] encoded = encodeBatch(encoder, inputPool.subList(0, decoded.size()));
+
+                List<PhotoEmbedding> embeddings = new ArrayList<>(decoded.size());
+                List<float[]> vectors = new ArrayList<>(decoded.size());
+                for (int i = 0; i < decoded.size(); i++) {
+                    float[] vector = encoded != null ? encoded[i] : null;
+                    if (vector != null && vector.length == dim) {
+                        embeddings.add(new PhotoEmbedding(decoded.get(i).id, modelId, vector));
+                        vectors.add(vector);
+                    } else {
+                        failedCount++;
+                    }
+                }
+
+                // DB 저장 → 매핑 파일/인덱스 반영 → 진행 위치 기록 순서 (중단돼도 다시 계산만 하면 됨)
+                if (!embeddings.isEmpty()) {
+                    db.runInTransaction(() -> db.photoEmbeddingDao().insertEmbeddings(embeddings));
+                    for (int i = 0; i < embeddings.size(); i++) {
+                        store.append(embeddings.get(i).photoId, vectors.get(i));
+                        vectorIndex.add(embeddings.get(i).photoId, vectors.get(i));
+                    }
+                }
+                preferences.edit().putInt(cursorKey, cursor).apply();
+                encodedCount += embeddings.size();
+                Log.d(TAG, "📦 임베딩 재계산 진행: " + encodedCount + "/" + pending + " (실패 " + failedCount + ")");
+
+                Thread.sleep(BATCH_PAUSE_MS);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "❌ CLIP 모델 로딩 실패", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (encoder != null) {
+                encoder.close();
+            }
+            store.flush();
+            vectorIndex.persist();
+        }
+
+        if (finished) {
+            // 한 바퀴 다 돌았으면 다음 실행은 처음부터 (건너뛴 사진 재시도)
+            preferences.edit().remove(cursorKey).apply();
+            pruneReplacedEmbeddings(modelId);
+        }
+        Log.d(TAG, (finished ? "✅ 임베딩 재계산 완료: " : "⏸️ 임베딩 재계산 중단: ") + encodedCount + "장, 실패 "
+                + failedCount + "장 (" + (System.nanoTime() - start) / 1_000_000 + "ms)");
+    }
+
+    /**
+     * 사진을 디코딩해서 CLIP 입력 텐서를 out 에 기록. 읽을 수 없으면 false (비트맵은 항상 바로 해제)
+     */
+    private boolean preprocess(ImagePreprocessor preprocessor, Photo photo, ByteBuffer out) {
+        if (photo.filePath == null) return false;
+        Bitmap bitmap = null;
+        try {
+            bitmap = ImageUtils.decodeForModel(context, Uri.parse(photo.filePath),
+                    ClipImageEncoder.IMAGE_SIZE);
+            if (bitmap == null) return false;
+            ClipImageEncoder.preprocess(preprocessor, bitmap, out);
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "❌ 사진 전처리 실패: " + photo.filePath, e);
+            return false;
+        } finally {
+            if (bitmap != null) {
+                bitmap.recycle();
+            }
+        }
+    }
+
+    /**
+     * 전처리된 입력 텐서를 한 번에 인코딩. 비어 있으면 빈 배열, 추론 실패 시 null (배치 전체를 실패로 셈)
+     */
+    private float[][] encodeBatch(ClipImageEncoder encoder, List<ByteBuffer> inputs) {
+        if (inputs.isEmpty()) return new float[0][];
+        try {
+            return encoder.encodeBatch(inputs);
+        } catch (Exception e) {
+            Log.e(TAG, "❌ 배치 임베딩 계산 실패: " + inputs.size() + "장", e);
+            return null;
+        }
+    }
+
+    private void pruneReplacedEmbeddings(String modelId) {
+        int pruned = db.photoEmbeddingDao().deleteReplacedEmbeddings(modelId);
+        if (pruned > 0) {
+            Log.d(TAG, "🗑️ 이전 모델 임베딩 정리: " + pruned + "개");
+        }
+    }
+}
@@ -0,0 +1,148 @@
+// service/TextEmbeddingService.java
+package com.example.wakey.service;
+
+import android.content.Context;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.example.wakey.data.util.SimilarityUtil;
+import com.example.wakey.tflite.ClipTextEncoder;
+import com.example.wakey.tflite.ClipTokenizer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * CLIP 텍스트 임베딩 서비스 (프로세스 전체에서 하나)
+ * - ClipTokenizer / ClipTextEncoder 를 한 번만 로드해서 계속 재사용
+ * - 정규화한 검색어 → 임베딩 LRU 캐시
+ * - (검색어, 인덱스 버전) → 검색 결과 LRU 캐시: 인덱스가 바뀌면 버전이 달라져 자연히 무효화
+ */
+public class TextEmbeddingService {
+    private static final String TAG = "TextEmbeddingService";
+    private static TextEmbeddingService instance;
+
+    private static final int EMBEDDING_CACHE_SIZE = 128;
+    private static final int RESULT_CACHE_SIZE = 32;
+
+    private final Context context;
+    private final LruCache<String, float[]> embeddingCache = new LruCache<>(EMBEDDING_CACHE_SIZE);
+    private final LruCache<String, List<VectorIndex.Hit>> resultCache = new LruCache<>(RESULT_CACHE_SIZE);
+
+    // Interpreter 는 스레드 안전하지 않으므로 로드/추론은 이 락 안에서만
+    private final Object modelLock = new Object();
+    private ClipTokenizer tokenizer;
+    private ClipTextEncoder encoder;
+
+    private TextEmbeddingService(Context context) {
+        this.context = context;
+    }
+
+    public static synchronized TextEmbeddingService getInstance(Context context) {
+        if (instance == null) {
+            instance = new TextEmbeddingService(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * 토크나이저/인코더 미리 로드 (백그라운드 스레드에서 호출)
+     */
+    public void warmUp() {
+        try {
+            synchronized (modelLock) {
+                ensureModelLoaded();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "❌ CLIP 텍스트 모델 로드 실패", e);
+        }
+    }
+
+    /**
+     * 검색어 임베딩 (캐시 우선). 반환 배열은 호출 측에서 수정해도 캐시에 영향 없음
+     */
+    public float[] getTextEmbedding(String query) throws IOException {
+        String key = normalizeQuery(query);
+        float[] cached = embeddingCache.get(key);
+        if (cached != null) {
+            return cached.clone();
+        }
+
+        long start = System.nanoTime();
+        float[] embedding = encodeUncached(key);
+        Log.d(TAG, "🔤 텍스트 임베딩 계산: \"" + key + "\" ("
+                + (System.nanoTime() - start) / 1_000_000 + "ms)");
+        embeddingCache.put(key, embedding);
+        return embedding.clone();
+    }
+
+    /**
+     * 캐시를 거치지 않고 임베딩 계산 (정규화됨)
+     * 라벨 사전처럼 한 번에 많이 계산해서 따로 저장하는 텍스트용 (검색어 캐시를 밀어내지 않도록)
+     */
+    public float[] encodeUncached(String text) throws IOException {
+        float[] embedding;
+        synchronized (modelLock) {
+            ensureModelLoaded();
+            embedding = encoder.getTextEncoding(tokenizer.tokenize(text));
+        }
+        SimilarityUtil.normalizeInPlace(embedding, 0, embedding.length);
+        return embedding;
+    }
+
+    /**
+     * 검색어로 VectorIndex 검색 (결과 캐시 우선, 백그라운드 스레드에서 호출)
+     */
+    public List<VectorIndex.Hit> search(String query, int k, float threshold) throws IOException {
+        VectorIndex vectorIndex = VectorIndex.getInstance(context);
+        vectorIndex.ensureLoaded();
+
+        String key = vectorIndex.getVersion() + "|" + k + "|" + threshold + "|" + normalizeQuery(query);
+        List<VectorIndex.Hit> cached = resultCache.get(key);
+        if (cached != null) {
+            Log.d(TAG, "⚡ 검색 결과 캐시 사용: " + key);
+            return new ArrayList<>(cached);
+        }
+
+        List<VectorIndex.Hit> hits = vectorIndex.search(getTextEmbedding(query), k, threshold);
+        resultCache.put(key, Collections.unmodifiableList(new ArrayList<>(hits)));
+        return hits;
+    }
+
+    /**
+     * 모델 해제 (메모리 부족 시). 임베딩 캐시는 유지하고 모델은 다음 요청 때 다시 로드
+     */
+    public void release() {
+        synchronized (modelLock) {
+            if (encoder != null) {
+                encoder.close();
+                encoder = null;
+            }
+            tokenizer = null;
+        }
+        resultCache.evictAll();
+    }
+
+    private void ensureModelLoaded() throws IOException {
+        if (tokenizer != null && encoder != null) return;
+
+        long start = System.nanoTime();
+        if (tokenizer == null) {
+            tokenizer = new ClipTokenizer(context);
+        }
+        if (encoder == null) {
+            encoder = new ClipTextEncoder(context);
+        }
+        Log.d(TAG, "✅ CLIP 텍스트 모델 로드 완료 (" + (System.nanoTime() - start) / 1_000_000 + "ms)");
+    }
+
+    /**
+     * 캐시 키용 검색어 정규화 (앞뒤 공백 제거, 연속 공백 축약, 소문자)
+     */
+    private static String normalizeQuery(String query) {
+        return query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
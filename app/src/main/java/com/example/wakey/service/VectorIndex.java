@@ -0,0 +1,759 @@
+// service/VectorIndex.java
+package com.example.wakey.service;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.wakey.data.local.EmbeddingStore;
+import com.example.wakey.data.util.Int8Quantizer;
+import com.example.wakey.data.util.SimilarityUtil;
+import com.example.wakey.tflite.ClipImageEncoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * CLIP 이미지 임베딩 검색 인덱스 (텍스트/이미지 검색 공용 진입점)
+ * - 작은 라이브러리: 정규화된 벡터를 int8 로 양자화해 byte[n * dim] 하나에 연속 저장 (float 대비 1/4 메모리)
+ *   int8 내적으로 후보를 추린 뒤 EmbeddingStore 매핑 파일의 float 벡터로 재정렬해서 top-k 반환
+ * - 큰 라이브러리(HNSW_THRESHOLD 이상): HNSW 근사 인덱스로 전환하고 그래프를 파일로 저장해서 시작 시 바로 로드
+ *   그래프 탐색 중 내적은 EmbeddingStore 매핑 파일에서 직접 계산 (힙에는 링크와 사진 ID 만)
+ * - 전수 모드에서 검색은 불변 스냅샷을 읽고, 추가/삭제는 새 스냅샷을 발행 (copy-on-write)
+ */
+public class VectorIndex {
+    private static final String TAG = "VectorIndex";
+    private static VectorIndex instance;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    // HNSW 설정
+    private static final int HNSW_THRESHOLD = 20000;       // 이 개수부터 근사 검색 사용
+    private static final int DEFAULT_HNSW_M = 16;
+    private static final int DEFAULT_EF_CONSTRUCTION = 100;
+    private static final int DEFAULT_EF_SEARCH = 64;
+    private static final int SAVE_INTERVAL = 200;           // 추가 N건마다 인덱스 파일 저장
+    private static final float COMPACT_DELETED_RATIO = 0.3f;
+    private static final String HNSW_DIR = "vector_index";
+    private static final String HNSW_FILE_PREFIX = "clip_hnsw";     // + "_<모델 id>.bin"
+
+    // int8 양자화 설정
+    private static final int RERANK_FACTOR = 4;             // 후보 수 = k * RERANK_FACTOR
+    private static final int MIN_RERANK_CANDIDATES = 50;
+    private static final float COARSE_THRESHOLD_MARGIN = 0.02f; // 양자화 오차만큼 1차 임계값 완화
+
+    private final EmbeddingStore store;
+    private final HnswIndex.VectorSource storeVectors;
+    private final int dim;
+    private final File hnswFile;
+
+    // 쓰기(추가/삭제/로드)는 이 락 안에서만 수행
+    private final Object writeLock = new Object();
+    // photoId -> slot (쓰기 스레드 전용)
+    private final Map<Integer, Integer> slotById = new HashMap<>();
+    private boolean loaded = false;
+    private int addsSinceSave = 0;
+
+    private int hnswM = DEFAULT_HNSW_M;
+    private volatile int efSearch = DEFAULT_EF_SEARCH;
+
+    // 전수 검색 모드에서 검색 스레드가 읽는 현재 스냅샷
+    private volatile Snapshot snapshot;
+    // null 이 아니면 HNSW 모드
+    private volatile HnswIndex hnsw;
+    private volatile long version = 0;
+
+    /**
+     * 검색 결과 (사진 ID + 코사인 유사도)
+     */
+    public static class Hit {
+        public final int photoId;
+        public final float score;
+
+        public Hit(int photoId, float score) {
+            this.photoId = photoId;
+            this.score = score;
+        }
+    }
+
+    /**
+     * 양자화 검색 재현율 리포트 (float 전수 검색 대비)
+     */
+    public static class QuantizedRecallReport {
+        public final int k;
+        public final float recall;
+        public final double avgQuantizedMs;
+        public final double avgFloatMs;
+        public final long int8Bytes;
+        public final long floatBytes;
+
+        QuantizedRecallReport(int k, float recall, double avgQuantizedMs, double avgFloatMs,
+                              long int8Bytes, long floatBytes) {
+            this.k = k;
+            this.recall = recall;
+            this.avgQuantizedMs = avgQuantizedMs;
+            this.avgFloatMs = avgFloatMs;
+            this.int8Bytes = int8Bytes;
+            this.floatBytes = floatBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("k=%d recall=%.3f int8+rerank=%.2fms float=%.2fms mem=%dKB/%dKB",
+                    k, recall, avgQuantizedMs, avgFloatMs, int8Bytes / 1024, floatBytes / 1024);
+        }
+    }
+
+    /**
+     * 불변 스냅샷. size 이후의 슬롯은 쓰기 스레드만 건드리므로
+     * 같은 배열에 append 해도 기존 스냅샷 독자에게는 보이지 않음
+     * 벡터 i 는 codes[i * dim ..] 와 scales[i], offsets[i] 로 복원
+     */
+    static final class Snapshot {
+        final int[] photoIds;
+        final byte[] codes;
+        final float[] scales;
+        final float[] offsets;
+        final int size;
+
+        Snapshot(int[] photoIds, byte[] codes, float[] scales, float[] offsets, int size) {
+            this.photoIds = photoIds;
+            this.codes = codes;
+            this.scales = scales;
+            this.offsets = offsets;
+            this.size = size;
+        }
+
+        static Snapshot empty(int capacity, int dim) {
+            return new Snapshot(new int[capacity], new byte[capacity * dim],
+                    new float[capacity], new float[capacity], 0);
+        }
+    }
+
+    /**
+     * HNSW 노드 벡터를 매핑된 임베딩 파일에서 읽음 (압축 후에도 photoId 로 찾으므로 항상 현재 뷰 사용)
+     */
+    private static final class StoreVectors implements HnswIndex.VectorSource {
+        private final EmbeddingStore store;
+
+        StoreVectors(EmbeddingStore store) {
+            this.store = store;
+        }
+
+        @Override
+        public float dot(float[] query, int photoId) {
+            EmbeddingStore.View view = store.view();
+            int record = view != null ? view.recordOf(photoId) : -1;
+            return record < 0 ? Float.NEGATIVE_INFINITY : view.dot(record, query);
+        }
+
+        @Override
+        public boolean read(int photoId, float[] out) {
+            EmbeddingStore.View view = store.view();
+            int record = view != null ? view.recordOf(photoId) : -1;
+            if (record < 0) return false;
+            view.readVector(record, out);
+            return true;
+        }
+    }
+
+    private VectorIndex(Context context) {
+        this.store = EmbeddingStore.getInstance(context);
+        this.storeVectors = new StoreVectors(store);
+        this.dim = ClipImageEncoder.EMBEDDING_DIM;
+        this.hnswFile = new File(new File(context.getApplicationContext().getFilesDir(), HNSW_DIR),
+                HNSW_FILE_PREFIX + "_" + ClipImageEncoder.MODEL_ID + ".bin");
+        this.snapshot = Snapshot.empty(0, dim);
+    }
+
+    public static synchronized VectorIndex getInstance(Context context) {
+        if (instance == null) {
+            instance = new VectorIndex(context);
+        }
+        return instance;
+    }
+
+    /**
+     * HNSW 파라미터 설정. M 은 다음 인덱스 구성부터, efSearch 는 즉시 적용
+     */
+    public void setHnswParams(int m, int efSearch) {
+        synchronized (writeLock) {
+            this.hnswM = Math.max(2, m);
+        }
+        this.efSearch = Math.max(1, efSearch);
+    }
+
+    /**
+     * 인덱스를 한 번만 채움 (백그라운드 스레드에서 호출)
+     * 저장된 HNSW 파일이 있으면 그것을 로드하고 임베딩 저장소와 차이만 반영
+     */
+    public void ensureLoaded() {
+        synchronized (writeLock) {
+            if (loaded) return;
+
+            long start = System.nanoTime();
+            store.ensureOpen();
+            EmbeddingStore.deleteOtherModelFiles(hnswFile.getParentFile(), HNSW_FILE_PREFIX, hnswFile.getName());
+            if (!loadHnswFromFile()) {
+                loadFlatFromStore();
+                if (snapshot.size >= HNSW_THRESHOLD) {
+                    switchToHnsw();
+                }
+            }
+            loaded = true;
+            version++;
+            Log.d(TAG, "✅ 인덱스 로드 완료: " + size() + "개, 모드=" + (hnsw != null ? "HNSW" : "전수")
+                    + " (" + (System.nanoTime() - start) / 1_000_000 + "ms)");
+        }
+    }
+
+    /**
+     * 사진 임베딩 추가/교체. 아직 로드 전이면 무시 (로드 시 DB 에서 함께 읽힘)
+     * EmbeddingStore.append 다음에 호출 (HNSW 노드 벡터와 재정렬 점수는 그 파일에서 읽음)
+     */
+    public void add(int photoId, float[] vector) {
+        if (vector == null || vector.length != dim) return;
+
+        synchronized (writeLock) {
+            if (!loaded) return;
+
+            if (hnsw != null) {
+                hnsw.add(photoId, normalizedCopy(vector));
+                version++;
+                if (++addsSinceSave >= SAVE_INTERVAL) {
+                    saveHnsw();
+                }
+                return;
+            }
+
+            addToFlat(photoId, vector);
+            version++;
+
+            if (snapshot.size >= HNSW_THRESHOLD) {
+                switchToHnsw();
+            }
+        }
+    }
+
+    /**
+     * 사진 임베딩 제거 (HNSW 는 tombstone, 전수 모드는 마지막 슬롯을 빈 자리로 옮김)
+     */
+    public void remove(int photoId) {
+        synchronized (writeLock) {
+            if (hnsw != null) {
+                hnsw.markDeleted(photoId);
+                version++;
+                return;
+            }
+
+            Integer slot = slotById.remove(photoId);
+            if (slot == null) return;
+
+            Snapshot current = snapshot;
+            int last = current.size - 1;
+            int[] ids = Arrays.copyOf(current.photoIds, current.photoIds.length);
+            byte[] codes = Arrays.copyOf(current.codes, current.codes.length);
+            float[] scales = Arrays.copyOf(current.scales, current.scales.length);
+            float[] offsets = Arrays.copyOf(current.offsets, current.offsets.length);
+
+            if (slot != last) {
+                ids[slot] = ids[last];
+                System.arraycopy(codes, last * dim, codes, slot * dim, dim);
+                scales[slot] = scales[last];
+                offsets[slot] = offsets[last];
+                slotById.put(ids[slot], slot);
+            }
+
+            snapshot = new Snapshot(ids, codes, scales, offsets, last);
+            version++;
+        }
+    }
+
+    /**
+     * 인덱스 비우기 (DB 전체 삭제 시)
+     */
+    public void clear() {
+        synchronized (writeLock) {
+            slotById.clear();
+            snapshot = Snapshot.empty(INITIAL_CAPACITY, dim);
+            hnsw = null;
+            if (hnswFile.exists() && !hnswFile.delete()) {
+                Log.w(TAG, "⚠️ 인덱스 파일 삭제 실패");
+            }
+            version++;
+        }
+    }
+
+    /**
+     * 변경 사항을 파일에 저장 (HNSW 모드에서만 의미 있음)
+     */
+    public void persist() {
+        synchronized (writeLock) {
+            if (hnsw != null && addsSinceSave > 0) {
+                saveHnsw();
+            }
+        }
+    }
+
+    /**
+     * 질의 벡터와 코사인 유사도가 threshold 이상인 상위 k 개 반환 (유사도 내림차순)
+     */
+    public List<Hit> search(float[] query, int k, float threshold) {
+        if (query == null || query.length != dim || k <= 0) {
+            return new ArrayList<>();
+        }
+        float[] q = normalizedCopy(query);
+
+        HnswIndex approx = hnsw;
+        if (approx != null) {
+            HnswIndex.Result result = approx.search(q, k, efSearch, threshold);
+            List<Hit> hits = new ArrayList<>(result.photoIds.length);
+            for (int i = 0; i < result.photoIds.length; i++) {
+                hits.add(new Hit(result.photoIds[i], result.scores[i]));
+            }
+            return hits;
+        }
+
+        // 1차 스캔은 ForkJoinPool 로 나눠 수행 (작은 라이브러리는 QuantizedScorer 가 단일 스레드로 처리)
+        return searchFlat(snapshot, storeVectors, q, k, threshold, true);
+    }
+
+    /**
+     * 주어진 후보 사진들만 정확한 float 유사도로 채점해서 상위 k 개 반환 (하이브리드 검색용)
+     * 후보 수에 비례하는 비용이라 필터로 좁힌 작은 집합에 사용
+     */
+    public List<Hit> searchWithin(float[] query, Collection<Integer> photoIds, int k, float threshold) {
+        if (query == null || query.length != dim || k <= 0 || photoIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return rerank(new ArrayList<>(photoIds), storeVectors, normalizedCopy(query), k, threshold);
+    }
+
+    /**
+     * 저장된 사진 임베딩을 질의로 쓰는 "비슷한 사진" 검색 (질의 사진 자체는 제외)
+     * 텍스트 검색과 같은 search 경로를 타므로 전수/HNSW 모드 모두 동일한 비용. 임베딩이 없으면 빈 목록
+     */
+    public List<Hit> searchSimilar(int photoId, int k, float threshold) {
+        if (k <= 0) return new ArrayList<>();
+        ensureLoaded();
+
+        EmbeddingStore.View storeView = store.view();
+        int record = storeView != null ? storeView.recordOf(photoId) : -1;
+        if (record < 0) {
+            Log.w(TAG, "⚠️ 임베딩 없는 사진: " + photoId);
+            return new ArrayList<>();
+        }
+        float[] query = new float[dim];
+        storeView.readVector(record, query);
+
+        // 자기 자신이 1등으로 나오므로 하나 더 받아서 제외
+        List<Hit> hits = search(query, k + 1, threshold);
+        List<Hit> similar = new ArrayList<>(Math.min(k, hits.size()));
+        for (Hit hit : hits) {
+            if (hit.photoId == photoId) continue;
+            similar.add(hit);
+            if (similar.size() == k) break;
+        }
+        return similar;
+    }
+
+    /**
+     * 근사 검색 재현율@k / 지연 시간 리포트 (질의 사진 자신은 결과에서 제외하고 비교)
+     * 전수 모드일 때는 저장소의 float 벡터로 임시 HNSW 를 만들어 측정
+     */
+    public List<HnswIndex.RecallReport> measureRecall(int sampleQueries, int k, int[] efSearchValues) {
+        HnswIndex target = hnsw;
+        if (target == null) {
+            target = buildHnswFromStore();
+        }
+        List<HnswIndex.RecallReport> reports = target.measureRecall(sampleQueries, k, efSearchValues);
+        for (HnswIndex.RecallReport report : reports) {
+            Log.d(TAG, "📊 " + report);
+        }
+        return reports;
+    }
+
+    /**
+     * int8 1차 검색 + float 재정렬 경로의 재현율@k 를 float 전수 검색과 비교 (전수 모드 전용)
+     * 백그라운드 스레드에서 호출
+     */
+    public QuantizedRecallReport measureQuantizedRecall(int sampleQueries, int k) {
+        Snapshot current = snapshot;
+        if (hnsw != null || store.view() == null) return null;
+
+        QuantizedRecallReport report = measureQuantizedRecall(current, dim, storeVectors,
+                sampleQueries, k, true);
+        if (report != null) {
+            Log.d(TAG, "📊 양자화 재현율: " + report);
+        }
+        return report;
+    }
+
+    /**
+     * 양자화 재현율 측정 본체 (Context 없이 호출 가능)
+     * - 질의는 저장된 벡터에 잡음을 섞어 만들고(HnswIndex.perturbForRecall), 원래 사진은 양쪽 결과에서 제외
+     *   (저장 벡터를 그대로 쓰면 유사도 1 인 자기 자신이 항상 맞아 재현율이 부풀려짐)
+     * - 비교 기준은 같은 사진들의 float 벡터 전수 스캔
+     */
+    static QuantizedRecallReport measureQuantizedRecall(Snapshot current, int dim,
+                                                        HnswIndex.VectorSource vectors,
+                                                        int sampleQueries, int k, boolean parallel) {
+        if (current.size == 0 || k <= 0) return null;
+
+        Random sampler = new Random(7);
+        int n = Math.min(sampleQueries, current.size);
+        long quantizedNanos = 0;
+        long floatNanos = 0;
+        int hits = 0;
+        int total = 0;
+        int measured = 0;
+
+        for (int i = 0; i < n; i++) {
+            int photoId = current.photoIds[sampler.nextInt(current.size)];
+            float[] q = new float[dim];
+            if (!vectors.read(photoId, q)) continue;
+            HnswIndex.perturbForRecall(q, sampler);
+            measured++;
+
+            long start = System.nanoTime();
+            List<Hit> truth = withoutPhoto(searchExact(current, vectors, q, k + 1), photoId, k);
+            floatNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            List<Hit> approx = withoutPhoto(searchFlat(current, vectors, q, k + 1, -1f, parallel), photoId, k);
+            quantizedNanos += System.nanoTime() - start;
+
+            Set<Integer> truthIds = new HashSet<>();
+            for (Hit hit : truth) truthIds.add(hit.photoId);
+            total += truthIds.size();
+            for (Hit hit : approx) {
+                if (truthIds.contains(hit.photoId)) hits++;
+            }
+        }
+
+        return new QuantizedRecallReport(k,
+                total == 0 ? 1f : (float) hits / total,
+                measured == 0 ? 0 : quantizedNanos / 1_000_000.0 / measured,
+                measured == 0 ? 0 : floatNanos / 1_000_000.0 / measured,
+                (long) current.size * (dim + 8),
+                (long) current.size * dim * 4);
+    }
+
+    public int size() {
+        HnswIndex approx = hnsw;
+        return approx != null ? approx.size() : snapshot.size;
+    }
+
+    /**
+     * 인덱스가 바뀔 때마다 증가 (검색 결과 캐시 키로 사용)
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    // ========== 전수 검색 모드 ==========
+
+    /**
+     * 매핑된 저장소를 한 번 훑으며 양자화 (SQLite 커서/엔티티 객체 생성 없음)
+     */
+    private void loadFlatFromStore() {
+        EmbeddingStore.View storeView = store.view();
+        int records = storeView != null ? storeView.recordCount() : 0;
+
+        Snapshot loading = Snapshot.empty(Math.max(INITIAL_CAPACITY, records), dim);
+        float[] buffer = new float[dim];
+        int size = 0;
+        slotById.clear();
+
+        for (int record = 0; record < records; record++) {
+            if (!storeView.isLive(record)) continue;
+            int photoId = storeView.photoIdAt(record);
+            if (slotById.containsKey(photoId)) continue;
+
+            storeView.readVector(record, buffer);
+            writeSlot(loading, size, photoId, buffer);
+            slotById.put(photoId, size);
+            size++;
+        }
+
+        snapshot = new Snapshot(loading.photoIds, loading.codes, loading.scales, loading.offsets, size);
+    }
+
+    private void addToFlat(int photoId, float[] vector) {
+        Snapshot current = snapshot;
+        Integer existingSlot = slotById.get(photoId);
+        float[] buffer = Arrays.copyOf(vector, dim);
+
+        if (existingSlot != null) {
+            // 기존 슬롯 교체는 독자가 보고 있을 수 있으므로 복사 후 수정
+            Snapshot copy = new Snapshot(current.photoIds,
+                    Arrays.copyOf(current.codes, current.codes.length),
+                    Arrays.copyOf(current.scales, current.scales.length),
+                    Arrays.copyOf(current.offsets, current.offsets.length),
+                    current.size);
+            writeSlot(copy, existingSlot, photoId, buffer);
+            snapshot = copy;
+            return;
+        }
+
+        Snapshot target = current;
+        int size = current.size;
+
+        if (size == current.photoIds.length) {
+            int newCapacity = Math.max(INITIAL_CAPACITY, size + (size >> 1));
+            target = new Snapshot(Arrays.copyOf(current.photoIds, newCapacity),
+                    Arrays.copyOf(current.codes, newCapacity * dim),
+                    Arrays.copyOf(current.scales, newCapacity),
+                    Arrays.copyOf(current.offsets, newCapacity),
+                    size);
+        }
+
+        // size 이후 슬롯은 기존 스냅샷 범위 밖이므로 그대로 기록
+        writeSlot(target, size, photoId, buffer);
+        slotById.put(photoId, size);
+
+        snapshot = new Snapshot(target.photoIds, target.codes, target.scales, target.offsets, size + 1);
+    }
+
+    /**
+     * 벡터를 정규화 후 양자화해서 slot 에 기록 (buffer 는 덮어씀)
+     */
+    private void writeSlot(Snapshot target, int slot, int photoId, float[] buffer) {
+        SimilarityUtil.normalizeInPlace(buffer, 0, dim);
+        Int8Quantizer.quantize(buffer, 0, dim, target.codes, slot * dim,
+                target.scales, target.offsets, slot);
+        target.photoIds[slot] = photoId;
+    }
+
+    /**
+     * 1) int8 내적으로 k * RERANK_FACTOR 개 후보 선별
+     * 2) 후보의 원본 float 벡터(앱에서는 임베딩 저장소 매핑 파일)로 정확한 코사인 유사도 재정렬
+     */
+    private static List<Hit> searchFlat(Snapshot current, HnswIndex.VectorSource vectors, float[] q,
+                                        int k, float threshold, boolean parallel) {
+        if (current.size == 0) {
+            return new ArrayList<>();
+        }
+
+        int dim = q.length;
+        int capacity = Math.min(Math.max(k * RERANK_FACTOR, MIN_RERANK_CANDIDATES), current.size);
+        QuantizedScorer scorer = new QuantizedScorer(current.codes, current.scales, current.offsets,
+                current.size, dim);
+        QuantizedScorer.TopK top = scorer.score(q, capacity, threshold - COARSE_THRESHOLD_MARGIN, parallel);
+
+        List<Integer> candidates = new ArrayList<>(top.size);
+        for (int i = 0; i < top.size; i++) {
+            candidates.add(current.photoIds[top.slots[i]]);
+        }
+        return rerank(candidates, vectors, q, k, threshold);
+    }
+
+    /**
+     * 후보 사진의 float 벡터로 정확한 유사도 계산 후 상위 k 개 (내림차순)
+     * 벡터는 매핑된 파일에서 바로 읽으므로 힙 복사 없음
+     */
+    private static List<Hit> rerank(List<Integer> candidates, HnswIndex.VectorSource vectors,
+                                    float[] q, int k, float threshold) {
+        if (candidates.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        int capacity = Math.min(k, candidates.size());
+        float[] heapScores = new float[capacity];
+        int[] heapIds = new int[capacity];
+        int heapSize = 0;
+
+        for (int photoId : candidates) {
+            float dot = vectors.dot(q, photoId);
+            // 검색 도중 삭제된 경우 건너뜀
+            if (dot == Float.NEGATIVE_INFINITY || dot < threshold) continue;
+
+            if (heapSize < capacity) {
+                heapScores[heapSize] = dot;
+                heapIds[heapSize] = photoId;
+                siftUp(heapScores, heapIds, heapSize);
+                heapSize++;
+            } else if (dot > heapScores[0]) {
+                heapScores[0] = dot;
+                heapIds[0] = photoId;
+                siftDown(heapScores, heapIds, heapSize);
+            }
+        }
+
+        return drainDescending(heapScores, heapIds, heapSize);
+    }
+
+    /**
+     * 재현율 비교 기준용 float 전수 검색 (스냅샷의 모든 사진을 양자화 없이 채점)
+     */
+    private static List<Hit> searchExact(Snapshot current, HnswIndex.VectorSource vectors, float[] q, int k) {
+        List<Integer> all = new ArrayList<>(current.size);
+        for (int slot = 0; slot < current.size; slot++) {
+            all.add(current.photoIds[slot]);
+        }
+        return rerank(all, vectors, q, k, -1f);
+    }
+
+    private static List<Hit> withoutPhoto(List<Hit> hits, int photoId, int k) {
+        List<Hit> kept = new ArrayList<>(k);
+        for (Hit hit : hits) {
+            if (hit.photoId == photoId) continue;
+            kept.add(hit);
+            if (kept.size() == k) break;
+        }
+        return kept;
+    }
+
+    /**
+     * 힙에서 꺼내며 뒤에서부터 채우면 내림차순
+     */
+    private static List<Hit> drainDescending(float[] heapScores, int[] heapIds, int heapSize) {
+        Hit[] hits = new Hit[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            hits[i] = new Hit(heapIds[0], heapScores[0]);
+            heapScores[0] = heapScores[i];
+            heapIds[0] = heapIds[i];
+            siftDown(heapScores, heapIds, i);
+        }
+        return new ArrayList<>(Arrays.asList(hits));
+    }
+
+    // ========== HNSW 모드 ==========
+
+    /**
+     * 저장된 HNSW 파일 로드 후 DB 와 동기화. 파일이 없거나 못 쓰면 false
+     */
+    private boolean loadHnswFromFile() {
+        HnswIndex loadedIndex;
+        try {
+            loadedIndex = HnswIndex.load(hnswFile, dim, storeVectors);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "❌ HNSW 인덱스 파일 로드 실패 → DB 에서 재구성", e);
+            loadedIndex = null;
+        }
+        if (loadedIndex == null) return false;
+
+        // 마지막 저장 이후 저장소에 추가/삭제된 사진 반영
+        EmbeddingStore.View storeView = store.view();
+        Set<Integer> storeIds = new HashSet<>();
+        float[] buffer = new float[dim];
+        int added = 0;
+        for (int record = 0; storeView != null && record < storeView.recordCount(); record++) {
+            if (!storeView.isLive(record)) continue;
+            int photoId = storeView.photoIdAt(record);
+            storeIds.add(photoId);
+            if (loadedIndex.contains(photoId)) continue;
+            storeView.readVector(record, buffer);
+            loadedIndex.add(photoId, buffer);
+            added++;
+        }
+        int removed = 0;
+        for (int photoId : loadedIndex.livePhotoIds()) {
+            if (!storeIds.contains(photoId)) {
+                loadedIndex.markDeleted(photoId);
+                removed++;
+            }
+        }
+
+        boolean dirty = added > 0 || removed > 0;
+        if (loadedIndex.deletedRatio() > COMPACT_DELETED_RATIO) {
+            Log.d(TAG, "🧹 tombstone 비율 초과 → 인덱스 재구성");
+            loadedIndex = loadedIndex.compact();
+            dirty = true;
+        }
+
+        hnsw = loadedIndex;
+        addsSinceSave = 0;
+        if (dirty) {
+            saveHnsw();
+        }
+        Log.d(TAG, "📂 HNSW 파일 로드: 추가 " + added + ", 삭제 " + removed);
+        return true;
+    }
+
+    /**
+     * 저장소의 float 벡터로 HNSW 를 만들고 전환
+     * 전수 배열은 해제 (그래프 탐색과 점수 계산은 매핑 파일을 읽으므로 힙에 벡터 사본을 두지 않음)
+     */
+    private void switchToHnsw() {
+        long start = System.nanoTime();
+        hnsw = buildHnswFromStore();
+        slotById.clear();
+        snapshot = Snapshot.empty(0, dim);
+        saveHnsw();
+        Log.d(TAG, "🔀 HNSW 모드 전환: " + hnsw.size() + "개 ("
+                + (System.nanoTime() - start) / 1_000_000 + "ms)");
+    }
+
+    /**
+     * 양자화 스냅샷은 근사값이라 그래프는 저장소의 원본 float 벡터(정규화됨)로 구성
+     */
+    private HnswIndex buildHnswFromStore() {
+        HnswIndex index = new HnswIndex(dim, hnswM, DEFAULT_EF_CONSTRUCTION, storeVectors);
+        EmbeddingStore.View storeView = store.view();
+        float[] buffer = new float[dim];
+        for (int record = 0; storeView != null && record < storeView.recordCount(); record++) {
+            if (!storeView.isLive(record)) continue;
+            storeView.readVector(record, buffer);
+            index.add(storeView.photoIdAt(record), buffer);
+        }
+        return index;
+    }
+
+    private void saveHnsw() {
+        try {
+            hnsw.save(hnswFile);
+            addsSinceSave = 0;
+        } catch (IOException e) {
+            Log.e(TAG, "❌ HNSW 인덱스 저장 실패", e);
+        }
+    }
+
+    // ========== 공통 도우미 ==========
+
+    static void siftUp(float[] scores, int[] slots, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[parent] <= scores[index]) break;
+            swap(scores, slots, parent, index);
+            index = parent;
+        }
+    }
+
+    static void siftDown(float[] scores, int[] slots, int size) {
+        int index = 0;
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) break;
+            int smallest = left;
+            int right = left + 1;
+            if (right < size && scores[right] < scores[left]) smallest = right;
+            if (scores[index] <= scores[smallest]) break;
+            swap(scores, slots, index, smallest);
+            index = smallest;
+        }
+    }
+
+    private static void swap(float[] scores, int[] slots, int a, int b) {
+        float s = scores[a];
+        scores[a] = scores[b];
+        scores[b] = s;
+        int t = slots[a];
+        slots[a] = slots[b];
+        slots[b] = t;
+    }
+
+    private float[] normalizedCopy(float[] vector) {
+        float[] copy = Arrays.copyOf(vector, dim);
+        SimilarityUtil.normalizeInPlace(copy, 0, dim);
+        return copy;
+    }
+}
@@ -0,0 +1,359 @@
+// service/ZeroShotTagger.java
+package com.example.wakey.service;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import android.util.Pair;
+
+import com.example.wakey.data.local.AppDatabase;
+import com.example.wakey.data.local.EmbeddingStore;
+import com.example.wakey.data.local.PhotoDao;
+import com.example.wakey.data.util.SimilarityUtil;
+import com.example.wakey.tflite.ClipImageEncoder;
+import com.example.wakey.tflite.ClipTextEncoder;
+import com.example.wakey.tflite.ClipTokenizer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * CLIP 제로샷 해시태그
+ * - 라벨 사전(ImageNet labels.txt + 여행용 travel_labels.txt)의 텍스트 임베딩을 한 번만 계산해서 바이너리 행렬로 캐시
+ * - 사진 태그 = 저장된 이미지 임베딩 x 라벨 행렬 (행렬-벡터 곱 한 번, 모델 추론 없음)
+ * - 라벨 목록/프롬프트/텍스트 모델이 바뀌면 헤더의 해시가 달라져 행렬을 다시 계산
+ * - 마지막으로 다시 태그할 때 쓴 해시를 기억해서, 바뀌었으면 IndexingJob 이 자동 생성 해시태그만 다시 만듦
+ *   (비었거나 인덱싱 작업이 채운 값 그대로인 사진만. 다른 경로에서 바뀐 해시태그는 유지)
+ */
+public class ZeroShotTagger {
+    private static final String TAG = "ZeroShotTagger";
+    private static ZeroShotTagger instance;
+
+    private static final String IMAGENET_LABELS_ASSET = "labels.txt";
+    private static final String TRAVEL_LABELS_ASSET = "travel_labels.txt";
+    private static final String PROMPT_TEMPLATE = "a photo of a %s";
+    private static final String MATRIX_FILE = "vector_index/clip_label_embeddings.bin";
+
+    private static final int MAGIC = 0x574C424C;    // "WLBL"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 20;      // magic, version, dim, labelHash, labelCount
+
+    private static final int TAGS_PER_PHOTO = 5;
+    private static final float LOGIT_SCALE = 100f;   // CLIP 학습 온도 (유사도 → softmax 로짓)
+    private static final float MIN_TAG_PERCENT = 1f; // 첫 태그 이후로는 이 확률(%) 미만이면 제외
+    private static final int UPDATE_BATCH_SIZE = 500;
+
+    private static final String PREFS_NAME = "wakey_zero_shot";
+    private static final String KEY_RETAGGED_LABEL_HASH = "retagged_label_hash";
+
+    private final Context context;
+    private final SharedPreferences preferences;
+    private final Object loadLock = new Object();
+
+    // 라벨 i 의 정규화된 텍스트 임베딩 = vectors[i * dim .. (i + 1) * dim)
+    private volatile String[] labels;
+    private volatile float[] vectors;
+    private volatile int labelHash;
+    private final int dim = ClipImageEncoder.EMBEDDING_DIM;
+
+    private ZeroShotTagger(Context context) {
+        this.context = context;
+        this.preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public static synchronized ZeroShotTagger getInstance(Context context) {
+        if (instance == null) {
+            instance = new ZeroShotTagger(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * 라벨 행렬 준비 (캐시 파일 우선, 없으면 텍스트 인코더로 계산 후 저장). 백그라운드 스레드에서 호출
+     * 처음 한 번은 라벨 수만큼 텍스트 인코더를 돌리므로 오래 걸림
+     */
+    public boolean ensureLoaded() {
+        if (vectors != null) return true;
+
+        synchronized (loadLock) {
+            if (vectors != null) return true;
+
+            long start = System.nanoTime();
+            try {
+                List<String> labelList = loadLabelList();
+                int labelHash = labelHash(labelList);
+                File file = new File(context.getFilesDir(), MATRIX_FILE);
+
+                float[] matrix = readMatrix(file, labelList.size(), labelHash);
+                if (matrix == null) {
+                    matrix = computeMatrix(labelList);
+                    writeMatrix(file, matrix, labelList.size(), labelHash);
+                }
+
+                labels = labelList.toArray(new String[0]);
+                this.labelHash = labelHash;
+                vectors = matrix;
+                EmbeddingStore.getInstance(context).ensureOpen();
+                Log.d(TAG, "✅ 라벨 행렬 준비 완료: " + labels.length + "개 ("
+                        + (System.nanoTime() - start) / 1_000_000 + "ms)");
+                return true;
+            } catch (IOException e) {
+                Log.e(TAG, "❌ 라벨 행렬 준비 실패", e);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 저장된 임베딩으로 만든 해시태그 문자열 ("#beach #ocean ..."). 임베딩이 없으면 null
+     */
+    public String hashtagsFor(int photoId) {
+        if (!ensureLoaded()) return null;
+
+        EmbeddingStore.View view = EmbeddingStore.getInstance(context).view();
+        int record = view != null ? view.recordOf(photoId) : -1;
+        if (record < 0) return null;
+
+        float[] query = new float[dim];
+        view.readVector(record, query);
+        return toHashtags(topTags(query, new float[labels.length]));
+    }
+
+    /**
+     * 라벨 사전(라벨 목록/프롬프트/텍스트 모델)이 마지막으로 다시 태그한 뒤 바뀌었으면 자동 생성 해시태그를 다시 만듦
+     * 앱 업데이트로 travel_labels.txt 가 바뀐 경우 등. 바뀌지 않았으면 바로 0 반환. 백그라운드 스레드에서 호출
+     */
+    public int retagIfLabelsChanged() {
+        if (!ensureLoaded()) return 0;
+        int current = labelHash;
+        if (preferences.contains(KEY_RETAGGED_LABEL_HASH)
+                && preferences.getInt(KEY_RETAGGED_LABEL_HASH, 0) == current) {
+            return 0;
+        }
+        // 임베딩 파일이 아직 없으면 다음 실행 때 (해시를 기록하지 않음)
+        if (EmbeddingStore.getInstance(context).view() == null) return 0;
+
+        Log.d(TAG, "🏷️ 라벨 사전 변경 감지, 자동 생성 해시태그 다시 태그");
+        int tagged = retagGeneratedHashtags();
+        preferences.edit().putInt(KEY_RETAGGED_LABEL_HASH, current).apply();
+        return tagged;
+    }
+
+    /**
+     * 임베딩이 있는 사진 중 해시태그가 비었거나 마지막 자동 생성 값 그대로인 사진만 다시 태그
+     * 해시태그가 다른 경로에서 바뀌었거나 출처를 모르는 사진(autoHashtags 기록 전)은 덮어쓰지 않음
+     * 사진 한 장당 행렬-벡터 곱 한 번이라 2만 장도 수 초 안에 끝남. 백그라운드 스레드에서 호출
+     */
+    private int retagGeneratedHashtags() {
+        if (!ensureLoaded()) return 0;
+        EmbeddingStore.View view = EmbeddingStore.getInstance(context).view();
+        if (view == null) return 0;
+
+        long start = System.nanoTime();
+        AppDatabase db = AppDatabase.getInstance(context);
+        PhotoDao photoDao = db.photoDao();
+        float[] query = new float[dim];
+        float[] scores = new float[labels.length];
+
+        List<Integer> photoIds = new ArrayList<>(UPDATE_BATCH_SIZE);
+        List<String> hashtags = new ArrayList<>(UPDATE_BATCH_SIZE);
+        int tagged = 0;
+        for (int record = 0; record < view.recordCount(); record++) {
+            if (!view.isLive(record)) continue;
+            view.readVector(record, query);
+            photoIds.add(view.photoIdAt(record));
+            hashtags.add(toHashtags(topTags(query, scores)));
+
+            if (photoIds.size() == UPDATE_BATCH_SIZE) {
+                tagged += applyHashtags(db, photoDao, photoIds, hashtags);
+            }
+        }
+        tagged += applyHashtags(db, photoDao, photoIds, hashtags);
+
+        Log.d(TAG, "🏷️ 자동 생성 해시태그 다시 태그: " + tagged + "장 ("
+                + (System.nanoTime() - start) / 1_000_000 + "ms)");
+        return tagged;
+    }
+
+    /**
+     * 예측 결과를 해시태그 문자열로 (ImageNet 라벨의 첫 번째 이름만, 공백 제거)
+     */
+    public static String toHashtags(List<Pair<String, Float>> predictions) {
+        StringBuilder hashtagBuilder = new StringBuilder();
+        for (Pair<String, Float> pred : predictions) {
+            if (pred != null && pred.first != null) {
+                String term = pred.first.split(",")[0].trim();
+                if (!term.isEmpty()) {
+                    hashtagBuilder.append("#").append(term.replace(" ", "")).append(" ");
+                }
+            }
+        }
+        return hashtagBuilder.toString().trim();
+    }
+
+    /**
+     * 정규화된 질의와 모든 라벨의 유사도 → softmax(LOGIT_SCALE * 유사도) 상위 TAGS_PER_PHOTO 개
+     */
+    private List<Pair<String, Float>> topTags(float[] query, float[] scores) {
+        String[] labelArray = labels;
+        int count = labelArray.length;
+        SimilarityUtil.dotBatch(query, vectors, 0, dim, count, scores, 0);
+
+        float max = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            max = Math.max(max, scores[i]);
+        }
+        double sumExp = 0;
+        for (int i = 0; i < count; i++) {
+            sumExp += Math.exp(LOGIT_SCALE * (scores[i] - max));
+        }
+
+        // 상위 k 개를 단순 선택 (k 가 작아서 정렬보다 빠름)
+        int k = Math.min(TAGS_PER_PHOTO, count);
+        int[] top = new int[k];
+        boolean[] taken = new boolean[count];
+        for (int t = 0; t < k; t++) {
+            int best = -1;
+            for (int i = 0; i < count; i++) {
+                if (!taken[i] && (best < 0 || scores[i] > scores[best])) best = i;
+            }
+            top[t] = best;
+            taken[best] = true;
+        }
+
+        List<Pair<String, Float>> tags = new ArrayList<>(k);
+        for (int t = 0; t < k; t++) {
+            float percent = (float) (Math.exp(LOGIT_SCALE * (scores[top[t]] - max)) / sumExp * 100);
+            if (t > 0 && percent < MIN_TAG_PERCENT) break;
+            tags.add(new Pair<>(labelArray[top[t]], percent));
+        }
+        return tags;
+    }
+
+    private int applyHashtags(AppDatabase db, PhotoDao photoDao, List<Integer> photoIds, List<String> hashtags) {
+        if (photoIds.isEmpty()) return 0;
+        int[] updated = new int[1];
+        db.runInTransaction(() -> {
+            for (int i = 0; i < photoIds.size(); i++) {
+                updated[0] += photoDao.replaceGeneratedHashtags(photoIds.get(i), hashtags.get(i));
+            }
+        });
+        photoIds.clear();
+        hashtags.clear();
+        return updated[0];
+    }
+
+    // ========== 라벨 사전 / 행렬 파일 ==========
+
+    private List<String> loadLabelList() throws IOException {
+        Set<String> labelSet = new LinkedHashSet<>();
+        readLabels(IMAGENET_LABELS_ASSET, labelSet);
+        readLabels(TRAVEL_LABELS_ASSET, labelSet);
+        return new ArrayList<>(labelSet);
+    }
+
+    private void readLabels(String asset, Set<String> out) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(context.getAssets().open(asset), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String label = line.trim();
+                if (label.isEmpty() || label.startsWith("#")) continue;
+                out.add(label);
+            }
+        }
+    }
+
+    private static int labelHash(List<String> labelList) {
+        int hash = (ClipTextEncoder.MODEL_ID + "|" + ClipTokenizer.VERSION + "|" + PROMPT_TEMPLATE).hashCode();
+        for (String label : labelList) {
+            hash = 31 * hash + label.hashCode();
+        }
+        return hash;
+    }
+
+    private float[] computeMatrix(List<String> labelList) throws IOException {
+        long start = System.nanoTime();
+        TextEmbeddingService textService = TextEmbeddingService.getInstance(context);
+        float[] matrix = new float[labelList.size() * dim];
+        for (int i = 0; i < labelList.size(); i++) {
+            float[] embedding = textService.encodeUncached(
+                    String.format(Locale.ROOT, PROMPT_TEMPLATE, labelList.get(i)));
+            System.arraycopy(embedding, 0, matrix, i * dim, dim);
+        }
+        Log.d(TAG, "🔤 라벨 텍스트 임베딩 계산: " + labelList.size() + "개 ("
+                + (System.nanoTime() - start) / 1_000_000 + "ms)");
+        return matrix;
+    }
+
+    /**
+     * 캐시 파일 읽기. 없거나 라벨 구성이 다르면 null
+     */
+    private float[] readMatrix(File file, int labelCount, int labelHash) {
+        if (!file.exists()) return null;
+        try (FileInputStream input = new FileInputStream(file);
+             FileChannel channel = input.getChannel()) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.read(header) != header.capacity()) return null;
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION
+                    || header.getInt() != dim || header.getInt() != labelHash
+                    || header.getInt() != labelCount) {
+                Log.d(TAG, "라벨 구성이 바뀌어 행렬을 다시 계산");
+                return null;
+            }
+
+            ByteBuffer body = ByteBuffer.allocate(labelCount * dim * 4).order(ByteOrder.LITTLE_ENDIAN);
+            while (body.hasRemaining()) {
+                if (channel.read(body) < 0) return null;
+            }
+            body.flip();
+            float[] matrix = new float[labelCount * dim];
+            body.asFloatBuffer().get(matrix);
+            return matrix;
+        } catch (IOException e) {
+            Log.e(TAG, "❌ 라벨 행렬 파일 읽기 실패", e);
+            return null;
+        }
+    }
+
+    /**
+     * 임시 파일에 쓴 뒤 교체 (쓰다 끊겨도 깨진 캐시가 남지 않도록)
+     */
+    private void writeMatrix(File file, float[] matrix, int labelCount, int labelHash) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("디렉터리 생성 실패: " + dir);
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + matrix.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(dim).putInt(labelHash).putInt(labelCount);
+        buffer.asFloatBuffer().put(matrix);
+        buffer.position(0);
+
+        try (FileOutputStream output = new FileOutputStream(tmp);
+             FileChannel channel = output.getChannel()) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("라벨 행렬 파일 교체 실패");
+        }
+    }
+}
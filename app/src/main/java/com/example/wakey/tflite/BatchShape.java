@@ -0,0 +1,117 @@
+package com.example.wakey.tflite;
+
+import android.util.Log;
+
+import org.tensorflow.lite.Interpreter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 인터프리터 입력 0번의 배치 차원 관리 ([1,H,W,C] ↔ [N,H,W,C])
+ * - 배치 크기가 바뀔 때만 resizeInput + allocateTensors (같은 크기가 이어지면 재할당 없음)
+ * - 풀에 반납하기 전에 reset 으로 배치 1 로 되돌려서 다른 사용자가 기존 형태 그대로 쓰게 함
+ * - 배치 입력용 direct 버퍼는 최대 크기로 한 번만 잡고 배치 크기별 slice 를 재사용
+ */
+final class BatchShape {
+    private static final String TAG = "BatchShape";
+
+    private final int[] itemShape;
+    private final int itemBytes;
+    private int current = 1;
+
+    private ByteBuffer storage;
+    private ByteBuffer[] batchViews;    // 배치 크기 n → 앞쪽 n 장 영역 (capacity 가 텐서 크기와 정확히 같아야 함)
+    private ByteBuffer[] itemViews;     // i 번째 사진 영역
+
+    BatchShape(int itemBytes, int... itemShape) {
+        this.itemBytes = itemBytes;
+        this.itemShape = itemShape;
+    }
+
+    int current() {
+        return current;
+    }
+
+    /**
+     * 입력 배치 크기 변경. 모델이 가변 배치를 지원하지 않으면 배치 1 로 되돌리고 false
+     */
+    boolean resize(Interpreter interpreter, int batch) {
+        if (batch == current) return true;
+        try {
+            apply(interpreter, batch);
+            return true;
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            Log.w(TAG, "⚠️ 배치 " + batch + " 로 입력 크기 변경 실패, 한 장씩 추론: " + e.getMessage());
+            try {
+                apply(interpreter, 1);
+            } catch (RuntimeException ignored) {
+                // 배치 1 은 모델 원래 형태이므로 실패하지 않음
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 배치 1 로 복원 (풀 반납 전)
+     */
+    void reset(Interpreter interpreter) {
+        if (interpreter != null && current != 1) {
+            resize(interpreter, 1);
+        }
+    }
+
+    /**
+     * 앞쪽 batch 장을 담는 입력 버퍼 (처음부터 읽도록 rewind 된 상태)
+     */
+    ByteBuffer batchInput(int batch) {
+        ensureStorage(batch);
+        ByteBuffer view = batchViews[batch];
+        if (view == null) {
+            ByteBuffer slice = storage.duplicate();
+            slice.clear();
+            slice.limit(batch * itemBytes);
+            view = slice.slice().order(ByteOrder.nativeOrder());
+            batchViews[batch] = view;
+        }
+        view.rewind();
+        return view;
+    }
+
+    /**
+     * 배치 입력 중 index 번째 사진 영역 (ImagePreprocessor 가 여기에 바로 기록)
+     * 저장 공간은 resize 에서 배치 크기만큼 미리 확보됨 (여기서 늘리면 앞 사진 영역의 기록이 사라짐)
+     */
+    ByteBuffer itemInput(int index) {
+        ensureStorage(index + 1);
+        ByteBuffer view = itemViews[index];
+        if (view == null) {
+            ByteBuffer slice = storage.duplicate();
+            slice.clear();
+            slice.position(index * itemBytes);
+            slice.limit((index + 1) * itemBytes);
+            view = slice.slice().order(ByteOrder.nativeOrder());
+            itemViews[index] = view;
+        }
+        return view;
+    }
+
+    private void ensureStorage(int batch) {
+        if (storage != null && storage.capacity() >= batch * itemBytes) return;
+        storage = ByteBuffer.allocateDirect(batch * itemBytes).order(ByteOrder.nativeOrder());
+        batchViews = new ByteBuffer[batch + 1];
+        itemViews = new ByteBuffer[batch];
+    }
+
+    private void apply(Interpreter interpreter, int batch) {
+        if (batch > 1) {
+            ensureStorage(batch);
+        }
+        int[] shape = new int[itemShape.length + 1];
+        shape[0] = batch;
+        System.arraycopy(itemShape, 0, shape, 1, itemShape.length);
+        interpreter.resizeInput(0, shape);
+        interpreter.allocateTensors();
+        current = batch;
+    }
+}
@@ -15,7 +15,6 @@ import org.tensorflow.lite.DataType;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.MappedByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -27,16 +26,17 @@ public class BeitClassifier {
     private static final int NUM_CLASSES = 1000; // 클래스 수
     private static final float[] MEAN_RGB = {0.485f, 0.456f, 0.406f}; // ImageNet 정규화 평균
     private static final float[] STD_RGB = {0.229f, 0.224f, 0.225f}; // ImageNet 정규화 표준편차
+    // 백엔드(NNAPI/XNNPACK)와 스레드 수는 InferenceBackendSelector 측정 결과를 따름 (측정 전 4 스레드)
+    static final ModelRegistry.Spec SPEC = new ModelRegistry.Spec(MODEL_PATH, 4, 1);
+
+    private final ModelRegistry registry;
     private Interpreter tflite;
     private List<String> labels;
 
     public BeitClassifier(Context context) throws IOException {
-        // 모델 로드
-        MappedByteBuffer tfliteModel = FileUtil.loadMappedFile(context, MODEL_PATH);
-        Interpreter.Options options = new Interpreter.Options();
-        options.setNumThreads(4); // 멀티스레딩
-        options.setUseNNAPI(true); // NPU 가속
-        tflite = new Interpreter(tfliteModel, options);
+        // 모델 로드 (공용 풀에서 대여, close 로 반납)
+        registry = ModelRegistry.getInstance(context);
+        tflite = registry.acquire(SPEC);
 
         // 디바이스 정보 로그
         String deviceInfo = "디바이스: " + Build.MODEL + ", 제조사: " + Build.MANUFACTURER +
@@ -44,11 +44,13 @@ public class BeitClassifier {
         if (Build.MODEL.contains("sdk_gphone") || Build.MODEL.contains("emulator")) {
             deviceInfo += " (⚠️ 에뮬레이터: NPU 가속 불가, 성능 저하 예상)";
         }
-        Log.d("BeitClassifier", "📱 " + deviceInfo);
+        Log.d("BeitClassifier", "📱 " + deviceInfo + ", 백엔드: "
+                + InferenceBackendSelector.getInstance(context).configFor(SPEC));
 
         // 레이블 로드
         labels = FileUtil.loadLabels(context, LABELS_PATH);
         if (labels.size() != NUM_CLASSES) {
+            close();
             throw new IOException("레이블 파일 크기 불일치: 기대 " + NUM_CLASSES + ", 실제 " + labels.size());
         }
         Log.d("BeitClassifier", "✅ BEiT 모델 및 레이블 로드 완료 (Qualcomm AI Hub TFLite)");
@@ -145,9 +147,9 @@ public class BeitClassifier {
 
     public void close() {
         if (tflite != null) {
-            tflite.close();
+            registry.release(SPEC, tflite);
             tflite = null;
-            Log.d("BeitClassifier", "🛑 Interpreter 종료");
+            Log.d("BeitClassifier", "🛑 Interpreter 반납");
         }
     }
 }
\ No newline at end of file
@@ -2,61 +2,143 @@ package com.example.wakey.tflite;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.Color;
 
 import org.tensorflow.lite.Interpreter;
-import org.tensorflow.lite.support.common.FileUtil;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.MappedByteBuffer;
+import java.util.List;
 
 public class ClipImageEncoder
 {
     private static final String MODEL_PATH = "openai_clip-clipimageencoder-snapdragon_8_elite.tflite";
-    private static final int IMAGE_SIZE = 224;
-    private static final int EMBEDDING_DIM = 512;
+    public static final int IMAGE_SIZE = 224;
+    public static final int EMBEDDING_DIM = 512;
 
+    // PhotoEmbedding.modelId 로 저장되는 모델 식별자
+    public static final String MODEL_ID = "clip-vit-b32-image";
+
+    // 수집 파이프라인 추론 워커 + 재임베딩 작업 + 이미지 검색이 동시에 쓸 수 있도록 2개까지 유지
+    static final ModelRegistry.Spec SPEC = new ModelRegistry.Spec(MODEL_PATH, 0, 2);
+
+    private final ModelRegistry registry;
     private Interpreter interpreter;
 
+    // 인스턴스별 재사용 버퍼 (사진마다 새로 할당하지 않음)
+    private final ImagePreprocessor preprocessor = newPreprocessor();
+    private final ByteBuffer input = newInputBuffer();
+    private final float[][] output = new float[1][EMBEDDING_DIM];
+
+    // [N,224,224,3] 배치 추론용 입력 형태/버퍼 (가변 배치를 지원하지 않는 모델이면 한 장씩)
+    private static volatile boolean batchUnsupported;
+    private final BatchShape batchShape = new BatchShape(IMAGE_SIZE * IMAGE_SIZE * 3 * 4, IMAGE_SIZE, IMAGE_SIZE, 3);
+    private float[][] batchOutput;
+
+    /**
+     * 공용 풀에서 인터프리터를 빌려옴 (모델 매핑/인터프리터 생성은 처음 한 번뿐), 사용 후 close 로 반납
+     */
     public ClipImageEncoder(Context context) throws IOException
     {
-        if (interpreter == null)
-        {
-            MappedByteBuffer modelBuffer = FileUtil.loadMappedFile(context, "openai_clip-clipimageencoder-snapdragon_8_elite.tflite");
-            interpreter = new Interpreter(modelBuffer);
-        }
+        registry = ModelRegistry.getInstance(context);
+        interpreter = registry.acquire(SPEC);
+    }
+
+    /**
+     * 인터프리터를 미리 만들어 한 번 추론해 두고 풀에 남김 (첫 인코딩 지연 제거)
+     */
+    public static void warmUp(Context context)
+    {
+        ModelRegistry.getInstance(context).warmUp(SPEC);
     }
 
     public float[] getImageEncoding(Bitmap bitmap)
     {
-        Bitmap resized = Bitmap.createScaledBitmap(bitmap, IMAGE_SIZE, IMAGE_SIZE, true);
+        preprocess(preprocessor, bitmap, input);
+        return encode(input);
+    }
+
+    /**
+     * 224x224 입력용 전처리기 (추론과 다른 스레드에서 전처리할 때 스레드마다 하나씩)
+     */
+    public static ImagePreprocessor newPreprocessor()
+    {
+        return new ImagePreprocessor(IMAGE_SIZE, IMAGE_SIZE);
+    }
 
-        ByteBuffer input = ByteBuffer.allocateDirect(IMAGE_SIZE * IMAGE_SIZE * 3 * 4).order(ByteOrder.nativeOrder());
+    public static ByteBuffer newInputBuffer()
+    {
+        return ImagePreprocessor.allocateFloatInput(IMAGE_SIZE, IMAGE_SIZE);
+    }
 
-        for (int y = 0; y < IMAGE_SIZE; y++)
+    /**
+     * 224x224 RGB float 입력 텐서를 out 에 기록 (인터프리터를 쓰지 않으므로 추론과 다른 스레드에서 실행 가능)
+     */
+    public static void preprocess(ImagePreprocessor preprocessor, Bitmap bitmap, ByteBuffer out)
+    {
+        preprocessor.writeFloatRgb(bitmap, out);
+    }
+
+    /**
+     * preprocess 로 만든 입력 텐서의 임베딩 (반환 배열은 호출자 소유)
+     */
+    public float[] encode(ByteBuffer input)
+    {
+        batchShape.resize(interpreter, 1);
+        input.rewind();
+        interpreter.run(input, output);
+        return output[0].clone();
+    }
+
+    /**
+     * preprocess 로 만든 입력 텐서 여러 개를 한 번의 run 으로 임베딩 (결과 순서는 입력 순서, 배열은 호출자 소유)
+     * 모델이 가변 배치를 지원하지 않으면 한 장씩 encode
+     */
+    public float[][] encodeBatch(List<ByteBuffer> inputs)
+    {
+        int count = inputs.size();
+        float[][] embeddings = new float[count][];
+        if (count == 1 || batchUnsupported || !batchShape.resize(interpreter, count))
         {
-            for (int x = 0; x < IMAGE_SIZE; x++)
+            if (count > 1)
+            {
+                batchUnsupported = true;
+            }
+            for (int i = 0; i < count; i++)
             {
-                int pixel = resized.getPixel(x, y);
-                input.putFloat(Color.red(pixel) / 255.0f);
-                input.putFloat(Color.green(pixel) / 255.0f);
-                input.putFloat(Color.blue(pixel) / 255.0f);
+                embeddings[i] = encode(inputs.get(i));
             }
+            return embeddings;
         }
 
-        float[][] output = new float[1][EMBEDDING_DIM];
-        interpreter.run(input, output);
-        return output[0];
+        ByteBuffer batchInput = batchShape.batchInput(count);
+        for (ByteBuffer input : inputs)
+        {
+            ByteBuffer source = input.duplicate();
+            source.rewind();
+            batchInput.put(source);
+        }
+        batchInput.rewind();
+
+        if (batchOutput == null || batchOutput.length != count)
+        {
+            batchOutput = new float[count][EMBEDDING_DIM];
+        }
+        interpreter.run(batchInput, batchOutput);
+        for (int i = 0; i < count; i++)
+        {
+            embeddings[i] = batchOutput[i].clone();
+        }
+        return embeddings;
     }
 
     public void close()
     {
         if (interpreter != null)
         {
-            interpreter.close();
+            batchShape.reset(interpreter);
+            registry.release(SPEC, interpreter);
             interpreter = null;
         }
+        preprocessor.release();
     }
 }
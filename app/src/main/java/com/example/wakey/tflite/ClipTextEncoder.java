@@ -3,23 +3,30 @@ package com.example.wakey.tflite;
 import android.content.Context;
 
 import org.tensorflow.lite.Interpreter;
-import org.tensorflow.lite.support.common.FileUtil;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.MappedByteBuffer;
 
 public class ClipTextEncoder {
     private static final String MODEL_PATH = "openai_clip-cliptextencoder-snapdragon_8_elite.tflite";
     private static final int MAX_TOKENS = 77;
     private static final int EMBEDDING_DIM = 512;
 
-    private final Interpreter interpreter;
+    // 텍스트 임베딩 캐시(라벨 행렬 등) 무효화용 모델 식별자
+    public static final String MODEL_ID = "clip-vit-b32-text";
 
+    static final ModelRegistry.Spec SPEC = new ModelRegistry.Spec(MODEL_PATH, 0, 1);
+
+    private final ModelRegistry registry;
+    private Interpreter interpreter;
+
+    /**
+     * 공용 풀에서 인터프리터를 빌려옴, 사용 후 close 로 반납
+     */
     public ClipTextEncoder(Context context) throws IOException {
-        MappedByteBuffer modelBuffer = FileUtil.loadMappedFile(context, MODEL_PATH);
-        interpreter = new Interpreter(modelBuffer);
+        registry = ModelRegistry.getInstance(context);
+        interpreter = registry.acquire(SPEC);
     }
 
     public float[] getTextEncoding(int[] tokenIds) {
@@ -35,6 +42,9 @@ public class ClipTextEncoder {
     }
 
     public void close() {
-        interpreter.close();
+        if (interpreter != null) {
+            registry.release(SPEC, interpreter);
+            interpreter = null;
+        }
     }
 }
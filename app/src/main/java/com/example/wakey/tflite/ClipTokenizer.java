@@ -1,180 +1,169 @@
 package com.example.wakey.tflite;
 
 import android.content.Context;
-import android.util.Log;
 
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.util.*;
-
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * CLIP BPE 토크나이저 (원본 CLIP simple_tokenizer 와 같은 규칙)
+ * - 공백 정리 + 소문자 → 정규식으로 단어 분리 → UTF-8 바이트를 바이트 유니코드 기호 id 로 변환
+ * - 단어 마지막 기호에 </w> 를 붙인 상태에서 병합 순위가 가장 낮은 이웃 쌍부터 int id 로 병합
+ * - 단어 → 토큰 id 배열 결과는 LRU 캐시에 보관 (검색어 입력 중 같은 단어 반복 토큰화 방지)
+ */
 public class ClipTokenizer {
 
-    private static final String TAG = "ClipTokenizer";
+    // 토큰화 규칙이 바뀌면 올려서 텍스트 임베딩 디스크 캐시(라벨 행렬 등)를 무효화
+    public static final int VERSION = 2;
 
     private static final int MAX_TOKENS = 77;
     private static final int SOS_TOKEN_ID = 49406;
     private static final int EOS_TOKEN_ID = 49407;
-
-    private final Map<String, Integer> vocab = new HashMap<>();
-    private final Map<String, Integer> mergeRanks = new HashMap<>();
-
-    public ClipTokenizer(Context context) throws IOException {
-        loadVocab(context);
-        loadMerges(context);
-    }
-
-    private void loadVocab(Context context) throws IOException {
-        BufferedReader reader = new BufferedReader(
-                new InputStreamReader(context.getAssets().open("tokenizer/vocab.json"))
-        );
-        StringBuilder jsonBuilder = new StringBuilder();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            jsonBuilder.append(line);
+    private static final int WORD_CACHE_SIZE = 2048;
+
+    // CLIP 단어 분리 규칙 (축약형, 문자 묶음, 숫자 한 글자, 기타 기호 묶음)
+    private static final Pattern WORD_PATTERN = Pattern.compile(
+            "'s|'t|'re|'ve|'m|'ll|'d|[\\p{L}]+|[\\p{N}]|[^\\s\\p{L}\\p{N}]+");
+    private static final String END_OF_WORD = "</w>";
+
+    // vocab.json / merges.txt 를 변환한 바이너리 (메모리 매핑, 생성 비용 거의 없음)
+    private final ClipVocabulary vocabulary;
+    // 바이트 값 → 바이트 유니코드 기호의 토큰 id (단어 중간 / 단어 끝 </w> 형태)
+    private final int[] byteIds = new int[256];
+    private final int[] byteEndIds = new int[256];
+    // 접근 순서 LinkedHashMap LRU (검색 스레드와 태거 스레드가 함께 쓰므로 wordCache 로 동기화)
+    private final Map<String, int[]> wordCache = new LinkedHashMap<String, int[]>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+            return size() > WORD_CACHE_SIZE;
         }
+    };
 
-        try {
-            JSONObject jsonObject = new JSONObject(jsonBuilder.toString());
-            Iterator<String> keys = jsonObject.keys();
-            while (keys.hasNext()) {
-                String key = keys.next();
-                try {
-                    int value = jsonObject.getInt(key);
-                    vocab.put(key, value);
-                } catch (org.json.JSONException e) {
-                    Log.e(TAG, "JSONException while parsing vocab value", e);
-                }
-            }
-        } catch (org.json.JSONException e) {
-            Log.e(TAG, "JSONException while creating JSONObject", e);
-        }
+    public ClipTokenizer(Context context) throws IOException {
+        this(ClipVocabulary.load(context));
     }
 
-    private void loadMerges(Context context) throws IOException {
-        BufferedReader reader = new BufferedReader(
-                new InputStreamReader(context.getAssets().open("tokenizer/merges.txt"))
-        );
-        String line;
-        boolean isFirst = true;
-        int rank = 0;
-        while ((line = reader.readLine()) != null) {
-            if (isFirst) { // 첫 줄은 버전 정보
-                isFirst = false;
-                continue;
-            }
-            String[] parts = line.split(" ");
-            if (parts.length == 2) {
-                String pair = parts[0] + " " + parts[1];
-                mergeRanks.put(pair, rank++);
+    /**
+     * 이미 불러온 어휘로 생성 (단위 테스트는 ClipVocabulary.fromStreams 로 에셋을 직접 읽어 사용)
+     */
+    ClipTokenizer(ClipVocabulary vocabulary) throws IOException {
+        this.vocabulary = vocabulary;
+
+        char[] byteChars = bytesToUnicode();
+        for (int b = 0; b < 256; b++) {
+            String symbol = String.valueOf(byteChars[b]);
+            byteIds[b] = vocabulary.idOf(symbol);
+            byteEndIds[b] = vocabulary.idOf(symbol + END_OF_WORD);
+            if (byteIds[b] < 0 || byteEndIds[b] < 0) {
+                throw new IOException("토크나이저 어휘에 바이트 기호가 없음: " + b);
             }
         }
     }
 
     public int[] tokenize(String text) {
-        List<Integer> tokenIds = new ArrayList<>();
-        tokenIds.add(SOS_TOKEN_ID);
-
-        for (String token : basicTokenize(text)) {
-            List<String> bpeTokens = bpe(token);
-            for (String bpeToken : bpeTokens) {
-                Integer id = vocab.get(bpeToken);
-                if (id != null) {
-                    tokenIds.add(id);
-                }
-            }
+        int[] result = new int[MAX_TOKENS];    // 나머지는 0 패딩
+        int count = 0;
+        result[count++] = SOS_TOKEN_ID;
+
+        Matcher matcher = WORD_PATTERN.matcher(basicClean(text));
+        while (matcher.find() && count < MAX_TOKENS - 1) {
+            int[] wordIds = bpe(matcher.group());
+            int n = Math.min(wordIds.length, MAX_TOKENS - 1 - count);
+            System.arraycopy(wordIds, 0, result, count, n);
+            count += n;
         }
 
-        tokenIds.add(EOS_TOKEN_ID);
-
-        // Padding
-        while (tokenIds.size() < MAX_TOKENS) {
-            tokenIds.add(0);
-        }
-        if (tokenIds.size() > MAX_TOKENS) {
-            tokenIds = tokenIds.subList(0, MAX_TOKENS);
-        }
-
-        int[] result = new int[MAX_TOKENS];
-        for (int i = 0; i < MAX_TOKENS; i++) {
-            result[i] = tokenIds.get(i);
-        }
+        // 길이를 넘어도 EOS 는 항상 유지 (텍스트 인코더가 EOS 위치의 특징을 사용)
+        result[count] = EOS_TOKEN_ID;
         return result;
     }
 
-    private List<String> basicTokenize(String text) {
-        // 간단한 공백 기준 토큰화 및 소문자 처리
-        text = text.trim().toLowerCase(Locale.ROOT);
-        return Arrays.asList(text.split("\\s+"));
+    /**
+     * 공백 정리 및 소문자 처리
+     */
+    private static String basicClean(String text) {
+        return text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
     }
 
-    private List<String> bpe(String token) {
-        List<String> chars = new ArrayList<>();
-        for (char c : token.toCharArray()) {
-            chars.add(String.valueOf(c));
-        }
-        if (chars.size() == 0) return new ArrayList<>();
-
-        List<String> pairs = getPairs(chars);
-        while (true) {
-            String bigram = getLowestRankPair(pairs);
-            if (bigram == null || !mergeRanks.containsKey(bigram)) break;
-
-            String[] parts = bigram.split(" ");
-            List<String> newChars = new ArrayList<>();
-            int i = 0;
-            while (i < chars.size()) {
-                int j = indexOfPair(chars, parts[0], parts[1], i);
-                if (j == -1) {
-                    newChars.addAll(chars.subList(i, chars.size()));
-                    break;
-                }
-                newChars.addAll(chars.subList(i, j));
-                newChars.add(parts[0] + parts[1]);
-                i = j + 2;
-            }
-            chars = newChars;
-            pairs = getPairs(chars);
+    /**
+     * 단어 하나의 BPE 토큰 id (캐시 우선)
+     */
+    private int[] bpe(String word) {
+        int[] cached;
+        synchronized (wordCache) {
+            cached = wordCache.get(word);
         }
+        if (cached != null) return cached;
 
-        // 토큰 끝에 </w>를 붙여 vocab에서 인식되도록
-        if (chars.size() > 0) {
-            chars.set(chars.size() - 1, chars.get(chars.size() - 1) + "</w>");
+        byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+        int[] symbols = new int[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            symbols[i] = byteIds[bytes[i] & 0xFF];
         }
-
-        return chars;
-    }
-
-    private List<String> getPairs(List<String> chars) {
-        List<String> pairs = new ArrayList<>();
-        for (int i = 0; i < chars.size() - 1; i++) {
-            pairs.add(chars.get(i) + " " + chars.get(i + 1));
+        symbols[bytes.length - 1] = byteEndIds[bytes[bytes.length - 1] & 0xFF];
+
+        int length = bytes.length;
+        while (length > 1) {
+            // 순위가 가장 낮은(먼저 학습된) 이웃 쌍 찾기
+            int bestRank = Integer.MAX_VALUE;
+            int bestMerge = -1;
+            int bestPos = -1;
+            for (int i = 0; i < length - 1; i++) {
+                int merge = vocabulary.mergeIndex(symbols[i], symbols[i + 1]);
+                if (merge < 0) continue;
+                int rank = vocabulary.mergeRankAt(merge);
+                if (rank < bestRank) {
+                    bestRank = rank;
+                    bestMerge = merge;
+                    bestPos = i;
+                }
+            }
+            if (bestMerge < 0) break;
+
+            // 같은 쌍을 왼쪽부터 모두 병합 (제자리에서 앞으로 당겨 씀)
+            int left = symbols[bestPos];
+            int right = symbols[bestPos + 1];
+            int merged = vocabulary.mergedIdAt(bestMerge);
+            int write = 0;
+            int read = 0;
+            while (read < length) {
+                if (read < length - 1 && symbols[read] == left && symbols[read + 1] == right) {
+                    symbols[write++] = merged;
+                    read += 2;
+                } else {
+                    symbols[write++] = symbols[read++];
+                }
+            }
+            length = write;
         }
-        return pairs;
-    }
 
-    private String getLowestRankPair(List<String> pairs) {
-        int minRank = Integer.MAX_VALUE;
-        String best = null;
-        for (String pair : pairs) {
-            Integer rank = mergeRanks.get(pair);
-            if (rank != null && rank < minRank) {
-                minRank = rank;
-                best = pair;
-            }
+        int[] ids = new int[length];
+        System.arraycopy(symbols, 0, ids, 0, length);
+        synchronized (wordCache) {
+            wordCache.put(word, ids);
         }
-        return best;
+        return ids;
     }
 
-    private int indexOfPair(List<String> list, String a, String b, int start) {
-        for (int i = start; i < list.size() - 1; i++) {
-            if (list.get(i).equals(a) && list.get(i + 1).equals(b)) {
-                return i;
-            }
+    /**
+     * GPT-2/CLIP 바이트 → 유니코드 문자 대응표 (출력 가능한 바이트는 그대로, 나머지는 256 이후 문자)
+     */
+    private static char[] bytesToUnicode() {
+        char[] table = new char[256];
+        boolean[] printable = new boolean[256];
+        for (int b = '!'; b <= '~'; b++) printable[b] = true;
+        for (int b = 0xA1; b <= 0xAC; b++) printable[b] = true;
+        for (int b = 0xAE; b <= 0xFF; b++) printable[b] = true;
+
+        int next = 0;
+        for (int b = 0; b < 256; b++) {
+            table[b] = printable[b] ? (char) b : (char) (256 + next++);
         }
-        return -1;
+        return table;
     }
 }
-
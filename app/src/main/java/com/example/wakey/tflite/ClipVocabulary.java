@@ -0,0 +1,343 @@
+package com.example.wakey.tflite;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.util.Log;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CLIP BPE 어휘/병합 테이블 바이너리 (vocab.json + merges.txt 를 한 번만 변환해서 메모리 매핑)
+ * - 토큰 문자열은 UTF-8 바이트 순으로 정렬된 문자열 풀 + 오프셋 표 → 이진 탐색으로 id 조회
+ * - 병합 규칙은 (왼쪽 id << 32 | 오른쪽 id) long 키로 정렬, 순위와 병합 결과 id 를 함께 저장
+ * - 최초 실행(또는 앱 업데이트) 때만 JSON 을 스트리밍으로 읽어 files/tokenizer 에 저장, 이후 생성 비용은 매핑뿐
+ * - 변환 자체는 스트림만 사용하므로 JVM 단위 테스트에서는 fromStreams 로 에셋 파일을 바로 읽음
+ *
+ * 파일 구조 (little endian)
+ * [헤더] magic, version, assetStamp(long), vocabCount, idCount, mergeCount, poolBytes
+ * [int sortedOffsets[vocabCount + 1]] [int sortedIds[vocabCount]]
+ * [long mergeKeys[mergeCount]] [int mergeRanks[mergeCount]] [int mergedIds[mergeCount]] [byte pool[poolBytes]]
+ */
+public class ClipVocabulary {
+    private static final String TAG = "ClipVocabulary";
+
+    private static final String VOCAB_ASSET = "tokenizer/vocab.json";
+    private static final String MERGES_ASSET = "tokenizer/merges.txt";
+    private static final String CACHE_DIR = "tokenizer";
+    private static final String CACHE_FILE = "clip_tokenizer.bin";
+
+    private static final int MAGIC = 0x4B4F5457;    // "WTOK"
+    private static final int FORMAT_VERSION = 2;    // 2: id → 토큰 역방향 표 제거
+    private static final int HEADER_BYTES = 32;     // magic, version, assetStamp, vocabCount, idCount, mergeCount, poolBytes
+
+    private static final Object CACHE_LOCK = new Object();
+
+    private final ByteBuffer buffer;
+    private final int vocabCount;
+    private final int mergeCount;
+    private final int sortedOffsetsPos;
+    private final int sortedIdsPos;
+    private final int mergeKeysPos;
+    private final int mergeRanksPos;
+    private final int mergedIdsPos;
+    private final int poolPos;
+
+    private ClipVocabulary(ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.vocabCount = buffer.getInt(16);
+        this.mergeCount = buffer.getInt(24);
+
+        sortedOffsetsPos = HEADER_BYTES;
+        sortedIdsPos = sortedOffsetsPos + (vocabCount + 1) * 4;
+        mergeKeysPos = sortedIdsPos + vocabCount * 4;
+        mergeRanksPos = mergeKeysPos + mergeCount * 8;
+        mergedIdsPos = mergeRanksPos + mergeCount * 4;
+        poolPos = mergedIdsPos + mergeCount * 4;
+    }
+
+    /**
+     * 캐시 파일을 매핑해서 반환, 없거나 앱이 업데이트됐으면 에셋에서 다시 변환
+     */
+    public static ClipVocabulary load(Context context) throws IOException {
+        long start = System.nanoTime();
+        long assetStamp = assetStamp(context);
+        File file = new File(new File(context.getFilesDir(), CACHE_DIR), CACHE_FILE);
+
+        // 텍스트 모델 워밍업과 제로샷 태거가 첫 실행 때 동시에 불러도 변환은 한 번만 (같은 임시 파일에 쓰지 않도록)
+        MappedByteBuffer mapped;
+        synchronized (CACHE_LOCK) {
+            mapped = map(file, assetStamp);
+            if (mapped == null) {
+                ByteBuffer compiled;
+                try (InputStream vocabJson = context.getAssets().open(VOCAB_ASSET);
+                     InputStream merges = context.getAssets().open(MERGES_ASSET)) {
+                    compiled = compile(vocabJson, merges, assetStamp);
+                }
+                write(file, compiled);
+                Log.d(TAG, "🛠️ 토크나이저 바이너리 생성: " + compiled.limit() / 1024 + "KB ("
+                        + (System.nanoTime() - start) / 1_000_000 + "ms)");
+                mapped = map(file, assetStamp);
+                if (mapped == null) {
+                    throw new IOException("토크나이저 바이너리 생성 실패");
+                }
+            }
+        }
+
+        ClipVocabulary vocabulary = new ClipVocabulary(mapped);
+        Log.d(TAG, "🔤 토크나이저 어휘 로드: " + vocabulary.vocabCount + "개, 병합 " + vocabulary.mergeCount
+                + "개 (" + (System.nanoTime() - start) / 1_000_000 + "ms)");
+        return vocabulary;
+    }
+
+    /**
+     * vocab.json / merges.txt 스트림에서 바로 변환해 힙 버퍼로 사용 (캐시 파일 없음, 단위 테스트용)
+     */
+    public static ClipVocabulary fromStreams(InputStream vocabJson, InputStream merges) throws IOException {
+        return new ClipVocabulary(compile(vocabJson, merges, 0L));
+    }
+
+    /**
+     * 토큰 문자열의 id, 어휘에 없으면 -1
+     */
+    public int idOf(String token) {
+        byte[] key = token.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = vocabCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareToken(mid, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return buffer.getInt(sortedIdsPos + mid * 4);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * (left, right) 병합 규칙의 위치, 없으면 -1 (순위/결과는 mergeRankAt/mergedIdAt)
+     */
+    public int mergeIndex(int leftId, int rightId) {
+        long key = mergeKey(leftId, rightId);
+        int low = 0;
+        int high = mergeCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = buffer.getLong(mergeKeysPos + mid * 8);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 병합 순위 (merges.txt 순서, 작을수록 먼저 병합)
+     */
+    public int mergeRankAt(int index) {
+        return buffer.getInt(mergeRanksPos + index * 4);
+    }
+
+    public int mergedIdAt(int index) {
+        return buffer.getInt(mergedIdsPos + index * 4);
+    }
+
+    public int size() {
+        return vocabCount;
+    }
+
+    private int compareToken(int sorted, byte[] key) {
+        int from = buffer.getInt(sortedOffsetsPos + sorted * 4);
+        int to = buffer.getInt(sortedOffsetsPos + (sorted + 1) * 4);
+        return compareBytes(buffer, poolPos + from, to - from, key);
+    }
+
+    private static int compareBytes(ByteBuffer pool, int offset, int length, byte[] key) {
+        int n = Math.min(length, key.length);
+        for (int i = 0; i < n; i++) {
+            int a = pool.get(offset + i) & 0xFF;
+            int b = key[i] & 0xFF;
+            if (a != b) return a - b;
+        }
+        return length - key.length;
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            int x = a[i] & 0xFF;
+            int y = b[i] & 0xFF;
+            if (x != y) return x - y;
+        }
+        return a.length - b.length;
+    }
+
+    private static long mergeKey(int leftId, int rightId) {
+        return ((long) leftId << 32) | (rightId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 에셋은 앱 업데이트로만 바뀌므로 설치/업데이트 시각을 캐시 무효화 기준으로 사용
+     */
+    private static long assetStamp(Context context) {
+        try {
+            return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return 0L;
+        }
+    }
+
+    /**
+     * 캐시 파일 매핑. 없거나 헤더가 맞지 않으면 null
+     */
+    private static MappedByteBuffer map(File file, long assetStamp) {
+        if (!file.exists()) return null;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            if (channel.size() < HEADER_BYTES) return null;
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != FORMAT_VERSION
+                    || mapped.getLong(8) != assetStamp) {
+                Log.d(TAG, "토크나이저 바이너리가 오래되어 다시 생성");
+                return null;
+            }
+            return mapped;
+        } catch (IOException e) {
+            Log.e(TAG, "❌ 토크나이저 바이너리 매핑 실패", e);
+            return null;
+        }
+    }
+
+    /**
+     * vocab.json / merges.txt → 바이너리 변환 (스트림은 호출한 쪽에서 닫음)
+     */
+    private static ByteBuffer compile(InputStream vocabJson, InputStream mergesTxt, long assetStamp)
+            throws IOException {
+        // 1) 어휘: JSON 전체를 문자열로 만들지 않고 스트리밍으로 읽기
+        Map<String, Integer> vocab = new HashMap<>(65536);
+        int maxId = -1;
+        JsonReader json = new JsonReader(new InputStreamReader(vocabJson, StandardCharsets.UTF_8));
+        json.beginObject();
+        while (json.hasNext()) {
+            String token = json.nextName();
+            int id = json.nextInt();
+            vocab.put(token, id);
+            maxId = Math.max(maxId, id);
+        }
+        json.endObject();
+
+        int vocabCount = vocab.size();
+        int idCount = maxId + 1;
+        byte[][] tokenBytes = new byte[vocabCount][];
+        Integer[] order = new Integer[vocabCount];
+        int[] ids = new int[vocabCount];
+        int index = 0;
+        for (Map.Entry<String, Integer> entry : vocab.entrySet()) {
+            tokenBytes[index] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            ids[index] = entry.getValue();
+            order[index] = index;
+            index++;
+        }
+        Arrays.sort(order, (a, b) -> compareBytes(tokenBytes[a], tokenBytes[b]));
+
+        // 2) 병합 규칙: 두 쪽과 결과가 모두 어휘에 있는 줄만 (잘린 마지막 줄 등은 제외)
+        List<long[]> merges = new ArrayList<>();    // {key, rank, mergedId}
+        BufferedReader reader = new BufferedReader(new InputStreamReader(mergesTxt, StandardCharsets.UTF_8));
+        reader.readLine();  // 첫 줄은 버전 정보
+        String line;
+        int rank = 0;
+        while ((line = reader.readLine()) != null) {
+            String[] parts = line.split(" ");
+            if (parts.length != 2) continue;
+            Integer left = vocab.get(parts[0]);
+            Integer right = vocab.get(parts[1]);
+            Integer merged = vocab.get(parts[0] + parts[1]);
+            int currentRank = rank++;
+            if (left == null || right == null || merged == null) continue;
+            merges.add(new long[]{mergeKey(left, right), currentRank, merged});
+        }
+        merges.sort((a, b) -> Long.compare(a[0], b[0]));
+        int mergeCount = merges.size();
+
+        int poolBytes = 0;
+        for (byte[] bytes : tokenBytes) {
+            poolBytes += bytes.length;
+        }
+
+        int totalBytes = HEADER_BYTES + (vocabCount + 1) * 4 + vocabCount * 4 + mergeCount * 16 + poolBytes;
+        ByteBuffer out = ByteBuffer.allocate(totalBytes).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(assetStamp)
+                .putInt(vocabCount).putInt(idCount).putInt(mergeCount).putInt(poolBytes);
+
+        int offset = 0;
+        for (int i = 0; i < vocabCount; i++) {
+            out.putInt(offset);
+            offset += tokenBytes[order[i]].length;
+        }
+        out.putInt(offset);
+        for (int i = 0; i < vocabCount; i++) {
+            out.putInt(ids[order[i]]);
+        }
+        for (long[] merge : merges) {
+            out.putLong(merge[0]);
+        }
+        for (long[] merge : merges) {
+            out.putInt((int) merge[1]);
+        }
+        for (long[] merge : merges) {
+            out.putInt((int) merge[2]);
+        }
+        for (int i = 0; i < vocabCount; i++) {
+            out.put(tokenBytes[order[i]]);
+        }
+        out.flip();
+        return out;
+    }
+
+    /**
+     * 변환 결과를 캐시 파일로 저장 (임시 파일에 쓴 뒤 교체)
+     */
+    private static void write(File file, ByteBuffer out) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("디렉터리 생성 실패: " + dir);
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream output = new FileOutputStream(tmp);
+             FileChannel channel = output.getChannel()) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            channel.force(true);
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("토크나이저 바이너리 교체 실패");
+        }
+    }
+}
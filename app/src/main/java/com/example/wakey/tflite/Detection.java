@@ -0,0 +1,30 @@
+package com.example.wakey.tflite;
+
+import android.graphics.RectF;
+
+/**
+ * YOLOv8 탐지 결과 하나 (COCO 클래스 id, 신뢰도, 원본 비트맵 좌표 박스)
+ */
+public final class Detection {
+    public final int classId;
+    public final float score;
+    public final RectF box;
+
+    public Detection(int classId, float score, RectF box) {
+        this.classId = classId;
+        this.score = score;
+        this.box = box;
+    }
+
+    /**
+     * COCO 클래스 이름 (예: "person", "dog")
+     */
+    public String label() {
+        return Yolov8Detector.labelOf(classId);
+    }
+
+    @Override
+    public String toString() {
+        return label() + "(" + classId + ") " + score + " " + box;
+    }
+}
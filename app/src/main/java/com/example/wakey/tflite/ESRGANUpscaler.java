@@ -2,79 +2,78 @@ package com.example.wakey.tflite;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.Color;
 import android.util.Log;
 
 import org.tensorflow.lite.Interpreter;
-import org.tensorflow.lite.support.common.FileUtil;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 
 public class ESRGANUpscaler {
-    private final Interpreter interpreter;
     private static final String TAG = "ESRGAN_UPSCALER";
+    static final ModelRegistry.Spec SPEC = new ModelRegistry.Spec(
+            "real_esrgan_general_x4v3-qualcomm_snapdragon_8_elite.tflite", 0, 1);
+
+    private static final int INPUT_SIZE = 128;
+    private static final int OUTPUT_SIZE = INPUT_SIZE * 4;   // 모델 출력은 4배 사이즈 RGB float32
+
+    private final ModelRegistry registry;
+    private final InferenceBackendSelector backendSelector;
+    private Interpreter interpreter;
+
+    // 재사용 입력/출력 버퍼
+    private final ImagePreprocessor preprocessor = new ImagePreprocessor(INPUT_SIZE, INPUT_SIZE);
+    private final ByteBuffer inputBuffer = ImagePreprocessor.allocateFloatInput(INPUT_SIZE, INPUT_SIZE);
+    private final ByteBuffer outputBuffer = ImagePreprocessor.allocateFloatInput(OUTPUT_SIZE, OUTPUT_SIZE);
+    private final FloatBuffer outputView = outputBuffer.asFloatBuffer();
+    private final int[] outputPixels = new int[OUTPUT_SIZE * OUTPUT_SIZE];
 
     public ESRGANUpscaler(Context context) throws IOException {
-        ByteBuffer modelBuffer = FileUtil.loadMappedFile(context, "real_esrgan_general_x4v3-qualcomm_snapdragon_8_elite.tflite");
-        interpreter = new Interpreter(modelBuffer);
+        registry = ModelRegistry.getInstance(context);
+        backendSelector = InferenceBackendSelector.getInstance(context);
+        interpreter = registry.acquire(SPEC);
         Log.d(TAG, "✅ ESRGAN 모델 로드 완료");
     }
 
     public Bitmap upscale(Bitmap input) {
-        Bitmap resized = Bitmap.createScaledBitmap(input, 128, 128, true); // 입력 사이즈 맞춤
-        Log.d(TAG, "📏 입력 이미지 리사이즈 완료: " + resized.getWidth() + "x" + resized.getHeight());
-
-        ByteBuffer inputBuffer = convertBitmapToByteBuffer(resized);
-
-        // 모델 출력은 4배 사이즈: 512x512 RGB (float32 예상)
-        ByteBuffer outputBuffer = ByteBuffer.allocateDirect(1 * 512 * 512 * 3 * 4); // float32 = 4 bytes
-        outputBuffer.order(ByteOrder.nativeOrder());
+        // 128x128 축소 + RGB float 를 재사용 버퍼에 한 번에 기록
+        preprocessor.writeFloatRgb(input, inputBuffer);
 
         Log.d(TAG, "🚀 업스케일 시작");
+        outputBuffer.rewind();
         interpreter.run(inputBuffer, outputBuffer);
         Log.d(TAG, "✅ 업스케일 완료");
 
-        return convertByteBufferToBitmap(outputBuffer, 512, 512);
+        return convertOutputToBitmap();
     }
 
-    private ByteBuffer convertBitmapToByteBuffer(Bitmap bitmap) {
-        ByteBuffer buffer = ByteBuffer.allocateDirect(1 * 128 * 128 * 3 * 4); // float32
-        buffer.order(ByteOrder.nativeOrder());
-
-        for (int y = 0; y < 128; y++) {
-            for (int x = 0; x < 128; x++) {
-                int pixel = bitmap.getPixel(x, y);
-                buffer.putFloat((Color.red(pixel) / 255.0f));
-                buffer.putFloat((Color.green(pixel) / 255.0f));
-                buffer.putFloat((Color.blue(pixel) / 255.0f));
-            }
+    /**
+     * 출력 float RGB → ARGB 픽셀 배열로 변환 후 setPixels 한 번으로 비트맵 생성
+     */
+    private Bitmap convertOutputToBitmap() {
+        FloatBuffer values = outputView;
+        values.rewind();
+        for (int i = 0; i < outputPixels.length; i++) {
+            int red = Math.min(255, Math.max(0, (int) (values.get() * 255)));
+            int green = Math.min(255, Math.max(0, (int) (values.get() * 255)));
+            int blue = Math.min(255, Math.max(0, (int) (values.get() * 255)));
+            outputPixels[i] = 0xFF000000 | (red << 16) | (green << 8) | blue;
         }
-        buffer.rewind();
-        return buffer;
-    }
 
-    private Bitmap convertByteBufferToBitmap(ByteBuffer buffer, int width, int height) {
-        buffer.rewind();
-        Bitmap output = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                float r = buffer.getFloat();
-                float g = buffer.getFloat();
-                float b = buffer.getFloat();
-
-                int red = Math.min(255, Math.max(0, (int) (r * 255)));
-                int green = Math.min(255, Math.max(0, (int) (g * 255)));
-                int blue = Math.min(255, Math.max(0, (int) (b * 255)));
+        Bitmap output = Bitmap.createBitmap(OUTPUT_SIZE, OUTPUT_SIZE, Bitmap.Config.ARGB_8888);
+        output.setPixels(outputPixels, 0, OUTPUT_SIZE, 0, 0, OUTPUT_SIZE, OUTPUT_SIZE);
+        Log.d(TAG, "🖼️ 출력 이미지 생성 완료: " + OUTPUT_SIZE + "x" + OUTPUT_SIZE);
+        return output;
+    }
 
-                int color = Color.rgb(red, green, blue);
-                output.setPixel(x, y, color);
-            }
+    public void close() {
+        if (interpreter != null) {
+            registry.release(SPEC, interpreter);
+            interpreter = null;
         }
-
-        Log.d(TAG, "🖼️ 출력 이미지 생성 완료: " + width + "x" + height);
-        return output;
+        preprocessor.release();
+        // 앱 시작 때는 측정하지 않으므로 처음 쓰고 난 뒤 백그라운드에서 측정 (다음 업스케일부터 적용)
+        backendSelector.calibrateInBackground(SPEC);
     }
 }
@@ -2,22 +2,16 @@ package com.example.wakey.tflite;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.Color;
+import android.graphics.Rect;
 import android.util.Log;
 import android.util.Pair;
 
 import org.tensorflow.lite.Interpreter;
 import org.tensorflow.lite.support.common.FileUtil;
-import org.tensorflow.lite.support.tensorbuffer.TensorBuffer;
-import org.tensorflow.lite.DataType;
-import org.tensorflow.lite.support.image.ImageProcessor;
-import org.tensorflow.lite.support.image.TensorImage;
-import org.tensorflow.lite.support.image.ops.ResizeOp;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.MappedByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -25,39 +19,57 @@ import java.util.List;
 public class ImageClassifier {
     private static final String TAG = "ImageClassifier";
     private static final String MODEL_PATH = "mobilenet_v3_large_quantized-snapdragon_8_gen_3.tflite";
-    private static final int IMAGE_SIZE = 224;
+    public static final int IMAGE_SIZE = 224;
     private static final int NUM_CLASSES = 1000;
 
-    private final Interpreter tflite;
+    // 백엔드 측정 전 기본 4 스레드, 수집 파이프라인(전체 이미지 + crop 영역) + 상세 화면에서 동시에 쓸 수 있도록 3개까지 유지
+    static final ModelRegistry.Spec SPEC = new ModelRegistry.Spec(MODEL_PATH, 4, 3);
+    private static List<String> cachedLabels;
+
+    private final ModelRegistry registry;
+    private Interpreter tflite;
     private final List<String> labels;
     private final boolean isQuantized;
+    private final float outputScale;
+    private final int outputZeroPoint;
+
+    // 인스턴스별 재사용 버퍼 (사진마다 새로 할당하지 않음)
+    private static final int TOP_K = 5;
+    private final ImagePreprocessor preprocessor = new ImagePreprocessor(IMAGE_SIZE, IMAGE_SIZE);
+    private final ByteBuffer inputBuffer = ImagePreprocessor.allocateByteInput(IMAGE_SIZE, IMAGE_SIZE);
+    private final ByteBuffer outputBuffer = ByteBuffer.allocateDirect(NUM_CLASSES).order(ByteOrder.nativeOrder());
+    private final int[] quantized = new int[NUM_CLASSES];
+    private final int[] topIndices = new int[TOP_K];
+    // 출력 최댓값(양자화 값)별 exp(logit - maxLogit) 표: 출력이 uint8 이라 값이 256 가지뿐이므로 exp 를 다시 계산하지 않음
+    private final float[][] expTables = new float[256][];
+
+    // [N,224,224,3] 배치 추론용 입력 형태/버퍼 (가변 배치를 지원하지 않는 모델이면 한 장씩)
+    private static volatile boolean batchUnsupported;
+    private final BatchShape batchShape = new BatchShape(IMAGE_SIZE * IMAGE_SIZE * 3, IMAGE_SIZE, IMAGE_SIZE, 3);
+    private ByteBuffer batchOutputBuffer;
+
+    // crop 영역 분류 전용 인터프리터 (처음 쓸 때 대여, [REGION_BATCH,...] 형태 유지)
+    public static final int REGION_BATCH = 8;
+    private Interpreter regionTflite;
+    private final BatchShape regionShape = new BatchShape(IMAGE_SIZE * IMAGE_SIZE * 3, IMAGE_SIZE, IMAGE_SIZE, 3);
+    private ByteBuffer regionOutputBuffer;
 
     public ImageClassifier(Context context) throws IOException {
         try {
             Log.d(TAG, "ImageClassifier 초기화 시작");
 
-            // CPU 기반 인터프리터 옵션 설정
-            Interpreter.Options options = new Interpreter.Options();
-            options.setNumThreads(4); // CPU 스레드 수 설정
-            Log.d(TAG, "CPU 사용: 4 스레드");
-
-            // 모델 파일 로드
-            MappedByteBuffer tfliteModel;
+            // 공용 풀에서 인터프리터 대여 (모델 매핑/생성은 처음 한 번뿐)
+            registry = ModelRegistry.getInstance(context);
             try {
-                tfliteModel = FileUtil.loadMappedFile(context, MODEL_PATH);
-                Log.d(TAG, "모델 파일 로드 성공: " + MODEL_PATH);
+                tflite = registry.acquire(SPEC);
             } catch (IOException e) {
                 Log.e(TAG, "모델 파일 로드 실패: " + e.getMessage(), e);
                 throw e;
             }
 
-            // 인터프리터 생성
-            tflite = new Interpreter(tfliteModel, options);
-
-            // 레이블 로드
+            // 레이블 로드 (한 번만 읽고 재사용)
             try {
-                labels = FileUtil.loadLabels(context, "labels.txt");
-                Log.d(TAG, "레이블 파일 로드 성공: " + labels.size() + "개 레이블");
+                labels = loadLabels(context);
             } catch (IOException e) {
                 Log.e(TAG, "레이블 파일 로드 실패: " + e.getMessage(), e);
                 throw e;
@@ -66,7 +78,11 @@ public class ImageClassifier {
             // 입력 텐서 정보 확인
             isQuantized = tflite.getInputTensor(0).dataType() == org.tensorflow.lite.DataType.UINT8;
 
+            outputScale = tflite.getOutputTensor(0).quantizationParams().getScale();
+            outputZeroPoint = tflite.getOutputTensor(0).quantizationParams().getZeroPoint();
+
             Log.d(TAG, "양자화 모델 여부: " + isQuantized);
+            Log.d(TAG, "🔍 Output Scale: " + outputScale + ", Zero Point: " + outputZeroPoint);
             Log.d(TAG, "ImageClassifier 초기화 완료");
 
         } catch (Exception e) {
@@ -76,81 +92,192 @@ public class ImageClassifier {
         }
     }
 
+    /**
+     * 인터프리터를 미리 만들어 한 번 추론해 두고 풀에 남김 (첫 분류 지연 제거)
+     */
+    public static void warmUp(Context context) {
+        ModelRegistry.getInstance(context).warmUp(SPEC);
+    }
+
+    private static synchronized List<String> loadLabels(Context context) throws IOException {
+        if (cachedLabels == null) {
+            cachedLabels = Collections.unmodifiableList(FileUtil.loadLabels(context, "labels.txt"));
+            Log.d(TAG, "레이블 파일 로드 성공: " + cachedLabels.size() + "개 레이블");
+        }
+        return cachedLabels;
+    }
+
     public List<Pair<String, Float>> classifyImage(Bitmap bitmap) {
         Log.d("ImageClassifier", "📸 Selected Image Size: " + bitmap.getWidth() + "x" + bitmap.getHeight());
-        Bitmap resizedBitmap = Bitmap.createScaledBitmap(bitmap, IMAGE_SIZE, IMAGE_SIZE, true);
-        Log.d("ImageClassifier", "🔄 Resized Image Size: " + resizedBitmap.getWidth() + "x" + resizedBitmap.getHeight());
-
-        ByteBuffer inputBuffer = ByteBuffer.allocateDirect(IMAGE_SIZE * IMAGE_SIZE * 3);
-        inputBuffer.order(ByteOrder.nativeOrder());
-        for (int y = 0; y < IMAGE_SIZE; y++) {
-            for (int x = 0; x < IMAGE_SIZE; x++) {
-                int pixel = resizedBitmap.getPixel(x, y);
-                inputBuffer.put((byte) Color.red(pixel));
-                inputBuffer.put((byte) Color.green(pixel));
-                inputBuffer.put((byte) Color.blue(pixel));
+
+        // 224x224 축소 + uint8 RGB 를 재사용 버퍼에 한 번에 기록
+        preprocessor.writeByteRgb(bitmap, inputBuffer);
+
+        batchShape.resize(tflite, 1);
+        outputBuffer.rewind();
+        tflite.run(inputBuffer, outputBuffer);
+        return toPredictions(outputBuffer, 0);
+    }
+
+    /**
+     * 여러 장을 [N,224,224,3] 한 번의 run 으로 분류 (결과 순서는 입력 순서)
+     * 모델이 가변 배치를 지원하지 않으면 한 장씩 classifyImage
+     */
+    public List<List<Pair<String, Float>>> classifyBatch(List<Bitmap> bitmaps) {
+        int count = bitmaps.size();
+        List<List<Pair<String, Float>>> results = new ArrayList<>(count);
+        if (count == 1 || batchUnsupported || !batchShape.resize(tflite, count)) {
+            if (count > 1) {
+                batchUnsupported = true;
+            }
+            for (Bitmap bitmap : bitmaps) {
+                results.add(classifyImage(bitmap));
             }
+            return results;
         }
-        Log.d("ImageClassifier", "✅ Image processed and converted to ByteBuffer");
 
-        TensorBuffer outputBuffer = TensorBuffer.createFixedSize(new int[]{1, NUM_CLASSES}, DataType.UINT8);
-        tflite.run(inputBuffer, outputBuffer.getBuffer());
-        Log.d("ImageClassifier", "🚀 Model inference completed");
+        // 사진마다 배치 입력의 자기 영역에 바로 기록 (중간 복사 없음)
+        for (int i = 0; i < count; i++) {
+            preprocessor.writeByteRgb(bitmaps.get(i), batchShape.itemInput(i));
+        }
+        runBatch(count, results);
+        Log.d(TAG, "📦 배치 분류 완료: " + count + "장");
+        return results;
+    }
 
-        float outputScale = tflite.getOutputTensor(0).quantizationParams().getScale();
-        int outputZeroPoint = tflite.getOutputTensor(0).quantizationParams().getZeroPoint();
-        Log.d("ImageClassifier", "🔍 Output Scale: " + outputScale + ", Zero Point: " + outputZeroPoint);
+    /**
+     * 여러 영역(YOLO 박스 등)을 crop 비트맵 없이 원본에서 바로 224x224 로 축소해 분류 (regions[i] 는 sources[i] 의 영역)
+     * - 영역 전용 인터프리터를 [REGION_BATCH,224,224,3] 고정 형태로 쓰므로 사진마다 영역 수가 달라도 텐서 재할당 없음
+     *   (전체 이미지 배치를 돌리는 인터프리터의 배치 크기도 건드리지 않음)
+     * - 영역 수가 REGION_BATCH 의 배수가 아니면 마지막 run 의 남는 칸은 결과를 버림
+     * 결과 순서는 regions 순서. 모델이 가변 배치를 지원하지 않으면 영역마다 한 번씩 run
+     */
+    public List<List<Pair<String, Float>>> classifyRegions(List<Bitmap> sources, List<Rect> regions) throws IOException {
+        int count = regions.size();
+        List<List<Pair<String, Float>>> results = new ArrayList<>(count);
+        if (count == 0) return results;
 
-        int[] quantizedOutput = outputBuffer.getIntArray();
-        float[] logits = new float[NUM_CLASSES];
-        for (int i = 0; i < NUM_CLASSES; i++) {
-            logits[i] = (quantizedOutput[i] - outputZeroPoint) * outputScale;
+        Interpreter interpreter = regionInterpreter();
+        if (batchUnsupported || !regionShape.resize(interpreter, REGION_BATCH)) {
+            batchUnsupported = true;
+            for (int i = 0; i < count; i++) {
+                preprocessor.writeByteRgb(sources.get(i), regions.get(i), inputBuffer);
+                outputBuffer.rewind();
+                interpreter.run(inputBuffer, outputBuffer);
+                results.add(toPredictions(outputBuffer, 0));
+            }
+            return results;
+        }
+
+        if (regionOutputBuffer == null) {
+            regionOutputBuffer = ByteBuffer.allocateDirect(REGION_BATCH * NUM_CLASSES).order(ByteOrder.nativeOrder());
+        }
+        for (int from = 0; from < count; from += REGION_BATCH) {
+            int filled = Math.min(REGION_BATCH, count - from);
+            for (int i = 0; i < filled; i++) {
+                preprocessor.writeByteRgb(sources.get(from + i), regions.get(from + i), regionShape.itemInput(i));
+            }
+            regionOutputBuffer.rewind();
+            interpreter.run(regionShape.batchInput(REGION_BATCH), regionOutputBuffer);
+            for (int i = 0; i < filled; i++) {
+                results.add(toPredictions(regionOutputBuffer, i * NUM_CLASSES));
+            }
         }
+        Log.d(TAG, "📦 영역 배치 분류 완료: " + count + "개");
+        return results;
+    }
 
-        // 처음 5개 로직
-        for (int i = 0; i < 5; i++) {
-            Log.d(TAG, "🔢 Raw Output[" + i + "]: " + quantizedOutput[i] + " -> Logit: " + logits[i]);
+    private Interpreter regionInterpreter() throws IOException {
+        if (regionTflite == null) {
+            regionTflite = registry.acquire(SPEC);
         }
+        return regionTflite;
+    }
 
-        float maxLogit = Float.NEGATIVE_INFINITY;
-        for (float logit : logits) {
-            if (logit > maxLogit) maxLogit = logit;
+    /**
+     * 배치 입력에 기록된 count 장을 한 번에 추론하고 결과를 순서대로 추가
+     */
+    private void runBatch(int count, List<List<Pair<String, Float>>> results) {
+        if (batchOutputBuffer == null || batchOutputBuffer.capacity() != count * NUM_CLASSES) {
+            batchOutputBuffer = ByteBuffer.allocateDirect(count * NUM_CLASSES).order(ByteOrder.nativeOrder());
         }
-        Log.d("ImageClassifier", "📈 Max Logit Before Softmax: " + maxLogit);
+        batchOutputBuffer.rewind();
+        tflite.run(batchShape.batchInput(count), batchOutputBuffer);
 
-        float sumExp = 0;
-        float[] probabilities = new float[NUM_CLASSES];
-        for (int i = 0; i < NUM_CLASSES; i++) {
-            probabilities[i] = (float) Math.exp(logits[i] - maxLogit);
-            sumExp += probabilities[i];
+        for (int i = 0; i < count; i++) {
+            results.add(toPredictions(batchOutputBuffer, i * NUM_CLASSES));
         }
+    }
+
+    /**
+     * 출력 버퍼 offset 부터 NUM_CLASSES 개의 양자화 점수 → softmax Top-K
+     * - 확률은 양자화 값에 대해 단조 증가하므로 Top-K 는 uint8 값 그대로 비교해서 고름
+     * - 분모(exp 합)는 최댓값별 exp 표로 계산 (표 값은 기존 exp(logit - maxLogit) 계산식과 같음)
+     */
+    private List<Pair<String, Float>> toPredictions(ByteBuffer output, int offset) {
+        int maxQuantized = 0;
         for (int i = 0; i < NUM_CLASSES; i++) {
-            probabilities[i] = (probabilities[i] / sumExp) * 100;
+            quantized[i] = output.get(offset + i) & 0xFF;
+            if (quantized[i] > maxQuantized) maxQuantized = quantized[i];
         }
 
-        // 결과 처리
-        List<Pair<String, Float>> results = new ArrayList<>();
-        for (int i = 0; i < NUM_CLASSES && i < labels.size(); i++) {
-            results.add(new Pair<>(labels.get(i), probabilities[i]));
+        float[] expTable = expTableFor(maxQuantized);
+        float sumExp = 0;
+        for (int i = 0; i < NUM_CLASSES; i++) {
+            sumExp += expTable[quantized[i]];
         }
 
-        // 확률 기준 내림차순 정렬
-        Collections.sort(results, (o1, o2) -> Float.compare(o2.second, o1.second));
+        // 상위 TOP_K 만 선택 (전체 정렬 없이, 값이 같으면 앞 인덱스 우선)
+        int count = 0;
+        int limit = Math.min(NUM_CLASSES, labels.size());
+        for (int i = 0; i < limit; i++) {
+            int q = quantized[i];
+            if (count == TOP_K && q <= quantized[topIndices[count - 1]]) continue;
+            int pos = Math.min(count, TOP_K - 1);
+            while (pos > 0 && quantized[topIndices[pos - 1]] < q) {
+                topIndices[pos] = topIndices[pos - 1];
+                pos--;
+            }
+            topIndices[pos] = i;
+            if (count < TOP_K) count++;
+        }
 
-        // 상위 5개 결과 로깅
-        int topK = Math.min(5, results.size());
-        for (int i = 0; i < topK; i++) {
+        List<Pair<String, Float>> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            float probability = (expTable[quantized[topIndices[i]]] / sumExp) * 100;
+            results.add(new Pair<>(labels.get(topIndices[i]), probability));
             Log.d(TAG, "🔥 Softmax Top [" + i + "]: " + results.get(i).first + " - " + results.get(i).second + "%");
         }
+        return results;
+    }
 
-        return results.subList(0, topK);
+    private float[] expTableFor(int maxQuantized) {
+        float[] table = expTables[maxQuantized];
+        if (table == null) {
+            float maxLogit = (maxQuantized - outputZeroPoint) * outputScale;
+            table = new float[256];
+            for (int q = 0; q < 256; q++) {
+                float logit = (q - outputZeroPoint) * outputScale;
+                table[q] = (float) Math.exp(logit - maxLogit);
+            }
+            expTables[maxQuantized] = table;
+        }
+        return table;
     }
 
     public synchronized void close() {
         try {
             if (tflite != null) {
-                tflite.close();
-                Log.d(TAG, "TFLite 인터프리터 닫기 완료");
+                batchShape.reset(tflite);
+                registry.release(SPEC, tflite);
+                tflite = null;
+                if (regionTflite != null) {
+                    regionShape.reset(regionTflite);
+                    registry.release(SPEC, regionTflite);
+                    regionTflite = null;
+                }
+                preprocessor.release();
+                Log.d(TAG, "TFLite 인터프리터 반납 완료");
             }
         } catch (Exception e) {
             Log.e(TAG, "리소스 해제 중 오류: " + e.getMessage(), e);
@@ -0,0 +1,154 @@
+package com.example.wakey.tflite;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * 모델 입력 전처리 공용 클래스 (인스턴스마다 버퍼를 재사용하므로 스레드 간 공유 불가)
+ * - 원본을 재사용 비트맵에 Canvas 로 축소해서 그린 뒤 getPixels 한 번으로 int[] 에 읽음 (픽셀별 JNI 호출 없음)
+ * - RGB float(0~1) 또는 uint8 로 변환해 재사용 direct 버퍼에 한 번에 씀
+ * - 첫 호출 이후로는 호출마다 새로 할당하는 객체가 없음
+ */
+public class ImagePreprocessor {
+
+    // 0~255 → 0~1 변환표 (기존 Color.red(p) / 255.0f 와 같은 값)
+    private static final float[] UNIT_SCALE = new float[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            UNIT_SCALE[i] = i / 255.0f;
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+    private final Rect destination;
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private Bitmap scaled;
+    private Canvas canvas;
+
+    private float[] floatScratch;
+    private byte[] byteScratch;
+    private ByteBuffer lastFloatTarget;
+    private FloatBuffer lastFloatView;
+
+    public ImagePreprocessor(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.pixels = new int[width * height];
+        this.destination = new Rect(0, 0, width, height);
+        // 투명 픽셀이 이전 이미지와 섞이지 않도록 덮어쓰기
+        paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+    }
+
+    /**
+     * width x height x 3 float32 입력 텐서용 direct 버퍼
+     */
+    public static ByteBuffer allocateFloatInput(int width, int height) {
+        return ByteBuffer.allocateDirect(width * height * 3 * 4).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * width x height x 3 uint8 입력 텐서용 direct 버퍼
+     */
+    public static ByteBuffer allocateByteInput(int width, int height) {
+        return ByteBuffer.allocateDirect(width * height * 3).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * 입력 크기로 축소(양선형)한 ARGB 픽셀. 반환 배열은 다음 호출 때 덮어씀
+     */
+    public int[] readPixels(Bitmap source) {
+        return readPixels(source, null);
+    }
+
+    /**
+     * source 의 region 영역(null 이면 전체)만 입력 크기로 축소한 ARGB 픽셀 (crop 비트맵을 따로 만들지 않음)
+     */
+    public int[] readPixels(Bitmap source, Rect region) {
+        if (region == null && source.getWidth() == width && source.getHeight() == height) {
+            source.getPixels(pixels, 0, width, 0, 0, width, height);
+            return pixels;
+        }
+        if (scaled == null) {
+            scaled = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            canvas = new Canvas(scaled);
+        }
+        canvas.drawBitmap(source, region, destination, paint);
+        scaled.getPixels(pixels, 0, width, 0, 0, width, height);
+        return pixels;
+    }
+
+    /**
+     * RGB float(0~1) NHWC 로 out 에 기록 (처음부터 쓰고 rewind 한 상태로 반환)
+     */
+    public void writeFloatRgb(Bitmap source, ByteBuffer out) {
+        int[] argb = readPixels(source);
+        if (floatScratch == null) {
+            floatScratch = new float[width * height * 3];
+        }
+        float[] values = floatScratch;
+        for (int i = 0, j = 0; i < argb.length; i++, j += 3) {
+            int pixel = argb[i];
+            values[j] = UNIT_SCALE[(pixel >> 16) & 0xFF];
+            values[j + 1] = UNIT_SCALE[(pixel >> 8) & 0xFF];
+            values[j + 2] = UNIT_SCALE[pixel & 0xFF];
+        }
+
+        // 같은 버퍼에 반복해서 쓰므로 FloatBuffer 뷰도 재사용
+        if (out != lastFloatTarget) {
+            lastFloatTarget = out;
+            lastFloatView = out.asFloatBuffer();
+        }
+        lastFloatView.clear();
+        lastFloatView.put(values);
+        out.rewind();
+    }
+
+    /**
+     * RGB uint8 NHWC 로 out 에 기록 (처음부터 쓰고 rewind 한 상태로 반환)
+     */
+    public void writeByteRgb(Bitmap source, ByteBuffer out) {
+        writeByteRgb(source, null, out);
+    }
+
+    /**
+     * source 의 region 영역(null 이면 전체)을 RGB uint8 NHWC 로 out 에 기록
+     */
+    public void writeByteRgb(Bitmap source, Rect region, ByteBuffer out) {
+        int[] argb = readPixels(source, region);
+        if (byteScratch == null) {
+            byteScratch = new byte[width * height * 3];
+        }
+        byte[] values = byteScratch;
+        for (int i = 0, j = 0; i < argb.length; i++, j += 3) {
+            int pixel = argb[i];
+            values[j] = (byte) (pixel >> 16);
+            values[j + 1] = (byte) (pixel >> 8);
+            values[j + 2] = (byte) pixel;
+        }
+        out.clear();
+        out.put(values);
+        out.rewind();
+    }
+
+    /**
+     * 축소용 비트맵 해제 (다시 쓰면 새로 만듦)
+     */
+    public void release() {
+        if (scaled != null) {
+            scaled.recycle();
+            scaled = null;
+            canvas = null;
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.example.wakey.tflite;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Process;
+import android.util.Log;
+
+import org.tensorflow.lite.Delegate;
+import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.nnapi.NnApiDelegate;
+import org.tensorflow.lite.support.common.FileUtil;
+
+import java.io.File;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 모델별 추론 백엔드(CPU / XNNPACK / NNAPI + 스레드 수) 선택
+ * - 첫 실행 때 모델마다 후보 설정으로 짧게 추론해 보고 가장 빠른 설정을 SharedPreferences 에 저장
+ * - 기기 빌드(Build.FINGERPRINT)가 바뀌면 (OS/드라이버 업데이트) 다시 측정
+ * - ModelRegistry 가 인터프리터를 만들 때 configFor 로 옵션을 받음 → 모든 모델 래퍼가 같은 결과 사용
+ * - 델리게이트를 만들 수 없는 기기(CPU 전용, NNAPI 미지원)는 해당 후보만 건너뜀
+ * - NNAPI 는 컴파일 결과를 codeCache/nnapi 에 직렬화해서 콜드 스타트마다 다시 컴파일하지 않음
+ */
+public class InferenceBackendSelector {
+    private static final String TAG = "BackendSelector";
+    private static final String PREFS_NAME = "wakey_inference_backend";
+    private static final String KEY_FINGERPRINT = "fingerprint";
+
+    private static final String NNAPI_CACHE_DIR = "nnapi";
+
+    private static final int WARMUP_RUNS = 1;
+    private static final int TIMED_RUNS = 3;
+    private static final long SLOW_RUN_NANOS = 2_000_000_000L;    // 한 번에 2초를 넘으면 나머지 측정 생략
+
+    private static InferenceBackendSelector instance;
+
+    public enum Backend {
+        CPU,        // TFLite 기본 커널 (XNNPACK 끔)
+        XNNPACK,
+        NNAPI
+    }
+
+    /**
+     * 인터프리터 생성 설정 (백엔드 + 스레드 수)
+     */
+    public static final class Config {
+        final Backend backend;
+        final int numThreads;      // 0 이면 TFLite 기본값
+
+        Config(Backend backend, int numThreads) {
+            this.backend = backend;
+            this.numThreads = numThreads;
+        }
+
+        /**
+         * NNAPI 델리게이트 (NNAPI 가 아니면 null). 인터프리터를 닫은 뒤 호출자가 close
+         * 컴파일 결과를 캐시 디렉터리에 저장해서 다음 콜드 스타트부터는 다시 컴파일하지 않음
+         */
+        NnApiDelegate createDelegate(Context context, ModelRegistry.Spec spec) {
+            if (backend != Backend.NNAPI) return null;
+            NnApiDelegate.Options options = new NnApiDelegate.Options();
+            File cacheDir = new File(context.getCodeCacheDir(), NNAPI_CACHE_DIR);
+            if (cacheDir.isDirectory() || cacheDir.mkdirs()) {
+                options.setCacheDir(cacheDir.getAbsolutePath());
+                options.setModelToken(modelToken(context, spec));
+            }
+            return new NnApiDelegate(options);
+        }
+
+        Interpreter.Options toOptions(Delegate delegate) {
+            Interpreter.Options options = new Interpreter.Options();
+            if (numThreads > 0) {
+                options.setNumThreads(numThreads);
+            }
+            options.setUseXNNPACK(backend == Backend.XNNPACK);
+            if (delegate != null) {
+                options.addDelegate(delegate);
+            }
+            return options;
+        }
+
+        String encode() {
+            return backend.name() + ":" + numThreads;
+        }
+
+        static Config decode(String value) {
+            if (value == null) return null;
+            try {
+                int split = value.indexOf(':');
+                return new Config(Backend.valueOf(value.substring(0, split)),
+                        Integer.parseInt(value.substring(split + 1)));
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return backend + (numThreads > 0 ? " x" + numThreads : "");
+        }
+    }
+
+    /**
+     * NNAPI 컴파일 캐시 키: 모델 파일 + 앱 설치 시각 (앱 업데이트로 모델이 바뀌면 새로 컴파일)
+     */
+    static String modelToken(Context context, ModelRegistry.Spec spec) {
+        long installed = 0;
+        try {
+            installed = context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException ignored) {
+            // 자기 자신의 패키지이므로 발생하지 않음
+        }
+        return spec.assetPath.replaceAll("[^A-Za-z0-9]", "_") + "_" + installed;
+    }
+
+    private final Context context;
+    private final SharedPreferences preferences;
+    private final Map<String, Config> selected = new HashMap<>();
+    private final ArrayDeque<ModelRegistry.Spec> pending = new ArrayDeque<>();
+    private boolean calibrating;
+
+    private InferenceBackendSelector(Context context) {
+        this.context = context;
+        this.preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (!Build.FINGERPRINT.equals(preferences.getString(KEY_FINGERPRINT, null))) {
+            // 기기 빌드가 바뀌었으면 이전 측정 결과 폐기
+            preferences.edit().clear().putString(KEY_FINGERPRINT, Build.FINGERPRINT).apply();
+        }
+    }
+
+    public static synchronized InferenceBackendSelector getInstance(Context context) {
+        if (instance == null) {
+            instance = new InferenceBackendSelector(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * 모델의 인터프리터 설정 (측정 결과가 없으면 모델 기본값: XNNPACK + Spec 스레드 수)
+     */
+    public synchronized Config configFor(ModelRegistry.Spec spec) {
+        Config config = selected.get(spec.assetPath);
+        if (config == null) {
+            config = Config.decode(preferences.getString(spec.assetPath, null));
+            if (config == null) {
+                return defaultFor(spec);
+            }
+            selected.put(spec.assetPath, config);
+        }
+        return config;
+    }
+
+    static Config defaultFor(ModelRegistry.Spec spec) {
+        return new Config(Backend.XNNPACK, spec.numThreads);
+    }
+
+    public synchronized boolean isCalibrated(ModelRegistry.Spec spec) {
+        return selected.containsKey(spec.assetPath) || preferences.contains(spec.assetPath);
+    }
+
+    /**
+     * 앱 시작 때 쓰는 모델 중 측정 안 된 것을 백그라운드 스레드에서 측정 (앱 시작 시 호출)
+     * ESRGAN 업스케일러는 버튼을 눌렀을 때만 쓰므로 여기서 빼고 처음 사용한 뒤에 측정
+     */
+    public void calibrateInBackground() {
+        calibrateInBackground(ClipImageEncoder.SPEC, ClipTextEncoder.SPEC, ImageClassifier.SPEC, Yolov8Detector.SPEC);
+    }
+
+    /**
+     * 측정 안 된 모델을 대기열에 넣고 측정 스레드에서 차례로 측정 (이미 측정 중이면 그 스레드가 이어서 처리)
+     */
+    public void calibrateInBackground(ModelRegistry.Spec... specs) {
+        synchronized (this) {
+            for (ModelRegistry.Spec spec : specs) {
+                if (!isCalibrated(spec) && !pending.contains(spec)) {
+                    pending.add(spec);
+                }
+            }
+            if (pending.isEmpty() || calibrating) return;
+            calibrating = true;
+        }
+
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            try {
+                while (true) {
+                    ModelRegistry.Spec spec;
+                    synchronized (this) {
+                        spec = pending.pollFirst();
+                    }
+                    if (spec == null) break;
+                    calibrate(spec);
+                }
+            } finally {
+                synchronized (this) {
+                    pending.clear();
+                    calibrating = false;
+                    notifyAll();
+                }
+            }
+        }, "backend-calibration");
+        thread.start();
+    }
+
+    /**
+     * 측정 중이면 끝날 때까지 대기 (워밍업/인덱싱 추론이 측정 시간을 왜곡하지 않도록 그 전에 호출)
+     * 백그라운드 스레드에서만 호출
+     */
+    public synchronized void awaitCalibration() throws InterruptedException {
+        while (calibrating) {
+            wait();
+        }
+    }
+
+    /**
+     * 후보 설정마다 0 입력으로 추론 시간을 재고 가장 빠른 설정을 저장 후 반환
+     * 모든 후보가 실패하면 기본 설정을 반환하고 저장하지 않음 (다음 실행 때 재시도)
+     */
+    public Config calibrate(ModelRegistry.Spec spec) {
+        MappedByteBuffer model;
+        try {
+            model = FileUtil.loadMappedFile(context, spec.assetPath);
+        } catch (Exception e) {
+            Log.e(TAG, "❌ 모델 로드 실패: " + spec.assetPath, e);
+            return defaultFor(spec);
+        }
+
+        Config best = null;
+        long bestNanos = Long.MAX_VALUE;
+        StringBuilder summary = new StringBuilder();
+        for (Config candidate : candidates()) {
+            long nanos = measure(spec, model, candidate);
+            summary.append(candidate).append('=')
+                    .append(nanos < 0 ? "실패" : (nanos / 100_000) / 10.0 + "ms").append(", ");
+            if (nanos >= 0 && nanos < bestNanos) {
+                bestNanos = nanos;
+                best = candidate;
+            }
+        }
+        Log.d(TAG, "📏 " + spec.assetPath + ": " + summary);
+
+        if (best == null) {
+            Log.w(TAG, "⚠️ 사용 가능한 백엔드 없음, 기본 설정 사용: " + spec.assetPath);
+            return defaultFor(spec);
+        }
+
+        synchronized (this) {
+            selected.put(spec.assetPath, best);
+            preferences.edit().putString(spec.assetPath, best.encode()).apply();
+        }
+        // 이전 설정으로 만든 쉬고 있는 인터프리터는 닫아서 다음 대여부터 새 설정 적용
+        // (워밍업은 awaitCalibration 으로 측정 뒤에 하므로 시작 때 워밍업한 인터프리터는 버리지 않음)
+        ModelRegistry.getInstance(context).releaseIdle(spec);
+        Log.d(TAG, "✅ " + spec.assetPath + " → " + best + " (" + bestNanos / 1_000_000 + "ms)");
+        return best;
+    }
+
+    /**
+     * 측정 후보: CPU 기본 커널, XNNPACK 1/2/4/코어 수 스레드, NNAPI
+     */
+    private static List<Config> candidates() {
+        Set<Integer> threads = new LinkedHashSet<>();
+        int cores = Math.max(1, Runtime.getRuntime().availableProcessors());
+        for (int n : new int[]{1, 2, 4, cores}) {
+            if (n <= cores) threads.add(n);
+        }
+
+        List<Config> configs = new ArrayList<>();
+        configs.add(new Config(Backend.CPU, Math.min(4, cores)));
+        for (int n : threads) {
+            configs.add(new Config(Backend.XNNPACK, n));
+        }
+        configs.add(new Config(Backend.NNAPI, 0));
+        return configs;
+    }
+
+    /**
+     * 평균 추론 시간(ns), 인터프리터 생성/추론이 실패하면 -1
+     */
+    private long measure(ModelRegistry.Spec spec, MappedByteBuffer model, Config config) {
+        Interpreter interpreter = null;
+        NnApiDelegate delegate = null;
+        try {
+            delegate = config.createDelegate(context, spec);
+            interpreter = new Interpreter(model, config.toOptions(delegate));
+
+            ZeroRun zeroRun = new ZeroRun(interpreter);
+            for (int i = 0; i < WARMUP_RUNS; i++) {
+                zeroRun.run();
+            }
+            long total = 0;
+            int runs = 0;
+            while (runs < TIMED_RUNS) {
+                long start = System.nanoTime();
+                zeroRun.run();
+                long elapsed = System.nanoTime() - start;
+                total += elapsed;
+                runs++;
+                if (elapsed > SLOW_RUN_NANOS) break;
+            }
+            return total / runs;
+        } catch (Exception | UnsatisfiedLinkError e) {
+            Log.w(TAG, "⚠️ " + config + " 사용 불가: " + e.getMessage());
+            return -1;
+        } finally {
+            if (interpreter != null) {
+                interpreter.close();
+            }
+            if (delegate != null) {
+                delegate.close();
+            }
+        }
+    }
+}
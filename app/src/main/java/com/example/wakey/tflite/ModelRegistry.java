@@ -0,0 +1,224 @@
+package com.example.wakey.tflite;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.util.Log;
+
+import org.tensorflow.lite.Delegate;
+import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.support.common.FileUtil;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * TFLite 모델 공용 레지스트리
+ * - 모델 파일(MappedByteBuffer)은 모델마다 한 번만 매핑
+ * - Interpreter 는 스레드 간 공유가 안 되므로 빌려주고(acquire) 돌려받는(release) 풀로 관리
+ *   → 인코더/분류기 객체를 매번 새로 만들어도 인터프리터 생성 비용은 처음 한 번뿐
+ * - 풀 크기(모델별로 쉬고 있는 인터프리터 최대 수)를 넘게 동시에 빌리면 임시 인터프리터를 만들고 반납 시 닫음
+ * - 메모리 부족 시 쉬고 있는 인터프리터를 닫고, 사용 중인 것이 없으면 모델 매핑도 해제
+ * - 백엔드/스레드 수는 InferenceBackendSelector 의 기기별 측정 결과를 따름
+ */
+public class ModelRegistry {
+    private static final String TAG = "ModelRegistry";
+    private static ModelRegistry instance;
+
+    /**
+     * 모델 파일 + 인터프리터 옵션 + 기본 풀 크기
+     */
+    public static final class Spec {
+        final String assetPath;
+        final int numThreads;      // 백엔드 측정 전 기본 스레드 수 (0 이면 TFLite 기본값)
+        final int poolSize;
+
+        public Spec(String assetPath, int numThreads, int poolSize) {
+            this.assetPath = assetPath;
+            this.numThreads = numThreads;
+            this.poolSize = Math.max(1, poolSize);
+        }
+    }
+
+    private static final class Pool {
+        final ArrayDeque<Interpreter> idle = new ArrayDeque<>();
+        MappedByteBuffer model;
+        int poolSize;
+        int leased;
+        int created;
+    }
+
+    private final Context context;
+    private final Map<String, Pool> pools = new HashMap<>();
+    // 인터프리터가 닫힐 때 같이 닫아야 하는 델리게이트 (NNAPI)
+    private final Map<Interpreter, Delegate> delegates = new IdentityHashMap<>();
+
+    private ModelRegistry(Context context) {
+        this.context = context;
+    }
+
+    public static synchronized ModelRegistry getInstance(Context context) {
+        if (instance == null) {
+            instance = new ModelRegistry(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * 인터프리터 빌리기. 쉬고 있는 것이 없으면 새로 생성 (모델 매핑은 재사용)
+     * 사용 후 반드시 release 로 반납
+     */
+    public Interpreter acquire(Spec spec) throws IOException {
+        MappedByteBuffer model;
+        synchronized (this) {
+            Pool pool = poolOf(spec);
+            Interpreter interpreter = pool.idle.pollFirst();
+            if (interpreter != null) {
+                pool.leased++;
+                return interpreter;
+            }
+            if (pool.model == null) {
+                pool.model = FileUtil.loadMappedFile(context, spec.assetPath);
+            }
+            model = pool.model;
+        }
+
+        // 인터프리터 생성은 느리므로 잠금 밖에서 (다른 모델 대여를 막지 않도록)
+        long start = System.nanoTime();
+        InferenceBackendSelector.Config config = InferenceBackendSelector.getInstance(context).configFor(spec);
+        Interpreter interpreter;
+        Delegate delegate = null;
+        try {
+            delegate = config.createDelegate(context, spec);
+            interpreter = new Interpreter(model, config.toOptions(delegate));
+        } catch (RuntimeException e) {
+            // 델리게이트 생성 실패 등: 기본 설정으로 다시 시도
+            if (delegate != null) {
+                delegate.close();
+            }
+            InferenceBackendSelector.Config fallback = InferenceBackendSelector.defaultFor(spec);
+            Log.w(TAG, "⚠️ " + config + " 인터프리터 생성 실패, " + fallback + " 로 재시도: " + e.getMessage());
+            config = fallback;
+            delegate = null;
+            interpreter = new Interpreter(model, config.toOptions(null));
+        }
+
+        synchronized (this) {
+            if (delegate != null) {
+                delegates.put(interpreter, delegate);
+            }
+            Pool pool = poolOf(spec);
+            pool.leased++;
+            pool.created++;
+            Log.d(TAG, "🧠 인터프리터 생성: " + spec.assetPath + " [" + config + "] ("
+                    + (System.nanoTime() - start) / 1_000_000 + "ms, 사용 중 " + pool.leased
+                    + ", 누적 생성 " + pool.created + ")");
+        }
+        return interpreter;
+    }
+
+    /**
+     * 인터프리터 반납. 풀이 가득 차 있으면 닫음
+     */
+    public synchronized void release(Spec spec, Interpreter interpreter) {
+        if (interpreter == null) return;
+        Pool pool = poolOf(spec);
+        pool.leased = Math.max(0, pool.leased - 1);
+        if (pool.idle.size() < pool.poolSize) {
+            pool.idle.addFirst(interpreter);
+        } else {
+            closeInterpreter(interpreter);
+        }
+    }
+
+    /**
+     * 모델별 풀 크기 변경 (동시에 추론할 스레드 수에 맞춤)
+     */
+    public synchronized void setPoolSize(Spec spec, int poolSize) {
+        Pool pool = poolOf(spec);
+        pool.poolSize = Math.max(1, poolSize);
+        while (pool.idle.size() > pool.poolSize) {
+            closeInterpreter(pool.idle.pollLast());
+        }
+    }
+
+    /**
+     * ComponentCallbacks2.onTrimMemory 에서 호출
+     * 백그라운드/메모리 부족 수준이면 쉬고 있는 인터프리터를 모두 닫음
+     */
+    public void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            releaseIdle();
+        }
+    }
+
+    /**
+     * 쉬고 있는 인터프리터를 닫고, 사용 중인 것이 없는 모델은 매핑 참조도 해제
+     */
+    public synchronized void releaseIdle() {
+        int closed = 0;
+        for (Pool pool : pools.values()) {
+            while (!pool.idle.isEmpty()) {
+                closeInterpreter(pool.idle.pollFirst());
+                closed++;
+            }
+            if (pool.leased == 0) {
+                pool.model = null;
+            }
+        }
+        if (closed > 0) {
+            Log.d(TAG, "🧹 메모리 확보: 인터프리터 " + closed + "개 해제");
+        }
+    }
+
+    /**
+     * 한 모델의 쉬고 있는 인터프리터만 닫음 (설정이 바뀌어 다음 대여부터 새로 만들어야 할 때)
+     */
+    public synchronized void releaseIdle(Spec spec) {
+        Pool pool = poolOf(spec);
+        while (!pool.idle.isEmpty()) {
+            closeInterpreter(pool.idle.pollFirst());
+        }
+    }
+
+    /**
+     * 인터프리터를 미리 만들고 0 입력으로 한 번 추론한 뒤 풀에 넣어 둠
+     * (첫 실제 추론 때 생기는 모델 매핑, 인터프리터 생성, 가중치 패킹/델리게이트 컴파일 지연을 앱 시작 후 백그라운드로 옮김)
+     */
+    public void warmUp(Spec spec) {
+        Interpreter interpreter = null;
+        try {
+            long start = System.nanoTime();
+            interpreter = acquire(spec);
+            new ZeroRun(interpreter).run();
+            Log.d(TAG, "🔥 워밍업 완료: " + spec.assetPath + " (" + (System.nanoTime() - start) / 1_000_000 + "ms)");
+        } catch (Exception e) {
+            Log.w(TAG, "⚠️ 워밍업 실패: " + spec.assetPath + " (" + e.getMessage() + ")");
+        } finally {
+            release(spec, interpreter);
+        }
+    }
+
+    private void closeInterpreter(Interpreter interpreter) {
+        interpreter.close();
+        Delegate delegate = delegates.remove(interpreter);
+        if (delegate != null) {
+            delegate.close();
+        }
+    }
+
+    private Pool poolOf(Spec spec) {
+        Pool pool = pools.get(spec.assetPath);
+        if (pool == null) {
+            pool = new Pool();
+            pool.poolSize = spec.poolSize;
+            pools.put(spec.assetPath, pool);
+        }
+        return pool;
+    }
+}
@@ -6,13 +6,13 @@ import android.graphics.RectF;
 import android.util.Log;
 
 import org.tensorflow.lite.Interpreter;
-import org.tensorflow.lite.support.common.FileUtil;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.MappedByteBuffer;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -20,117 +20,182 @@ import java.util.Map;
 public class Yolov8Detector {
     private static final String TAG = "Yolov8Detector";
     private static final String MODEL_PATH = "yolov8_det.tflite";
-    private static final int INPUT_SIZE = 640;
+    public static final int INPUT_SIZE = 640;
     private static final float CONFIDENCE_THRESHOLD = 0.4f;
     private static final float IOU_THRESHOLD = 0.5f;
     private static final int NUM_CLASSES = 80;
-
-    private final Interpreter tflite;
+    private static final int NUM_ANCHORS = 8400;
+    private static final int MAX_CANDIDATES = 300;     // NMS 에 넣을 최대 후보 수 (신뢰도 상위)
+    private static final int MAX_DETECTIONS = 100;
+
+    // COCO 80 클래스 (모델 출력 클래스 id 순서)
+    private static final String[] COCO_LABELS = {
+            "person", "bicycle", "car", "motorcycle", "airplane", "bus", "train", "truck", "boat",
+            "traffic light", "fire hydrant", "stop sign", "parking meter", "bench", "bird", "cat", "dog",
+            "horse", "sheep", "cow", "elephant", "bear", "zebra", "giraffe", "backpack", "umbrella",
+            "handbag", "tie", "suitcase", "frisbee", "skis", "snowboard", "sports ball", "kite",
+            "baseball bat", "baseball glove", "skateboard", "surfboard", "tennis racket", "bottle",
+            "wine glass", "cup", "fork", "knife", "spoon", "bowl", "banana", "apple", "sandwich", "orange",
+            "broccoli", "carrot", "hot dog", "pizza", "donut", "cake", "chair", "couch", "potted plant",
+            "bed", "dining table", "toilet", "tv", "laptop", "mouse", "remote", "keyboard", "cell phone",
+            "microwave", "oven", "toaster", "sink", "refrigerator", "book", "clock", "vase", "scissors",
+            "teddy bear", "hair drier", "toothbrush"
+    };
+
+    static final ModelRegistry.Spec SPEC = new ModelRegistry.Spec(MODEL_PATH, 0, 2);
+
+    private final ModelRegistry registry;
+    private Interpreter tflite;
+
+    // 인스턴스별 재사용 입력/출력 텐서 (사진마다 새로 할당하지 않음)
+    private final ImagePreprocessor preprocessor = new ImagePreprocessor(INPUT_SIZE, INPUT_SIZE);
+    private final ByteBuffer inputBuffer = ImagePreprocessor.allocateFloatInput(INPUT_SIZE, INPUT_SIZE);
+    private final Object[] inputs = {inputBuffer};
+    // 출력은 direct 버퍼로 받아 한 번에 float[] 로 복사 (중첩 배열 복사 없음), [1,4,8400] / [1,80,8400] 행 우선
+    private final ByteBuffer boxesBuffer = ByteBuffer.allocateDirect(4 * NUM_ANCHORS * 4).order(ByteOrder.nativeOrder());
+    private final ByteBuffer scoresBuffer = ByteBuffer.allocateDirect(NUM_CLASSES * NUM_ANCHORS * 4).order(ByteOrder.nativeOrder());
+    private final FloatBuffer boxesView = boxesBuffer.asFloatBuffer();
+    private final FloatBuffer scoresView = scoresBuffer.asFloatBuffer();
+    private final Map<Integer, Object> outputMap = new HashMap<>();
+    private final float[] boxes = new float[4 * NUM_ANCHORS];
+    private final float[] scores = new float[NUM_CLASSES * NUM_ANCHORS];
+
+    // 후처리 작업 배열 (앵커별 최고 점수/클래스, 후보 정렬 키, 선택된 박스 좌표)
+    private final float[] bestScores = new float[NUM_ANCHORS];
+    private final int[] bestClasses = new int[NUM_ANCHORS];
+    private final long[] candidateKeys = new long[NUM_ANCHORS];
+    private final float[] keptBoxes = new float[MAX_DETECTIONS * 4];
+    private final int[] keptClasses = new int[MAX_DETECTIONS];
 
     public Yolov8Detector(Context context) throws IOException {
-        MappedByteBuffer model = FileUtil.loadMappedFile(context, MODEL_PATH);
-        tflite = new Interpreter(model, new Interpreter.Options());
+        registry = ModelRegistry.getInstance(context);
+        tflite = registry.acquire(SPEC);
+        outputMap.put(0, boxesBuffer);
+        outputMap.put(1, scoresBuffer);
         Log.d(TAG, "✅ YOLOv8 모델 로드 완료");
     }
 
-    public List<RectF> detect(Bitmap bitmap) {
-        Bitmap resized = Bitmap.createScaledBitmap(bitmap, INPUT_SIZE, INPUT_SIZE, true);
-        ByteBuffer inputBuffer = ByteBuffer.allocateDirect(1 * INPUT_SIZE * INPUT_SIZE * 3 * 4);
-        inputBuffer.order(ByteOrder.nativeOrder());
-
-        for (int y = 0; y < INPUT_SIZE; y++) {
-            for (int x = 0; x < INPUT_SIZE; x++) {
-                int pixel = resized.getPixel(x, y);
-                inputBuffer.putFloat(((pixel >> 16) & 0xFF) / 255.0f);
-                inputBuffer.putFloat(((pixel >> 8) & 0xFF) / 255.0f);
-                inputBuffer.putFloat((pixel & 0xFF) / 255.0f);
-            }
-        }
-
-        float[][][] boxesOutput = new float[1][4][8400];
-        float[][][] scoresOutput = new float[1][NUM_CLASSES][8400];
-
-        Map<Integer, Object> outputMap = new HashMap<>();
-        outputMap.put(0, boxesOutput);
-        outputMap.put(1, scoresOutput);
-
-        tflite.runForMultipleInputsOutputs(new Object[]{inputBuffer}, outputMap);
+    /**
+     * 인터프리터를 미리 만들어 한 번 추론해 두고 풀에 남김 (첫 탐지 지연 제거)
+     */
+    public static void warmUp(Context context) {
+        ModelRegistry.getInstance(context).warmUp(SPEC);
+    }
 
-        List<RectF> result = new ArrayList<>();
-        List<Float> confidences = new ArrayList<>();
+    /**
+     * COCO 클래스 이름 (범위를 벗어나면 "class_{id}")
+     */
+    public static String labelOf(int classId) {
+        return classId >= 0 && classId < COCO_LABELS.length ? COCO_LABELS[classId] : "class_" + classId;
+    }
 
-        for (int i = 0; i < 8400; i++) {
-            float x = boxesOutput[0][0][i];
-            float y = boxesOutput[0][1][i];
-            float w = boxesOutput[0][2][i];
-            float h = boxesOutput[0][3][i];
+    /**
+     * 탐지 결과 (신뢰도 내림차순, 박스는 입력 비트맵 좌표)
+     */
+    public List<Detection> detect(Bitmap bitmap) {
+        // 640x640 축소 + RGB float 를 재사용 버퍼에 한 번에 기록
+        preprocessor.writeFloatRgb(bitmap, inputBuffer);
+
+        boxesBuffer.rewind();
+        scoresBuffer.rewind();
+        tflite.runForMultipleInputsOutputs(inputs, outputMap);
+
+        long start = System.nanoTime();
+        boxesView.rewind();
+        boxesView.get(boxes);
+        scoresView.rewind();
+        scoresView.get(scores);
+
+        List<Detection> detections = postprocess(bitmap.getWidth() / (float) INPUT_SIZE,
+                bitmap.getHeight() / (float) INPUT_SIZE);
+        Log.d(TAG, "📦 최종 박스 수: " + detections.size() + " (후처리 "
+                + (System.nanoTime() - start) / 1000 + "µs)");
+        return detections;
+    }
 
-            float maxScore = -1f;
-            int classId = -1;
-            for (int c = 0; c < NUM_CLASSES; c++) {
-                float score = scoresOutput[0][c][i];
-                if (score > maxScore) {
-                    maxScore = score;
-                    classId = c;
+    /**
+     * 앵커별 최고 클래스 선택 → 신뢰도 정렬 → 클래스별 NMS
+     */
+    private List<Detection> postprocess(float scaleX, float scaleY) {
+        // 클래스 행 단위로 연속 메모리를 읽으며 앵커별 최고 점수 갱신 (임계값 미만은 처음부터 무시)
+        Arrays.fill(bestScores, CONFIDENCE_THRESHOLD);
+        Arrays.fill(bestClasses, -1);
+        for (int c = 0; c < NUM_CLASSES; c++) {
+            int row = c * NUM_ANCHORS;
+            for (int i = 0; i < NUM_ANCHORS; i++) {
+                float score = scores[row + i];
+                if (score > bestScores[i] || (bestClasses[i] < 0 && score == CONFIDENCE_THRESHOLD)) {
+                    bestScores[i] = score;
+                    bestClasses[i] = c;
                 }
             }
-
-            if (maxScore < CONFIDENCE_THRESHOLD) continue;
-
-            float left = (x - w / 2f) * bitmap.getWidth() / INPUT_SIZE;
-            float top = (y - h / 2f) * bitmap.getHeight() / INPUT_SIZE;
-            float right = (x + w / 2f) * bitmap.getWidth() / INPUT_SIZE;
-            float bottom = (y + h / 2f) * bitmap.getHeight() / INPUT_SIZE;
-
-            RectF rect = new RectF(left, top, right, bottom);
-            result.add(rect);
-            confidences.add(maxScore);
-
-            Log.d(TAG, String.format("📦 [%.2f] Class %d: %s", maxScore, classId, rect));
         }
 
-        List<RectF> finalBoxes = applyNMS(result, confidences, IOU_THRESHOLD);
-        Log.d(TAG, "📦 최종 박스 수: " + finalBoxes.size());
-        return finalBoxes;
-    }
-
-    private List<RectF> applyNMS(List<RectF> boxes, List<Float> scores, float iouThreshold) {
-        List<RectF> finalBoxes = new ArrayList<>();
-
-        while (!boxes.isEmpty()) {
-            int maxIdx = 0;
-            for (int i = 1; i < scores.size(); i++) {
-                if (scores.get(i) > scores.get(maxIdx)) maxIdx = i;
+        // 후보를 (점수 비트 << 32 | 앵커) 키로 정렬: 양수 float 는 비트 순서 = 크기 순서
+        int candidates = 0;
+        for (int i = 0; i < NUM_ANCHORS; i++) {
+            if (bestClasses[i] >= 0) {
+                candidateKeys[candidates++] = ((long) Float.floatToIntBits(bestScores[i]) << 32) | i;
             }
-
-            RectF selected = boxes.remove(maxIdx);
-            float selectedScore = scores.remove(maxIdx);
-            finalBoxes.add(selected);
-
-            for (int i = boxes.size() - 1; i >= 0; i--) {
-                if (calculateIoU(selected, boxes.get(i)) > iouThreshold) {
-                    boxes.remove(i);
-                    scores.remove(i);
+        }
+        if (candidates == 0) return new ArrayList<>();
+        Arrays.sort(candidateKeys, 0, candidates);
+
+        // 신뢰도 높은 순으로 보면서 같은 클래스의 이미 선택된 박스와 IoU 가 크면 버림
+        List<Detection> detections = new ArrayList<>();
+        int kept = 0;
+        int examined = 0;
+        for (int k = candidates - 1; k >= 0 && examined < MAX_CANDIDATES && kept < MAX_DETECTIONS; k--, examined++) {
+            int anchor = (int) candidateKeys[k];
+            int classId = bestClasses[anchor];
+            float x = boxes[anchor];
+            float y = boxes[NUM_ANCHORS + anchor];
+            float w = boxes[2 * NUM_ANCHORS + anchor];
+            float h = boxes[3 * NUM_ANCHORS + anchor];
+            float left = (x - w / 2f) * scaleX;
+            float top = (y - h / 2f) * scaleY;
+            float right = (x + w / 2f) * scaleX;
+            float bottom = (y + h / 2f) * scaleY;
+
+            boolean suppressed = false;
+            for (int j = 0; j < kept; j++) {
+                if (keptClasses[j] == classId
+                        && iou(keptBoxes, j * 4, left, top, right, bottom) > IOU_THRESHOLD) {
+                    suppressed = true;
+                    break;
                 }
             }
+            if (suppressed) continue;
+
+            int base = kept * 4;
+            keptBoxes[base] = left;
+            keptBoxes[base + 1] = top;
+            keptBoxes[base + 2] = right;
+            keptBoxes[base + 3] = bottom;
+            keptClasses[kept++] = classId;
+            detections.add(new Detection(classId, bestScores[anchor], new RectF(left, top, right, bottom)));
         }
-
-        return finalBoxes;
+        return detections;
     }
 
-    private float calculateIoU(RectF a, RectF b) {
-        float left = Math.max(a.left, b.left);
-        float top = Math.max(a.top, b.top);
-        float right = Math.min(a.right, b.right);
-        float bottom = Math.min(a.bottom, b.bottom);
+    private static float iou(float[] kept, int base, float left, float top, float right, float bottom) {
+        float interLeft = Math.max(kept[base], left);
+        float interTop = Math.max(kept[base + 1], top);
+        float interRight = Math.min(kept[base + 2], right);
+        float interBottom = Math.min(kept[base + 3], bottom);
 
-        float intersection = Math.max(right - left, 0) * Math.max(bottom - top, 0);
-        float union = a.width() * a.height() + b.width() * b.height() - intersection;
+        float intersection = Math.max(interRight - interLeft, 0) * Math.max(interBottom - interTop, 0);
+        float union = (kept[base + 2] - kept[base]) * (kept[base + 3] - kept[base + 1])
+                + (right - left) * (bottom - top) - intersection;
 
         return intersection / union;
     }
 
     public void close() {
-        tflite.close();
+        if (tflite != null) {
+            registry.release(SPEC, tflite);
+            tflite = null;
+        }
+        preprocessor.release();
     }
 }
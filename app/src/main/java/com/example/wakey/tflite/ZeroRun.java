@@ -0,0 +1,44 @@
+package com.example.wakey.tflite;
+
+import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.Tensor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 모든 입력을 0 으로 채운 추론 (백엔드 측정, 워밍업용)
+ * 입력/출력 텐서 크기만큼 direct 버퍼를 한 번 만들고 run 마다 재사용
+ */
+final class ZeroRun {
+    private final Interpreter interpreter;
+    private final Object[] inputs;
+    private final Map<Integer, Object> outputs = new HashMap<>();
+
+    ZeroRun(Interpreter interpreter) {
+        this.interpreter = interpreter;
+        inputs = new Object[interpreter.getInputTensorCount()];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = zeroBuffer(interpreter.getInputTensor(i));
+        }
+        for (int i = 0; i < interpreter.getOutputTensorCount(); i++) {
+            outputs.put(i, zeroBuffer(interpreter.getOutputTensor(i)));
+        }
+    }
+
+    void run() {
+        for (Object input : inputs) {
+            ((ByteBuffer) input).rewind();
+        }
+        for (Object output : outputs.values()) {
+            ((ByteBuffer) output).rewind();
+        }
+        interpreter.runForMultipleInputsOutputs(inputs, outputs);
+    }
+
+    private static ByteBuffer zeroBuffer(Tensor tensor) {
+        return ByteBuffer.allocateDirect(tensor.numBytes()).order(ByteOrder.nativeOrder());
+    }
+}
@@ -16,6 +16,7 @@ import com.example.wakey.R;
 import com.example.wakey.data.local.AppDatabase;
 import com.example.wakey.data.local.Photo;
 import com.example.wakey.data.repository.PhotoRepository;
+import com.example.wakey.service.BurstGroupService;
 import com.example.wakey.ui.album.common.AlbumDetailActivity;
 
 import java.util.ArrayList;
@@ -184,8 +185,8 @@ public class DomesticRegionActivity extends AppCompatActivity {
                 String subRegionName = entry.getKey();
                 List<Photo> photos = entry.getValue();
 
-                // 첫 번째 사진을 썸네일로 사용
-                String thumbnailPath = photos.isEmpty() ? null : photos.get(0).filePath;
+                // 첫 번째 대표 사진을 썸네일로 사용 (연사 중복 사진 제외)
+                String thumbnailPath = BurstGroupService.pickCoverPath(photos);
 
                 // 최신 사진의 날짜 추출 (있는 경우)
                 String formattedDate = "";
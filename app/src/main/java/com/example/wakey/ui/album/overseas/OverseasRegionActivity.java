@@ -16,6 +16,7 @@ import com.example.wakey.R;
 import com.example.wakey.data.local.AppDatabase;
 import com.example.wakey.data.local.Photo;
 import com.example.wakey.data.repository.PhotoRepository;
+import com.example.wakey.service.BurstGroupService;
 import com.example.wakey.ui.album.common.AlbumDetailActivity;
 
 import java.util.ArrayList;
@@ -219,7 +220,7 @@ public class OverseasRegionActivity extends AppCompatActivity {
                 String doName = entry.getKey();
                 List<Photo> groupedPhotos = entry.getValue();
 
-                String thumbnailPath = groupedPhotos.get(0).filePath;
+                String thumbnailPath = BurstGroupService.pickCoverPath(groupedPhotos);
                 String formattedDate = "";
                 for (Photo photo : groupedPhotos) {
                     if (photo.dateTaken != null && photo.dateTaken.length() >= 7) {
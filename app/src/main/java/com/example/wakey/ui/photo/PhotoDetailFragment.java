@@ -36,6 +36,7 @@ import com.example.wakey.data.local.AppDatabase;
 import com.example.wakey.data.local.Photo;
 import com.example.wakey.data.model.TimelineItem;
 import com.example.wakey.ui.search.HashtagPhotosActivity;
+import com.example.wakey.ui.search.SimilarPhotosActivity;
 import com.example.wakey.ui.timeline.TimelineManager;
 import com.example.wakey.data.util.DateUtil;
 import com.example.wakey.tflite.ESRGANUpscaler;
@@ -199,6 +200,16 @@ public class PhotoDetailFragment extends DialogFragment {
         ImageButton btnNext = view.findViewById(R.id.btnNext);
         ProgressBar progressBar = view.findViewById(R.id.progressBarUpscale);
 
+        // 비슷한 사진 찾기 버튼 (저장된 CLIP 임베딩으로 검색)
+        ImageButton similarPhotosButton = view.findViewById(R.id.similarPhotosButton);
+        similarPhotosButton.setOnClickListener(v -> {
+            if (timelineItem == null || timelineItem.getPhotoPath() == null) {
+                Toast.makeText(getContext(), "사진 정보를 찾을 수 없습니다.", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            SimilarPhotosActivity.start(requireContext(), timelineItem.getPhotoPath());
+        });
+
         // 업스케일 버튼 참조 및 리스너 추가
         ImageButton upscaleButton = view.findViewById(R.id.upscaleButton);
         upscaleButton.setOnClickListener(v -> {
@@ -224,8 +235,10 @@ public class PhotoDetailFragment extends DialogFragment {
                 progressBar.setVisibility(View.VISIBLE);
 
                 new Thread(() -> {
+                    ESRGANUpscaler upscaler = null;
                     try {
-                        ESRGANUpscaler upscaler = new ESRGANUpscaler(requireContext());
+                        // 인터프리터는 공용 풀에서 빌려오므로 두 번째 클릭부터는 모델 로드 없음
+                        upscaler = new ESRGANUpscaler(requireContext());
                         upscaledBitmap = upscaler.upscale(originalBitmap);
 
                         requireActivity().runOnUiThread(() -> {
@@ -241,6 +254,10 @@ public class PhotoDetailFragment extends DialogFragment {
                             progressBar.setVisibility(View.GONE);
                             Toast.makeText(getContext(), "업스케일 실패: " + e.getMessage(), Toast.LENGTH_SHORT).show();
                         });
+                    } finally {
+                        if (upscaler != null) {
+                            upscaler.close();
+                        }
                     }
                 }).start();
             }
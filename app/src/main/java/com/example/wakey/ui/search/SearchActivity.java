@@ -15,9 +15,8 @@ import com.example.wakey.R;
 import com.example.wakey.data.local.AppDatabase;
 import com.example.wakey.data.local.Photo;
 import com.example.wakey.data.repository.SearchHistoryRepository;
-import com.example.wakey.data.util.SimilarityUtil;
-import com.example.wakey.tflite.ClipTextEncoder;
-import com.example.wakey.tflite.ClipTokenizer;
+import com.example.wakey.service.TextEmbeddingService;
+import com.example.wakey.service.VectorIndex;
 
 import java.io.IOException;
 import java.util.List;
@@ -63,48 +62,37 @@ public class SearchActivity extends AppCompatActivity {
     }
 
     private void analyzeSimilarity() {
-        try {
-            String query = searchEditText.getText().toString().trim();
-            if (query.isEmpty()) {
-                Toast.makeText(this, "검색어를 입력해주세요", Toast.LENGTH_SHORT).show();
-                return;
-            }
-
-            // 텍스트 벡터 생성
-            ClipTokenizer tokenizer = new ClipTokenizer(this);
-            int[] tokenIds = tokenizer.tokenize(query);
-            ClipTextEncoder encoder = new ClipTextEncoder(this);
-            float[] queryVec = encoder.getTextEncoding(tokenIds);
-            encoder.close();
-
-            // DB의 모든 사진과 비교
-            List<Photo> photos = AppDatabase.getInstance(this).photoDao().getAllPhotos();
-            float maxSim = -1f;
-            Photo bestMatch = null;
-
-            for (Photo photo : photos) {
-                float[] vec = photo.getEmbeddingVector();
-                if (vec == null) continue;
-                float sim = SimilarityUtil.cosineSimilarity(queryVec, vec);
-                if (sim > maxSim) {
-                    maxSim = sim;
-                    bestMatch = photo;
-                }
-            }
+        String query = searchEditText.getText().toString().trim();
+        if (query.isEmpty()) {
+            Toast.makeText(this, "검색어를 입력해주세요", Toast.LENGTH_SHORT).show();
+            return;
+        }
 
-            if (bestMatch != null) {
-                Glide.with(this)
-                        .load(Uri.parse(bestMatch.getFilePath()))
-                        .into(resultImageView);
-                Toast.makeText(this, "가장 유사한 사진 유사도: " + maxSim, Toast.LENGTH_LONG).show();
-            } else {
-                Toast.makeText(this, "일치하는 이미지가 없습니다", Toast.LENGTH_SHORT).show();
+        // 모델/인덱스 로딩과 검색은 백그라운드 스레드에서, 결과 표시는 UI 스레드에서
+        new Thread(() -> {
+            try {
+                // 텍스트 벡터 생성 후 벡터 인덱스에서 가장 유사한 사진 1장 검색 (캐시된 모델 재사용)
+                List<VectorIndex.Hit> hits = TextEmbeddingService.getInstance(this).search(query, 1, -1f);
+                float maxSim = hits.isEmpty() ? -1f : hits.get(0).score;
+                Photo bestMatch = hits.isEmpty() ? null
+                        : AppDatabase.getInstance(this).photoDao().getPhotoById(hits.get(0).photoId);
+
+                runOnUiThread(() -> {
+                    if (isFinishing() || isDestroyed()) return;
+                    if (bestMatch != null) {
+                        Glide.with(this)
+                                .load(Uri.parse(bestMatch.getFilePath()))
+                                .into(resultImageView);
+                        Toast.makeText(this, "가장 유사한 사진 유사도: " + maxSim, Toast.LENGTH_LONG).show();
+                    } else {
+                        Toast.makeText(this, "일치하는 이미지가 없습니다", Toast.LENGTH_SHORT).show();
+                    }
+                });
+            } catch (IOException e) {
+                e.printStackTrace();
+                runOnUiThread(() -> Toast.makeText(this, "모델 로딩 실패", Toast.LENGTH_SHORT).show());
             }
-
-        } catch (IOException e) {
-            e.printStackTrace();
-            Toast.makeText(this, "모델 로딩 실패", Toast.LENGTH_SHORT).show();
-        }
+        }).start();
     }
 
 }
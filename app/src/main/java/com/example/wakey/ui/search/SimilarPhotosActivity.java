@@ -0,0 +1,270 @@
+package com.example.wakey.ui.search;
+
+import android.content.ContentUris;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Bundle;
+import android.provider.MediaStore;
+import android.util.Log;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.wakey.R;
+import com.example.wakey.data.local.AppDatabase;
+import com.example.wakey.data.local.Photo;
+import com.example.wakey.data.local.PhotoDao;
+import com.example.wakey.service.VectorIndex;
+import com.example.wakey.tflite.ClipImageEncoder;
+import com.example.wakey.util.ImageUtils;
+import com.google.android.material.appbar.MaterialToolbar;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * "비슷한 사진" 검색 결과 화면 (이미지 → 이미지)
+ * - 사진 경로를 받으면 저장된 CLIP 임베딩을 그대로 질의로 사용 (모델 추론 없음)
+ * - 경로 없이 열면 갤러리에서 이미지를 골라 그 자리에서 임베딩 계산
+ * - 텍스트 검색과 같은 VectorIndex 경로로 채점, 유사도 순서대로 격자에 표시
+ */
+public class SimilarPhotosActivity extends AppCompatActivity {
+    private static final String TAG = "SimilarPhotos";
+
+    public static final String EXTRA_PHOTO_PATH = "photoPath";
+
+    private static final int PICK_IMAGE_REQUEST = 1;
+    private static final int MAX_RESULTS = 60;
+    private static final float MINIMUM_SIMILARITY = 0.5f;
+    private static final int SQL_BATCH_SIZE = 900;
+
+    private RecyclerView photoGridRecyclerView;
+    private HashtagPhotoAdapter adapter;
+    private TextView titleTextView;
+    private TextView photoCountTextView;
+
+    /**
+     * 저장된 사진과 비슷한 사진 보기
+     */
+    public static void start(Context context, String photoPath) {
+        Intent intent = new Intent(context, SimilarPhotosActivity.class);
+        intent.putExtra(EXTRA_PHOTO_PATH, photoPath);
+        context.startActivity(intent);
+    }
+
+    /**
+     * 갤러리에서 고른 이미지와 비슷한 사진 보기
+     */
+    public static void startWithGalleryPick(Context context) {
+        context.startActivity(new Intent(context, SimilarPhotosActivity.class));
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_hashtag_photos);
+
+        initializeViews();
+        setupToolbar();
+
+        String photoPath = getIntent().getStringExtra(EXTRA_PHOTO_PATH);
+        if (photoPath != null) {
+            searchByStoredPhoto(photoPath);
+        } else if (savedInstanceState == null) {
+            Intent galleryIntent = new Intent(Intent.ACTION_PICK, MediaStore.Images.Media.EXTERNAL_CONTENT_URI);
+            startActivityForResult(galleryIntent, PICK_IMAGE_REQUEST);
+        }
+    }
+
+    private void initializeViews() {
+        photoGridRecyclerView = findViewById(R.id.photoGridRecyclerView);
+        titleTextView = findViewById(R.id.hashtagTitleTextView);
+        photoCountTextView = findViewById(R.id.photoCountTextView);
+
+        // GridLayoutManager 설정 (3열)
+        GridLayoutManager gridLayoutManager = new GridLayoutManager(this, 3);
+        photoGridRecyclerView.setLayoutManager(gridLayoutManager);
+
+        adapter = new HashtagPhotoAdapter(new ArrayList<>(), getSupportFragmentManager());
+        photoGridRecyclerView.setAdapter(adapter);
+    }
+
+    private void setupToolbar() {
+        MaterialToolbar toolbar = findViewById(R.id.toolbar);
+        toolbar.setNavigationOnClickListener(v -> finish());
+
+        titleTextView.setText("비슷한 사진");
+        photoCountTextView.setText("검색 중...");
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+
+        if (requestCode != PICK_IMAGE_REQUEST) return;
+        if (resultCode == RESULT_OK && data != null && data.getData() != null) {
+            searchByPickedImage(data.getData());
+        } else {
+            finish();
+        }
+    }
+
+    /**
+     * DB 에 있는 사진: 인덱스에 저장된 임베딩으로 검색 (질의 사진은 결과에서 제외)
+     */
+    private void searchByStoredPhoto(String photoPath) {
+        new Thread(() -> {
+            try {
+                Photo photo = AppDatabase.getInstance(this).photoDao().getPhotoByPath(photoPath);
+                if (photo == null) {
+                    showError("사진 정보를 찾을 수 없습니다.");
+                    return;
+                }
+
+                long start = System.nanoTime();
+                List<VectorIndex.Hit> hits = VectorIndex.getInstance(this)
+                        .searchSimilar(photo.id, MAX_RESULTS, MINIMUM_SIMILARITY);
+                Log.d(TAG, "⏱️ 비슷한 사진 검색: " + hits.size() + "개 ("
+                        + (System.nanoTime() - start) / 1_000_000 + "ms)");
+
+                showResults(toPhotos(hits));
+            } catch (Exception e) {
+                Log.e(TAG, "❌ 비슷한 사진 검색 실패: " + e.getMessage(), e);
+                showError("검색 실패: " + e.getMessage());
+            }
+        }).start();
+    }
+
+    /**
+     * 갤러리에서 고른 이미지: 즉석에서 CLIP 이미지 임베딩 계산 후 검색
+     * 고른 이미지가 이미 라이브러리에 있으면 그 사진은 결과에서 제외 (자기 자신이 유사도 1 로 1등이 되므로)
+     */
+    private void searchByPickedImage(Uri imageUri) {
+        new Thread(() -> {
+            ClipImageEncoder encoder = null;
+            Bitmap bitmap = null;
+            try {
+                bitmap = ImageUtils.decodeForModel(this, imageUri, ClipImageEncoder.IMAGE_SIZE);
+                if (bitmap == null) {
+                    showError("이미지를 불러올 수 없습니다.");
+                    return;
+                }
+
+                long start = System.nanoTime();
+                encoder = new ClipImageEncoder(this);
+                float[] embedding = encoder.getImageEncoding(bitmap);
+                long encodeMs = (System.nanoTime() - start) / 1_000_000;
+
+                Photo picked = findInLibrary(imageUri);
+                VectorIndex vectorIndex = VectorIndex.getInstance(this);
+                vectorIndex.ensureLoaded();
+                start = System.nanoTime();
+                List<VectorIndex.Hit> hits = vectorIndex.search(embedding,
+                        picked != null ? MAX_RESULTS + 1 : MAX_RESULTS, MINIMUM_SIMILARITY);
+                if (picked != null) {
+                    hits = withoutPhoto(hits, picked.id);
+                }
+                Log.d(TAG, "⏱️ 이미지로 검색: " + hits.size() + "개 (임베딩 " + encodeMs + "ms, 검색 "
+                        + (System.nanoTime() - start) / 1_000_000 + "ms)");
+
+                showResults(toPhotos(hits));
+            } catch (Exception e) {
+                Log.e(TAG, "❌ 이미지로 검색 실패: " + e.getMessage(), e);
+                showError("검색 실패: " + e.getMessage());
+            } finally {
+                if (bitmap != null) {
+                    bitmap.recycle();
+                }
+                if (encoder != null) {
+                    encoder.close();
+                }
+            }
+        }).start();
+    }
+
+    /**
+     * 고른 이미지에 해당하는 라이브러리 사진 (없으면 null)
+     * 저장 경로는 MediaStore content URI 문자열이라 그대로 찾고, 형태가 다르면 MediaStore id 로 다시 찾음
+     */
+    @Nullable
+    private Photo findInLibrary(Uri imageUri) {
+        PhotoDao photoDao = AppDatabase.getInstance(this).photoDao();
+        Photo photo = photoDao.getPhotoByPath(imageUri.toString());
+        if (photo != null || !MediaStore.AUTHORITY.equals(imageUri.getAuthority())) {
+            return photo;
+        }
+        try {
+            long mediaId = ContentUris.parseId(imageUri);
+            if (mediaId < 0) return null;
+            Uri canonical = ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, mediaId);
+            return photoDao.getPhotoByPath(canonical.toString());
+        } catch (NumberFormatException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private static List<VectorIndex.Hit> withoutPhoto(List<VectorIndex.Hit> hits, int photoId) {
+        List<VectorIndex.Hit> kept = new ArrayList<>(Math.min(hits.size(), MAX_RESULTS));
+        for (VectorIndex.Hit hit : hits) {
+            if (hit.photoId == photoId) continue;
+            kept.add(hit);
+            if (kept.size() == MAX_RESULTS) break;
+        }
+        return kept;
+    }
+
+    /**
+     * 검색 결과를 Photo 로 변환 (유사도 순서 유지)
+     */
+    private List<Photo> toPhotos(List<VectorIndex.Hit> hits) {
+        List<Integer> photoIds = new ArrayList<>(hits.size());
+        for (VectorIndex.Hit hit : hits) {
+            photoIds.add(hit.photoId);
+        }
+
+        PhotoDao photoDao = AppDatabase.getInstance(this).photoDao();
+        Map<Integer, Photo> photoById = new HashMap<>();
+        for (int from = 0; from < photoIds.size(); from += SQL_BATCH_SIZE) {
+            List<Integer> batch = photoIds.subList(from, Math.min(from + SQL_BATCH_SIZE, photoIds.size()));
+            for (Photo photo : photoDao.getPhotosByIds(batch)) {
+                photoById.put(photo.id, photo);
+            }
+        }
+
+        List<Photo> photos = new ArrayList<>(hits.size());
+        for (VectorIndex.Hit hit : hits) {
+            Photo photo = photoById.get(hit.photoId);
+            if (photo != null) {
+                photos.add(photo);
+            }
+        }
+        return photos;
+    }
+
+    private void showResults(List<Photo> photos) {
+        runOnUiThread(() -> {
+            if (isFinishing()) return;
+            adapter.updatePhotos(photos);
+            photoCountTextView.setText("(" + photos.size() + "장)");
+            if (photos.isEmpty()) {
+                Toast.makeText(this, "비슷한 사진이 없습니다.", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    private void showError(String message) {
+        runOnUiThread(() -> {
+            if (isFinishing()) return;
+            photoCountTextView.setText("(0장)");
+            Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
+        });
+    }
+}
@@ -4,6 +4,7 @@ import android.content.Context;
 import android.database.Cursor;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.ImageDecoder;
 import android.location.Location;
 import android.net.Uri;
 import android.provider.MediaStore;
@@ -12,9 +13,14 @@ import android.util.Log;
 import androidx.exifinterface.media.ExifInterface;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
 
 import android.graphics.Matrix;
 import androidx.exifinterface.media.ExifInterface;
@@ -89,6 +95,106 @@ public class ImageUtils {
         return null;
     }
 
+    /**
+     * EXIF 촬영 시각을 "yyyy-MM-dd HH:mm:ss" 로 변환 (EXIF 에 없거나 형식이 깨졌으면 null)
+     * 스크린샷/다운로드처럼 촬영 시각이 없는 사진을 구분해야 하는 곳(연사 묶음 등)에서 사용
+     */
+    public static String getExifCaptureTime(Context context, Uri uri) {
+        String dateTaken = getExifDateTaken(context, uri);
+        if (dateTaken == null || dateTaken.isEmpty()) return null;
+        try {
+            Date parsed = new SimpleDateFormat("yyyy:MM:dd HH:mm:ss", Locale.getDefault()).parse(dateTaken);
+            return parsed != null ? new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(parsed) : null;
+        } catch (ParseException e) {
+            Log.e("ImageUtils", "❌ dateTaken 포맷 변환 실패: " + dateTaken);
+            return null;
+        }
+    }
+
+    /**
+     * 모델 입력용 디코딩: 짧은 변이 minShortSide 가 되는 크기로 바로 디코딩 (원본이 더 작으면 원본 크기)
+     * - ImageDecoder 가 EXIF 회전을 적용하고, 픽셀을 읽을 수 있도록 소프트웨어 비트맵으로 생성
+     * - 12MP 원본도 전체 크기(~48MB)로 올리지 않으므로 대량 수집 중 메모리/디코딩 시간이 크게 줄어듦
+     * - ImageDecoder 가 지원하지 않는 형식이면 BitmapFactory inSampleSize 디코딩 + EXIF 회전으로 대체
+     */
+    public static Bitmap decodeForModel(Context context, Uri uri, int minShortSide) {
+        try {
+            ImageDecoder.Source source = ImageDecoder.createSource(context.getContentResolver(), uri);
+            return ImageDecoder.decodeBitmap(source, (decoder, info, src) -> {
+                decoder.setAllocator(ImageDecoder.ALLOCATOR_SOFTWARE);
+                int width = info.getSize().getWidth();
+                int height = info.getSize().getHeight();
+                int shortSide = Math.min(width, height);
+                if (shortSide > minShortSide) {
+                    float scale = (float) minShortSide / shortSide;
+                    decoder.setTargetSize(Math.max(1, Math.round(width * scale)),
+                            Math.max(1, Math.round(height * scale)));
+                }
+            });
+        } catch (Exception e) {
+            Log.w(TAG, "ImageDecoder 디코딩 실패, BitmapFactory 로 재시도: " + uri + " (" + e.getMessage() + ")");
+            return decodeSampled(context, uri, minShortSide);
+        }
+    }
+
+    /**
+     * BitmapFactory 로 크기만 먼저 읽고 짧은 변이 minShortSide 이상인 가장 큰 2의 거듭제곱으로 줄여 디코딩
+     */
+    private static Bitmap decodeSampled(Context context, Uri uri, int minShortSide) {
+        try {
+            BitmapFactory.Options bounds = new BitmapFactory.Options();
+            bounds.inJustDecodeBounds = true;
+            try (InputStream input = context.getContentResolver().openInputStream(uri)) {
+                if (input == null) return null;
+                BitmapFactory.decodeStream(input, null, bounds);
+            }
+            int shortSide = Math.min(bounds.outWidth, bounds.outHeight);
+            if (shortSide <= 0) return null;
+
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+            options.inSampleSize = 1;
+            while (shortSide / (options.inSampleSize * 2) >= minShortSide) {
+                options.inSampleSize *= 2;
+            }
+
+            Bitmap bitmap;
+            try (InputStream input = context.getContentResolver().openInputStream(uri)) {
+                bitmap = BitmapFactory.decodeStream(input, null, options);
+            }
+            return bitmap != null ? applyExifOrientation(context, uri, bitmap) : null;
+        } catch (Exception e) {
+            Log.e(TAG, "❌ 이미지 디코딩 실패: " + uri, e);
+            return null;
+        }
+    }
+
+    /**
+     * EXIF 회전 정보대로 비트맵 회전 (회전이 없으면 그대로 반환)
+     */
+    private static Bitmap applyExifOrientation(Context context, Uri uri, Bitmap bitmap) throws IOException {
+        int orientation;
+        try (InputStream exifInput = context.getContentResolver().openInputStream(uri)) {
+            if (exifInput == null) return bitmap;
+            ExifInterface exif = new ExifInterface(exifInput);
+            orientation = exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        }
+
+        Matrix matrix = new Matrix();
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_ROTATE_90: matrix.postRotate(90); break;
+            case ExifInterface.ORIENTATION_ROTATE_180: matrix.postRotate(180); break;
+            case ExifInterface.ORIENTATION_ROTATE_270: matrix.postRotate(270); break;
+        }
+        if (matrix.isIdentity()) return bitmap;
+
+        Bitmap rotated = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        if (rotated != bitmap) {
+            bitmap.recycle();
+        }
+        return rotated;
+    }
+
     public static Bitmap loadBitmapFromUri(Context context, Uri uri) {
         try {
             InputStream input = context.getContentResolver().openInputStream(uri);
@@ -2,8 +2,8 @@ package com.example.wakey.util;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.Bitmap.Config;
-import android.graphics.Color;
+
+import com.example.wakey.tflite.ImagePreprocessor;
 
 import org.tensorflow.lite.Interpreter;
 import org.tensorflow.lite.flex.FlexDelegate;
@@ -12,13 +12,16 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.MappedByteBuffer;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 
 public class Upscaler {
     private final Interpreter interpreter;
     private final int inputWidth;
     private final int inputHeight;
+    private final ImagePreprocessor preprocessor;
+    private final ByteBuffer inBuf;
+    private final float[][][][] outArr;
+    private final int[] outPixels;
 
     public Upscaler(Context context) throws IOException {
         // 1) 모델 파일 로드 (assets/real_esrgan_general_x4v3-qualcomm_snapdragon_8_elite.tflite)
@@ -38,6 +41,13 @@ public class Upscaler {
         int[] inShape = interpreter.getInputTensor(0).shape();  // [1, H, W, 3]
         inputHeight = inShape[1];
         inputWidth  = inShape[2];
+
+        // 5) 입력/출력 버퍼는 한 번만 만들고 재사용
+        preprocessor = new ImagePreprocessor(inputWidth, inputHeight);
+        inBuf = ImagePreprocessor.allocateFloatInput(inputWidth, inputHeight);
+        int[] outShape = interpreter.getOutputTensor(0).shape();  // [1, OH, OW, 3]
+        outArr = new float[outShape[0]][outShape[1]][outShape[2]][outShape[3]];
+        outPixels = new int[outShape[1] * outShape[2]];
     }
 
     private MappedByteBuffer loadModelFile(Context context, String modelFileName) throws IOException {
@@ -51,44 +61,31 @@ public class Upscaler {
     }
 
     public Bitmap upscale(Bitmap input) {
-        // 1) 입력 이미지를 모델 입력 사이즈에 맞게 리사이즈
-        Bitmap resized = Bitmap.createScaledBitmap(input, inputWidth, inputHeight, true);
-
-        // 2) 입력 버퍼 만들기
-        ByteBuffer inBuf = ByteBuffer.allocateDirect(1 * inputHeight * inputWidth * 3 * 4)
-                .order(ByteOrder.nativeOrder());
-        for (int y = 0; y < inputHeight; y++) {
-            for (int x = 0; x < inputWidth; x++) {
-                int p = resized.getPixel(x, y);
-                inBuf.putFloat(Color.red(p) / 255.0f);
-                inBuf.putFloat(Color.green(p) / 255.0f);
-                inBuf.putFloat(Color.blue(p) / 255.0f);
-            }
-        }
-        inBuf.rewind();
-
-        // 3) 출력 텐서 준비
-        int[] outShape = interpreter.getOutputTensor(0).shape();  // [1, OH, OW, 3]
-        int OB = outShape[0], OH = outShape[1], OW = outShape[2], OC = outShape[3];
-        float[][][][] outArr = new float[OB][OH][OW][OC];
+        // 1) 입력 이미지를 모델 입력 사이즈로 축소해서 재사용 입력 버퍼에 한 번에 기록
+        preprocessor.writeFloatRgb(input, inBuf);
 
-        // 4) 모델 실행
+        // 2) 모델 실행 (출력 배열 재사용)
         interpreter.run(inBuf, outArr);
 
-        // 5) 결과를 Bitmap 으로 변환
-        Bitmap outBmp = Bitmap.createBitmap(OW, OH, Bitmap.Config.ARGB_8888);
+        // 3) 결과를 픽셀 배열로 변환 후 setPixels 한 번으로 Bitmap 생성
+        int OH = outArr[0].length, OW = outArr[0][0].length;
+        int i = 0;
         for (int y = 0; y < OH; y++) {
             for (int x = 0; x < OW; x++) {
-                int r = Math.min(255, Math.max(0, (int)(outArr[0][y][x][0] * 255)));
-                int g = Math.min(255, Math.max(0, (int)(outArr[0][y][x][1] * 255)));
-                int b = Math.min(255, Math.max(0, (int)(outArr[0][y][x][2] * 255)));
-                outBmp.setPixel(x, y, Color.rgb(r, g, b));
+                float[] rgb = outArr[0][y][x];
+                int r = Math.min(255, Math.max(0, (int)(rgb[0] * 255)));
+                int g = Math.min(255, Math.max(0, (int)(rgb[1] * 255)));
+                int b = Math.min(255, Math.max(0, (int)(rgb[2] * 255)));
+                outPixels[i++] = 0xFF000000 | (r << 16) | (g << 8) | b;
             }
         }
+        Bitmap outBmp = Bitmap.createBitmap(OW, OH, Bitmap.Config.ARGB_8888);
+        outBmp.setPixels(outPixels, 0, OW, 0, 0, OW, OH);
         return outBmp;
     }
 
     public void close() {
         interpreter.close();
+        preprocessor.release();
     }
 }
@@ -0,0 +1,139 @@
+package com.example.wakey.data.util;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * SimilarityUtil 내적 커널이 단순 루프와 같은 값을 내는지 확인
+ * - 누산기 4개로 펼친 dot / dotBatch 는 더하는 순서만 다르므로 부동소수점 오차 범위 안에서 일치해야 함
+ * - 4의 배수가 아닌 차원, 오프셋/stride 가 있는 블록, FloatBuffer 경로까지 포함
+ */
+public class SimilarityUtilTest {
+
+    private static final float EPSILON = 1e-5f;
+    private static final int[] DIMS = {1, 3, 4, 7, 64, 511, 512};
+
+    @Test
+    public void dot_matchesNaiveLoop() {
+        Random random = new Random(1);
+        for (int dim : DIMS) {
+            float[] a = randomVector(dim + 5, random);
+            float[] b = randomVector(dim + 9, random);
+            assertEquals("dim=" + dim, naiveDot(a, 2, b, 7, dim),
+                    SimilarityUtil.dot(a, 2, b, 7, dim), EPSILON * dim);
+        }
+    }
+
+    @Test
+    public void dot_floatBufferMatchesNaiveLoop() {
+        Random random = new Random(2);
+        for (int dim : DIMS) {
+            float[] query = randomVector(dim, random);
+            float[] values = randomVector(dim + 11, random);
+            FloatBuffer buffer = directBuffer(values);
+            assertEquals("dim=" + dim, naiveDot(query, 0, values, 11, dim),
+                    SimilarityUtil.dot(query, buffer, 11, dim), EPSILON * dim);
+        }
+    }
+
+    @Test
+    public void dotBatch_matchesNaiveLoop() {
+        Random random = new Random(3);
+        for (int dim : DIMS) {
+            int count = 37;
+            int offset = 3;
+            int stride = dim + 2;   // 레코드 헤더가 있는 블록처럼 벡터 사이에 빈 칸
+            float[] query = randomVector(dim, random);
+            float[] block = randomVector(offset + count * stride, random);
+
+            float[] expected = new float[count + 1];
+            for (int j = 0; j < count; j++) {
+                expected[1 + j] = naiveDot(query, 0, block, offset + j * stride, dim);
+            }
+
+            float[] out = new float[count + 1];
+            SimilarityUtil.dotBatch(query, block, offset, stride, count, out, 1);
+            assertArrayEquals("dim=" + dim, expected, out, EPSILON * dim);
+
+            float[] bufferOut = new float[count + 1];
+            SimilarityUtil.dotBatch(query, directBuffer(block), offset, stride, count, bufferOut, 1);
+            assertArrayEquals("buffer dim=" + dim, expected, bufferOut, EPSILON * dim);
+        }
+    }
+
+    @Test
+    public void normalizeInPlace_makesUnitLengthAndKeepsZeroVector() {
+        Random random = new Random(4);
+        float[] values = randomVector(2 + 512, random);
+        float first = values[0];
+        SimilarityUtil.normalizeInPlace(values, 2, 512);
+        assertEquals(1f, naiveDot(values, 2, values, 2, 512), 1e-4f);
+        assertEquals(first, values[0], 0f);
+
+        float[] zero = new float[8];
+        SimilarityUtil.normalizeInPlace(zero, 0, 8);
+        assertArrayEquals(new float[8], zero, 0f);
+    }
+
+    @Test
+    public void dot_ofNormalizedVectorsMatchesCosineSimilarity() {
+        Random random = new Random(5);
+        float[] a = randomVector(512, random);
+        float[] b = randomVector(512, random);
+        float[] unitA = a.clone();
+        float[] unitB = b.clone();
+        SimilarityUtil.normalizeInPlace(unitA, 0, 512);
+        SimilarityUtil.normalizeInPlace(unitB, 0, 512);
+
+        assertEquals(naiveCosine(a, b), SimilarityUtil.dot(unitA, 0, unitB, 0, 512), 1e-4f);
+    }
+
+    // ========== 헬퍼 ==========
+
+    private static float naiveDot(float[] a, int aOffset, float[] b, int bOffset, int dim) {
+        float sum = 0f;
+        for (int i = 0; i < dim; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    /**
+     * cosineSimilarity 는 로그를 남겨서 JVM 단위 테스트에서 호출할 수 없으므로 같은 식을 직접 계산
+     */
+    private static float naiveCosine(float[] a, float[] b) {
+        double dot = 0, normA = 0, normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return (float) (dot / (Math.sqrt(normA) * Math.sqrt(normB)));
+    }
+
+    private static float[] randomVector(int length, Random random) {
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = (float) random.nextGaussian();
+        }
+        return values;
+    }
+
+    /**
+     * 매핑 파일과 같은 little endian direct 버퍼
+     */
+    private static FloatBuffer directBuffer(float[] values) {
+        FloatBuffer buffer = ByteBuffer.allocateDirect(values.length * 4)
+                .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        buffer.put(values);
+        buffer.flip();
+        return buffer;
+    }
+}
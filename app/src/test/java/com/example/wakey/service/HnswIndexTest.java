@@ -0,0 +1,303 @@
+package com.example.wakey.service;
+
+import com.example.wakey.data.util.SimilarityUtil;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * HnswIndex 재현율 / 재현율 리포트 / 저장-로드 / compact 테스트
+ * - 정확 검색(exactSearch)을 기준으로 근사 검색의 재현율@k 하한을 확인
+ * - 재현율은 저장된 벡터가 아닌 새로 만든 질의로 측정 (저장 벡터를 질의로 쓰면 자기 자신이 항상 맞아 부풀려짐)
+ */
+public class HnswIndexTest {
+
+    private static final int DIM = 64;
+    private static final int M = 16;
+    private static final int EF_CONSTRUCTION = 100;
+    private static final int EF_SEARCH = 64;
+    private static final int K = 10;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void search_recallAt10_clustered20k() {
+        // 사진 임베딩처럼 비슷한 장면끼리 모인 분포: 200개 중심 + 잡음, 질의도 같은 분포에서 새로 생성
+        Random random = new Random(1);
+        float[][] centers = vectors(200, random);
+        MemoryVectors source = new MemoryVectors();
+        HnswIndex index = new HnswIndex(DIM, M, EF_CONSTRUCTION, source);
+        for (int i = 0; i < 20000; i++) {
+            source.add(index, i, clustered(centers, random));
+        }
+        float[][] queries = new float[200][];
+        for (int q = 0; q < queries.length; q++) {
+            queries[q] = clustered(centers, random);
+        }
+
+        float recall = recall(index, queries, EF_SEARCH);
+        assertTrue("recall@10 = " + recall, recall >= 0.85f);
+    }
+
+    @Test
+    public void search_recallAt10_uniform20k() {
+        // 구면 균등 분포는 군집이 없어 최악의 경우 (기본 ef 에서 약 0.7, ef 를 올리면 회복)
+        Random random = new Random(2);
+        HnswIndex index = build(20000, random);
+        float[][] queries = queries(200, random);
+
+        float atDefault = recall(index, queries, EF_SEARCH);
+        float atHighEf = recall(index, queries, 256);
+        assertTrue("ef=" + EF_SEARCH + " recall@10 = " + atDefault, atDefault >= 0.65f);
+        assertTrue("ef=256 recall@10 = " + atHighEf, atHighEf >= 0.95f);
+    }
+
+    @Test
+    public void search_higherEfDoesNotLowerRecall() {
+        Random random = new Random(7);
+        HnswIndex index = build(5000, random);
+        float[][] queries = queries(100, random);
+
+        float low = recall(index, queries, 16);
+        float high = recall(index, queries, 128);
+        assertTrue("ef=16 " + low + " / ef=128 " + high, high >= low);
+        assertTrue("ef=128 recall@10 = " + high, high >= 0.95f);
+    }
+
+    @Test
+    public void measureRecall_tracksFreshQueryRecall() {
+        // 저장 벡터를 그대로 질의로 쓰면 자기 자신과 그 링크가 곧 정답이라 ef 와 무관하게 0.98 안팎이 나왔음
+        Random random = new Random(8);
+        HnswIndex index = build(5000, random);
+        float[][] queries = queries(200, random);
+
+        List<HnswIndex.RecallReport> reports = index.measureRecall(200, K, new int[]{16, EF_SEARCH});
+        assertEquals(2, reports.size());
+        assertEquals(16, reports.get(0).efSearch);
+        assertEquals(EF_SEARCH, reports.get(1).efSearch);
+        assertTrue(reports.toString(), reports.get(1).recall >= reports.get(0).recall);
+        for (HnswIndex.RecallReport report : reports) {
+            float fresh = recall(index, queries, report.efSearch);
+            assertEquals(report + " / 새 질의 " + fresh, fresh, report.recall, 0.15f);
+        }
+
+        assertTrue(new HnswIndex(DIM, M, EF_CONSTRUCTION, new MemoryVectors())
+                .measureRecall(10, K, new int[]{EF_SEARCH}).isEmpty());
+    }
+
+    @Test
+    public void search_findsStoredVectorFirst() {
+        Random random = new Random(3);
+        float[][] vectors = vectors(2000, random);
+        MemoryVectors source = new MemoryVectors();
+        HnswIndex index = new HnswIndex(DIM, M, EF_CONSTRUCTION, source);
+        for (int i = 0; i < vectors.length; i++) {
+            source.add(index, i, vectors[i]);
+        }
+
+        for (int i = 0; i < vectors.length; i += 97) {
+            HnswIndex.Result result = index.search(vectors[i], K, EF_SEARCH, -1f);
+            assertEquals(i, result.photoIds[0]);
+            assertEquals(1f, result.scores[0], 1e-4f);
+        }
+    }
+
+    @Test
+    public void saveLoad_roundTripKeepsGraphAndTombstones() throws IOException {
+        Random random = new Random(4);
+        MemoryVectors source = new MemoryVectors();
+        HnswIndex index = build(3000, random, source);
+        for (int id = 0; id < 3000; id += 10) {
+            index.markDeleted(id);
+        }
+
+        File file = new File(temp.getRoot(), "vector_index/clip_hnsw_test.bin");
+        index.save(file);
+        assertTrue(file.exists());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        // 파일에는 그래프만 있으므로 같은 벡터 공급원으로 로드
+        assertTrue(file.length() < 3000L * DIM * 4);
+        HnswIndex loaded = HnswIndex.load(file, DIM, source);
+        assertNotNull(loaded);
+        assertEquals(index.size(), loaded.size());
+        assertEquals(index.deletedRatio(), loaded.deletedRatio(), 0f);
+        assertEquals(M, loaded.getM());
+        assertFalse(loaded.contains(0));
+        assertTrue(loaded.contains(1));
+
+        // 같은 그래프를 읽었으면 근사 검색 결과까지 동일
+        for (float[] query : queries(50, random)) {
+            HnswIndex.Result expected = index.search(query, K, EF_SEARCH, -1f);
+            HnswIndex.Result actual = loaded.search(query, K, EF_SEARCH, -1f);
+            assertArrayEquals(expected.photoIds, actual.photoIds);
+            assertArrayEquals(expected.scores, actual.scores, 0f);
+        }
+
+        // 로드한 인덱스에 이어서 추가해도 검색 가능
+        float[] added = vectors(1, random)[0];
+        source.add(loaded, 99999, added);
+        assertEquals(99999, loaded.search(added, 1, EF_SEARCH, -1f).photoIds[0]);
+    }
+
+    @Test
+    public void load_missingFileReturnsNull() throws IOException {
+        assertNull(HnswIndex.load(new File(temp.getRoot(), "missing.bin"), DIM, new MemoryVectors()));
+    }
+
+    @Test
+    public void compact_dropsTombstonesAndKeepsRecall() {
+        Random random = new Random(5);
+        HnswIndex index = build(5000, random);
+        for (int id = 0; id < 5000; id += 3) {
+            index.markDeleted(id);
+        }
+        int live = index.size();
+        assertNotEquals(0f, index.deletedRatio());
+
+        HnswIndex compacted = index.compact();
+        assertEquals(live, compacted.size());
+        assertEquals(0f, compacted.deletedRatio(), 0f);
+        assertEquals(live, compacted.livePhotoIds().length);
+        assertFalse(compacted.contains(0));
+        assertTrue(compacted.contains(1));
+
+        float[][] queries = queries(100, random);
+        for (float[] query : queries) {
+            for (int id : compacted.search(query, K, EF_SEARCH, -1f).photoIds) {
+                assertTrue("삭제된 사진이 결과에 포함: " + id, id % 3 != 0);
+            }
+            // 정확 검색 결과는 compact 전후 동일
+            assertArrayEquals(index.exactSearch(query, K, -1f).photoIds,
+                    compacted.exactSearch(query, K, -1f).photoIds);
+        }
+        float recall = recall(compacted, queries, EF_SEARCH);
+        assertTrue("compact 후 recall@10 = " + recall, recall >= 0.85f);
+    }
+
+    @Test
+    public void add_samePhotoReplacesPreviousVector() {
+        Random random = new Random(6);
+        MemoryVectors source = new MemoryVectors();
+        HnswIndex index = build(500, random, source);
+        float[] replacement = vectors(1, random)[0];
+
+        source.add(index, 7, replacement);
+        assertEquals(500, index.size());
+        assertTrue(index.deletedRatio() > 0f);
+        HnswIndex.Result result = index.search(replacement, 1, EF_SEARCH, -1f);
+        assertEquals(7, result.photoIds[0]);
+        assertEquals(1f, result.scores[0], 1e-4f);
+    }
+
+    // ========== 헬퍼 ==========
+
+    private static HnswIndex build(int size, Random random) {
+        return build(size, random, new MemoryVectors());
+    }
+
+    private static HnswIndex build(int size, Random random, MemoryVectors source) {
+        HnswIndex index = new HnswIndex(DIM, M, EF_CONSTRUCTION, source);
+        float[][] vectors = vectors(size, random);
+        for (int i = 0; i < size; i++) {
+            source.add(index, i, vectors[i]);
+        }
+        return index;
+    }
+
+    private static float[][] queries(int count, Random random) {
+        return vectors(count, random);
+    }
+
+    /**
+     * 정규분포 성분을 정규화한 단위 벡터 (구면 위 균등 분포)
+     */
+    private static float[][] vectors(int count, Random random) {
+        float[][] vectors = new float[count][DIM];
+        for (float[] vector : vectors) {
+            for (int d = 0; d < DIM; d++) {
+                vector[d] = (float) random.nextGaussian();
+            }
+            SimilarityUtil.normalizeInPlace(vector, 0, DIM);
+        }
+        return vectors;
+    }
+
+    /**
+     * 임의의 중심 주변 단위 벡터 (성분별 표준편차 0.2 잡음)
+     */
+    private static float[] clustered(float[][] centers, Random random) {
+        float[] center = centers[random.nextInt(centers.length)];
+        float[] vector = new float[DIM];
+        for (int d = 0; d < DIM; d++) {
+            vector[d] = center[d] + 0.2f * (float) random.nextGaussian();
+        }
+        SimilarityUtil.normalizeInPlace(vector, 0, DIM);
+        return vector;
+    }
+
+    /**
+     * EmbeddingStore 대신 쓰는 메모리 벡터 공급원 (앱과 같이 벡터를 먼저 저장한 뒤 인덱스에 추가)
+     */
+    private static final class MemoryVectors implements HnswIndex.VectorSource {
+        private final Map<Integer, float[]> vectors = new HashMap<>();
+
+        void add(HnswIndex index, int photoId, float[] vector) {
+            vectors.put(photoId, vector);
+            index.add(photoId, vector);
+        }
+
+        @Override
+        public float dot(float[] query, int photoId) {
+            float[] vector = vectors.get(photoId);
+            return vector == null ? Float.NEGATIVE_INFINITY : SimilarityUtil.dot(query, 0, vector, 0, DIM);
+        }
+
+        @Override
+        public boolean read(int photoId, float[] out) {
+            float[] vector = vectors.get(photoId);
+            if (vector == null) return false;
+            System.arraycopy(vector, 0, out, 0, DIM);
+            return true;
+        }
+    }
+
+    /**
+     * 정확 검색 top-k 중 근사 검색이 찾은 비율
+     */
+    private static float recall(HnswIndex index, float[][] queries, int efSearch) {
+        int hits = 0;
+        int total = 0;
+        for (float[] query : queries) {
+            int[] truth = index.exactSearch(query, K, -1f).photoIds;
+            int[] approx = index.search(query, K, efSearch, -1f).photoIds;
+            total += truth.length;
+            for (int id : approx) {
+                for (int t : truth) {
+                    if (t == id) {
+                        hits++;
+                        break;
+                    }
+                }
+            }
+        }
+        return total == 0 ? 1f : (float) hits / total;
+    }
+}
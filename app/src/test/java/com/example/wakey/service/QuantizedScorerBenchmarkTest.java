@@ -0,0 +1,80 @@
+package com.example.wakey.service;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * 라이브러리 크기별 int8 1차 스캔 지연 시간 (단일 스레드 vs ForkJoinPool 병렬)
+ * - 1천 / 1만 / 10만 장 크기의 임의 코드로 같은 질의를 반복 채점하고 평균 ms 와 배율을 출력
+ * - 실행 환경마다 코어 수가 달라 속도 조건은 검사하지 않고, 두 모드의 top-k 가 같은지만 확인
+ * - 크기마다 먼저 몇 번 돌려서 JIT 컴파일 전 시간은 측정에서 제외
+ */
+public class QuantizedScorerBenchmarkTest {
+
+    private static final int DIM = 512;
+    private static final int[] SIZES = {1_000, 10_000, 100_000};
+    private static final int CAPACITY = 200;   // VectorIndex 기본 후보 수 (k=50 * RERANK_FACTOR)
+    private static final int WARMUP_RUNS = 5;
+    private static final int RUNS = 20;
+
+    @Test
+    public void latencyPerLibrarySize() {
+        Random random = new Random(1);
+        float[] query = new float[DIM];
+        for (int i = 0; i < DIM; i++) {
+            query[i] = (float) random.nextGaussian();
+        }
+
+        for (int size : SIZES) {
+            QuantizedScorer scorer = randomScorer(size, random);
+            assertArrayEquals("size=" + size,
+                    sortedSlots(scorer.score(query, CAPACITY, -1f, false)),
+                    sortedSlots(scorer.score(query, CAPACITY, -1f, true)));
+
+            double sequentialMs = averageMs(scorer, query, false);
+            double parallelMs = averageMs(scorer, query, true);
+            System.out.println(String.format(Locale.ROOT, "📊 N=%d: 단일 %.2fms, 병렬 %.2fms (x%.1f, 코어 %d)",
+                    size, sequentialMs, parallelMs, sequentialMs / parallelMs,
+                    Runtime.getRuntime().availableProcessors()));
+        }
+    }
+
+    // ========== 헬퍼 ==========
+
+    private static double averageMs(QuantizedScorer scorer, float[] query, boolean parallel) {
+        for (int r = 0; r < WARMUP_RUNS; r++) {
+            scorer.score(query, CAPACITY, -1f, parallel);
+        }
+        long start = System.nanoTime();
+        for (int r = 0; r < RUNS; r++) {
+            scorer.score(query, CAPACITY, -1f, parallel);
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / RUNS;
+    }
+
+    /**
+     * 채점 비용은 값과 무관하므로 양자화 없이 임의 코드/스케일로 채움 (10만 장도 빠르게 준비)
+     */
+    private static QuantizedScorer randomScorer(int size, Random random) {
+        byte[] codes = new byte[size * DIM];
+        random.nextBytes(codes);
+        float[] scales = new float[size];
+        float[] offsets = new float[size];
+        for (int slot = 0; slot < size; slot++) {
+            scales[slot] = 0.001f + random.nextFloat() * 0.01f;
+            offsets[slot] = (random.nextFloat() - 0.5f) * 0.1f;
+        }
+        return new QuantizedScorer(codes, scales, offsets, size, DIM);
+    }
+
+    private static int[] sortedSlots(QuantizedScorer.TopK top) {
+        int[] slots = Arrays.copyOf(top.slots, top.size);
+        Arrays.sort(slots);
+        return slots;
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.wakey.service;
+
+import com.example.wakey.data.util.Int8Quantizer;
+import com.example.wakey.data.util.SimilarityUtil;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * QuantizedScorer 병렬 스캔이 단일 스레드 스캔 / 전수 계산과 같은 top-k 를 내는지 확인
+ */
+public class QuantizedScorerTest {
+
+    private static final int DIM = 512;
+
+    @Test
+    public void score_parallelMatchesSequential() {
+        // 병렬 임계값(4096) 위아래, 구간이 여러 개로 나뉘는 크기까지
+        for (int size : new int[]{1000, 4096, 20000}) {
+            Fixture fixture = new Fixture(size, new Random(size));
+            float[] query = fixture.query(new Random(size + 1));
+
+            QuantizedScorer.TopK sequential = fixture.scorer.score(query, 300, -1f, false);
+            QuantizedScorer.TopK parallel = fixture.scorer.score(query, 300, -1f, true);
+            assertArrayEquals("size=" + size, sortedSlots(sequential), sortedSlots(parallel));
+        }
+    }
+
+    @Test
+    public void score_matchesBruteForceTopK() {
+        Fixture fixture = new Fixture(10000, new Random(1));
+        float[] query = fixture.query(new Random(2));
+        int capacity = 50;
+
+        // 같은 근사 점수를 전부 계산해서 정렬한 상위 capacity 개
+        byte[] queryCodes = new byte[DIM];
+        int[] queryCodeSum = new int[1];
+        float queryScale = Int8Quantizer.quantizeQuery(query, queryCodes, queryCodeSum);
+        Integer[] order = new Integer[fixture.size];
+        float[] scores = new float[fixture.size];
+        for (int slot = 0; slot < fixture.size; slot++) {
+            int codeDot = Int8Quantizer.dot(queryCodes, 0, fixture.codes, slot * DIM, DIM);
+            scores[slot] = Int8Quantizer.approximateDot(codeDot, queryCodeSum[0], queryScale,
+                    fixture.scales[slot], fixture.offsets[slot]);
+            order[slot] = slot;
+        }
+        Arrays.sort(order, (a, b) -> Float.compare(scores[b], scores[a]));
+        int[] expected = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            expected[i] = order[i];
+        }
+        Arrays.sort(expected);
+
+        assertArrayEquals(expected, sortedSlots(fixture.scorer.score(query, capacity, -1f, false)));
+        assertArrayEquals(expected, sortedSlots(fixture.scorer.score(query, capacity, -1f, true)));
+    }
+
+    @Test
+    public void score_appliesThreshold() {
+        Fixture fixture = new Fixture(8000, new Random(3));
+        float[] query = fixture.query(new Random(4));
+        float threshold = 0.05f;
+
+        QuantizedScorer.TopK sequential = fixture.scorer.score(query, 8000, threshold, false);
+        QuantizedScorer.TopK parallel = fixture.scorer.score(query, 8000, threshold, true);
+        assertEquals(sequential.size, parallel.size);
+        for (int i = 0; i < parallel.size; i++) {
+            assertTrue(parallel.scores[i] >= threshold);
+        }
+        assertArrayEquals(sortedSlots(sequential), sortedSlots(parallel));
+    }
+
+    @Test
+    public void chunkSize_neverBelowMinimumChunk() {
+        assertEquals(1024, QuantizedScorer.chunkSize(1000, 8));
+        assertEquals(1024, QuantizedScorer.chunkSize(20000, 8));
+        assertEquals(3125, QuantizedScorer.chunkSize(100000, 8));      // 8코어 × 4작업 = 32구간
+        assertEquals(3126, QuantizedScorer.chunkSize(100001, 8));
+        assertEquals(1024, QuantizedScorer.chunkSize(100, 0));
+    }
+
+    // ========== 헬퍼 ==========
+
+    private static int[] sortedSlots(QuantizedScorer.TopK top) {
+        int[] slots = Arrays.copyOf(top.slots, top.size);
+        Arrays.sort(slots);
+        return slots;
+    }
+
+    /**
+     * 정규화 후 양자화한 임의 벡터 size 개 (VectorIndex.writeSlot 과 같은 순서)
+     */
+    private static final class Fixture {
+        final int size;
+        final byte[] codes;
+        final float[] scales;
+        final float[] offsets;
+        final QuantizedScorer scorer;
+
+        Fixture(int size, Random random) {
+            this.size = size;
+            codes = new byte[size * DIM];
+            scales = new float[size];
+            offsets = new float[size];
+            float[] buffer = new float[DIM];
+            for (int slot = 0; slot < size; slot++) {
+                for (int i = 0; i < DIM; i++) {
+                    buffer[i] = (float) random.nextGaussian();
+                }
+                SimilarityUtil.normalizeInPlace(buffer, 0, DIM);
+                Int8Quantizer.quantize(buffer, 0, DIM, codes, slot * DIM, scales, offsets, slot);
+            }
+            scorer = new QuantizedScorer(codes, scales, offsets, size, DIM);
+        }
+
+        float[] query(Random random) {
+            float[] query = new float[DIM];
+            for (int i = 0; i < DIM; i++) {
+                query[i] = (float) random.nextGaussian();
+            }
+            SimilarityUtil.normalizeInPlace(query, 0, DIM);
+            return query;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.wakey.service;
+
+import com.example.wakey.data.util.Int8Quantizer;
+import com.example.wakey.data.util.SimilarityUtil;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * VectorIndex 양자화 재현율 리포트 (int8 1차 검색 + float 재정렬 vs float 전수 검색)
+ * - Context 가 필요 없는 정적 측정 본체를 메모리 벡터로 호출
+ */
+public class VectorIndexTest {
+
+    private static final int DIM = 512;
+    private static final int SIZE = 5000;
+    private static final int K = 10;
+    private static final int ID_BASE = 1000;   // 슬롯 번호와 사진 ID 가 섞이지 않도록
+
+    @Test
+    public void measureQuantizedRecall_rerankedInt8MatchesFloatSearch() {
+        Fixture fixture = new Fixture(new Random(1), false);
+
+        VectorIndex.QuantizedRecallReport report = VectorIndex.measureQuantizedRecall(
+                fixture.snapshot, DIM, fixture.vectors, 100, K, true);
+        assertEquals(K, report.k);
+        assertTrue(report.toString(), report.recall >= 0.95f);
+        assertEquals((long) SIZE * (DIM + 8), report.int8Bytes);
+        assertEquals((long) SIZE * DIM * 4, report.floatBytes);
+    }
+
+    @Test
+    public void measureQuantizedRecall_reportsMissesOfUselessCodes() {
+        // 코드가 전부 0 이면 1차 후보가 사실상 임의 → 재현율이 낮게 나와야 함 (질의 사진 자신으로 채워지지 않음)
+        Fixture fixture = new Fixture(new Random(2), true);
+
+        VectorIndex.QuantizedRecallReport report = VectorIndex.measureQuantizedRecall(
+                fixture.snapshot, DIM, fixture.vectors, 100, K, false);
+        assertTrue(report.toString(), report.recall < 0.1f);
+    }
+
+    @Test
+    public void measureQuantizedRecall_emptyLibraryReturnsNull() {
+        VectorIndex.Snapshot empty = VectorIndex.Snapshot.empty(0, DIM);
+        assertNull(VectorIndex.measureQuantizedRecall(empty, DIM, new MemoryVectors(), 10, K, false));
+        assertNull(VectorIndex.measureQuantizedRecall(new Fixture(new Random(3), false).snapshot,
+                DIM, new MemoryVectors(), 10, 0, false));
+    }
+
+    // ========== 헬퍼 ==========
+
+    /**
+     * 정규화한 임의 벡터 SIZE 개를 VectorIndex.writeSlot 과 같은 순서로 양자화한 스냅샷 + float 원본
+     */
+    private static final class Fixture {
+        final MemoryVectors vectors = new MemoryVectors();
+        final VectorIndex.Snapshot snapshot;
+
+        Fixture(Random random, boolean zeroCodes) {
+            int[] photoIds = new int[SIZE];
+            byte[] codes = new byte[SIZE * DIM];
+            float[] scales = new float[SIZE];
+            float[] offsets = new float[SIZE];
+            for (int slot = 0; slot < SIZE; slot++) {
+                float[] vector = new float[DIM];
+                for (int i = 0; i < DIM; i++) {
+                    vector[i] = (float) random.nextGaussian();
+                }
+                SimilarityUtil.normalizeInPlace(vector, 0, DIM);
+                if (!zeroCodes) {
+                    Int8Quantizer.quantize(vector, 0, DIM, codes, slot * DIM, scales, offsets, slot);
+                }
+                photoIds[slot] = ID_BASE + slot;
+                vectors.put(photoIds[slot], vector);
+            }
+            snapshot = new VectorIndex.Snapshot(photoIds, codes, scales, offsets, SIZE);
+        }
+    }
+
+    /**
+     * EmbeddingStore 대신 쓰는 메모리 벡터 공급원
+     */
+    private static final class MemoryVectors implements HnswIndex.VectorSource {
+        private final Map<Integer, float[]> vectors = new HashMap<>();
+
+        void put(int photoId, float[] vector) {
+            vectors.put(photoId, vector);
+        }
+
+        @Override
+        public float dot(float[] query, int photoId) {
+            float[] vector = vectors.get(photoId);
+            return vector == null ? Float.NEGATIVE_INFINITY : SimilarityUtil.dot(query, 0, vector, 0, DIM);
+        }
+
+        @Override
+        public boolean read(int photoId, float[] out) {
+            float[] vector = vectors.get(photoId);
+            if (vector == null) return false;
+            System.arraycopy(vector, 0, out, 0, DIM);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.wakey.tflite;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * ClipTokenizer 골든 토큰 id 테스트
+ * - 기대값은 같은 에셋(vocab.json / merges.txt)으로 원본 CLIP simple_tokenizer(Python) 를 돌려 얻은 id
+ * - 토큰화 규칙이 바뀌어 이 테스트가 깨지면 ClipTokenizer.VERSION 도 함께 올려야 함 (텍스트 임베딩 캐시 무효화)
+ */
+public class ClipTokenizerTest {
+
+    private static final int SOS = 49406;
+    private static final int EOS = 49407;
+    private static final int MAX_TOKENS = 77;
+
+    // Gradle 단위 테스트는 모듈(app) 디렉터리에서 실행됨
+    private static final File ASSET_DIR = new File("src/main/assets/tokenizer");
+
+    private static ClipTokenizer tokenizer;
+
+    @BeforeClass
+    public static void loadVocabulary() throws IOException {
+        try (InputStream vocabJson = new FileInputStream(new File(ASSET_DIR, "vocab.json"));
+             InputStream merges = new FileInputStream(new File(ASSET_DIR, "merges.txt"))) {
+            tokenizer = new ClipTokenizer(ClipVocabulary.fromStreams(vocabJson, merges));
+        }
+    }
+
+    @Test
+    public void tokenize_plainEnglish() {
+        assertTokens("a photo of a dog",
+                SOS, 320, 1125, 539, 320, 1929, EOS);
+    }
+
+    @Test
+    public void tokenize_collapsesWhitespaceAndLowercases() {
+        assertTokens("A  Photo   of the BEACH at sunset!",
+                SOS, 320, 1125, 539, 518, 2117, 536, 3424, 256, EOS);
+    }
+
+    @Test
+    public void tokenize_splitsContractionsAndPunctuation() {
+        assertTokens("she's running, isn't she?",
+                SOS, 1043, 568, 2761, 267, 2923, 713, 1043, 286, EOS);
+    }
+
+    @Test
+    public void tokenize_splitsDigitsOneByOne() {
+        assertTokens("hello123 world_42",
+                SOS, 3306, 272, 273, 274, 1002, 318, 275, 273, EOS);
+    }
+
+    @Test
+    public void tokenize_korean() {
+        assertTokens("2023년 여름 바다",
+                SOS, 273, 271, 273, 274, 167, 227, 482, 168, 245, 105, 167, 99, 482,
+                167, 108, 242, 167, 233, 353, EOS);
+    }
+
+    @Test
+    public void tokenize_accentedLatin() {
+        assertTokens("café crème brûlée",
+                SOS, 3471, 4166, 1075, 127, 101, 614, 711, 127, 119, 75, 3459, 324, EOS);
+    }
+
+    @Test
+    public void tokenize_empty() {
+        assertTokens("", SOS, EOS);
+        assertTokens("   ", SOS, EOS);
+    }
+
+    @Test
+    public void tokenize_truncatesTo77AndKeepsEos() {
+        String sentence = "a happy dog running on the beach with friends at sunset";
+        int[] sentenceIds = {320, 900, 1929, 2761, 525, 518, 2117, 593, 1574, 536, 3424};
+        String text = String.join(" ", Collections.nCopies(8, sentence));
+
+        List<Integer> expected = new ArrayList<>();
+        expected.add(SOS);
+        for (int i = 0; expected.size() < MAX_TOKENS - 1; i++) {
+            expected.add(sentenceIds[i % sentenceIds.length]);
+        }
+        expected.add(EOS);
+
+        int[] tokens = tokenizer.tokenize(text);
+        assertEquals(MAX_TOKENS, tokens.length);
+        assertEquals(EOS, tokens[MAX_TOKENS - 1]);
+        assertArrayEquals(toArray(expected), tokens);
+    }
+
+    @Test
+    public void tokenize_truncatesInsideMultiTokenWord() {
+        // "바다" = 6 개 바이트 토큰 → 75 번째 토큰이 단어 중간에서 잘림
+        int[] wordIds = {167, 108, 242, 167, 233, 353};
+        String text = String.join(" ", Collections.nCopies(30, "바다"));
+
+        List<Integer> expected = new ArrayList<>();
+        expected.add(SOS);
+        for (int i = 0; expected.size() < MAX_TOKENS - 1; i++) {
+            expected.add(wordIds[i % wordIds.length]);
+        }
+        expected.add(EOS);
+
+        assertArrayEquals(toArray(expected), tokenizer.tokenize(text));
+    }
+
+    @Test
+    public void tokenize_sameResultFromWordCache() {
+        int[] first = tokenizer.tokenize("sunset at the beach");
+        int[] second = tokenizer.tokenize("sunset at the beach");
+        assertArrayEquals(first, second);
+    }
+
+    /**
+     * 기대 id 뒤를 0 으로 채워 77 길이로 비교
+     */
+    private static void assertTokens(String text, int... ids) {
+        int[] expected = new int[MAX_TOKENS];
+        System.arraycopy(ids, 0, expected, 0, ids.length);
+        assertArrayEquals(text, expected, tokenizer.tokenize(text));
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+}